@@ -0,0 +1,729 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * BTree is a B+tree structure used as the underlying data structure by BTreeMap
+ * and BTreeSet.
+ * <p>
+ * Every key is stored in a leaf, and the leaves are linked in order so that
+ * iteration never climbs the tree. Each leaf holds up to LEAF_SIZE keys in an
+ * array, with a parallel array of values when the tree backs a map, and each
+ * inner node holds up to INNER_SIZE separator keys. A separator is never
+ * smaller than any key to its left nor larger than any key to its right, which
+ * lets equal keys span several leaves when duplicates are allowed.
+ * <p>
+ * Positions are a leaf and an index within it. Searches return the leaf and
+ * leave the index in myIndex; my container's lock makes this safe.
+ * <p>
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+final class BTree
+  {
+  static final int LEAF_SIZE = 64;
+  static final int INNER_SIZE = 64;
+
+  // A node that falls below a quarter full is merged with or refilled from a
+  // sibling, which leaves room on both sides so that alternating insertions
+  // and removals do not split and merge the same nodes over and over.
+  static final int LEAF_MINIMUM = LEAF_SIZE / 4;
+  static final int INNER_MINIMUM = INNER_SIZE / 4;
+
+  boolean myInsertAlways;
+  boolean myIsMap;
+  BinaryPredicate myComparator;
+  int size;
+  Node myRoot;
+  Leaf myFirst; // leftmost leaf.
+  Leaf myLast; // rightmost leaf.
+  int myIndex; // index within the leaf returned by the last search.
+  boolean myInserted; // did the last insert() add a new element?
+
+  BTree( boolean isMap, boolean always, BinaryPredicate comparator )
+    {
+    myIsMap = isMap;
+    myInsertAlways = always;
+    myComparator = comparator;
+    clear();
+    }
+
+  BTree( BTree tree )
+    {
+    myIsMap = tree.myIsMap;
+    myInsertAlways = tree.myInsertAlways;
+    myComparator = tree.myComparator;
+    copy( tree );
+    }
+
+  void clear()
+    {
+    Leaf leaf = new Leaf( myIsMap );
+    myRoot = leaf;
+    myFirst = leaf;
+    myLast = leaf;
+    size = 0;
+    }
+
+  /**
+   * Become a copy of another tree with the same shape.
+   */
+  void copy( BTree tree )
+    {
+    if ( tree != this )
+      {
+      myFirst = null;
+      myLast = null;
+      myRoot = copyNode( tree.myRoot, null );
+      size = tree.size;
+      }
+    }
+
+  private Node copyNode( Node node, Inner parent )
+    {
+    if ( node instanceof Leaf )
+      {
+      Leaf from = (Leaf)node;
+      Leaf leaf = new Leaf( myIsMap );
+      leaf.count = from.count;
+      System.arraycopy( from.keys, 0, leaf.keys, 0, from.count );
+
+      if ( myIsMap )
+        System.arraycopy( from.values, 0, leaf.values, 0, from.count );
+
+      leaf.parent = parent;
+      leaf.previous = myLast;
+
+      if ( myLast == null )
+        myFirst = leaf;
+      else
+        myLast.next = leaf;
+
+      myLast = leaf;
+      return leaf;
+      }
+
+    Inner from = (Inner)node;
+    Inner inner = new Inner();
+    inner.count = from.count;
+    inner.parent = parent;
+    System.arraycopy( from.keys, 0, inner.keys, 0, from.count );
+
+    for ( int i = 0; i <= from.count; i++ )
+      inner.children[ i ] = copyNode( from.children[ i ], inner );
+
+    return inner;
+    }
+
+  /**
+   * Return the leaf that holds the first key that is not less than a given key,
+   * or null if there is none.
+   */
+  Leaf lowerBound( Object key )
+    {
+    Node node = myRoot;
+
+    while ( node instanceof Inner )
+      node = ( (Inner)node ).children[ lower( node, key ) ];
+
+    return normalize( (Leaf)node, lower( node, key ) );
+    }
+
+  /**
+   * Return the leaf that holds the first key that is greater than a given key,
+   * or null if there is none.
+   */
+  Leaf upperBound( Object key )
+    {
+    Node node = myRoot;
+
+    while ( node instanceof Inner )
+      node = ( (Inner)node ).children[ upper( node, key ) ];
+
+    return normalize( (Leaf)node, upper( node, key ) );
+    }
+
+  /**
+   * Return the leaf that holds the first key that matches a given key, or null
+   * if there is none.
+   */
+  Leaf find( Object key )
+    {
+    Leaf leaf = lowerBound( key );
+
+    if ( leaf == null || myComparator.execute( key, leaf.keys[ myIndex ] ) )
+      return null;
+
+    return leaf;
+    }
+
+  /**
+   * Return the leaf that holds the last key that matches a given key, or null
+   * if there is none.
+   */
+  Leaf findLast( Object key )
+    {
+    Leaf leaf = upperBound( key );
+
+    if ( leaf == null )
+      {
+      leaf = myLast;
+      myIndex = leaf.count;
+      }
+
+    if ( myIndex == 0 )
+      {
+      leaf = leaf.previous;
+
+      if ( leaf == null )
+        return null;
+
+      myIndex = leaf.count;
+      }
+
+    if ( --myIndex < 0 || myComparator.execute( leaf.keys[ myIndex ], key ) )
+      return null;
+
+    return leaf;
+    }
+
+  /**
+   * Return the number of keys that match a given key.
+   */
+  int count( Object key )
+    {
+    Leaf leaf = find( key );
+
+    if ( leaf == null )
+      return 0;
+
+    if ( !myInsertAlways )
+      return 1;
+
+    int n = 0;
+
+    for ( int i = myIndex; leaf != null && !myComparator.execute( key, leaf.keys[ i ] ); ++n )
+      if ( ++i == leaf.count )
+        {
+        leaf = leaf.next;
+        i = 0;
+        }
+
+    return n;
+    }
+
+  /**
+   * Insert a key and its value. If duplicates are not allowed and the key is
+   * already present, leave me unchanged. Either way, return the leaf that holds
+   * the new or existing key, leave its index in myIndex and set myInserted.
+   */
+  Leaf insert( Object key, Object value )
+    {
+    Node node = myRoot;
+
+    if ( myInsertAlways )
+      {
+      // Equal keys are kept in the order in which they were inserted.
+      while ( node instanceof Inner )
+        node = ( (Inner)node ).children[ upper( node, key ) ];
+
+      myIndex = upper( node, key );
+      }
+    else
+      {
+      while ( node instanceof Inner )
+        node = ( (Inner)node ).children[ lower( node, key ) ];
+
+      Leaf leaf = (Leaf)node;
+      int i = lower( leaf, key );
+
+      if ( i < leaf.count && !myComparator.execute( key, leaf.keys[ i ] ) )
+        {
+        myIndex = i;
+        myInserted = false;
+        return leaf;
+        }
+
+      if ( i == leaf.count && leaf.next != null && !myComparator.execute( key, leaf.next.keys[ 0 ] ) )
+        {
+        myIndex = 0;
+        myInserted = false;
+        return leaf.next;
+        }
+
+      myIndex = i;
+      }
+
+    myInserted = true;
+    return insertAt( (Leaf)node, myIndex, key, value );
+    }
+
+  /**
+   * Insert a key and its value at a given index of a leaf, splitting it if it
+   * overflows, and return the leaf that then holds the key with its index in
+   * myIndex.
+   */
+  private Leaf insertAt( Leaf leaf, int i, Object key, Object value )
+    {
+    int n = leaf.count - i;
+    System.arraycopy( leaf.keys, i, leaf.keys, i + 1, n );
+    leaf.keys[ i ] = key;
+
+    if ( myIsMap )
+      {
+      System.arraycopy( leaf.values, i, leaf.values, i + 1, n );
+      leaf.values[ i ] = value;
+      }
+
+    ++leaf.count;
+    ++size;
+    myIndex = i;
+
+    if ( leaf.count <= LEAF_SIZE )
+      return leaf;
+
+    // Split, moving the upper half into a new leaf to my right.
+    Leaf right = new Leaf( myIsMap );
+    int half = leaf.count / 2;
+    right.count = leaf.count - half;
+    System.arraycopy( leaf.keys, half, right.keys, 0, right.count );
+    clear( leaf.keys, half, leaf.count );
+
+    if ( myIsMap )
+      {
+      System.arraycopy( leaf.values, half, right.values, 0, right.count );
+      clear( leaf.values, half, leaf.count );
+      }
+
+    leaf.count = half;
+    right.previous = leaf;
+    right.next = leaf.next;
+
+    if ( leaf.next == null )
+      myLast = right;
+    else
+      leaf.next.previous = right;
+
+    leaf.next = right;
+    addChild( leaf, right.keys[ 0 ], right );
+
+    if ( i < half )
+      return leaf;
+
+    myIndex = i - half;
+    return right;
+    }
+
+  /**
+   * Add a new right sibling to a node, with a given separator between them.
+   */
+  private void addChild( Node left, Object separator, Node right )
+    {
+    Inner parent = left.parent;
+
+    if ( parent == null )
+      {
+      parent = new Inner();
+      parent.children[ 0 ] = left;
+      left.parent = parent;
+      myRoot = parent;
+      }
+
+    int c = indexOf( parent, left );
+    System.arraycopy( parent.keys, c, parent.keys, c + 1, parent.count - c );
+    System.arraycopy( parent.children, c + 1, parent.children, c + 2, parent.count - c );
+    parent.keys[ c ] = separator;
+    parent.children[ c + 1 ] = right;
+    right.parent = parent;
+
+    if ( ++parent.count <= INNER_SIZE )
+      return;
+
+    // Split, promoting the middle separator.
+    Inner sibling = new Inner();
+    int half = parent.count / 2;
+    Object promoted = parent.keys[ half ];
+    sibling.count = parent.count - half - 1;
+    System.arraycopy( parent.keys, half + 1, sibling.keys, 0, sibling.count );
+    System.arraycopy( parent.children, half + 1, sibling.children, 0, sibling.count + 1 );
+
+    for ( int i = 0; i <= sibling.count; i++ )
+      sibling.children[ i ].parent = sibling;
+
+    clear( parent.keys, half, parent.count );
+    clear( parent.children, half + 1, parent.count + 1 );
+    parent.count = half;
+    addChild( parent, promoted, sibling );
+    }
+
+  /**
+   * Remove the key at a given index of a leaf. Return the leaf that then holds
+   * the key that followed it, or null if there is none, with its index in myIndex.
+   */
+  Leaf remove( Leaf leaf, int i )
+    {
+    int n = leaf.count - i - 1;
+    System.arraycopy( leaf.keys, i + 1, leaf.keys, i, n );
+    leaf.keys[ leaf.count - 1 ] = null;
+
+    if ( myIsMap )
+      {
+      System.arraycopy( leaf.values, i + 1, leaf.values, i, n );
+      leaf.values[ leaf.count - 1 ] = null;
+      }
+
+    --leaf.count;
+    --size;
+    myIndex = i;
+
+    if ( leaf.count < LEAF_MINIMUM && leaf != myRoot )
+      leaf = rebalance( leaf );
+
+    return normalize( leaf, myIndex );
+    }
+
+  /**
+   * Remove a number of consecutive keys starting at a given index of a leaf,
+   * and return the value or object of the first one.
+   */
+  Object remove( Leaf leaf, int i, int n )
+    {
+    Object result = leaf == null ? null : myIsMap ? leaf.values[ i ] : leaf.keys[ i ];
+
+    if ( leaf == myFirst && i == 0 && n >= size )
+      {
+      clear();
+      return result;
+      }
+
+    while ( n-- > 0 && leaf != null )
+      {
+      leaf = remove( leaf, i );
+      i = myIndex;
+      }
+
+    return result;
+    }
+
+  /**
+   * Refill or merge an underfull leaf, and return the leaf that then holds the
+   * key at myIndex of the original leaf, adjusting myIndex.
+   */
+  private Leaf rebalance( Leaf leaf )
+    {
+    Inner parent = leaf.parent;
+    int c = indexOf( parent, leaf );
+
+    if ( c > 0 )
+      {
+      Leaf left = (Leaf)parent.children[ c - 1 ];
+
+      if ( left.count + leaf.count <= LEAF_SIZE )
+        {
+        myIndex += left.count;
+        merge( left, leaf );
+        removeChild( parent, c );
+        return left;
+        }
+
+      int k = ( left.count - leaf.count ) / 2;
+      shift( left, left.count - k, leaf, 0, k );
+      parent.keys[ c - 1 ] = leaf.keys[ 0 ];
+      myIndex += k;
+      return leaf;
+      }
+
+    Leaf right = (Leaf)parent.children[ 1 ];
+
+    if ( leaf.count + right.count <= LEAF_SIZE )
+      {
+      merge( leaf, right );
+      removeChild( parent, 1 );
+      return leaf;
+      }
+
+    int k = ( right.count - leaf.count ) / 2;
+    shift( right, 0, leaf, leaf.count, k );
+    parent.keys[ 0 ] = right.keys[ 0 ];
+    return leaf;
+    }
+
+  /**
+   * Move all the keys of a leaf to the end of its left neighbor and unlink it.
+   */
+  private void merge( Leaf left, Leaf right )
+    {
+    System.arraycopy( right.keys, 0, left.keys, left.count, right.count );
+
+    if ( myIsMap )
+      System.arraycopy( right.values, 0, left.values, left.count, right.count );
+
+    left.count += right.count;
+    left.next = right.next;
+
+    if ( right.next == null )
+      myLast = left;
+    else
+      right.next.previous = left;
+    }
+
+  /**
+   * Move k keys from a given index of one leaf to a given index of an adjacent
+   * leaf, which is either the start of its right neighbor or the end of its left one.
+   */
+  private void shift( Leaf from, int i, Leaf to, int j, int k )
+    {
+    System.arraycopy( to.keys, j, to.keys, j + k, to.count - j );
+    System.arraycopy( from.keys, i, to.keys, j, k );
+    System.arraycopy( from.keys, i + k, from.keys, i, from.count - i - k );
+    clear( from.keys, from.count - k, from.count );
+
+    if ( myIsMap )
+      {
+      System.arraycopy( to.values, j, to.values, j + k, to.count - j );
+      System.arraycopy( from.values, i, to.values, j, k );
+      System.arraycopy( from.values, i + k, from.values, i, from.count - i - k );
+      clear( from.values, from.count - k, from.count );
+      }
+
+    from.count -= k;
+    to.count += k;
+    }
+
+  /**
+   * Remove the child at a given index, which is not 0, together with the
+   * separator to its left, and rebalance the node if it becomes underfull.
+   */
+  private void removeChild( Inner node, int c )
+    {
+    System.arraycopy( node.keys, c, node.keys, c - 1, node.count - c );
+    System.arraycopy( node.children, c + 1, node.children, c, node.count - c );
+    node.keys[ node.count - 1 ] = null;
+    node.children[ node.count ] = null;
+    --node.count;
+
+    if ( node == myRoot )
+      {
+      if ( node.count == 0 )
+        {
+        myRoot = node.children[ 0 ];
+        myRoot.parent = null;
+        }
+      }
+    else if ( node.count < INNER_MINIMUM )
+      {
+      rebalance( node );
+      }
+    }
+
+  private void rebalance( Inner node )
+    {
+    Inner parent = node.parent;
+    int c = indexOf( parent, node );
+
+    if ( c > 0 )
+      {
+      Inner left = (Inner)parent.children[ c - 1 ];
+
+      if ( left.count + node.count < INNER_SIZE )
+        {
+        merge( left, parent.keys[ c - 1 ], node );
+        removeChild( parent, c );
+        }
+      else
+        {
+        for ( int k = ( left.count - node.count ) / 2; k > 0; k-- )
+          rotateRight( parent, c );
+        }
+      }
+    else
+      {
+      Inner right = (Inner)parent.children[ 1 ];
+
+      if ( node.count + right.count < INNER_SIZE )
+        {
+        merge( node, parent.keys[ 0 ], right );
+        removeChild( parent, 1 );
+        }
+      else
+        {
+        for ( int k = ( right.count - node.count ) / 2; k > 0; k-- )
+          rotateLeft( parent, 0 );
+        }
+      }
+    }
+
+  /**
+   * Append a separator and all of the separators and children of an inner node
+   * to its left neighbor.
+   */
+  private void merge( Inner left, Object separator, Inner right )
+    {
+    left.keys[ left.count ] = separator;
+    System.arraycopy( right.keys, 0, left.keys, left.count + 1, right.count );
+    System.arraycopy( right.children, 0, left.children, left.count + 1, right.count + 1 );
+
+    for ( int i = 0; i <= right.count; i++ )
+      right.children[ i ].parent = left;
+
+    left.count += right.count + 1;
+    }
+
+  /**
+   * Move the last child of the child at c - 1 to the front of the child at c.
+   */
+  private void rotateRight( Inner parent, int c )
+    {
+    Inner left = (Inner)parent.children[ c - 1 ];
+    Inner node = (Inner)parent.children[ c ];
+    System.arraycopy( node.keys, 0, node.keys, 1, node.count );
+    System.arraycopy( node.children, 0, node.children, 1, node.count + 1 );
+    node.keys[ 0 ] = parent.keys[ c - 1 ];
+    node.children[ 0 ] = left.children[ left.count ];
+    node.children[ 0 ].parent = node;
+    ++node.count;
+    parent.keys[ c - 1 ] = left.keys[ left.count - 1 ];
+    left.keys[ left.count - 1 ] = null;
+    left.children[ left.count ] = null;
+    --left.count;
+    }
+
+  /**
+   * Move the first child of the child at c + 1 to the end of the child at c.
+   */
+  private void rotateLeft( Inner parent, int c )
+    {
+    Inner node = (Inner)parent.children[ c ];
+    Inner right = (Inner)parent.children[ c + 1 ];
+    node.keys[ node.count ] = parent.keys[ c ];
+    node.children[ node.count + 1 ] = right.children[ 0 ];
+    node.children[ node.count + 1 ].parent = node;
+    ++node.count;
+    parent.keys[ c ] = right.keys[ 0 ];
+    System.arraycopy( right.keys, 1, right.keys, 0, right.count - 1 );
+    System.arraycopy( right.children, 1, right.children, 0, right.count );
+    right.keys[ right.count - 1 ] = null;
+    right.children[ right.count ] = null;
+    --right.count;
+    }
+
+  /**
+   * Return the leaf that holds my first key, or null if I'm empty.
+   */
+  Leaf first()
+    {
+    myIndex = 0;
+    return size == 0 ? null : myFirst;
+    }
+
+  /**
+   * Return a position itself, or the start of the next leaf if the index is past
+   * the end of the leaf, setting myIndex.
+   */
+  Leaf normalize( Leaf leaf, int i )
+    {
+    if ( i < leaf.count )
+      {
+      myIndex = i;
+      return leaf;
+      }
+
+    myIndex = 0;
+    return leaf.next;
+    }
+
+  /**
+   * Return the number of keys in a node that are less than a given key.
+   */
+  private int lower( Node node, Object key )
+    {
+    Object[] keys = node.keys;
+    int low = 0;
+    int high = node.count;
+
+    while ( low < high )
+      {
+      int middle = ( low + high ) >>> 1;
+
+      if ( myComparator.execute( keys[ middle ], key ) )
+        low = middle + 1;
+      else
+        high = middle;
+      }
+
+    return low;
+    }
+
+  /**
+   * Return the number of keys in a node that are not greater than a given key.
+   */
+  private int upper( Node node, Object key )
+    {
+    Object[] keys = node.keys;
+    int low = 0;
+    int high = node.count;
+
+    while ( low < high )
+      {
+      int middle = ( low + high ) >>> 1;
+
+      if ( myComparator.execute( key, keys[ middle ] ) )
+        high = middle;
+      else
+        low = middle + 1;
+      }
+
+    return low;
+    }
+
+  private static int indexOf( Inner parent, Node child )
+    {
+    int c = 0;
+
+    while ( parent.children[ c ] != child )
+      ++c;
+
+    return c;
+    }
+
+  private static void clear( Object[] array, int from, int to )
+    {
+    for ( int i = from; i < to; i++ )
+      array[ i ] = null;
+    }
+
+  static class Node
+    {
+    Inner parent;
+    int count; // # keys.
+    Object[] keys;
+    }
+
+  static final class Leaf extends Node
+    {
+    Object[] values; // null unless I belong to a map.
+    Leaf previous;
+    Leaf next;
+
+    Leaf( boolean isMap )
+      {
+      // One spare slot holds the key that overflows me until I'm split.
+      keys = new Object[ LEAF_SIZE + 1 ];
+
+      if ( isMap )
+        values = new Object[ LEAF_SIZE + 1 ];
+      }
+    }
+
+  static final class Inner extends Node
+    {
+    Node[] children;
+
+    Inner()
+      {
+      keys = new Object[ INNER_SIZE + 1 ];
+      children = new Node[ INNER_SIZE + 2 ];
+      }
+    }
+  }
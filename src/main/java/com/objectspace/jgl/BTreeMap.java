@@ -0,0 +1,671 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.io.ObjectOutputStream;
+import java.io.ObjectInputStream;
+import java.io.IOException;
+
+/**
+ * A BTreeMap is an associative container that manages a set of ordered
+ * key/value pairs, with the same ordering, duplicate and iteration semantics as
+ * an OrderedMap. The pairs are ordered by key, using a comparator. By default,
+ * a comparator is used which orders keys based on their hash value. By default,
+ * only one value may be associated with a particular key.
+ * <p>
+ * Whereas an OrderedMap stores each pair in its own node of a red-black tree,
+ * a BTreeMap uses a B+tree. Up to 64 keys are kept sorted in each leaf, in an
+ * array beside another array of their values, and the leaves are linked in
+ * order. The tree above them is only four or five levels deep for tens of
+ * millions of pairs, so a lookup touches a few arrays instead of following a
+ * pointer for each of twenty or more levels, and no node or Pair is allocated
+ * per element. Iteration walks the leaves without climbing the tree.
+ * <p>
+ * BTreeMap is a better choice than OrderedMap for large maps that are mostly
+ * searched and scanned. The price is that inserting or removing a pair moves
+ * the pairs that follow it in its leaf, and occasionally splits or merges
+ * leaves.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see BinaryPredicate
+ * @see OrderedMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class BTreeMap extends Map
+  {
+  transient BTree myTree;
+
+  /**
+   * Construct myself to be an empty BTreeMap that orders its keys based on
+   * their hash value and does not allow duplicates.
+   */
+  public BTreeMap()
+    {
+    this( new xHashComparator(), false );
+    }
+
+  /**
+   * Construct myself to be an empty BTreeMap that orders its keys based on
+   * their hash value and conditionally allows duplicates.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BTreeMap( boolean allowDuplicates )
+    {
+    this( new xHashComparator(), allowDuplicates );
+    }
+
+  /**
+   * Construct myself to be an empty BTreeMap that orders its keys using
+   * a specified binary predicate and does not allow duplicates.
+   * @param comparator The predicate for ordering keys.
+   */
+  public BTreeMap( BinaryPredicate comparator )
+    {
+    this( comparator, false );
+    }
+
+  /**
+   * Construct myself to be an empty BTreeMap that orders its keys using
+   * a specified binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for ordering keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BTreeMap( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    myTree = new BTree( true, allowDuplicates, comparator );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing BTreeMap.
+   * @param map The BTreeMap to copy.
+   */
+  public BTreeMap( BTreeMap map )
+    {
+    synchronized( map )
+      {
+      myTree = new BTree( map.myTree );
+      }
+    }
+
+  /**
+   * Return true if duplicates are allowed.
+   */
+  public boolean allowsDuplicates()
+    {
+    return myTree.myInsertAlways;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new BTreeMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing BTreeMap.
+   * @param map The BTreeMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( BTreeMap map )
+    {
+    synchronized( map )
+      {
+      myTree.copy( map.myTree );
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "BTreeMap" );
+    }
+
+  /**
+   * Return an Enumeration of my values
+   */
+  public synchronized Enumeration elements()
+    {
+    return new BTreeMapIterator( myTree.first(), 0, this, BTreeMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized BTreeMapIterator begin()
+    {
+    return new BTreeMapIterator( myTree.first(), 0, this, BTreeMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized BTreeMapIterator end()
+    {
+    return new BTreeMapIterator( null, 0, this, BTreeMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return myTree.size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return myTree.size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof BTreeMap && equals( (BTreeMap)object );
+    }
+
+  /**
+   * Return true if I contain the same items in the same order as
+   * another BTreeMap. Use equals() to compare the individual elements.
+   * @param map The BTreeMap to compare myself against.
+   */
+  public synchronized boolean equals( BTreeMap map )
+    {
+    synchronized( map )
+      {
+      return Algos.Comparing.equal( this, map );
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public synchronized int hashCode()
+    {
+    ForwardIterator start = new BTreeMapIterator( myTree.first(), 0, this, BTreeMapIterator.KEY );
+    return Algos.Hashing.orderedHash( start, myTree.size );
+    }
+
+  /**
+   * Swap my contents with another BTreeMap.
+   * @param map The BTreeMap that I will swap my contents with.
+   */
+  public synchronized void swap( BTreeMap map )
+    {
+    synchronized( map )
+      {
+      BTree tmp = myTree;
+      myTree = map.myTree;
+      map.myTree = tmp;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    myTree.clear();
+    }
+
+  /**
+   * If I contain key/value pair(s) that matches a particular key,
+   * remove them all and return the first value removed.
+   * @param key The key of the pair(s) to be removed.
+   * @return The first value removed or null if the container is unchanged.
+   */
+  public synchronized Object remove( Object key )
+    {
+    int n = myTree.count( key );
+
+    if ( n == 0 )
+      return null;
+
+    BTree.Leaf leaf = myTree.find( key );
+    return myTree.remove( leaf, myTree.myIndex, n );
+    }
+
+  /**
+   * If I contain key/value pair(s) that matches a particular key,
+   * remove at most a given number and return the number of pairs removed.
+   * @param key The key of the pair(s) to be removed.
+   * @param count The maximum number of objects to remove.
+   * @return The number of pairs removed.
+   */
+  public synchronized int remove( Object key, int count )
+    {
+    int n = Math.min( myTree.count( key ), count );
+
+    if ( n <= 0 )
+      return 0;
+
+    BTree.Leaf leaf = myTree.find( key );
+    myTree.remove( leaf, myTree.myIndex, n );
+    return n;
+    }
+
+  /**
+   * Remove the element at a particular position and return its value.
+   * @param pos An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * BTreeMapIterator for this BTreeMap object.
+   * @return The value that was removed or null if none.
+   */
+  public synchronized Object remove( Enumeration pos )
+    {
+    if ( ! (pos instanceof BTreeMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not a BTreeMapIterator" );
+
+    BTreeMapIterator iterator = (BTreeMapIterator)pos;
+
+    if ( iterator.myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this BTreeMap" );
+
+    if ( iterator.myLeaf == null )
+      return null;
+
+    return myTree.remove( iterator.myLeaf, iterator.myIndex, 1 );
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An iterator positioned at the first element to remove.
+   * @param last An iterator positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * BTreeMapIterator for this BTreeMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof BTreeMapIterator) ) ||
+        ( ! (last instanceof BTreeMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a BTreeMapIterator" );
+
+    BTreeMapIterator start = (BTreeMapIterator)first;
+    BTreeMapIterator finish = (BTreeMapIterator)last;
+
+    if ( start.myMap != this || finish.myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this BTreeMap" );
+
+    int n = start.distance( finish );
+    myTree.remove( start.myLeaf, start.myIndex, n );
+    return n;
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position.
+   * If the pair is not found, return end().
+   * @param object The object to locate.
+   */
+  public synchronized BTreeMapIterator find( Object key )
+    {
+    BTree.Leaf leaf = myTree.find( key );
+    return new BTreeMapIterator( leaf, myTree.myIndex, this, BTreeMapIterator.PAIR );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    return myTree.count( key );
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int n = 0;
+
+    for ( BTree.Leaf leaf = myTree.first(); leaf != null; leaf = leaf.next )
+      for ( int i = 0; i < leaf.count; i++ )
+        if ( leaf.values[ i ].equals( value ) )
+          ++n;
+
+    return n;
+    }
+
+  /**
+   * Return an iterator positioned at the first location that a
+   * pair with a specified key could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param key The key.
+   */
+  public synchronized BTreeMapIterator lowerBound( Object key )
+    {
+    BTree.Leaf leaf = myTree.lowerBound( key );
+    return new BTreeMapIterator( leaf, myTree.myIndex, this, BTreeMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned at the last location that
+   * a pair with a specified key could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param key The key.
+   */
+  public synchronized BTreeMapIterator upperBound( Object key )
+    {
+    BTree.Leaf leaf = myTree.upperBound( key );
+    return new BTreeMapIterator( leaf, myTree.myIndex, this, BTreeMapIterator.PAIR );
+    }
+
+  /**
+   * Return a pair of iterators whose first element is equal to
+   * lowerBound() and whose second element is equal to upperBound().
+   * @param object The object whose bounds are to be found.
+   */
+  public synchronized Range equalRange( Object object )
+    {
+    return new Range( lowerBound( object ), upperBound( object ) );
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return myTree.myComparator;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * If duplicates are allowed, return the value of the last matching pair.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    BTree.Leaf leaf = myTree.findLast( key );
+    return leaf == null ? null : leaf.values[ myTree.myIndex ];
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the last value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    BTree.Leaf leaf;
+
+    if ( myTree.myInsertAlways )
+      {
+      leaf = myTree.findLast( key );
+
+      if ( leaf == null )
+        {
+        myTree.insert( key, value );
+        return null;
+        }
+      }
+    else
+      {
+      leaf = myTree.insert( key, value );
+
+      if ( myTree.myInserted )
+        return null;
+      }
+
+    Object previous = leaf.values[ myTree.myIndex ];
+    leaf.values[ myTree.myIndex ] = value;
+    return previous;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist or duplicates are allowed,
+   * associate the value with the key and return null, otherwise don't modify the map and
+   * return the current value associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not Pair" );
+
+    if ( ((Pair)object).first == null || ((Pair)object).second == null )
+      throw new NullPointerException();
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist or duplicates are allowed, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    BTree.Leaf leaf = myTree.insert( key, value );
+    return myTree.myInserted ? null : leaf.values[ myTree.myIndex ];
+    }
+
+  /**
+   * Put every pair of a container into myself as if by put().
+   * @param container A container of Pairs.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void putAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    insert( container.start(), container.finish(), true );
+    }
+
+  /**
+   * Put every pair in a range into myself as if by put().
+   * @param first An iterator positioned at the first Pair to insert.
+   * @param last An iterator positioned immediately after the last Pair to insert.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void putAll( InputIterator first, InputIterator last )
+    {
+    insert( first, last, true );
+    }
+
+  /**
+   * Add every pair of a container to myself as if by add().
+   * @param container A container of Pairs.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void addAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    insert( container.start(), container.finish(), false );
+    }
+
+  /**
+   * Add every pair in a range to myself as if by add().
+   * @param first An iterator positioned at the first Pair to insert.
+   * @param last An iterator positioned immediately after the last Pair to insert.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void addAll( InputIterator first, InputIterator last )
+    {
+    insert( first, last, false );
+    }
+
+  private void insert( InputIterator first, InputIterator last, boolean replace )
+    {
+    if ( first instanceof BTreeMapIterator && ( (BTreeMapIterator)first ).myMode == BTreeMapIterator.PAIR )
+      {
+      // Read the keys and values of another BTreeMap in place rather than as new Pairs.
+      for ( BTreeMapIterator i = new BTreeMapIterator( (BTreeMapIterator)first ); !i.equals( last ); i.advance() )
+        if ( replace )
+          put( i.key(), i.value() );
+        else
+          add( i.key(), i.value() );
+
+      return;
+      }
+
+    InputIterator iterator = (InputIterator)first.clone();
+
+    while ( !iterator.equals( last ) )
+      {
+      Object object = iterator.nextElement();
+
+      if ( object == null )
+        throw new NullPointerException();
+
+      if ( !( object instanceof Pair ) )
+        throw new IllegalArgumentException( "object is not pair" );
+
+      Pair pair = (Pair)object;
+
+      if ( replace )
+        put( pair.first, pair.second );
+      else
+        add( pair.first, pair.second );
+      }
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return new BTreeMapIterator( myTree.first(), 0, this, BTreeMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( BTree.Leaf leaf = myTree.first(); leaf != null; leaf = leaf.next )
+      for ( int i = 0; i < leaf.count; i++ )
+        if ( leaf.values[ i ].equals( value ) )
+          array.pushBack( leaf.keys[ i ] );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of all my values that are associated with a particular key.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    BTreeMapIterator i = lowerBound( key );
+
+    while ( i.myLeaf != null && !myTree.myComparator.execute( key, i.key() ) )
+      {
+      array.pushBack( i.value() );
+      i.advance();
+      }
+
+    return array.elements();
+    }
+
+  /**
+   * Apply a function to the key and value of each of my pairs in order. My leaves
+   * are walked directly, so not even an iterator is created. The result of the
+   * function is ignored, and the function must not modify me.
+   * @param function A function that takes a key and its value.
+   */
+  public synchronized void forEachEntry( BinaryFunction function )
+    {
+    for ( BTree.Leaf leaf = myTree.first(); leaf != null; leaf = leaf.next )
+      for ( int i = 0; i < leaf.count; i++ )
+        function.execute( leaf.keys[ i ], leaf.values[ i ] );
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeBoolean( myTree.myInsertAlways );
+    stream.writeObject( myTree.myComparator );
+    stream.writeInt( myTree.size );
+
+    for ( BTree.Leaf leaf = myTree.first(); leaf != null; leaf = leaf.next )
+      for ( int i = 0; i < leaf.count; i++ )
+        {
+        stream.writeObject( leaf.keys[ i ] );
+        stream.writeObject( leaf.values[ i ] );
+        }
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    boolean allowDuplicates = stream.readBoolean();
+    BinaryPredicate comparator = (BinaryPredicate)stream.readObject();
+    myTree = new BTree( true, allowDuplicates, comparator );
+
+    int count = stream.readInt();
+    while ( count-- > 0 )
+      myTree.insert( stream.readObject(), stream.readObject() );
+    }
+
+  static final long serialVersionUID = 4620917384051127813L;
+  }
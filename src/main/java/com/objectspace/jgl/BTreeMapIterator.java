@@ -0,0 +1,329 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A BTreeMapIterator is a bidirectional iterator that allows you to iterate through
+ * the contents of a BTreeMap. It has a mode that allows selection of the current
+ * position's key, value, or key-value pair.
+ * <p>
+ * A BTreeMap keeps its keys and values in separate arrays, so in PAIR mode get()
+ * and nextElement() return a new Pair. Use KEY or VALUE mode, key() and value(),
+ * or BTreeMap.forEachEntry() to iterate without creating objects.
+ * <p>
+ * @see BidirectionalIterator
+ * @see BTreeMap#forEachEntry
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class BTreeMapIterator implements BidirectionalIterator, Opaque
+  {
+  public final static int PAIR = OrderedMapIterator.PAIR;
+  public final static int KEY = OrderedMapIterator.KEY;
+  public final static int VALUE = OrderedMapIterator.VALUE;
+
+  BTreeMap myMap;
+  BTree.Leaf myLeaf; // null when positioned at the end.
+  int myIndex;
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public BTreeMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public BTreeMapIterator( BTreeMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myLeaf = iterator.myLeaf;
+    myIndex = iterator.myIndex;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular key in a specified map.
+   * @param leaf My associated leaf, or null for the end position.
+   * @param index The index of my key within the leaf.
+   * @param map My associated BTreeMap.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  BTreeMapIterator( BTree.Leaf leaf, int index, BTreeMap map, int mode )
+    {
+    myMap = map;
+    myLeaf = leaf;
+    myIndex = leaf == null ? 0 : index;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new BTreeMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof BTreeMapIterator
+      && myLeaf == ( (BTreeMapIterator)object ).myLeaf
+      && myIndex == ( (BTreeMapIterator)object ).myIndex;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    BTree tree = myMap.myTree;
+    return tree.size == 0 ? myLeaf == null : myLeaf == tree.myFirst && myIndex == 0;
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myLeaf == null;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myLeaf != null;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    if ( ++myIndex == myLeaf.count )
+      {
+      myLeaf = myLeaf.next;
+      myIndex = 0;
+      }
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   */
+  public void advance( int n )
+    {
+    if ( n >= 0 )
+      while ( n-- > 0 )
+        advance();
+    else
+      while ( n++ < 0 )
+        retreat();
+    }
+
+  /**
+   * Retreat by one.
+   */
+  public void retreat()
+    {
+    if ( myLeaf == null )
+      {
+      myLeaf = myMap.myTree.myLast;
+      myIndex = myLeaf.count - 1;
+      }
+    else if ( myIndex == 0 )
+      {
+      myLeaf = myLeaf.previous;
+      myIndex = myLeaf.count - 1;
+      }
+    else
+      {
+      --myIndex;
+      }
+    }
+
+  /**
+   * Retreat by a specified amount.
+   * @param n The amount to retreat.
+   */
+  public void retreat( int n )
+    {
+    advance( -n );
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myLeaf == null )
+      throw new java.util.NoSuchElementException( "BTreeMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myLeaf.keys[ myIndex ], myLeaf.values[ myIndex ] );
+
+      case KEY:
+        return myLeaf.keys[ myIndex ];
+
+      case VALUE:
+        return myLeaf.values[ myIndex ];
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   */
+  public Object get( int offset )
+    {
+    BTreeMapIterator i = new BTreeMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value.
+   * @param object The object to be written at my current position.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+        myLeaf.keys[ myIndex ] = pair.first;
+        myLeaf.values[ myIndex ] = pair.second;
+        break;
+
+      case KEY:
+        myLeaf.keys[ myIndex ] = object;
+        break;
+
+      case VALUE:
+        myLeaf.values[ myIndex ] = object;
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   */
+  public void put( int offset, Object object )
+    {
+    BTreeMapIterator i = new BTreeMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myLeaf.keys[ myIndex ];
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myLeaf.values[ myIndex ];
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param object The new value.
+   */
+  public void value( Object value )
+    {
+    myLeaf.values[ myIndex ] = value;
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    BTreeMapIterator last = (BTreeMapIterator)iterator;
+    BTree.Leaf leaf = myLeaf;
+    int n = -myIndex;
+
+    // Whole leaves are skipped at once.
+    while ( leaf != last.myLeaf )
+      {
+      n += leaf.count;
+      leaf = leaf.next;
+      }
+
+    return n + last.myIndex;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return myLeaf;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+  }
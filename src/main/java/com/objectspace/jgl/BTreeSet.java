@@ -0,0 +1,597 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * A BTreeSet is a container that is optimized for fast associative lookup, with
+ * the same ordering, duplicate and iteration semantics as an OrderedSet. Within
+ * the data structure, the items are ordered according to a comparator object.
+ * By default, the comparator will order objects based on their hash value.
+ * Duplicates (as determined by the comparator) are not allowed by default.
+ * <p>
+ * Whereas an OrderedSet stores each object in its own node of a red-black tree,
+ * a BTreeSet uses a B+tree. Up to 64 objects are kept sorted in an array in each
+ * leaf, and the leaves are linked in order, so a lookup touches a few arrays
+ * instead of following a pointer for each level of a binary tree and no node is
+ * allocated per element. The price is that inserting or removing an object
+ * moves the objects that follow it in its leaf.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see Set
+ * @see BinaryPredicate
+ * @see BTreeMap
+ * @see com.objectspace.jgl.algorithms.SetOperations
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class BTreeSet implements Set
+  {
+  transient BTree myTree;
+
+  /**
+   * Construct myself to be an empty BTreeSet that orders elements based on
+   * their hash value and does not allow duplicates.
+   */
+  public BTreeSet()
+    {
+    this( new xHashComparator(), false );
+    }
+
+  /**
+   * Construct myself to be an empty BTreeSet that orders elements based on
+   * their hash value and conditionally allows duplicates.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BTreeSet( boolean allowDuplicates )
+    {
+    this( new xHashComparator(), allowDuplicates );
+    }
+
+  /**
+   * Construct myself to be an empty BTreeSet that orders elements using
+   * a specified binary predicate and does not allow duplicates.
+   * @param comparator The predicate for ordering objects.
+   */
+  public BTreeSet( BinaryPredicate comparator )
+    {
+    this( comparator, false );
+    }
+
+  /**
+   * Construct myself to be an empty BTreeSet that orders elements using
+   * a specified binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for ordering objects.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BTreeSet( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    myTree = new BTree( false, allowDuplicates, comparator );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing BTreeSet.
+   * @param set The BTreeSet to copy.
+   */
+  public BTreeSet( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      myTree = new BTree( set.myTree );
+      }
+    }
+
+  /**
+   * Return true if duplicates are allowed.
+   */
+  public boolean allowsDuplicates()
+    {
+    return myTree.myInsertAlways;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new BTreeSet( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing BTreeSet.
+   * @param set The BTreeSet that I shall become a shallow copy of.
+   */
+  public synchronized void copy( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      myTree.copy( set.myTree );
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "BTreeSet" );
+    }
+
+  /**
+   * Return an Enumeration of my objects.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned at my first item.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last item.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first item.
+   */
+  public synchronized BTreeSetIterator begin()
+    {
+    return new BTreeSetIterator( myTree.first(), 0, this );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last item.
+   */
+  public synchronized BTreeSetIterator end()
+    {
+    return new BTreeSetIterator( null, 0, this );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return myTree.size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return myTree.size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof BTreeSet && equals( (BTreeSet)object );
+    }
+
+  /**
+   * Return true if I contain the same items in the same order as
+   * another BTreeSet. Use equals() to compare the individual elements.
+   * @param set The BTreeSet to compare myself against.
+   */
+  public synchronized boolean equals( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      return Algos.Comparing.equal( this, set );
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public synchronized int hashCode()
+    {
+    return Algos.Hashing.orderedHash( begin(), myTree.size );
+    }
+
+  /**
+   * Swap my contents with another BTreeSet.
+   * @param set The BTreeSet that I will swap my contents with.
+   */
+  public synchronized void swap( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      BTree tmp = myTree;
+      myTree = set.myTree;
+      set.myTree = tmp;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    myTree.clear();
+    }
+
+  /**
+   * Remove all objects that match the given object.
+   * @param object The object to match for removals
+   * @return Return The number of objects removed.
+   */
+  public synchronized int remove( Object object )
+    {
+    return remove( object, myTree.size );
+    }
+
+  /**
+   * Remove at most a given number of objects that match the given object.
+   * @param object The object to match for removals
+   * @param count The maximum number of objects to remove.
+   * @return Return The number of objects removed.
+   */
+  public synchronized int remove( Object object, int count )
+    {
+    int n = Math.min( myTree.count( object ), count );
+
+    if ( n <= 0 )
+      return 0;
+
+    BTree.Leaf leaf = myTree.find( object );
+    myTree.remove( leaf, myTree.myIndex, n );
+    return n;
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException if the Enumeration isn't a
+   * BTreeSetIterator for this BTreeSet object.
+   * @return The object that was removed or null if none
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof BTreeSetIterator) )
+      throw new IllegalArgumentException( "Enumeration not a BTreeSetIterator" );
+
+    BTreeSetIterator iterator = (BTreeSetIterator)e;
+
+    if ( iterator.mySet != this )
+      throw new IllegalArgumentException( "Enumeration not for this BTreeSet" );
+
+    if ( iterator.myLeaf == null )
+      return null;
+
+    return myTree.remove( iterator.myLeaf, iterator.myIndex, 1 );
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * BTreeSetIterator for this BTreeSet object.
+   * @return Return the number of values removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof BTreeSetIterator) ) ||
+        ( ! (last instanceof BTreeSetIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a BTreeSetIterator" );
+
+    BTreeSetIterator start = (BTreeSetIterator)first;
+    BTreeSetIterator finish = (BTreeSetIterator)last;
+
+    if ( start.mySet != this || finish.mySet != this )
+      throw new IllegalArgumentException( "Enumeration not for this BTreeSet" );
+
+    int n = start.distance( finish );
+    myTree.remove( start.myLeaf, start.myIndex, n );
+    return n;
+    }
+
+  /**
+   * Find an object and return its position. If the object
+   * is not found, return end().
+   * @param object The object to locate.
+   */
+  public synchronized BTreeSetIterator find( Object object )
+    {
+    BTree.Leaf leaf = myTree.find( object );
+    return new BTreeSetIterator( leaf, myTree.myIndex, this );
+    }
+
+  /**
+   * Return the number of items that match a particular object.
+   * @param object The object to match against.
+   */
+  public synchronized int count( Object object )
+    {
+    return myTree.count( object );
+    }
+
+  /**
+   * Return an iterator positioned at the first location that a
+   * particular object could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param object The object in question.
+   */
+  public synchronized BTreeSetIterator lowerBound( Object object )
+    {
+    BTree.Leaf leaf = myTree.lowerBound( object );
+    return new BTreeSetIterator( leaf, myTree.myIndex, this );
+    }
+
+  /**
+   * Return an iterator positioned at the last location that
+   * a particular object could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param object The object in question.
+   */
+  public synchronized BTreeSetIterator upperBound( Object object )
+    {
+    BTree.Leaf leaf = myTree.upperBound( object );
+    return new BTreeSetIterator( leaf, myTree.myIndex, this );
+    }
+
+  /**
+   * Return a pair of iterators whose first element is equal to
+   * lowerBound() and whose second element is equal to upperBound().
+   * @param object The object whose bounds are to be found.
+   */
+  public synchronized Range equalRange( Object object )
+    {
+    return new Range( lowerBound( object ), upperBound( object ) );
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return myTree.myComparator;
+    }
+
+  /**
+   * If the object doesn't exist or duplicates are allowed, add the object and return null,
+   * otherwise don't modify the set and return the matching object.
+   * @param object The object to be added.
+   * @exception NullPointerException If the value of the object is equal to null.
+   */
+  public synchronized Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    BTree.Leaf leaf = myTree.insert( object, null );
+    return myTree.myInserted ? null : leaf.keys[ myTree.myIndex ];
+    }
+
+  /**
+   * Add every element of a container to myself as if by add().
+   * @param container The container.
+   * @exception NullPointerException If an element is null.
+   */
+  public synchronized void addAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    addAll( container.start(), container.finish() );
+    }
+
+  /**
+   * Add every object in a range to myself as if by add().
+   * @param first An iterator positioned at the first object to insert.
+   * @param last An iterator positioned immediately after the last object to insert.
+   * @exception NullPointerException If an object is null.
+   */
+  public synchronized void addAll( InputIterator first, InputIterator last )
+    {
+    InputIterator iterator = (InputIterator)first.clone();
+
+    while ( !iterator.equals( last ) )
+      add( iterator.nextElement() );
+    }
+
+  /**
+   * Return the first object that matches the given object, or null if no match exists.
+   * @param object The object to match against.
+   */
+  public synchronized Object get( Object object )
+    {
+    BTree.Leaf leaf = myTree.find( object );
+
+    if ( leaf == null )
+      return null;
+
+    Object found = leaf.keys[ myTree.myIndex ];
+    return found.equals( object ) ? found : null;
+    }
+
+  /**
+   * If I don't contain an object whose value matches the specified object,
+   * add the object and return null. Otherwise, replace the last matching object
+   * and return the old value.
+   * @param object The object to be put.
+   * @exception NullPointerException If the value of the object is equal to null.
+   */
+  public synchronized Object put( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    BTree.Leaf leaf = myTree.findLast( object );
+
+    if ( leaf == null )
+      {
+      myTree.insert( object, null );
+      return null;
+      }
+
+    Object previous = leaf.keys[ myTree.myIndex ];
+    leaf.keys[ myTree.myIndex ] = object;
+    return previous;
+    }
+
+  /**
+   * Return a new BTreeSet that contains all of my elements and all of the elements in
+   * a specified BTreeSet.
+   * @param set The BTreeSet to union myself with.
+   * @see com.objectspace.jgl.algorithms.SetOperations#setUnion(Container, Container, OutputIterator, BinaryPredicate)
+   */
+  public synchronized BTreeSet union( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      if ( myTree.myInsertAlways || set.myTree.myInsertAlways )
+        throw new InvalidOperationException( "union operation invalid on multisets" );
+
+      BTreeSet result = new BTreeSet( getComparator(), allowsDuplicates() );
+      com.objectspace.jgl.algorithms.SetOperations.setUnion( this, set, new com.objectspace.jgl.util.InsertIterator( result ), getComparator() );
+      return result;
+      }
+    }
+
+  /**
+   * Return a new BTreeSet that contains the elements that are both in me and in
+   * a specified set.
+   * @param set The BTreeSet to intersect myself with.
+   * @see com.objectspace.jgl.algorithms.SetOperations#setIntersection(Container, Container, OutputIterator, BinaryPredicate)
+   */
+  public synchronized BTreeSet intersection( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      if ( myTree.myInsertAlways || set.myTree.myInsertAlways )
+        throw new InvalidOperationException( "intersection operation invalid on multisets" );
+
+      BTreeSet result = new BTreeSet( getComparator(), allowsDuplicates() );
+      com.objectspace.jgl.algorithms.SetOperations.setIntersection( this, set, new com.objectspace.jgl.util.InsertIterator( result ), getComparator() );
+      return result;
+      }
+    }
+
+  /**
+   * Return a new BTreeSet that contains the elements that are in me but not in a
+   * specified set.
+   * @param set The BTreeSet to difference myself with.
+   * @see com.objectspace.jgl.algorithms.SetOperations#setDifference(Container, Container, OutputIterator, BinaryPredicate)
+   */
+  public synchronized BTreeSet difference( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      if ( myTree.myInsertAlways || set.myTree.myInsertAlways )
+        throw new InvalidOperationException( "difference operation invalid on multisets" );
+
+      BTreeSet result = new BTreeSet( getComparator(), allowsDuplicates() );
+      com.objectspace.jgl.algorithms.SetOperations.setDifference( this, set, new com.objectspace.jgl.util.InsertIterator( result ), getComparator() );
+      return result;
+      }
+    }
+
+  /**
+   * Return a new BTreeSet that contains the elements that are either in me or in
+   * a specified BTreeSet, but not both.
+   * @param set The BTreeSet to symmetric difference myself with.
+   * @see com.objectspace.jgl.algorithms.SetOperations#setSymmetricDifference(Container, Container, OutputIterator, BinaryPredicate)
+   */
+  public synchronized BTreeSet symmetricDifference( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      if ( myTree.myInsertAlways || set.myTree.myInsertAlways )
+        throw new InvalidOperationException( "symmetricDifference operation invalid on multisets" );
+
+      BTreeSet result = new BTreeSet( getComparator(), allowsDuplicates() );
+      com.objectspace.jgl.algorithms.SetOperations.setSymmetricDifference( this, set, new com.objectspace.jgl.util.InsertIterator( result ), getComparator() );
+      return result;
+      }
+    }
+
+  /**
+   * Return true if every element in me is also in a specified BTreeSet.
+   * @param set The BTreeSet to test against.
+   * @see com.objectspace.jgl.algorithms.SetOperations#includes(Container, Container, BinaryPredicate)
+   */
+  public synchronized boolean subsetOf( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      if ( myTree.myInsertAlways || set.myTree.myInsertAlways )
+        throw new InvalidOperationException( "subsetOf operation invalid on multisets" );
+
+      return com.objectspace.jgl.algorithms.SetOperations.includes( set, this, getComparator() );
+      }
+    }
+
+  /**
+   * Return true if every element in me is also in a specified BTreeSet and I'm smaller
+   * than the specified BTreeSet.
+   * @param set The BTreeSet to test against.
+   */
+  public synchronized boolean properSubsetOf( BTreeSet set )
+    {
+    synchronized( set )
+      {
+      if ( myTree.myInsertAlways || set.myTree.myInsertAlways )
+        throw new InvalidOperationException( "properSubsetOf operation invalid on multisets" );
+
+      return (size() < set.size()) && subsetOf( set );
+      }
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeBoolean( myTree.myInsertAlways );
+    stream.writeObject( myTree.myComparator );
+    stream.writeInt( myTree.size );
+
+    for ( BTree.Leaf leaf = myTree.first(); leaf != null; leaf = leaf.next )
+      for ( int i = 0; i < leaf.count; i++ )
+        stream.writeObject( leaf.keys[ i ] );
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    boolean allowDuplicates = stream.readBoolean();
+    BinaryPredicate comparator = (BinaryPredicate)stream.readObject();
+    myTree = new BTree( false, allowDuplicates, comparator );
+
+    int count = stream.readInt();
+    while ( count-- > 0 )
+      myTree.insert( stream.readObject(), null );
+    }
+
+  static final long serialVersionUID = -3092871145609473418L;
+  }
@@ -0,0 +1,263 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A BTreeSetIterator is a bidirectional iterator that allows you to iterate through
+ * the contents of a BTreeSet.
+ * <p>
+ * @see BidirectionalIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class BTreeSetIterator implements BidirectionalIterator, Opaque
+  {
+  BTreeSet mySet;
+  BTree.Leaf myLeaf; // null when positioned at the end.
+  int myIndex;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public BTreeSetIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public BTreeSetIterator( BTreeSetIterator iterator )
+    {
+    mySet = iterator.mySet;
+    myLeaf = iterator.myLeaf;
+    myIndex = iterator.myIndex;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular object in a specified set.
+   * @param leaf My associated leaf, or null for the end position.
+   * @param index The index of my object within the leaf.
+   * @param map My associated BTreeSet.
+   */
+  BTreeSetIterator( BTree.Leaf leaf, int index, BTreeSet map )
+    {
+    mySet = map;
+    myLeaf = leaf;
+    myIndex = leaf == null ? 0 : index;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new BTreeSetIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof BTreeSetIterator
+      && myLeaf == ( (BTreeSetIterator)object ).myLeaf
+      && myIndex == ( (BTreeSetIterator)object ).myIndex;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    BTree tree = mySet.myTree;
+    return tree.size == 0 ? myLeaf == null : myLeaf == tree.myFirst && myIndex == 0;
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myLeaf == null;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myLeaf != null;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    if ( ++myIndex == myLeaf.count )
+      {
+      myLeaf = myLeaf.next;
+      myIndex = 0;
+      }
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   */
+  public void advance( int n )
+    {
+    if ( n >= 0 )
+      while ( n-- > 0 )
+        advance();
+    else
+      while ( n++ < 0 )
+        retreat();
+    }
+
+  /**
+   * Retreat by one.
+   */
+  public void retreat()
+    {
+    if ( myLeaf == null )
+      {
+      myLeaf = mySet.myTree.myLast;
+      myIndex = myLeaf.count - 1;
+      }
+    else if ( myIndex == 0 )
+      {
+      myLeaf = myLeaf.previous;
+      myIndex = myLeaf.count - 1;
+      }
+    else
+      {
+      --myIndex;
+      }
+    }
+
+  /**
+   * Retreat by a specified amount.
+   * @param n The amount to retreat.
+   */
+  public void retreat( int n )
+    {
+    advance( -n );
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myLeaf == null )
+      throw new java.util.NoSuchElementException( "BTreeSetIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    return myLeaf.keys[ myIndex ];
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   */
+  public Object get( int offset )
+    {
+    BTreeSetIterator i = new BTreeSetIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value.
+   * @param object The object to be written at my current position.
+   */
+  public void put( Object object )
+    {
+    myLeaf.keys[ myIndex ] = object;
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   */
+  public void put( int offset, Object object )
+    {
+    BTreeSetIterator i = new BTreeSetIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    BTreeSetIterator last = (BTreeSetIterator)iterator;
+    BTree.Leaf leaf = myLeaf;
+    int n = -myIndex;
+
+    // Whole leaves are skipped at once.
+    while ( leaf != last.myLeaf )
+      {
+      n += leaf.count;
+      leaf = leaf.next;
+      }
+
+    return n + last.myIndex;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return mySet;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return myLeaf;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( mySet );
+    }
+  }
@@ -0,0 +1,267 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import com.objectspace.jgl.predicates.IdenticalTo;
+
+/**
+ * A BiHashMap is a HashMap that also maintains an inverse index from each value
+ * to the pairs that hold it. Reverse lookups such as keys( value ) and
+ * countValues( value ) therefore take time proportional to the number of matching
+ * pairs rather than to my size.
+ * <p>
+ * Values are matched using equals() and hashCode(), like the reverse lookups of a
+ * HashMap. The index is kept up to date by every insertion and removal, and
+ * whenever a value is replaced by put() or through one of my iterators. It is kept
+ * under the same lock as my pairs.
+ * <p>
+ * A BiHashMap can only swap its contents with another BiHashMap.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see BiOrderedMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class BiHashMap extends HashMap
+  {
+  static final int INDEX_SIZE = 3;
+
+  transient HashMap inverse; // maps each value to a HashSet of the nodes that hold it.
+
+  /**
+   * Construct myself to be an empty BiHashMap that compares keys using equals() and
+   * does not allow duplicates.
+   */
+  public BiHashMap()
+    {
+    this( new xEqualTo(), false, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty BiHashMap that compares keys using equals() and
+   * conditionally allows duplicates.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BiHashMap( boolean allowDuplicates )
+    {
+    this( new xEqualTo(), allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty BiHashMap that compares keys using the specified
+   * binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BiHashMap( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    this( comparator, allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty BiHashMap that compares keys using the specified
+   * binary predicate and conditionally allows duplicates. The initial buckets and
+   * load ratio must also be specified.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   */
+  public BiHashMap( BinaryPredicate comparator, boolean allowDuplicates, int capacity, float loadRatio )
+    {
+    super( comparator, allowDuplicates, capacity, loadRatio );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing BiHashMap.
+   * @param map The BiHashMap to copy.
+   */
+  public BiHashMap( BiHashMap map )
+    {
+    super( map );
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new BiHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing HashMap.
+   * @param map The HashMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( HashMap map )
+    {
+    synchronized( map )
+      {
+      super.copy( map );
+      inverse = null;
+
+      for ( HashMapNode node = first(); node != null; node = successor( node ) )
+        index( node );
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "BiHashMap" );
+    }
+
+  /**
+   * Swap my contents with another BiHashMap.
+   * @param map The BiHashMap that I will swap my contents with.
+   * @exception IllegalArgumentException If the map is not a BiHashMap.
+   */
+  public synchronized void swap( HashMap map )
+    {
+    if ( !( map instanceof BiHashMap ) )
+      throw new IllegalArgumentException( "HashMap not a BiHashMap" );
+
+    synchronized( map )
+      {
+      super.swap( map );
+      BiHashMap bi = (BiHashMap)map;
+
+      HashMap tmpInverse = inverse;
+      inverse = bi.inverse;
+      bi.inverse = tmpInverse;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    super.clear();
+    inverse = null;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    HashSet nodes = nodes( value );
+    return nodes == null ? 0 : nodes.size();
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+    HashSet nodes = nodes( value );
+
+    if ( nodes != null )
+      for ( HashSetIterator iterator = nodes.begin(); iterator.hasMoreElements(); iterator.advance() )
+        array.pushBack( ( (HashMapNode)iterator.get() ).key );
+
+    return array.elements();
+    }
+
+  /**
+   * Return a key that is associated with a particular value, or null if there is none.
+   * @param value The value to match.
+   */
+  public synchronized Object getKey( Object value )
+    {
+    HashSet nodes = nodes( value );
+    return nodes == null ? null : ( (HashMapNode)nodes.begin().get() ).key;
+    }
+
+  /**
+   * Remove all key/value pairs whose value matches a given object and return
+   * the number of pairs removed.
+   * @param value The value to match for removals.
+   */
+  public synchronized int removeValue( Object value )
+    {
+    HashSet nodes = nodes( value );
+
+    if ( nodes == null )
+      return 0;
+
+    // Removal changes the index, so the nodes are collected first.
+    Array array = new Array();
+
+    for ( HashSetIterator iterator = nodes.begin(); iterator.hasMoreElements(); iterator.advance() )
+      array.pushBack( iterator.get() );
+
+    for ( int i = 0; i < array.size(); i++ )
+      remove( new HashMapIterator( (HashMapNode)array.at( i ), this, HashMapIterator.PAIR ) );
+
+    return array.size();
+    }
+
+  HashMapNode createNode( Object key, Object value, int hash, HashMapNode match )
+    {
+    HashMapNode node = super.createNode( key, value, hash, match );
+    index( node );
+    return node;
+    }
+
+  void removed( HashMapNode node )
+    {
+    unindex( node, node.value );
+    }
+
+  void replaced( HashMapNode node, Object key, Object value )
+    {
+    if ( node.value != value )
+      {
+      unindex( node, value );
+      index( node );
+      }
+    }
+
+  /**
+   * Return the set of nodes that hold a value, or null if there are none.
+   */
+  private HashSet nodes( Object value )
+    {
+    return inverse == null ? null : (HashSet)inverse.get( value );
+    }
+
+  private void index( HashMapNode node )
+    {
+    if ( inverse == null )
+      inverse = new HashMap();
+
+    HashSet nodes = (HashSet)inverse.get( node.value );
+
+    if ( nodes == null )
+      {
+      nodes = new HashSet( new IdenticalTo(), false, INDEX_SIZE, DEFAULT_RATIO );
+      inverse.put( node.value, nodes );
+      }
+
+    nodes.add( node );
+    }
+
+  private void unindex( HashMapNode node, Object value )
+    {
+    HashSet nodes = (HashSet)inverse.get( value );
+    nodes.remove( node );
+
+    if ( nodes.isEmpty() )
+      inverse.remove( value );
+    }
+
+  static final long serialVersionUID = -1928613578271393427L;
+  }
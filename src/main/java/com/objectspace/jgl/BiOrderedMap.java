@@ -0,0 +1,362 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import com.objectspace.jgl.algorithms.Sorting;
+import com.objectspace.jgl.predicates.IdenticalTo;
+
+/**
+ * A BiOrderedMap is an OrderedMap that also maintains an inverse index from each
+ * value to the pairs that hold it. Reverse lookups such as keys( value ) and
+ * countValues( value ) therefore take time proportional to the number of matching
+ * pairs rather than to my size.
+ * <p>
+ * Values are matched using equals() and hashCode(), like the reverse lookups of an
+ * OrderedMap, and keys( value ) still returns the matching keys in order. The index
+ * is kept up to date by every insertion and removal, and whenever a value is replaced
+ * by put() or through one of my iterators, under the same lock as my pairs. A Pair
+ * obtained from me must not be modified directly.
+ * <p>
+ * A BiOrderedMap can only swap its contents with another BiOrderedMap.
+ * <p>
+ * Insertion does not affect iterators.
+ * <p>
+ * Removal only invalidates the iterators that were positioned at the removed element.
+ * <p>
+ * @see OrderedMap
+ * @see BiHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class BiOrderedMap extends OrderedMap
+  {
+  static final int INDEX_SIZE = 3;
+
+  transient HashMap inverse; // maps each value to a HashSet of the nodes that hold it, or null if not built.
+
+  /**
+   * Construct myself to be an empty BiOrderedMap that orders its keys based on
+   * their hash value and does not allow duplicates.
+   */
+  public BiOrderedMap()
+    {
+    super();
+    }
+
+  /**
+   * Construct myself to be an empty BiOrderedMap that orders its keys based on
+   * their hash value and conditionally allows duplicates.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BiOrderedMap( boolean allowDuplicates )
+    {
+    super( allowDuplicates );
+    }
+
+  /**
+   * Construct myself to be an empty BiOrderedMap that orders its keys using
+   * a specified binary predicate and does not allow duplicates.
+   * @param comparator The predicate for ordering keys.
+   */
+  public BiOrderedMap( BinaryPredicate comparator )
+    {
+    super( comparator );
+    }
+
+  /**
+   * Construct myself to be an empty BiOrderedMap that orders its keys using
+   * a specified binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for ordering keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public BiOrderedMap( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    super( comparator, allowDuplicates );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing BiOrderedMap.
+   * @param map The BiOrderedMap to copy.
+   */
+  public BiOrderedMap( BiOrderedMap map )
+    {
+    super( map );
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new BiOrderedMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing OrderedMap.
+   * @param map The OrderedMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( OrderedMap map )
+    {
+    super.copy( map );
+    inverse = null;
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "BiOrderedMap" );
+    }
+
+  /**
+   * Swap my contents with another BiOrderedMap.
+   * @param map The BiOrderedMap that I will swap my contents with.
+   * @exception IllegalArgumentException If the map is not a BiOrderedMap.
+   */
+  public synchronized void swap( OrderedMap map )
+    {
+    if ( !( map instanceof BiOrderedMap ) )
+      throw new IllegalArgumentException( "OrderedMap not a BiOrderedMap" );
+
+    synchronized( map )
+      {
+      super.swap( map );
+      BiOrderedMap bi = (BiOrderedMap)map;
+
+      HashMap tmpInverse = inverse;
+      inverse = bi.inverse;
+      bi.inverse = tmpInverse;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    super.clear();
+    inverse = null;
+    }
+
+  /**
+   * If I contain key/value pair(s) that matches a particular key,
+   * remove them all and return the first value removed.
+   * @param key The key of the pair(s) to be removed.
+   * @return The first value removed or null if the container is unchanged.
+   */
+  public synchronized Object remove( Object key )
+    {
+    Array nodes = range( key, size() );
+    Object result = super.remove( key );
+    unindex( nodes );
+    return result;
+    }
+
+  /**
+   * If I contain key/value pair(s) that matches a particular key,
+   * remove at most a given number and return the number of pairs removed.
+   * @param key The key of the pair(s) to be removed.
+   * @param count The maximum number of objects to remove.
+   * @return The number of pairs removed.
+   */
+  public synchronized int remove( Object key, int count )
+    {
+    Array nodes = range( key, count );
+    int result = super.remove( key, count );
+    unindex( nodes );
+    return result;
+    }
+
+  /**
+   * Remove the element at a particular position and return its value.
+   * @param pos An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OrderedMapIterator for this BiOrderedMap object.
+   * @return The value that was removed or null if none.
+   */
+  public synchronized Object remove( Enumeration pos )
+    {
+    Object result = super.remove( pos );
+
+    if ( result != null )
+      unindex( ( (OrderedMapIterator)pos ).myNode, ( (Pair)result ).second );
+
+    return result;
+    }
+
+  /**
+   * Remove the elements within a specified range, returning the number of pairs
+   * removed.
+   * @param first An iterator positioned at the first element to remove.
+   * @param last An iterator positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OrderedMapIterator for this BiOrderedMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    Array nodes = new Array();
+
+    if ( first instanceof OrderedMapIterator && last instanceof OrderedMapIterator )
+      {
+      Tree.TreeNode end = ( (OrderedMapIterator)last ).myNode;
+
+      for ( Tree.TreeNode node = ( (OrderedMapIterator)first ).myNode; node != end && node != myTree.myHeader; node = Tree.increment( node, myTree.NIL ) )
+        nodes.pushBack( node );
+      }
+
+    int result = super.remove( first, last );
+    unindex( nodes );
+    return result;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    HashSet nodes = (HashSet)inverse().get( value );
+    return nodes == null ? 0 : nodes.size();
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular
+   * value, in order.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+    HashSet nodes = (HashSet)inverse().get( value );
+
+    if ( nodes != null )
+      {
+      for ( HashSetIterator iterator = nodes.begin(); iterator.hasMoreElements(); iterator.advance() )
+        array.pushBack( ( (Pair)( (Tree.TreeNode)iterator.get() ).object ).first );
+
+      Sorting.sort( array, getComparator() );
+      }
+
+    return array.elements();
+    }
+
+  /**
+   * Return a key that is associated with a particular value, or null if there is none.
+   * @param value The value to match.
+   */
+  public synchronized Object getKey( Object value )
+    {
+    HashSet nodes = (HashSet)inverse().get( value );
+    return nodes == null ? null : ( (Pair)( (Tree.TreeNode)nodes.begin().get() ).object ).first;
+    }
+
+  /**
+   * Remove all key/value pairs whose value matches a given object and return
+   * the number of pairs removed.
+   * @param value The value to match for removals.
+   */
+  public synchronized int removeValue( Object value )
+    {
+    HashSet nodes = (HashSet)inverse().get( value );
+
+    if ( nodes == null )
+      return 0;
+
+    inverse.remove( value );
+    int count = 0;
+
+    for ( HashSetIterator iterator = nodes.begin(); iterator.hasMoreElements(); iterator.advance() )
+      {
+      myTree.remove( (Tree.TreeNode)iterator.get() );
+      ++count;
+      }
+
+    return count;
+    }
+
+  void added( Tree.TreeNode node )
+    {
+    if ( inverse != null )
+      index( node );
+    }
+
+  void replaced( Tree.TreeNode node, Object key, Object value )
+    {
+    if ( inverse != null && ( (Pair)node.object ).second != value )
+      {
+      unindex( node, value );
+      index( node );
+      }
+    }
+
+  /**
+   * Return my inverse index, building it from my pairs if necessary.
+   */
+  private HashMap inverse()
+    {
+    if ( inverse == null )
+      {
+      inverse = new HashMap();
+
+      for ( Tree.TreeNode node = myTree.myHeader.left; node != myTree.myHeader; node = Tree.increment( node, myTree.NIL ) )
+        index( node );
+      }
+
+    return inverse;
+    }
+
+  /**
+   * Return the nodes of at most a given number of pairs that match a key.
+   */
+  private Array range( Object key, int count )
+    {
+    Array nodes = new Array();
+    Pair range = myTree.equalRange( key );
+
+    for ( Tree.TreeNode node = (Tree.TreeNode)range.first; node != range.second && nodes.size() < count; node = Tree.increment( node, myTree.NIL ) )
+      nodes.pushBack( node );
+
+    return nodes;
+    }
+
+  private void index( Tree.TreeNode node )
+    {
+    Object value = ( (Pair)node.object ).second;
+    HashSet nodes = (HashSet)inverse.get( value );
+
+    if ( nodes == null )
+      {
+      nodes = new HashSet( new IdenticalTo(), false, INDEX_SIZE, HashMap.DEFAULT_RATIO );
+      inverse.put( value, nodes );
+      }
+
+    nodes.add( node );
+    }
+
+  private void unindex( Tree.TreeNode node, Object value )
+    {
+    if ( inverse == null )
+      return;
+
+    HashSet nodes = (HashSet)inverse.get( value );
+    nodes.remove( node );
+
+    if ( nodes.isEmpty() )
+      inverse.remove( value );
+    }
+
+  private void unindex( Array nodes )
+    {
+    for ( int i = 0; i < nodes.size(); i++ )
+      {
+      Tree.TreeNode node = (Tree.TreeNode)nodes.at( i );
+      unindex( node, ( (Pair)node.object ).second );
+      }
+    }
+
+  static final long serialVersionUID = 5036208135741690842L;
+  }
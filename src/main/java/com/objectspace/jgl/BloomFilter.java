@@ -0,0 +1,254 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.io.Serializable;
+
+/**
+ * A BloomFilter is a compact summary of a set of hash codes that can tell for
+ * certain that a hash code was never added, and otherwise says that it might have
+ * been. Containers such as HashSet and OrderedMap can place one in front of their
+ * lookups, so that looking for an object that they do not contain usually costs
+ * a single probe of the filter instead of a walk of a hash chain or a descent of
+ * a tree.
+ * <p>
+ * The filter is blocked: its bits are divided into blocks of 512 bits, the size
+ * of a typical cache line, and all of the bits for one hash code are set in the
+ * same block. A probe therefore touches one or two cache lines at most, at the
+ * cost of a slightly higher false positive rate than a classic Bloom filter of the
+ * same size, for which the filter is made a little larger.
+ * <p>
+ * Hash codes cannot be removed from a Bloom filter, so a container that uses one
+ * rebuilds it when it is cleared, when it has grown past its capacity, and when
+ * removals have made it stale. The rate of false positives is estimated from the
+ * bits that are set and is also measured from the probes that the filter could
+ * not reject.
+ * <p>
+ * @see HashSet#enableFilter
+ * @see HashMap#enableFilter
+ * @see OrderedSet#enableFilter
+ * @see OrderedMap#enableFilter
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class BloomFilter implements Serializable
+  {
+  static final int BLOCK_WORDS = 8; // 512 bits.
+  static final int MIN_CAPACITY = 64;
+
+  long[] bits;
+  int blocks;
+  int hashes; // # bits set per hash code.
+  int capacity; // # hash codes that I was sized for.
+  double rate; // the false positive rate that I was sized for.
+  int count; // # hash codes added since I was last cleared.
+  long rejections; // # probes that I rejected.
+  long falsePositives; // # probes that I passed but that found nothing.
+
+  /**
+   * Construct myself to hold a number of hash codes with a given false positive rate.
+   * @param capacity The number of hash codes to make room for.
+   * @param falsePositiveRate The rate at which a probe for a missing hash code may pass.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public BloomFilter( int capacity, double falsePositiveRate )
+    {
+    if ( falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0 )
+      throw new IllegalArgumentException( "false positive rate must be between 0 and 1" );
+
+    rate = falsePositiveRate;
+    reset( capacity );
+    }
+
+  /**
+   * Construct myself to be a copy of an existing BloomFilter.
+   * @param filter The BloomFilter to copy.
+   */
+  public BloomFilter( BloomFilter filter )
+    {
+    bits = (long[])filter.bits.clone();
+    blocks = filter.blocks;
+    hashes = filter.hashes;
+    capacity = filter.capacity;
+    rate = filter.rate;
+    count = filter.count;
+    rejections = filter.rejections;
+    falsePositives = filter.falsePositives;
+    }
+
+  /**
+   * Return the number of hash codes that I was sized for.
+   */
+  public int getCapacity()
+    {
+    return capacity;
+    }
+
+  /**
+   * Return the false positive rate that I was sized for.
+   */
+  public double getFalsePositiveRate()
+    {
+    return rate;
+    }
+
+  /**
+   * Return the number of hash codes added since I was last cleared.
+   */
+  public int size()
+    {
+    return count;
+    }
+
+  /**
+   * Return the number of bytes that my bits occupy.
+   */
+  public int byteSize()
+    {
+    return 8 * bits.length;
+    }
+
+  /**
+   * Return the false positive rate expected from the bits that are set now.
+   */
+  public double expectedFalsePositiveRate()
+    {
+    int set = 0;
+
+    for ( int i = 0; i < bits.length; i++ )
+      set += Long.bitCount( bits[ i ] );
+
+    return Math.pow( (double)set / ( 64.0 * bits.length ), hashes );
+    }
+
+  /**
+   * Return the fraction of the probes for missing hash codes that I passed, as
+   * reported by my container.
+   */
+  public double observedFalsePositiveRate()
+    {
+    long misses = rejections + falsePositives;
+    return misses == 0 ? 0.0 : (double)falsePositives / misses;
+    }
+
+  /**
+   * Return the number of probes that I rejected.
+   */
+  public long rejections()
+    {
+    return rejections;
+    }
+
+  /**
+   * Return the number of probes that I passed but that my container did not match.
+   */
+  public long falsePositives()
+    {
+    return falsePositives;
+    }
+
+  /**
+   * Add a hash code.
+   * @param hash The hash code.
+   */
+  public void add( int hash )
+    {
+    long z = mix( hash );
+    int block = (int)( ( ( z >>> 32 ) * blocks ) >>> 32 ) * BLOCK_WORDS;
+    int step = (int)( z >>> 32 ) | 1;
+    int h = (int)z;
+
+    for ( int i = 0; i < hashes; i++, h += step )
+      bits[ block + ( ( h >>> 6 ) & 7 ) ] |= 1L << h;
+
+    ++count;
+    }
+
+  /**
+   * Return false if a hash code was certainly not added, and true if it might have been.
+   * @param hash The hash code.
+   */
+  public boolean mightContain( int hash )
+    {
+    long z = mix( hash );
+    int block = (int)( ( ( z >>> 32 ) * blocks ) >>> 32 ) * BLOCK_WORDS;
+    int step = (int)( z >>> 32 ) | 1;
+    int h = (int)z;
+
+    for ( int i = 0; i < hashes; i++, h += step )
+      if ( ( bits[ block + ( ( h >>> 6 ) & 7 ) ] & ( 1L << h ) ) == 0 )
+        {
+        ++rejections;
+        return false;
+        }
+
+    return true;
+    }
+
+  /**
+   * Return a well mixed 64 bit value for a hash code. Its high half selects a
+   * block and its low half the bits within the block.
+   */
+  static long mix( int hash )
+    {
+    long z = hash * 0x9E3779B97F4A7C15L;
+    z = ( z ^ ( z >>> 32 ) ) * 0xD6E8FEB86659FD93L;
+    return z ^ ( z >>> 32 );
+    }
+
+  /**
+   * Remove all of my hash codes.
+   */
+  public void clear()
+    {
+    bits = new long[ bits.length ];
+    count = 0;
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return "BloomFilter( size=" + count + ", capacity=" + capacity + ", bytes=" + byteSize()
+      + ", expected=" + expectedFalsePositiveRate() + ", observed=" + observedFalsePositiveRate() + " )";
+    }
+
+  /**
+   * Record that a probe that I passed found nothing.
+   */
+  void falsePositive()
+    {
+    ++falsePositives;
+    }
+
+  /**
+   * Return true if I should be rebuilt for a container with the given number of
+   * elements, either because I hold more hash codes than I was sized for or
+   * because most of my hash codes belong to elements that have been removed.
+   */
+  boolean isStale( int size )
+    {
+    return count > capacity || count > 2 * size + MIN_CAPACITY;
+    }
+
+  /**
+   * Remove all of my hash codes and resize myself to hold a number of hash codes
+   * with my false positive rate. My probe statistics are kept.
+   */
+  void reset( int newCapacity )
+    {
+    capacity = Math.max( newCapacity, MIN_CAPACITY );
+
+    // Bits per hash code for a classic filter, plus a sixth for blocking.
+    double ln2 = Math.log( 2.0 );
+    double bitsPerCode = -Math.log( rate ) / ( ln2 * ln2 ) * 7 / 6;
+    hashes = Math.max( 1, Math.min( 16, (int)Math.round( bitsPerCode * 6 / 7 * ln2 ) ) );
+    blocks = (int)Math.min( Integer.MAX_VALUE / BLOCK_WORDS, (long)Math.ceil( capacity * bitsPerCode / ( 64 * BLOCK_WORDS ) ) );
+    bits = new long[ blocks * BLOCK_WORDS ];
+    count = 0;
+    }
+
+  static final long serialVersionUID = 1867093140482713256L;
+  }
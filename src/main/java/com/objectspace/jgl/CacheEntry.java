@@ -0,0 +1,75 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A CacheEntry holds one key/value pair of a CacheMap, together with the
+ * bookkeeping that an EvictionPolicy needs to order it. The policies in this
+ * package thread their entries on intrusive lists, so ordering an entry never
+ * requires a lookup or an allocation.
+ * <p>
+ * @see CacheMap
+ * @see EvictionPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class CacheEntry
+  {
+  Object key;
+  volatile Object value;
+  int hash; // hashCode() of my key.
+  int weight;
+  boolean retired; // true once I have been removed from my cache.
+  CacheEntry previous; // links of the policy list that holds me.
+  CacheEntry next;
+  CacheList list; // the policy list that holds me, or null.
+
+  CacheEntry( Object key, Object value, int weight )
+    {
+    this.key = key;
+    this.value = value;
+    this.weight = weight;
+    hash = key == null ? 0 : key.hashCode();
+    }
+
+  /**
+   * Return my key.
+   */
+  public Object key()
+    {
+    return key;
+    }
+
+  /**
+   * Return my value.
+   */
+  public Object value()
+    {
+    return value;
+    }
+
+  /**
+   * Return the hash code of my key.
+   */
+  public int hash()
+    {
+    return hash;
+    }
+
+  /**
+   * Return my weight.
+   */
+  public int weight()
+    {
+    return weight;
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return "CacheEntry( " + key + ", " + value + " )";
+    }
+  }
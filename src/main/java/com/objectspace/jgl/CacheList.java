@@ -0,0 +1,82 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * CacheList is a circular doubly linked list of cache entries that is threaded
+ * through the entries themselves. It keeps the total weight of its entries so
+ * that a policy can bound the size of each of its lists.
+ * <p>
+ * @see EvictionPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+class CacheList
+  {
+  CacheEntry header = new CacheEntry( null, null, 0 );
+  int size;
+  long weight;
+
+  CacheList()
+    {
+    header.previous = header;
+    header.next = header;
+    }
+
+  /**
+   * Return my least recently added entry, or null if I am empty.
+   */
+  final CacheEntry first()
+    {
+    return header.next == header ? null : header.next;
+    }
+
+  final boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  final void addLast( CacheEntry entry )
+    {
+    entry.previous = header.previous;
+    entry.next = header;
+    header.previous.next = entry;
+    header.previous = entry;
+    entry.list = this;
+    weight += entry.weight;
+    ++size;
+    }
+
+  final void remove( CacheEntry entry )
+    {
+    entry.previous.next = entry.next;
+    entry.next.previous = entry.previous;
+    entry.previous = null;
+    entry.next = null;
+    entry.list = null;
+    weight -= entry.weight;
+    --size;
+    }
+
+  final void moveToLast( CacheEntry entry )
+    {
+    if ( header.previous != entry )
+      {
+      entry.previous.next = entry.next;
+      entry.next.previous = entry.previous;
+      entry.previous = header.previous;
+      entry.next = header;
+      header.previous.next = entry;
+      header.previous = entry;
+      }
+    }
+
+  /**
+   * Account for a change in the weight of one of my entries.
+   */
+  final void reweigh( CacheEntry entry, int previousWeight )
+    {
+    weight += entry.weight - previousWeight;
+    }
+  }
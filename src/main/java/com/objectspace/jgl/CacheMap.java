@@ -0,0 +1,924 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * A CacheMap is an associative container that holds at most a given total weight
+ * of key/value pairs, evicting pairs chosen by an EvictionPolicy to stay within
+ * that bound. By default every pair weighs 1, so the bound is a maximum size; a
+ * weigher can be supplied to bound the memory or other cost of the pairs instead.
+ * Keys are matched by default using a BinaryPredicate that uses equals() for
+ * comparisons, and duplicate keys are not allowed.
+ * <p>
+ * The pairs are held in a ConcurrentHashMap, so get() never locks the map. Instead
+ * of reordering the policy on every read, which would serialize all readers on one
+ * lock, a read records its entry in one of several small buffers, chosen by thread.
+ * The buffers are drained into the policy in batches by writers, and by a reader
+ * that fills its buffer. When a buffer is full and not yet drained further reads
+ * are not recorded, which only makes the policy slightly less exact. Writes are
+ * serialized on my monitor.
+ * <p>
+ * Hits, misses and evictions are counted, and an optional UnaryFunction is
+ * executed with a Pair( key, value ) for each pair that is evicted, after my
+ * monitor has been released.
+ * <p>
+ * Insertion does not invalidate iterators.
+ * <p>
+ * Removal does not invalidate iterators.
+ * <p>
+ * @see EvictionPolicy
+ * @see LRUPolicy
+ * @see LFUPolicy
+ * @see TinyLFUPolicy
+ * @see CacheMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class CacheMap extends Map
+  {
+  static final int BUFFER_SIZE = 32;
+  static final int MAX_BUFFERS = 64;
+
+  long maximumWeight;
+  EvictionPolicy policy;
+  UnaryFunction weigher; // weighs a Pair( key, value ), or null if every pair weighs 1.
+  UnaryFunction listener; // executed with each evicted Pair( key, value ), or null.
+  transient ConcurrentHashMap entries; // key -> CacheEntry.
+  transient long weight; // total weight of my entries.
+  transient long evictions;
+  transient ReadBuffer[] buffers;
+  transient CacheEntry[] drained;
+
+  /**
+   * Construct myself to hold at most a given number of pairs, evicting the least
+   * recently used, and to compare keys using equals().
+   * @param maximumSize The maximum number of pairs.
+   */
+  public CacheMap( long maximumSize )
+    {
+    this( new xEqualTo(), maximumSize, new LRUPolicy(), null );
+    }
+
+  /**
+   * Construct myself to hold at most a given number of pairs, evicting those chosen
+   * by a policy, and to compare keys using equals().
+   * @param maximumSize The maximum number of pairs.
+   * @param policy The eviction policy, which must not be used by another CacheMap.
+   */
+  public CacheMap( long maximumSize, EvictionPolicy policy )
+    {
+    this( new xEqualTo(), maximumSize, policy, null );
+    }
+
+  /**
+   * Construct myself to hold pairs of at most a given total weight, evicting those
+   * chosen by a policy, and to compare keys using equals().
+   * @param maximumWeight The maximum total weight.
+   * @param policy The eviction policy, which must not be used by another CacheMap.
+   * @param weigher A function that returns the weight of a Pair( key, value ) as a
+   * non-negative Number, or null if every pair weighs 1.
+   */
+  public CacheMap( long maximumWeight, EvictionPolicy policy, UnaryFunction weigher )
+    {
+    this( new xEqualTo(), maximumWeight, policy, weigher );
+    }
+
+  /**
+   * Construct myself to hold pairs of at most a given total weight, evicting those
+   * chosen by a policy, and to compare keys using the specified binary predicate.
+   * @param comparator The predicate for comparing keys.
+   * @param maximumWeight The maximum total weight.
+   * @param policy The eviction policy, which must not be used by another CacheMap.
+   * @param weigher A function that returns the weight of a Pair( key, value ) as a
+   * non-negative Number, or null if every pair weighs 1.
+   * @exception IllegalArgumentException If the maximum weight is negative.
+   */
+  public CacheMap( BinaryPredicate comparator, long maximumWeight, EvictionPolicy policy, UnaryFunction weigher )
+    {
+    if ( maximumWeight < 0 )
+      throw new IllegalArgumentException( "maximum weight must not be negative" );
+
+    this.maximumWeight = maximumWeight;
+    this.policy = policy;
+    this.weigher = weigher;
+    policy.setMaximumWeight( maximumWeight );
+    entries = new ConcurrentHashMap( comparator );
+    allocateBuffers();
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing CacheMap. I get a new
+   * policy of the same kind, which learns the pairs in the order in which they
+   * are iterated; the usage history and statistics of the original are not copied.
+   * @param map The CacheMap to copy.
+   */
+  public CacheMap( CacheMap map )
+    {
+    this( map.getComparator(), map.maximumWeight, map.policy.emptyCopy(), map.weigher );
+    listener = map.listener;
+    copyPairs( map );
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return entries.getComparator();
+    }
+
+  /**
+   * Return my eviction policy.
+   */
+  public EvictionPolicy getPolicy()
+    {
+    return policy;
+    }
+
+  /**
+   * Return my weigher, or null if every pair weighs 1.
+   */
+  public UnaryFunction getWeigher()
+    {
+    return weigher;
+    }
+
+  /**
+   * Return the maximum total weight of my pairs.
+   */
+  public long getMaximumWeight()
+    {
+    return maximumWeight;
+    }
+
+  /**
+   * Change the maximum total weight of my pairs, evicting pairs if necessary.
+   * @param maximumWeight The new maximum.
+   * @exception IllegalArgumentException If the maximum is negative.
+   */
+  public void setMaximumWeight( long maximumWeight )
+    {
+    if ( maximumWeight < 0 )
+      throw new IllegalArgumentException( "maximum weight must not be negative" );
+
+    Array evicted;
+
+    synchronized( this )
+      {
+      this.maximumWeight = maximumWeight;
+      policy.setMaximumWeight( maximumWeight );
+      evicted = evict();
+      }
+
+    notifyEvicted( evicted );
+    }
+
+  /**
+   * Return the total weight of my pairs.
+   */
+  public synchronized long weight()
+    {
+    return weight;
+    }
+
+  /**
+   * Return the function that is executed with each evicted pair, or null.
+   */
+  public UnaryFunction getEvictionListener()
+    {
+    return listener;
+    }
+
+  /**
+   * Set the function that is executed with a Pair( key, value ) for each pair that
+   * is evicted. Pairs that are removed explicitly are not reported.
+   * @param listener The function, or null.
+   */
+  public void setEvictionListener( UnaryFunction listener )
+    {
+    this.listener = listener;
+    }
+
+  /**
+   * Return the number of lookups by get() that found their key.
+   */
+  public long hitCount()
+    {
+    long hits = 0;
+
+    for ( int i = 0; i < buffers.length; i++ )
+      synchronized( buffers[ i ] )
+        {
+        hits += buffers[ i ].hits;
+        }
+
+    return hits;
+    }
+
+  /**
+   * Return the number of lookups by get() that did not find their key.
+   */
+  public long missCount()
+    {
+    long misses = 0;
+
+    for ( int i = 0; i < buffers.length; i++ )
+      synchronized( buffers[ i ] )
+        {
+        misses += buffers[ i ].misses;
+        }
+
+    return misses;
+    }
+
+  /**
+   * Return the fraction of lookups by get() that found their key, or 1 if there
+   * have been none.
+   */
+  public double hitRate()
+    {
+    long hits = hitCount();
+    long total = hits + missCount();
+    return total == 0 ? 1.0 : (double)hits / total;
+    }
+
+  /**
+   * Return the number of pairs that have been evicted.
+   */
+  public synchronized long evictionCount()
+    {
+    return evictions;
+    }
+
+  /**
+   * Reset my hit, miss and eviction counts to 0.
+   */
+  public synchronized void resetStatistics()
+    {
+    for ( int i = 0; i < buffers.length; i++ )
+      synchronized( buffers[ i ] )
+        {
+        buffers[ i ].hits = 0;
+        buffers[ i ].misses = 0;
+        }
+
+    evictions = 0;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public Object clone()
+    {
+    return new CacheMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing CacheMap. My comparator, policy, weigher
+   * and maximum weight are not changed, so pairs may be evicted as they are copied.
+   * @param map The CacheMap that I shall become a shallow copy of.
+   */
+  public void copy( CacheMap map )
+    {
+    if ( map != this )
+      {
+      clear();
+      copyPairs( map );
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return Algos.Printing.toString( this, "CacheMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public Enumeration elements()
+    {
+    return begin( CacheMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair. Iteration does not count as
+   * use of the pairs.
+   */
+  public CacheMapIterator begin()
+    {
+    return begin( CacheMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public CacheMapIterator end()
+    {
+    return new CacheMapIterator( this, entries.end(), CacheMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return entries.isEmpty();
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return entries.size();
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof CacheMap && equals( (CacheMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another CacheMap.
+   * Use equals() to compare values. If either map is being modified concurrently
+   * the result is undefined.
+   * @param map The CacheMap to compare myself against.
+   */
+  public boolean equals( CacheMap map )
+    {
+    if ( map == this )
+      return true;
+
+    if ( size() != map.size() )
+      return false;
+
+    for ( CacheMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      {
+      CacheEntry entry = (CacheEntry)map.entries.get( iterator.key() );
+
+      if ( entry == null || !entry.value.equals( iterator.value() ) )
+        return false;
+      }
+
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public int hashCode()
+    {
+    return entries.hashCode();
+    }
+
+  /**
+   * Swap my contents with another CacheMap, including our policies, weighers,
+   * maximum weights and statistics.
+   * @param map The CacheMap that I will swap my contents with.
+   */
+  public synchronized void swap( CacheMap map )
+    {
+    synchronized( map )
+      {
+      long tmpMaximum = maximumWeight;
+      maximumWeight = map.maximumWeight;
+      map.maximumWeight = tmpMaximum;
+
+      EvictionPolicy tmpPolicy = policy;
+      policy = map.policy;
+      map.policy = tmpPolicy;
+
+      UnaryFunction tmpWeigher = weigher;
+      weigher = map.weigher;
+      map.weigher = tmpWeigher;
+
+      UnaryFunction tmpListener = listener;
+      listener = map.listener;
+      map.listener = tmpListener;
+
+      ConcurrentHashMap tmpEntries = entries;
+      entries = map.entries;
+      map.entries = tmpEntries;
+
+      long tmpWeight = weight;
+      weight = map.weight;
+      map.weight = tmpWeight;
+
+      long tmpEvictions = evictions;
+      evictions = map.evictions;
+      map.evictions = tmpEvictions;
+
+      ReadBuffer[] tmpBuffers = buffers;
+      buffers = map.buffers;
+      map.buffers = tmpBuffers;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    for ( Enumeration e = entries.elements(); e.hasMoreElements(); )
+      ( (CacheEntry)e.nextElement() ).retired = true;
+
+    entries.clear();
+    policy.clear();
+    weight = 0;
+
+    for ( int i = 0; i < buffers.length; i++ )
+      buffers[ i ].clear();
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key.
+   * @param key The key of the pair to be removed.
+   * @return The value removed or null if not changed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    CacheEntry entry = (CacheEntry)entries.remove( key );
+
+    if ( entry == null )
+      return null;
+
+    retire( entry );
+    return entry.value;
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key if the count is positive.
+   * @param key The key of the pair to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    return count > 0 && remove( key ) != null ? 1 : 0;
+    }
+
+  /**
+   * Remove the pair at a particular position.
+   * @param e An Enumeration positioned at the pair to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * CacheMapIterator for this CacheMap object.
+   * @return Return the value that was removed, or null if the pair has already
+   * been removed.
+   */
+  public Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof CacheMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not a CacheMapIterator" );
+
+    if ( ((CacheMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this CacheMap" );
+
+    return remove( ( (CacheMapIterator)e ).key() );
+    }
+
+  /**
+   * Remove the pairs within a specified range.
+   * @param first An Enumeration positioned at the first pair to remove.
+   * @param last An Enumeration positioned immediately after the last pair to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * CacheMapIterator for this CacheMap object.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof CacheMapIterator) ) ||
+        ( ! (last instanceof CacheMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a CacheMapIterator" );
+
+    if ( ( ((CacheMapIterator)first).myMap != this ) ||
+        ( ((CacheMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this CacheMap" );
+
+    CacheMapIterator begin = new CacheMapIterator( (CacheMapIterator)first );
+    int count = 0;
+
+    while ( !begin.equals( last ) && begin.hasMoreElements() )
+      {
+      Object key = begin.key();
+      begin.advance();
+      count += remove( key, 1 );
+      }
+
+    return count;
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position. If the key
+   * is not found, return end(). This does not count as a use of the pair.
+   * @param key The key to locate.
+   */
+  public CacheMapIterator find( Object key )
+    {
+    return new CacheMapIterator( this, entries.find( key ), CacheMapIterator.PAIR );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key, which is 0
+   * or 1. This does not count as a use of the pair.
+   * @param key The key to match against.
+   */
+  public int count( Object key )
+    {
+    return entries.count( key );
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public int countValues( Object value )
+    {
+    int count = 0;
+
+    for ( Enumeration e = elements(); e.hasMoreElements(); )
+      if ( e.nextElement().equals( value ) )
+        ++count;
+
+    return count;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist. The
+   * lookup is counted as a hit or a miss, and a hit as a use of the pair.
+   * @param key The key to search against.
+   */
+  public Object get( Object key )
+    {
+    CacheEntry entry = (CacheEntry)entries.get( key );
+
+    if ( buffer().record( entry ) )
+      synchronized( this )
+        {
+        drainBuffers();
+        }
+
+    return entry == null ? null : entry.value;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist,
+   * without counting the lookup or a use of the pair.
+   * @param key The key to search against.
+   */
+  public Object peek( Object key )
+    {
+    CacheEntry entry = (CacheEntry)entries.get( key );
+    return entry == null ? null : entry.value;
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * Pairs are evicted if my weight then exceeds my maximum.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public Object put( Object key, Object value )
+    {
+    return putAux( key, value, true );
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key, which counts as a use of the pair.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public Object add( Object key, Object value )
+    {
+    return putAux( key, value, false );
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public Enumeration keys()
+    {
+    return begin( CacheMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( CacheMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      if ( iterator.value().equals( value ) )
+        array.pushBack( iterator.key() );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * This does not count as a use of the pair.
+   * @param key The key to match.
+   */
+  public Enumeration values( Object key )
+    {
+    Array array = new Array();
+    Object value = peek( key );
+
+    if ( value != null )
+      array.pushBack( value );
+
+    return array.elements();
+    }
+
+  CacheMapIterator begin( int mode )
+    {
+    return new CacheMapIterator( this, entries.begin(), mode );
+    }
+
+  private Object putAux( Object key, Object value, boolean replace )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int newWeight = weigh( key, value );
+    Object result = null;
+    Array evicted;
+
+    synchronized( this )
+      {
+      drainBuffers();
+      CacheEntry entry = (CacheEntry)entries.get( key );
+
+      if ( entry == null )
+        {
+        entry = new CacheEntry( key, value, newWeight );
+        entries.put( key, entry );
+        weight += newWeight;
+        policy.added( entry );
+        }
+      else if ( replace )
+        {
+        int previousWeight = entry.weight;
+        result = entry.value;
+        entry.value = value;
+        entry.weight = newWeight;
+        weight += newWeight - previousWeight;
+        policy.updated( entry, previousWeight );
+        }
+      else
+        {
+        policy.accessed( entry );
+        return entry.value;
+        }
+
+      evicted = evict();
+      }
+
+    notifyEvicted( evicted );
+    return result;
+    }
+
+  private int weigh( Object key, Object value )
+    {
+    if ( weigher == null )
+      return 1;
+
+    int result = ( (Number)weigher.execute( new Pair( key, value ) ) ).intValue();
+
+    if ( result < 0 )
+      throw new IllegalArgumentException( "weight must not be negative" );
+
+    return result;
+    }
+
+  /**
+   * Evict the victims of my policy until my weight is within my maximum, and
+   * return the evicted pairs if they must be reported, or null.
+   */
+  private Array evict()
+    {
+    Array evicted = null;
+
+    while ( weight > maximumWeight )
+      {
+      CacheEntry victim = policy.victim();
+
+      if ( victim == null )
+        break;
+
+      entries.remove( victim.key );
+      retire( victim );
+      ++evictions;
+
+      if ( listener != null )
+        {
+        if ( evicted == null )
+          evicted = new Array();
+
+        evicted.pushBack( new Pair( victim.key, victim.value ) );
+        }
+      }
+
+    return evicted;
+    }
+
+  private void notifyEvicted( Array evicted )
+    {
+    UnaryFunction function = listener;
+
+    if ( evicted != null && function != null )
+      for ( int i = 0; i < evicted.size(); i++ )
+        function.execute( evicted.at( i ) );
+    }
+
+  private void retire( CacheEntry entry )
+    {
+    weight -= entry.weight;
+    policy.removed( entry );
+    entry.retired = true;
+    }
+
+  /**
+   * Return the read buffer of the current thread.
+   */
+  private ReadBuffer buffer()
+    {
+    return buffers[ Thread.currentThread().hashCode() & ( buffers.length - 1 ) ];
+    }
+
+  /**
+   * Report the entries recorded in my read buffers to my policy.
+   */
+  private void drainBuffers()
+    {
+    for ( int i = 0; i < buffers.length; i++ )
+      {
+      ReadBuffer buffer = buffers[ i ];
+      int count;
+
+      synchronized( buffer )
+        {
+        count = buffer.count;
+        System.arraycopy( buffer.entries, 0, drained, 0, count );
+        buffer.clear();
+        }
+
+      for ( int j = 0; j < count; j++ )
+        {
+        if ( !drained[ j ].retired )
+          policy.accessed( drained[ j ] );
+
+        drained[ j ] = null;
+        }
+      }
+    }
+
+  private void allocateBuffers()
+    {
+    int n = HashMap.powerOfTwo( Math.min( 4 * Runtime.getRuntime().availableProcessors(), MAX_BUFFERS ) );
+    buffers = new ReadBuffer[ n ];
+
+    for ( int i = 0; i < n; i++ )
+      buffers[ i ] = new ReadBuffer();
+
+    drained = new CacheEntry[ BUFFER_SIZE ];
+    }
+
+  private void copyPairs( CacheMap map )
+    {
+    for ( CacheMapIterator iterator = map.begin(); iterator.hasMoreElements(); iterator.advance() )
+      put( iterator.key(), iterator.value() );
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeObject( getComparator() );
+    stream.writeInt( size() );
+
+    for ( CacheMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      {
+      stream.writeObject( iterator.key() );
+      stream.writeObject( iterator.value() );
+      }
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    entries = new ConcurrentHashMap( (BinaryPredicate)stream.readObject() );
+    policy.clear();
+    policy.setMaximumWeight( maximumWeight );
+    allocateBuffers();
+
+    for ( int count = stream.readInt(); count > 0; count-- )
+      put( stream.readObject(), stream.readObject() );
+    }
+
+  /**
+   * A ReadBuffer records the entries read by the threads that share it, and
+   * counts their hits and misses.
+   */
+  static final class ReadBuffer
+    {
+    CacheEntry[] entries = new CacheEntry[ BUFFER_SIZE ];
+    int count;
+    long hits;
+    long misses;
+
+    /**
+     * Record the result of a lookup and return true if I have just become full.
+     */
+    synchronized boolean record( CacheEntry entry )
+      {
+      if ( entry == null )
+        {
+        ++misses;
+        return false;
+        }
+
+      ++hits;
+
+      if ( count == BUFFER_SIZE )
+        return false;
+
+      entries[ count++ ] = entry;
+      return count == BUFFER_SIZE;
+      }
+
+    synchronized void clear()
+      {
+      for ( int i = 0; i < count; i++ )
+        entries[ i ] = null;
+
+      count = 0;
+      }
+    }
+
+  static final long serialVersionUID = -4521793069823516027L;
+  }
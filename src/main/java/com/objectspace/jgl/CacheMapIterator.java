@@ -0,0 +1,282 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A CacheMapIterator is a forward iterator that allows you to iterate through
+ * the contents of a CacheMap. It has a mode that allows selection of the current
+ * position's key, value, or key-value pair.
+ * <p>
+ * A CacheMapIterator is weakly consistent in the same way as a
+ * ConcurrentHashMapIterator. Moving an iterator does not count as a use of the
+ * pairs that it visits, and a pair that is evicted while an iterator is positioned
+ * at it can still be read through the iterator.
+ * <p>
+ * @see ForwardIterator
+ * @see CacheMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class CacheMapIterator implements ForwardIterator, Opaque
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  CacheMap myMap;
+  ConcurrentHashMapIterator myIterator;
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public CacheMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public CacheMapIterator( CacheMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myIterator = new ConcurrentHashMapIterator( iterator.myIterator );
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at the same pair as an iterator over the
+   * entries of a specified map.
+   * @param map My associated map.
+   * @param iterator An iterator over the entries of the map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  CacheMapIterator( CacheMap map, ConcurrentHashMapIterator iterator, int mode )
+    {
+    myMap = map;
+    myIterator = iterator;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new CacheMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof Opaque && myIterator.opaqueData() == ( (Opaque)object ).opaqueData();
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIterator.atBegin();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myIterator.atEnd();
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myIterator.hasMoreElements();
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    myIterator.advance();
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    myIterator.advance( n );
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( !myIterator.hasMoreElements() )
+      throw new java.util.NoSuchElementException( "CacheMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( key(), value() );
+
+      case KEY:
+        return key();
+
+      case VALUE:
+        return value();
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    CacheMapIterator i = new CacheMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Replace the value at my current position by putting it into my map, which
+   * may cause pairs to be evicted. Keys cannot be changed, so in PAIR mode the
+   * key of the pair must match my current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the key would be changed.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+
+        if ( !myMap.getComparator().execute( key(), pair.first ) )
+          throw new InvalidOperationException( "Cannot change the key of a CacheMap pair." );
+
+        value( pair.second );
+        break;
+
+      case KEY:
+        throw new InvalidOperationException( "Cannot change the key of a CacheMap pair." );
+
+      case VALUE:
+        value( object );
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    CacheMapIterator i = new CacheMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myIterator.key();
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return ( (CacheEntry)myIterator.value() ).value;
+    }
+
+  /**
+   * Change the value of my current key/value pair by putting it into my map.
+   * @param value The new value.
+   */
+  public void value( Object value )
+    {
+    myMap.put( key(), value );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    return myIterator.distance( ( (CacheMapIterator)iterator ).myIterator );
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return myIterator.opaqueData();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+  }
@@ -0,0 +1,48 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec is the interface that must be implemented by all objects that convert
+ * other objects to and from a sequence of bytes. Containers that keep their
+ * contents outside of the Java heap, such as an OffHeapHashMap, use a Codec to
+ * store each key and value and decode them again only when they are needed.
+ * <p>
+ * Two objects that are encoded into the same bytes are considered to be equal by
+ * such containers, so a Codec that is used for keys must always produce the same
+ * bytes for equal objects.
+ * <p>
+ * @see OffHeapHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public interface Codec extends Serializable
+  {
+  /**
+   * Return the number of bytes that are needed to encode an object.
+   * @param object The object to measure.
+   */
+  int size( Object object );
+
+  /**
+   * Write the bytes of an object at the current position of a buffer,
+   * advancing the position by size( object ).
+   * @param object The object to encode.
+   * @param buffer The buffer to write into.
+   */
+  void encode( Object object, ByteBuffer buffer );
+
+  /**
+   * Return the object whose bytes start at the current position of a buffer.
+   * The position may be left anywhere afterwards.
+   * @param buffer The buffer to read from.
+   * @param length The number of bytes of the object.
+   */
+  Object decode( ByteBuffer buffer, int length );
+
+  static final long serialVersionUID = 4416873306271594105L;
+  }
@@ -0,0 +1,1015 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * A ConcurrentHashMap is an associative container that manages a set of key/value
+ * pairs and that may be shared by many threads without serializing them on a
+ * single monitor. Keys are matched by default using a BinaryPredicate that uses
+ * equals() for comparisons, and duplicate keys are not allowed unless explicitly
+ * specified.
+ * <p>
+ * The pairs are spread over a fixed number of segments, each of which is an
+ * independently locked hash table. Operations that modify the map only lock the
+ * segment that holds the key, so writers that work on different segments
+ * proceed in parallel. Operations that only read the map, such as get(),
+ * count(), values() and iteration, never lock at all. This works because a
+ * node's key, hash code and link are never changed after the node is
+ * published; removal and rehashing copy the affected nodes instead.
+ * <p>
+ * Iterators are weakly consistent: they never throw an exception because of
+ * concurrent modification, they return each pair that existed when they were
+ * created at most once, and they may or may not reflect later changes.
+ * <p>
+ * Insertion does not invalidate iterators.
+ * <p>
+ * Removal does not invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see ConcurrentHashMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class ConcurrentHashMap extends Map
+  {
+  static final int DEFAULT_SIZE = 256;
+  static final float DEFAULT_RATIO = 0.75F;
+  static final int DEFAULT_CONCURRENCY = 16;
+  static final int MAX_SEGMENTS = 1 << 16;
+
+  BinaryPredicate comparator;
+  boolean allowDups; // does the map allow duplicate keys?
+  float ratio;
+  int capacity; // initial # buckets over all segments.
+  int concurrency; // # segments.
+  transient Segment[] segments;
+  transient int segmentShift;
+
+  /**
+   * Construct myself to be an empty ConcurrentHashMap that compares keys using
+   * equals() and does not allow duplicates.
+   */
+  public ConcurrentHashMap()
+    {
+    this( new xEqualTo(), false, DEFAULT_SIZE, DEFAULT_RATIO, DEFAULT_CONCURRENCY );
+    }
+
+  /**
+   * Construct myself to be an empty ConcurrentHashMap that compares keys using
+   * equals() and conditionally allows duplicates.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public ConcurrentHashMap( boolean allowDuplicates )
+    {
+    this( new xEqualTo(), allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO, DEFAULT_CONCURRENCY );
+    }
+
+  /**
+   * Construct myself to be an empty ConcurrentHashMap that compares keys using the
+   * specified binary predicate and does not allow duplicates.
+   * @param comparator The predicate for comparing keys.
+   */
+  public ConcurrentHashMap( BinaryPredicate comparator )
+    {
+    this( comparator, false, DEFAULT_SIZE, DEFAULT_RATIO, DEFAULT_CONCURRENCY );
+    }
+
+  /**
+   * Construct myself to be an empty ConcurrentHashMap that compares keys using the
+   * specified binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public ConcurrentHashMap( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    this( comparator, allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO, DEFAULT_CONCURRENCY );
+    }
+
+  /**
+   * Construct myself to be an empty ConcurrentHashMap that compares keys using the
+   * specified binary predicate and conditionally allows duplicates. The initial
+   * buckets, load ratio and number of independently locked segments must also be
+   * specified. Both the number of buckets per segment and the number of segments
+   * are rounded up to a power of two.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @param concurrencyLevel The expected number of concurrent writers.
+   * @exception IllegalArgumentException If the load ratio or concurrency level is not positive.
+   */
+  public ConcurrentHashMap( BinaryPredicate comparator, boolean allowDuplicates, int capacity, float loadRatio, int concurrencyLevel )
+    {
+    if ( loadRatio <= 0.0F || concurrencyLevel <= 0 )
+      throw new IllegalArgumentException( "load ratio and concurrency level must be positive" );
+
+    this.comparator = comparator;
+    allowDups = allowDuplicates;
+    ratio = loadRatio;
+    this.capacity = capacity;
+    concurrency = HashMap.powerOfTwo( Math.min( concurrencyLevel, MAX_SEGMENTS ) );
+    allocate();
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing ConcurrentHashMap.
+   * @param map The ConcurrentHashMap to copy.
+   */
+  public ConcurrentHashMap( ConcurrentHashMap map )
+    {
+    this( map.comparator, map.allowDups, map.capacity, map.ratio, map.concurrency );
+    copyPairs( map );
+    }
+
+  /**
+   * Return true if I allow duplicate keys.
+   */
+  public boolean allowsDuplicates()
+    {
+    return allowDups;
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return comparator;
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return the number of independently locked segments that I use.
+   */
+  public int getConcurrencyLevel()
+    {
+    return concurrency;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public Object clone()
+    {
+    return new ConcurrentHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing ConcurrentHashMap. My comparator,
+   * duplicate mode and segments are not changed. The copy is weakly consistent
+   * with respect to concurrent changes made to the source.
+   * @param map The ConcurrentHashMap that I shall become a shallow copy of.
+   */
+  public void copy( ConcurrentHashMap map )
+    {
+    if ( map != this )
+      {
+      clear();
+      copyPairs( map );
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return Algos.Printing.toString( this, "ConcurrentHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public Enumeration elements()
+    {
+    return begin( ConcurrentHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ConcurrentHashMapIterator begin()
+    {
+    return begin( ConcurrentHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public ConcurrentHashMapIterator end()
+    {
+    return new ConcurrentHashMapIterator( this, ConcurrentHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    for ( int i = 0; i < segments.length; i++ )
+      if ( segments[ i ].count != 0 )
+        return false;
+
+    return true;
+    }
+
+  /**
+   * Return the number of entries that I contain. If I'm being modified
+   * concurrently the result is only an estimate.
+   */
+  public int size()
+    {
+    long n = 0;
+
+    for ( int i = 0; i < segments.length; i++ )
+      n += segments[ i ].count;
+
+    return n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)n;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof ConcurrentHashMap && equals( (ConcurrentHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another
+   * ConcurrentHashMap. Use equals() to compare values. If either map is being
+   * modified concurrently the result is undefined.
+   * @param map The ConcurrentHashMap to compare myself against.
+   */
+  public boolean equals( ConcurrentHashMap map )
+    {
+    if ( map == this )
+      return true;
+
+    if ( size() != map.size() )
+      return false;
+
+    HashSet visited = new HashSet( comparator );
+
+    for ( ConcurrentHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      {
+      Object key = iterator.key();
+
+      if ( !allowDups )
+        {
+        Object value = map.get( key );
+
+        if ( value == null || !value.equals( iterator.value() ) )
+          return false;
+        }
+      else if ( visited.add( key ) == null && !same( values( key ), map.values( key ) ) )
+        {
+        return false;
+        }
+      }
+
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public int hashCode()
+    {
+    return Algos.Hashing.unorderedHash( begin( ConcurrentHashMapIterator.KEY ) );
+    }
+
+  /**
+   * Remove all of my elements. Each segment is cleared in turn, so pairs that
+   * are added concurrently may survive.
+   */
+  public void clear()
+    {
+    for ( int i = 0; i < segments.length; i++ )
+      {
+      Segment segment = segments[ i ];
+
+      synchronized( segment )
+        {
+        segment.table = new Node[ segment.table.length ];
+        segment.count = 0;
+        }
+      }
+    }
+
+  /**
+   * Remove all key/value pairs that match a particular key.
+   * @param key The key of the pair(s) to be removed.
+   * @return the first value pair removed or null if not changed.
+   */
+  public Object remove( Object key )
+    {
+    return removeAux( key, Integer.MAX_VALUE ).first;
+    }
+
+  /**
+   * Remove at most a given number of key/value pairs that match a particular key.
+   * @param key The key of the pair(s) to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    Pair result = removeAux( key, count );
+    return ( (Number)result.second ).intValue();
+    }
+
+  Pair removeAux( Object key, int maximum )
+    {
+    if ( maximum > 0 )
+      {
+      int hash = hash( key );
+      Segment segment = segmentFor( hash );
+
+      synchronized( segment )
+        {
+        Node[] table = segment.table;
+        int probe = hash & ( table.length - 1 );
+        Node head = table[ probe ];
+        Object value = null;
+        int count = 0;
+
+        Node last = null;
+        for ( Node node = head; node != null; node = node.next )
+          if ( node.hash == hash && comparator.execute( node.key, key ) )
+            {
+            if ( count == 0 )
+              value = node.value;
+
+            last = node;
+
+            if ( ++count == maximum )
+              break;
+            }
+
+        if ( count > 0 )
+          {
+          table[ probe ] = copy( head, last, last.next, key, hash, count - 1 );
+          segment.count -= count;
+          return new Pair( value, new Integer( count ) );
+          }
+        }
+      }
+
+    return new Pair( null, new Integer( 0 ) );
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * ConcurrentHashMapIterator for this ConcurrentHashMap object.
+   * @return Return the value associated with the enumeration, or null if the
+   * pair has already been removed.
+   */
+  public Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof ConcurrentHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not a ConcurrentHashMapIterator" );
+
+    if ( ((ConcurrentHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this ConcurrentHashMap" );
+
+    Node target = ( (ConcurrentHashMapIterator)e ).myNode;
+
+    if ( target == null )
+      return null;
+
+    Segment segment = segmentFor( target.hash );
+
+    synchronized( segment )
+      {
+      Node[] table = segment.table;
+      int probe = target.hash & ( table.length - 1 );
+      Node head = table[ probe ];
+      Node node = head;
+
+      while ( node != null && node != target )
+        node = node.next;
+
+      if ( node == null )
+        return null;
+
+      table[ probe ] = copy( head, target, target.next, null, 0, 0 );
+      --segment.count;
+      return target.value;
+      }
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * ConcurrentHashMapIterator for this ConcurrentHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof ConcurrentHashMapIterator) ) ||
+        ( ! (last instanceof ConcurrentHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a ConcurrentHashMapIterator" );
+
+    if ( ( ((ConcurrentHashMapIterator)first).myMap != this ) ||
+        ( ((ConcurrentHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this ConcurrentHashMap" );
+
+    ConcurrentHashMapIterator begin = new ConcurrentHashMapIterator( (ConcurrentHashMapIterator)first );
+    ConcurrentHashMapIterator end = (ConcurrentHashMapIterator)last;
+
+    int count = 0;
+    while ( !begin.equals( end ) && begin.hasMoreElements() )
+      {
+      ConcurrentHashMapIterator next = new ConcurrentHashMapIterator( begin );
+      next.advance();
+
+      if ( remove( begin ) != null )
+        ++count;
+
+      begin = next;
+      }
+    return count;
+    }
+
+  /**
+   * Find the first key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public ConcurrentHashMapIterator find( Object key )
+    {
+    int hash = hash( key );
+    int index = segmentIndex( hash );
+    Segment segment = segments[ index ];
+
+    if ( segment.count != 0 )
+      {
+      Node[] table = segment.table;
+      int probe = hash & ( table.length - 1 );
+
+      for ( Node node = table[ probe ]; node != null; node = node.next )
+        if ( node.hash == hash && comparator.execute( node.key, key ) )
+          return new ConcurrentHashMapIterator( this, index, table, probe, node, ConcurrentHashMapIterator.PAIR );
+      }
+
+    return end();
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key.
+   * @param key The key to match against.
+   */
+  public int count( Object key )
+    {
+    int hash = hash( key );
+    Segment segment = segmentFor( hash );
+    int n = 0;
+
+    if ( segment.count != 0 )
+      {
+      Node[] table = segment.table;
+
+      for ( Node node = table[ hash & ( table.length - 1 ) ]; node != null; node = node.next )
+        if ( node.hash == hash && comparator.execute( node.key, key ) )
+          {
+          ++n;
+
+          if ( !allowDups )
+            break;
+          }
+      }
+
+    return n;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public int countValues( Object value )
+    {
+    return Algos.Counting.count( begin( ConcurrentHashMapIterator.VALUE ), end(), value );
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public Object get( Object key )
+    {
+    int hash = hash( key );
+    Segment segment = segmentFor( hash );
+
+    if ( segment.count != 0 )
+      {
+      Node[] table = segment.table;
+
+      for ( Node node = table[ hash & ( table.length - 1 ) ]; node != null; node = node.next )
+        if ( node.hash == hash && comparator.execute( node.key, key ) )
+          return valueOf( segment, node );
+      }
+
+    return null;
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the first value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int hash = hash( key );
+    Segment segment = segmentFor( hash );
+
+    synchronized( segment )
+      {
+      Node[] table = segment.table;
+
+      // find if key already exists first
+      for ( Node node = table[ hash & ( table.length - 1 ) ]; node != null; node = node.next )
+        if ( node.hash == hash && comparator.execute( node.key, key ) )
+          {
+          Object previous = node.value;
+          node.value = value;
+          return previous;
+          }
+
+      insert( segment, key, hash, value );
+      return null;
+      }
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist or duplicates are allowed,
+   * associate the value with the key and return null, otherwise don't modify the map and
+   * return the current value associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    if ( ((Pair)object).first == null || ((Pair)object).second == null )
+      throw new NullPointerException();
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist or duplicates are allowed, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int hash = hash( key );
+    Segment segment = segmentFor( hash );
+
+    synchronized( segment )
+      {
+      Node[] table = segment.table;
+      int probe = hash & ( table.length - 1 );
+      Node head = table[ probe ];
+      Node last = null;
+
+      // find if key already exists first
+      for ( Node node = head; node != null; node = node.next )
+        if ( node.hash == hash && comparator.execute( node.key, key ) )
+          {
+          if ( !allowDups )
+            return node.value; // DO NOT add
+
+          last = node;
+          }
+        else if ( last != null )
+          {
+          break;
+          }
+
+      if ( last == null )
+        {
+        insert( segment, key, hash, value );
+        return null;
+        }
+
+      // duplicate key, copy the chain up to the last match so that the new
+      // pair can follow it and the matches stay adjacent.
+      if ( segment.count >= segment.limit )
+        {
+        rehash( segment );
+        return add( key, value );
+        }
+
+      table[ probe ] = copy( head, last.next, new Node( key, hash, value, last.next ), null, 0, 0 );
+      ++segment.count;
+      return null;
+      }
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public Enumeration keys()
+    {
+    return begin( ConcurrentHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( ConcurrentHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      if ( iterator.value().equals( value ) )
+        array.pushBack( iterator.key() );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of all my values that are associated with a particular key.
+   * @param key The key to match.
+   */
+  public Enumeration values( Object key )
+    {
+    Array array = new Array();
+    int hash = hash( key );
+    Segment segment = segmentFor( hash );
+
+    if ( segment.count != 0 )
+      {
+      Node[] table = segment.table;
+
+      for ( Node node = table[ hash & ( table.length - 1 ) ]; node != null; node = node.next )
+        if ( node.hash == hash && comparator.execute( node.key, key ) )
+          array.add( valueOf( segment, node ) );
+      }
+
+    return array.elements();
+    }
+
+  /**
+   * Return an iterator positioned at the first location that a
+   * pair with a specified key could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param key The key.
+   */
+  public ConcurrentHashMapIterator lowerBound( Object key )
+    {
+    return (ConcurrentHashMapIterator)equalRange( key ).begin;
+    }
+
+  /**
+   * Return an iterator positioned at the last location that
+   * a pair with a specified key could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param key The key.
+   */
+  public ConcurrentHashMapIterator upperBound( Object key )
+    {
+    return (ConcurrentHashMapIterator)equalRange( key ).end;
+    }
+
+  /**
+   * Return a range whose first element is an iterator positioned
+   * at the first occurence of a specific key and whose second element is an
+   * iterator positioned immediately after the last occurence of that key.
+   * Note that all key inbetween these iterators will also match the specified
+   * key. If no matching key is found, both ends of the range will be the
+   * same.
+   * @param object The key whose bounds are to be found.
+   */
+  public Range equalRange( Object key )
+    {
+    ConcurrentHashMapIterator begin = find( key );
+    ConcurrentHashMapIterator end = new ConcurrentHashMapIterator( begin );
+
+    if ( end.hasMoreElements() )
+      {
+      int hash = end.myNode.hash;
+
+      do
+        end.advance();
+      while ( end.hasMoreElements() && end.myNode.hash == hash && comparator.execute( end.myNode.key, key ) );
+      }
+
+    return new Range( begin, end );
+    }
+
+  ConcurrentHashMapIterator begin( int mode )
+    {
+    ConcurrentHashMapIterator iterator = new ConcurrentHashMapIterator( this, mode );
+    iterator.seek( 0, null, -1 );
+    return iterator;
+    }
+
+  /**
+   * Add a new pair to the front of its chain. The caller must hold the segment's lock.
+   */
+  private void insert( Segment segment, Object key, int hash, Object value )
+    {
+    if ( segment.count >= segment.limit )
+      rehash( segment );
+
+    Node[] table = segment.table;
+    int probe = hash & ( table.length - 1 );
+    table[ probe ] = new Node( key, hash, value, table[ probe ] );
+    ++segment.count; // publishes the new node to readers.
+    }
+
+  /**
+   * Double the size of a segment's table. Every node is copied so that readers
+   * that are still walking the old table see it unchanged. The relative order of
+   * the nodes in each chain is preserved. The caller must hold the segment's lock.
+   */
+  private void rehash( Segment segment )
+    {
+    Node[] table = segment.table;
+
+    if ( table.length >= ( 1 << 30 ) )
+      return;
+
+    Node[] newTable = new Node[ table.length * 2 ];
+    int mask = newTable.length - 1;
+    Node[] chain = new Node[ 8 ];
+
+    for ( int i = 0; i < table.length; i++ )
+      {
+      int n = 0;
+
+      for ( Node node = table[ i ]; node != null; node = node.next )
+        {
+        if ( n == chain.length )
+          {
+          Node[] tmp = new Node[ n * 2 ];
+          System.arraycopy( chain, 0, tmp, 0, n );
+          chain = tmp;
+          }
+
+        chain[ n++ ] = node;
+        }
+
+      while ( n-- > 0 )
+        {
+        Node node = chain[ n ];
+        int probe = node.hash & mask;
+        newTable[ probe ] = new Node( node.key, node.hash, node.value, newTable[ probe ] );
+        chain[ n ] = null;
+        }
+      }
+
+    segment.table = newTable;
+    segment.limit = (int)( newTable.length * ratio );
+    }
+
+  /**
+   * Return a copy of the nodes from head up to but excluding stop, in their
+   * original order and followed by tail, skipping the first few nodes that
+   * match a key. The nodes from stop onwards are shared with the old chain,
+   * which concurrent readers may still be walking. The caller must hold the
+   * segment's lock.
+   */
+  private Node copy( Node head, Node stop, Node tail, Object key, int hash, int skip )
+    {
+    Node[] kept = new Node[ 8 ];
+    int n = 0;
+
+    for ( Node node = head; node != stop; node = node.next )
+      if ( skip > 0 && node.hash == hash && comparator.execute( node.key, key ) )
+        {
+        --skip;
+        }
+      else
+        {
+        if ( n == kept.length )
+          {
+          Node[] tmp = new Node[ n * 2 ];
+          System.arraycopy( kept, 0, tmp, 0, n );
+          kept = tmp;
+          }
+
+        kept[ n++ ] = node;
+        }
+
+    Node result = tail;
+
+    while ( n-- > 0 )
+      result = new Node( kept[ n ].key, kept[ n ].hash, kept[ n ].value, result );
+
+    return result;
+    }
+
+  /**
+   * Return the value of a node. A reader may see a node before the write to its
+   * value field, in which case the value is read again under the segment's lock.
+   */
+  private static Object valueOf( Segment segment, Node node )
+    {
+    Object value = node.value;
+
+    if ( value != null )
+      return value;
+
+    synchronized( segment )
+      {
+      return node.value;
+      }
+    }
+
+  private void copyPairs( ConcurrentHashMap map )
+    {
+    for ( ConcurrentHashMapIterator iterator = map.begin(); iterator.hasMoreElements(); iterator.advance() )
+      add( iterator.key(), iterator.value() );
+    }
+
+  private void allocate()
+    {
+    segmentShift = 32;
+    for ( int n = concurrency; n > 1; n >>>= 1 )
+      --segmentShift;
+
+    int perSegment = HashMap.powerOfTwo( Math.max( 1, capacity / concurrency ) );
+    segments = new Segment[ concurrency ];
+
+    for ( int i = 0; i < concurrency; i++ )
+      segments[ i ] = new Segment( perSegment, ratio );
+    }
+
+  /**
+   * Return the spread hash code of a key. The high bits select a segment and
+   * the low bits select a bucket within that segment.
+   */
+  static int hash( Object key )
+    {
+    return xSpreader.mix( key.hashCode() );
+    }
+
+  final int segmentIndex( int hash )
+    {
+    return segmentShift == 32 ? 0 : hash >>> segmentShift;
+    }
+
+  final Segment segmentFor( int hash )
+    {
+    return segments[ segmentIndex( hash ) ];
+    }
+
+  private static boolean same( Enumeration src, Enumeration dst )
+    {
+    HashMap counts = new HashMap();
+    int n = 0;
+
+    while ( src.hasMoreElements() )
+      {
+      Object value = src.nextElement();
+      Integer count = (Integer)counts.get( value );
+      counts.put( value, new Integer( count == null ? 1 : count.intValue() + 1 ) );
+      ++n;
+      }
+
+    while ( dst.hasMoreElements() )
+      {
+      Object value = dst.nextElement();
+      Integer count = (Integer)counts.get( value );
+
+      if ( count == null )
+        return false;
+
+      if ( count.intValue() == 1 )
+        counts.remove( value );
+      else
+        counts.put( value, new Integer( count.intValue() - 1 ) );
+
+      --n;
+      }
+
+    return n == 0;
+    }
+
+  private void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    Array pairs = new Array();
+    Enumeration iter = begin();
+    while ( iter.hasMoreElements() )
+      pairs.add( iter.nextElement() );
+    stream.writeInt( pairs.size() );
+    for ( int i = 0; i < pairs.size(); i++ )
+      stream.writeObject( pairs.at( i ) );
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    allocate();
+    int count = stream.readInt();
+    while ( count-- > 0 )
+      add( stream.readObject() );
+    }
+
+  /**
+   * A node's key, hash code and link never change once the node is published,
+   * so a chain can be read without locking.
+   */
+  static final class Node
+    {
+    final Object key;
+    final int hash;
+    volatile Object value;
+    final Node next;
+
+    Node( Object key, int hash, Object value, Node next )
+      {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+      this.next = next;
+      }
+    }
+
+  /**
+   * A segment is an independently locked hash table. Writers lock the segment
+   * itself and finish every change by writing count, which readers read first.
+   */
+  static final class Segment
+    {
+    volatile int count;
+    volatile Node[] table;
+    int limit;
+
+    Segment( int length, float ratio )
+      {
+      table = new Node[ length ];
+      limit = (int)( length * ratio );
+      }
+    }
+
+  static final long serialVersionUID = -3177414296730841552L;
+  }
@@ -0,0 +1,363 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A ConcurrentHashMapIterator is a forward iterator that allows you to iterate
+ * through the contents of a ConcurrentHashMap. It has a mode that allows selection
+ * of the current position's key, value, or key-value pair.
+ * <p>
+ * A ConcurrentHashMapIterator is weakly consistent: it walks a snapshot of one
+ * segment's table at a time and never throws an exception because the map is
+ * being modified concurrently.
+ * <p>
+ * @see ForwardIterator
+ * @see ConcurrentHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class ConcurrentHashMapIterator implements ForwardIterator, Opaque
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  ConcurrentHashMap myMap;
+  int mySegment;
+  ConcurrentHashMap.Node[] myTable; // snapshot of my segment's table.
+  int myBucket;
+  ConcurrentHashMap.Node myNode;
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public ConcurrentHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public ConcurrentHashMapIterator( ConcurrentHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    mySegment = iterator.mySegment;
+    myTable = iterator.myTable;
+    myBucket = iterator.myBucket;
+    myNode = iterator.myNode;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned after the last pair of a specified map.
+   * @param map My associated map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  ConcurrentHashMapIterator( ConcurrentHashMap map, int mode )
+    {
+    myMap = map;
+    myMode = mode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular node of a specified map.
+   * @param map My associated map.
+   * @param segment The index of the segment that holds the node.
+   * @param table The table of that segment in which the node was found.
+   * @param bucket The bucket of the table that holds the node.
+   * @param node My associated node.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  ConcurrentHashMapIterator( ConcurrentHashMap map, int segment, ConcurrentHashMap.Node[] table, int bucket, ConcurrentHashMap.Node node, int mode )
+    {
+    myMap = map;
+    mySegment = segment;
+    myTable = table;
+    myBucket = bucket;
+    myNode = node;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new ConcurrentHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof Opaque && myNode == ( (Opaque)object ).opaqueData();
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myNode == myMap.begin().myNode;
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myNode == null;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myNode != null;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    if ( myNode.next != null )
+      myNode = myNode.next;
+    else
+      seek( mySegment, myTable, myBucket );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myNode == null )
+      throw new java.util.NoSuchElementException( "ConcurrentHashMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myNode.key, myNode.value );
+
+      case KEY:
+        return myNode.key;
+
+      case VALUE:
+        return myNode.value;
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    ConcurrentHashMapIterator i = new ConcurrentHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. Keys cannot
+   * be changed, so in PAIR mode the key of the pair must match my current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the key would be changed.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+
+        if ( !myMap.comparator.execute( myNode.key, pair.first ) )
+          throw new InvalidOperationException( "Cannot change the key of a ConcurrentHashMap pair." );
+
+        myNode.value = pair.second;
+        break;
+
+      case KEY:
+        throw new InvalidOperationException( "Cannot change the key of a ConcurrentHashMap pair." );
+
+      case VALUE:
+        myNode.value = object;
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    ConcurrentHashMapIterator i = new ConcurrentHashMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myNode.key;
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myNode.value;
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param object The new value.
+   */
+  public void value( Object value )
+    {
+    myNode.value = value;
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    ConcurrentHashMapIterator i = new ConcurrentHashMapIterator( this );
+    Object node = ( (Opaque)iterator ).opaqueData();
+    int n = 0;
+
+    while ( i.myNode != node && i.myNode != null )
+      {
+      ++n;
+      i.advance();
+      }
+
+    return n;
+    }
+
+  /**
+   * Position myself at the first node after a bucket of a segment's table,
+   * moving on to the following segments if necessary. If the table is null,
+   * the search starts at the first bucket of the segment.
+   */
+  void seek( int segment, ConcurrentHashMap.Node[] table, int bucket )
+    {
+    ConcurrentHashMap.Segment[] segments = myMap.segments;
+
+    while ( segment < segments.length )
+      {
+      if ( table == null )
+        {
+        if ( segments[ segment ].count == 0 )
+          {
+          ++segment;
+          continue;
+          }
+
+        table = segments[ segment ].table;
+        bucket = -1;
+        }
+
+      while ( ++bucket < table.length )
+        {
+        ConcurrentHashMap.Node node = table[ bucket ];
+
+        if ( node != null )
+          {
+          mySegment = segment;
+          myTable = table;
+          myBucket = bucket;
+          myNode = node;
+          return;
+          }
+        }
+
+      table = null;
+      ++segment;
+      }
+
+    myTable = null;
+    myNode = null;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return myNode;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+  }
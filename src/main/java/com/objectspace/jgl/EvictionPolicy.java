@@ -0,0 +1,76 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.io.Serializable;
+
+/**
+ * EvictionPolicy is the interface that must be implemented by the strategies
+ * that a CacheMap uses to choose which entries to discard. The cache tells its
+ * policy about every entry that is added, accessed, updated or removed, always
+ * while holding its own monitor, and asks it for a victim whenever the total
+ * weight of its entries exceeds the maximum. A policy should do constant work
+ * for each of these calls.
+ * <p>
+ * Reads are reported to the policy in batches, some time after they happen, and
+ * may be dropped entirely when the cache is under heavy load.
+ * <p>
+ * @see CacheMap
+ * @see LRUPolicy
+ * @see LFUPolicy
+ * @see TinyLFUPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public interface EvictionPolicy extends Serializable
+  {
+  /**
+   * Return a new policy that is configured like me but knows no entries.
+   */
+  EvictionPolicy emptyCopy();
+
+  /**
+   * Called when the maximum weight of my cache is set.
+   * @param maximumWeight The total weight that my cache may hold.
+   */
+  void setMaximumWeight( long maximumWeight );
+
+  /**
+   * Called after an entry has been added to my cache.
+   * @param entry The new entry.
+   */
+  void added( CacheEntry entry );
+
+  /**
+   * Called after the value of an entry has been read.
+   * @param entry The entry.
+   */
+  void accessed( CacheEntry entry );
+
+  /**
+   * Called after the value, and possibly the weight, of an entry have been replaced.
+   * @param entry The entry.
+   * @param previousWeight The weight of the entry before the change.
+   */
+  void updated( CacheEntry entry, int previousWeight );
+
+  /**
+   * Called after an entry has been removed from my cache, whether or not it was
+   * chosen as a victim.
+   * @param entry The entry.
+   */
+  void removed( CacheEntry entry );
+
+  /**
+   * Return the entry that should be evicted next, or null if I know no entries.
+   */
+  CacheEntry victim();
+
+  /**
+   * Forget all of my entries.
+   */
+  void clear();
+
+  static final long serialVersionUID = 6078421193635219048L;
+  }
@@ -0,0 +1,106 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * FrequencySketch estimates how often hash codes have been seen using a count-min
+ * sketch of 4-bit counters, sixteen to a long. Each hash code is counted in four
+ * counters that lie in four different longs; its estimate is the least of them.
+ * When the number of increments reaches ten times the number of longs, every
+ * counter is halved, so that the estimates reflect recent history.
+ * <p>
+ * @see TinyLFUPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+final class FrequencySketch
+  {
+  static final int MIN_LENGTH = 64;
+  static final int MAX_LENGTH = 1 << 24;
+  static final long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+  static final long RESET_MASK = 0x7777777777777777L;
+
+  long[] table = new long[ MIN_LENGTH ];
+  int samples; // # increments since the counters were last halved.
+
+  /**
+   * Grow my table, forgetting all counts, if it has fewer longs than a number of keys.
+   */
+  void ensureCapacity( int keys )
+    {
+    if ( keys > table.length && table.length < MAX_LENGTH )
+      {
+      table = new long[ Math.min( HashMap.powerOfTwo( keys ), MAX_LENGTH ) ];
+      samples = 0;
+      }
+    }
+
+  /**
+   * Return the estimated count of a hash code, from 0 to 15.
+   */
+  int frequency( int hash )
+    {
+    hash = spread( hash );
+    int start = ( hash & 3 ) << 2;
+    int result = 15;
+
+    for ( int i = 0; i < 4; i++ )
+      {
+      int count = (int)( ( table[ index( hash, i ) ] >>> ( ( start + i ) << 2 ) ) & 0xF );
+      result = Math.min( result, count );
+      }
+
+    return result;
+    }
+
+  /**
+   * Count a hash code.
+   */
+  void increment( int hash )
+    {
+    hash = spread( hash );
+    int start = ( hash & 3 ) << 2;
+    boolean added = false;
+
+    for ( int i = 0; i < 4; i++ )
+      {
+      int index = index( hash, i );
+      int shift = ( start + i ) << 2;
+
+      if ( ( ( table[ index ] >>> shift ) & 0xF ) != 0xF )
+        {
+        table[ index ] += 1L << shift;
+        added = true;
+        }
+      }
+
+    if ( added && ++samples >= 10 * table.length )
+      reset();
+    }
+
+  /**
+   * Halve every counter.
+   */
+  void reset()
+    {
+    for ( int i = 0; i < table.length; i++ )
+      table[ i ] = ( table[ i ] >>> 1 ) & RESET_MASK;
+
+    samples /= 2;
+    }
+
+  private int index( int hash, int i )
+    {
+    long h = ( hash + SEEDS[ i ] ) * SEEDS[ i ];
+    h += h >>> 32;
+    return (int)h & ( table.length - 1 );
+    }
+
+  private static int spread( int hash )
+    {
+    hash = ( ( hash >>> 16 ) ^ hash ) * 0x45D9F3B;
+    hash = ( ( hash >>> 16 ) ^ hash ) * 0x45D9F3B;
+    return ( hash >>> 16 ) ^ hash;
+    }
+  }
@@ -0,0 +1,477 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A HashBucketTree is a red-black tree that indexes the nodes of a single hash
+ * bucket whose chain has grown too long. Entries are ordered by hash code and
+ * then by an ordering predicate on their keys; entries that are equivalent under
+ * both are kept in insertion order. The owning container keeps its chain linked
+ * in the same order as the tree, so that a node's predecessor in the tree is
+ * also its predecessor in the chain.
+ * <p>
+ * @see HashMap#setCollisionOrdering
+ * @see HashSet#setCollisionOrdering
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+final class HashBucketTree
+  {
+  BinaryPredicate ordering;
+  Entry root;
+  int size;
+
+  HashBucketTree( BinaryPredicate ordering )
+    {
+    this.ordering = ordering;
+    }
+
+  /**
+   * Return the number of nodes that I index.
+   */
+  int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the first node whose key matches the given key according to a
+   * comparator, or null if there is none.
+   */
+  Object find( int hash, Object key, BinaryPredicate comparator )
+    {
+    for ( Entry e = lowerBound( hash, key ); e != null && compare( e, hash, key ) == 0; e = successor( e ) )
+      if ( comparator.execute( e.key, key ) )
+        return e.node;
+
+    return null;
+    }
+
+  /**
+   * Index a node after every equivalent node. Return the node that precedes it
+   * in the tree, or null if it is the first.
+   */
+  Object insert( int hash, Object key, Object node )
+    {
+    Entry entry = new Entry( hash, key, node );
+    ++size;
+
+    if ( root == null )
+      {
+      root = entry;
+      return null;
+      }
+
+    Entry parent = root;
+
+    while ( true )
+      if ( compare( parent, hash, key ) > 0 )
+        {
+        if ( parent.left == null )
+          {
+          parent.left = entry;
+          break;
+          }
+
+        parent = parent.left;
+        }
+      else
+        {
+        if ( parent.right == null )
+          {
+          parent.right = entry;
+          break;
+          }
+
+        parent = parent.right;
+        }
+
+    entry.parent = parent;
+    fixAfterInsertion( entry );
+    Entry previous = predecessor( entry );
+    return previous == null ? null : previous.node;
+    }
+
+  /**
+   * Stop indexing a node. Return the node that preceded it in the tree, or
+   * null if it was the first.
+   */
+  Object remove( int hash, Object key, Object node )
+    {
+    Entry e = lowerBound( hash, key );
+
+    while ( e != null && e.node != node )
+      e = successor( e );
+
+    if ( e == null )
+      return null;
+
+    Entry previous = predecessor( e );
+    Object result = previous == null ? null : previous.node;
+    delete( e );
+    return result;
+    }
+
+  private int compare( Entry e, int hash, Object key )
+    {
+    if ( e.hash != hash )
+      return e.hash < hash ? -1 : 1;
+
+    if ( ordering.execute( e.key, key ) )
+      return -1;
+
+    if ( ordering.execute( key, e.key ) )
+      return 1;
+
+    return 0;
+    }
+
+  private Entry lowerBound( int hash, Object key )
+    {
+    Entry result = null;
+
+    for ( Entry e = root; e != null; )
+      if ( compare( e, hash, key ) < 0 )
+        {
+        e = e.right;
+        }
+      else
+        {
+        result = e;
+        e = e.left;
+        }
+
+    return result;
+    }
+
+  private static Entry successor( Entry e )
+    {
+    if ( e.right != null )
+      {
+      e = e.right;
+
+      while ( e.left != null )
+        e = e.left;
+
+      return e;
+      }
+
+    Entry parent = e.parent;
+
+    while ( parent != null && e == parent.right )
+      {
+      e = parent;
+      parent = parent.parent;
+      }
+
+    return parent;
+    }
+
+  private static Entry predecessor( Entry e )
+    {
+    if ( e.left != null )
+      {
+      e = e.left;
+
+      while ( e.right != null )
+        e = e.right;
+
+      return e;
+      }
+
+    Entry parent = e.parent;
+
+    while ( parent != null && e == parent.left )
+      {
+      e = parent;
+      parent = parent.parent;
+      }
+
+    return parent;
+    }
+
+  private void delete( Entry p )
+    {
+    --size;
+
+    // An internal entry takes over the contents of its successor, which is
+    // then removed instead. Entries are never referenced from outside.
+    if ( p.left != null && p.right != null )
+      {
+      Entry s = successor( p );
+      p.hash = s.hash;
+      p.key = s.key;
+      p.node = s.node;
+      p = s;
+      }
+
+    Entry replacement = p.left != null ? p.left : p.right;
+
+    if ( replacement != null )
+      {
+      replacement.parent = p.parent;
+
+      if ( p.parent == null )
+        root = replacement;
+      else if ( p == p.parent.left )
+        p.parent.left = replacement;
+      else
+        p.parent.right = replacement;
+
+      p.left = p.right = p.parent = null;
+
+      if ( !p.red )
+        fixAfterDeletion( replacement );
+      }
+    else if ( p.parent == null )
+      {
+      root = null;
+      }
+    else
+      {
+      if ( !p.red )
+        fixAfterDeletion( p );
+
+      if ( p.parent != null )
+        {
+        if ( p == p.parent.left )
+          p.parent.left = null;
+        else if ( p == p.parent.right )
+          p.parent.right = null;
+
+        p.parent = null;
+        }
+      }
+    }
+
+  private void fixAfterInsertion( Entry x )
+    {
+    x.red = true;
+
+    while ( x != root && x.parent.red )
+      {
+      Entry grandparent = parentOf( parentOf( x ) );
+
+      if ( parentOf( x ) == leftOf( grandparent ) )
+        {
+        Entry y = rightOf( grandparent );
+
+        if ( isRed( y ) )
+          {
+          setRed( parentOf( x ), false );
+          setRed( y, false );
+          setRed( grandparent, true );
+          x = grandparent;
+          }
+        else
+          {
+          if ( x == rightOf( parentOf( x ) ) )
+            {
+            x = parentOf( x );
+            rotateLeft( x );
+            }
+
+          setRed( parentOf( x ), false );
+          setRed( parentOf( parentOf( x ) ), true );
+          rotateRight( parentOf( parentOf( x ) ) );
+          }
+        }
+      else
+        {
+        Entry y = leftOf( grandparent );
+
+        if ( isRed( y ) )
+          {
+          setRed( parentOf( x ), false );
+          setRed( y, false );
+          setRed( grandparent, true );
+          x = grandparent;
+          }
+        else
+          {
+          if ( x == leftOf( parentOf( x ) ) )
+            {
+            x = parentOf( x );
+            rotateRight( x );
+            }
+
+          setRed( parentOf( x ), false );
+          setRed( parentOf( parentOf( x ) ), true );
+          rotateLeft( parentOf( parentOf( x ) ) );
+          }
+        }
+      }
+
+    root.red = false;
+    }
+
+  private void fixAfterDeletion( Entry x )
+    {
+    while ( x != root && !isRed( x ) )
+      {
+      if ( x == leftOf( parentOf( x ) ) )
+        {
+        Entry sibling = rightOf( parentOf( x ) );
+
+        if ( isRed( sibling ) )
+          {
+          setRed( sibling, false );
+          setRed( parentOf( x ), true );
+          rotateLeft( parentOf( x ) );
+          sibling = rightOf( parentOf( x ) );
+          }
+
+        if ( !isRed( leftOf( sibling ) ) && !isRed( rightOf( sibling ) ) )
+          {
+          setRed( sibling, true );
+          x = parentOf( x );
+          }
+        else
+          {
+          if ( !isRed( rightOf( sibling ) ) )
+            {
+            setRed( leftOf( sibling ), false );
+            setRed( sibling, true );
+            rotateRight( sibling );
+            sibling = rightOf( parentOf( x ) );
+            }
+
+          setRed( sibling, isRed( parentOf( x ) ) );
+          setRed( parentOf( x ), false );
+          setRed( rightOf( sibling ), false );
+          rotateLeft( parentOf( x ) );
+          x = root;
+          }
+        }
+      else
+        {
+        Entry sibling = leftOf( parentOf( x ) );
+
+        if ( isRed( sibling ) )
+          {
+          setRed( sibling, false );
+          setRed( parentOf( x ), true );
+          rotateRight( parentOf( x ) );
+          sibling = leftOf( parentOf( x ) );
+          }
+
+        if ( !isRed( rightOf( sibling ) ) && !isRed( leftOf( sibling ) ) )
+          {
+          setRed( sibling, true );
+          x = parentOf( x );
+          }
+        else
+          {
+          if ( !isRed( leftOf( sibling ) ) )
+            {
+            setRed( rightOf( sibling ), false );
+            setRed( sibling, true );
+            rotateLeft( sibling );
+            sibling = leftOf( parentOf( x ) );
+            }
+
+          setRed( sibling, isRed( parentOf( x ) ) );
+          setRed( parentOf( x ), false );
+          setRed( leftOf( sibling ), false );
+          rotateRight( parentOf( x ) );
+          x = root;
+          }
+        }
+      }
+
+    setRed( x, false );
+    }
+
+  private void rotateLeft( Entry p )
+    {
+    if ( p == null )
+      return;
+
+    Entry r = p.right;
+    p.right = r.left;
+
+    if ( r.left != null )
+      r.left.parent = p;
+
+    r.parent = p.parent;
+
+    if ( p.parent == null )
+      root = r;
+    else if ( p.parent.left == p )
+      p.parent.left = r;
+    else
+      p.parent.right = r;
+
+    r.left = p;
+    p.parent = r;
+    }
+
+  private void rotateRight( Entry p )
+    {
+    if ( p == null )
+      return;
+
+    Entry l = p.left;
+    p.left = l.right;
+
+    if ( l.right != null )
+      l.right.parent = p;
+
+    l.parent = p.parent;
+
+    if ( p.parent == null )
+      root = l;
+    else if ( p.parent.right == p )
+      p.parent.right = l;
+    else
+      p.parent.left = l;
+
+    l.right = p;
+    p.parent = l;
+    }
+
+  private static boolean isRed( Entry e )
+    {
+    return e != null && e.red;
+    }
+
+  private static void setRed( Entry e, boolean red )
+    {
+    if ( e != null )
+      e.red = red;
+    }
+
+  private static Entry parentOf( Entry e )
+    {
+    return e == null ? null : e.parent;
+    }
+
+  private static Entry leftOf( Entry e )
+    {
+    return e == null ? null : e.left;
+    }
+
+  private static Entry rightOf( Entry e )
+    {
+    return e == null ? null : e.right;
+    }
+
+  static final class Entry
+    {
+    int hash;
+    Object key;
+    Object node; // the chain node that I index.
+    Entry left;
+    Entry right;
+    Entry parent;
+    boolean red;
+
+    Entry( int hash, Object key, Object node )
+      {
+      this.hash = hash;
+      this.key = key;
+      this.node = node;
+      }
+    }
+  }
@@ -18,11 +18,33 @@ import java.io.IOException;
  * A HashMap is useful for implementing a collection of one-to-one or
  * one-to-many mappings.
  * <p>
+ * By default a key's bucket is found by dividing its hash code by the number of
+ * buckets. If a HashSpreader is installed, the number of buckets is kept at a
+ * power of two and the spread hash code is masked instead, which is cheaper and
+ * copes better with regular hash codes such as those of sequential Integers.
+ * <p>
+ * Hash codes are obtained from hashCode() unless a Hasher is installed, which
+ * allows a cheaper or stronger hash to be used for a particular container.
+ * <p>
+ * Expansion normally redistributes every pair at once. If an expansion step is
+ * set, the old buckets are kept alongside the new ones after an expansion and a
+ * bounded number of them are migrated by each subsequent insertion or removal,
+ * so that no single operation pays for the whole redistribution.
+ * <p>
+ * If a collision ordering is set, a chain that grows long because many keys
+ * share a hash code is indexed by a balanced tree, which keeps lookups
+ * logarithmic even when the hash codes are chosen by an adversary.
+ * <p>
+ * If a filter is enabled, the hash codes of my keys are also summarized by a
+ * BloomFilter, which rejects most lookups and removals of keys that I do not
+ * contain without touching my buckets at all.
+ * <p>
  * Insertion can invalidate iterators.
  * <p>
  * Removal can invalidate iterators.
  * <p>
  * @see BinaryPredicate
+ * @see BloomFilter
  * @see com.objectspace.jgl.examples.HashMapExamples
  * @version 3.1.0
  * @author ObjectSpace, Inc.
@@ -32,6 +54,8 @@ public class HashMap extends Map
   {
   static final int DEFAULT_SIZE = 257;
   static final float DEFAULT_RATIO = 0.75F;
+  static final int TREEIFY_THRESHOLD = 8; // longer chains are treeified.
+  static final int UNTREEIFY_THRESHOLD = 6; // smaller trees are discarded.
 
   BinaryPredicate comparator;
   boolean allowDups; // does the map allow duplicate keys?
@@ -41,6 +65,17 @@ public class HashMap extends Map
   int length; // buckets.length, cached for speed.
   int limit;
   float ratio;
+  HashSpreader spreader; // non-null if the number of buckets is a power of two.
+  Hasher hasher; // hashes my keys instead of hashCode(), or null.
+  int expansionStep; // # old buckets to migrate per mutation, 0 if expansion is not incremental.
+  float shrinkRatio; // shrink when my load falls below this, or 0 if I never shrink automatically.
+  transient HashMapNode[] oldBuckets; // buckets still being migrated, or null.
+  transient int oldLength; // oldBuckets.length, cached for speed.
+  transient int migrated; // old buckets before this index have been migrated.
+  BinaryPredicate ordering; // orders the keys of long chains, or null if chains are never treeified.
+  transient HashBucketTree[] trees; // the trees of my treeified buckets, or null.
+  transient HashBucketTree[] oldTrees; // the trees of my old treeified buckets, or null.
+  BloomFilter filter; // summarizes the hash codes of my keys, or null.
 
   /**
    * Construct myself to be an empty HashMap that compares key using equals() and
@@ -113,6 +148,23 @@ public class HashMap extends Map
     allowDups = allowDuplicates;
     }
 
+  /**
+   * Construct myself to be an empty HashMap that compares keys using the specified
+   * binary predicate and conditionally allows duplicates. Buckets are selected by
+   * masking hash codes that are mixed by the specified spreader, so the initial
+   * number of buckets is rounded up to a power of two.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @param spreader The spreader used to mix hash codes, or null to select buckets by division.
+   */
+  public HashMap( BinaryPredicate comparator, boolean allowDuplicates, int capacity, float loadRatio, HashSpreader spreader )
+    {
+    this( comparator, allowDuplicates, spreader == null ? capacity : powerOfTwo( capacity ), loadRatio );
+    this.spreader = spreader;
+    }
+
   /**
    * Construct myself to be a shallow copy of an existing HashMap.
    * @param map The HashMap to copy.
@@ -167,30 +219,19 @@ public class HashMap extends Map
       ratio = map.ratio;
       limit = map.limit;
       size = map.size();
-      buckets = new HashMapNode[ length ];
+      buckets = copyBuckets( map.buckets );
+      oldLength = map.oldLength;
+      oldBuckets = map.oldBuckets == null ? null : copyBuckets( map.oldBuckets );
+      migrated = map.migrated;
+      expansionStep = map.expansionStep;
+      shrinkRatio = map.shrinkRatio;
       allowDups = map.allowDups;
-
-      for ( int i = 0; i < length; i++ )
-        {
-        HashMapNode oldNode = null;
-        HashMapNode node = map.buckets[ i ];
-
-        while ( node != null )
-          {
-          HashMapNode newNode = new HashMapNode();
-          newNode.key = node.key;
-          newNode.value = node.value;
-          newNode.hash = node.hash;
-
-          if ( buckets[ i ] == null )
-            buckets[ i ] = newNode;
-          else
-            oldNode.next = newNode;
-
-          oldNode = newNode;
-          node = node.next;
-          }
-        }
+      spreader = map.spreader;
+      hasher = map.hasher;
+      ordering = map.ordering;
+      trees = ordering == null ? null : treeifyAll( buckets );
+      oldTrees = ordering == null || oldBuckets == null ? null : treeifyAll( oldBuckets );
+      filter = map.filter == null ? null : new BloomFilter( map.filter );
       }
     }
 
@@ -277,32 +318,24 @@ public class HashMap extends Map
 
   /**
    * Return true if I contain exactly the same key/value pairs as another HashMap.
-   * Use equals() to compare values.
+   * Use equals() to compare values. If duplicates are allowed, the values of each
+   * key are compared as an unordered collection, in linear time.
    * @param map The HashMap to compare myself against.
    */
   public synchronized boolean equals( HashMap map )
     {
     synchronized( map )
       {
-      if ( size() != map.size() )
+      if ( size() != map.size() || !sameBuckets( map ) )
         return false;
 
       if ( allowDups )
         {
-        Object previous = null;
-
-        for ( HashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
-          {
-          Object key = iterator.key();
+        if ( !sameRuns( buckets, 0, length, map ) )
+          return false;
 
-          // Execute the following code for each unique key in the source.
-          if ( previous == null || !key.equals( previous ) )
-            {
-            previous = key;
-            if ( !same( values( key ), map.values( key ) ) )
-              return false;
-            }
-          }
+        if ( oldBuckets != null && !sameRuns( oldBuckets, migrated, oldLength, map ) )
+          return false;
         }
       else
         {
@@ -358,6 +391,50 @@ public class HashMap extends Map
       boolean tmpDups = allowDups;
       allowDups = map.allowDups;
       map.allowDups = tmpDups;
+
+      HashSpreader tmpSpreader = spreader;
+      spreader = map.spreader;
+      map.spreader = tmpSpreader;
+
+      Hasher tmpHasher = hasher;
+      hasher = map.hasher;
+      map.hasher = tmpHasher;
+
+      int tmpStep = expansionStep;
+      expansionStep = map.expansionStep;
+      map.expansionStep = tmpStep;
+
+      float tmpShrinkRatio = shrinkRatio;
+      shrinkRatio = map.shrinkRatio;
+      map.shrinkRatio = tmpShrinkRatio;
+
+      HashMapNode[] tmpOldBuckets = oldBuckets;
+      oldBuckets = map.oldBuckets;
+      map.oldBuckets = tmpOldBuckets;
+
+      int tmpOldLength = oldLength;
+      oldLength = map.oldLength;
+      map.oldLength = tmpOldLength;
+
+      int tmpMigrated = migrated;
+      migrated = map.migrated;
+      map.migrated = tmpMigrated;
+
+      BinaryPredicate tmpOrdering = ordering;
+      ordering = map.ordering;
+      map.ordering = tmpOrdering;
+
+      HashBucketTree[] tmpTrees = trees;
+      trees = map.trees;
+      map.trees = tmpTrees;
+
+      HashBucketTree[] tmpOldTrees = oldTrees;
+      oldTrees = map.oldTrees;
+      map.oldTrees = tmpOldTrees;
+
+      BloomFilter tmpFilter = filter;
+      filter = map.filter;
+      map.filter = tmpFilter;
       }
     }
 
@@ -367,7 +444,13 @@ public class HashMap extends Map
   public synchronized void clear()
     {
     buckets = new HashMapNode[ length ];
+    oldBuckets = null;
+    trees = null;
+    oldTrees = null;
     size = 0;
+
+    if ( filter != null )
+      filter.clear();
     }
 
   /**
@@ -396,8 +479,15 @@ public class HashMap extends Map
     {
     if ( maximum > 0 )
       {
-      int hash = key.hashCode() & 0x7FFFFFFF;
-      int probe = hash % length;
+      int hash = hash( key );
+
+      if ( filter != null && !filter.mightContain( hash ) )
+        return new Pair( null, new Integer( 0 ) );
+
+      int probe = migrate( hash );
+
+      if ( trees != null && trees[ probe ] != null )
+        return removeAux( probe, key, hash, maximum );
 
       for ( HashMapNode node = buckets[ probe ], previous = null; node != null; previous = node, node = node.next )
         if ( node.hash == hash && comparator.execute( node.key, key ) )
@@ -407,11 +497,13 @@ public class HashMap extends Map
 
           HashMapNode end = node.next;
           Object value = node.value; // we only want the first one.
+          removed( node );
 
           if ( allowDups )
             {
             while ( maximum > 0 && end != null && end.hash == hash && comparator.execute( end.key, key ) )
               {
+              removed( end );
               ++count;
               --maximum;
               end = end.next;
@@ -424,6 +516,7 @@ public class HashMap extends Map
             previous.next = end;
 
           size -= count;
+          shrink();
           return new Pair( value, new Integer( count ) );
           }
       }
@@ -445,22 +538,51 @@ public class HashMap extends Map
     if ( ((HashMapIterator)e).myHashMap != this )
       throw new IllegalArgumentException( "Enumeration not for this HashMap" );
 
-    HashMapNode target = ( (HashMapIterator)e ).myNode;
-    int probe = target.hash % length;
-    HashMapNode node = buckets[ probe ];
+    Object result = removeAux( ( (HashMapIterator)e ).myNode );
+    shrink();
+    return result;
+    }
+
+  private Object removeAux( HashMapNode target )
+    {
+    HashMapNode[] table = buckets;
+    HashBucketTree[] tableTrees = trees;
+    int probe = bucket( target.hash, length );
+
+    // The target has not been migrated if its old bucket is still in use.
+    if ( oldBuckets != null && oldBuckets[ bucket( target.hash, oldLength ) ] != null )
+      {
+      table = oldBuckets;
+      tableTrees = oldTrees;
+      probe = bucket( target.hash, oldLength );
+      }
 
-    if ( target == node )
+    if ( tableTrees != null && tableTrees[ probe ] != null )
       {
-      buckets[ probe ] = target.next;
+      HashBucketTree tree = tableTrees[ probe ];
+      unlink( table, probe, (HashMapNode)tree.remove( target.hash, target.key, target ), target.next );
+
+      if ( tree.size() < UNTREEIFY_THRESHOLD )
+        tableTrees[ probe ] = null;
       }
     else
       {
-      while ( node.next != target )
-        node = node.next;
+      HashMapNode node = table[ probe ];
+
+      if ( target == node )
+        {
+        table[ probe ] = target.next;
+        }
+      else
+        {
+        while ( node.next != target )
+          node = node.next;
 
-      node.next = target.next;
+        node.next = target.next;
+        }
       }
 
+    removed( target );
     --size;
     return target == null
       ? null
@@ -493,10 +615,12 @@ public class HashMap extends Map
       {
       HashMapIterator next = new HashMapIterator( begin );
       next.advance();
-      remove( begin );
+      removeAux( begin.myNode );
       begin = next;
       ++count;
       }
+
+    shrink();
     return count;
     }
 
@@ -507,11 +631,12 @@ public class HashMap extends Map
    */
   public synchronized HashMapIterator find( Object key )
     {
-    int hash = key.hashCode() & 0x7FFFFFFF;
+    int hash = hash( key );
 
-    for ( HashMapNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.key, key ) )
-        return new HashMapIterator( node, this, HashMapIterator.PAIR );
+    HashMapNode node = lookup( key, hash );
+
+    if ( node != null )
+      return new HashMapIterator( node, this, HashMapIterator.PAIR );
 
     return new HashMapIterator( null, this, HashMapIterator.PAIR );
     }
@@ -522,31 +647,22 @@ public class HashMap extends Map
    */
   public synchronized int count( Object key )
     {
-    int hash = key.hashCode() & 0x7FFFFFFF;
+    int hash = hash( key );
 
-    for ( HashMapNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.key, key ) )
-        {
-        if ( allowDups )
-          {
-          int n = 1;
-          node = node.next;
+    HashMapNode node = lookup( key, hash );
 
-          while ( node != null && hash == node.hash && comparator.execute( node.key, key ) )
-            {
-            ++n;
-            node = node.next;
-            }
+    if ( node == null )
+      return 0;
 
-          return n;
-          }
-        else
-          {
-          return 1;
-          }
-        }
+    if ( !allowDups )
+      return 1;
+
+    int n = 1;
 
-    return 0;
+    for ( node = node.next; node != null && hash == node.hash && comparator.execute( node.key, key ); node = node.next )
+      ++n;
+
+    return n;
     }
 
   /**
@@ -569,13 +685,15 @@ public class HashMap extends Map
    */
   public synchronized Object get( Object key )
     {
-    int hash = key.hashCode() & 0x7FFFFFFF;
+    int hash = hash( key );
 
-    for ( HashMapNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.key, key ) )
-        return node.value;
+    HashMapNode node = lookup( key, hash );
 
-    return null;
+    if ( node == null )
+      return null;
+
+    accessed( node );
+    return node.value;
     }
 
   /**
@@ -586,31 +704,43 @@ public class HashMap extends Map
    * @exception NullPointerException If the key or value are equal to null
    */
   public synchronized Object put( Object key, Object value )
+    {
+    return putAux( key, value );
+    }
+
+  Object putAux( Object key, Object value )
     {
     if ( key == null || value == null )
       throw new NullPointerException();
 
-    int hash = key.hashCode() & 0x7FFFFFFF;
-    int probe = hash % length;
+    int hash = hash( key );
+    int probe = migrate( hash );
+
+    if ( trees != null && trees[ probe ] != null )
+      return addToTree( probe, key, value, hash, true );
 
     // find if key already exists first
     for ( HashMapNode node = buckets[ probe ]; node != null; node = node.next )
       if ( hash == node.hash && comparator.execute( node.key, key ) )
         {
         // replace old version & return it
-        node.key = key;
+        Object previousKey = node.key;
         Object previous = node.value;
+        node.key = key;
         node.value = value;
+        replaced( node, previousKey, previous );
+        accessed( node );
         return previous;
         }
 
     // key doesn't exists, add appropriately
-    HashMapNode newNode = new HashMapNode();
-    newNode.key = key;
-    newNode.value = value;
-    newNode.hash = hash;
+    HashMapNode newNode = createNode( key, value, hash, null );
     newNode.next = buckets[ probe ];
     buckets[ probe ] = newNode;
+    added( hash );
+
+    if ( ordering != null )
+      treeify( probe );
 
     if ( ++size > limit )
       expand();
@@ -652,12 +782,20 @@ public class HashMap extends Map
    * @exception NullPointerException If the key or value is null.
    */
   public synchronized Object add( Object key, Object value )
+    {
+    return addAux( key, value );
+    }
+
+  Object addAux( Object key, Object value )
     {
     if ( key == null || value == null )
       throw new NullPointerException();
 
-    int hash = key.hashCode() & 0x7FFFFFFF;
-    int probe = hash % length;
+    int hash = hash( key );
+    int probe = migrate( hash );
+
+    if ( trees != null && trees[ probe ] != null )
+      return addToTree( probe, key, value, hash, false );
 
     // find if key already exists first
     for ( HashMapNode node = buckets[ probe ]; node != null; node = node.next )
@@ -666,12 +804,13 @@ public class HashMap extends Map
         if ( allowDups )
           {
           // duplicate key, add this pair to end and return success.
-          HashMapNode newNode = new HashMapNode();
-          newNode.key = key;
-          newNode.value = value;
-          newNode.hash = hash;
+          HashMapNode newNode = createNode( key, value, hash, node );
           newNode.next = node.next;
           node.next = newNode;
+          added( hash );
+
+          if ( ordering != null )
+            treeify( probe );
 
           if ( ++size > limit )
             expand();
@@ -681,17 +820,19 @@ public class HashMap extends Map
         else
           {
           // return the value of the key/value that already exists. DO NOT add
+          accessed( node );
           return node.value;
           }
         }
 
     // key doesn't exists, add appropriately
-    HashMapNode newNode = new HashMapNode();
-    newNode.key = key;
-    newNode.value = value;
-    newNode.hash = hash;
+    HashMapNode newNode = createNode( key, value, hash, null );
     newNode.next = buckets[ probe ];
     buckets[ probe ] = newNode;
+    added( hash );
+
+    if ( ordering != null )
+      treeify( probe );
 
     if ( ++size > limit )
       expand();
@@ -699,6 +840,147 @@ public class HashMap extends Map
     return null;
     }
 
+  /**
+   * Put every pair of a container into myself as if by put(). Room for all of
+   * the pairs is made before any of them are inserted.
+   * @param container A container of Pairs.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void putAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    ensureCapacity( size + container.size() );
+    insert( container.start(), container.finish(), true );
+    }
+
+  /**
+   * Put every pair in a range into myself as if by put(). If the range is given
+   * by random access iterators, room for all of the pairs is made before any of
+   * them are inserted.
+   * @param first An iterator positioned at the first Pair to insert.
+   * @param last An iterator positioned immediately after the last Pair to insert.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void putAll( InputIterator first, InputIterator last )
+    {
+    if ( first instanceof RandomAccessIterator )
+      ensureCapacity( size + ( (RandomAccessIterator)first ).distance( (RandomAccessIterator)last ) );
+
+    insert( first, last, true );
+    }
+
+  /**
+   * Put every key in an array into myself with the value at the same index of
+   * another array, as if by put(). Room for all of the pairs is made before any
+   * of them are inserted.
+   * @param keys The keys.
+   * @param values The values.
+   * @exception IllegalArgumentException If the arrays have different lengths.
+   * @exception NullPointerException If a key or value is null.
+   */
+  public synchronized void putAll( Object[] keys, Object[] values )
+    {
+    if ( keys.length != values.length )
+      throw new IllegalArgumentException( "Arrays of keys and values have different lengths" );
+
+    ensureCapacity( size + keys.length );
+
+    for ( int i = 0; i < keys.length; i++ )
+      putAux( keys[ i ], values[ i ] );
+    }
+
+  /**
+   * Add every pair of a container to myself as if by add(). Room for all of
+   * the pairs is made before any of them are inserted.
+   * @param container A container of Pairs.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void addAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    ensureCapacity( size + container.size() );
+    insert( container.start(), container.finish(), false );
+    }
+
+  /**
+   * Add every pair in a range to myself as if by add(). If the range is given
+   * by random access iterators, room for all of the pairs is made before any of
+   * them are inserted.
+   * @param first An iterator positioned at the first Pair to insert.
+   * @param last An iterator positioned immediately after the last Pair to insert.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void addAll( InputIterator first, InputIterator last )
+    {
+    if ( first instanceof RandomAccessIterator )
+      ensureCapacity( size + ( (RandomAccessIterator)first ).distance( (RandomAccessIterator)last ) );
+
+    insert( first, last, false );
+    }
+
+  /**
+   * Add every key in an array to myself with the value at the same index of
+   * another array, as if by add(). Room for all of the pairs is made before any
+   * of them are inserted.
+   * @param keys The keys.
+   * @param values The values.
+   * @exception IllegalArgumentException If the arrays have different lengths.
+   * @exception NullPointerException If a key or value is null.
+   */
+  public synchronized void addAll( Object[] keys, Object[] values )
+    {
+    if ( keys.length != values.length )
+      throw new IllegalArgumentException( "Arrays of keys and values have different lengths" );
+
+    ensureCapacity( size + keys.length );
+
+    for ( int i = 0; i < keys.length; i++ )
+      addAux( keys[ i ], values[ i ] );
+    }
+
+  private void insert( InputIterator first, InputIterator last, boolean replace )
+    {
+    if ( first instanceof HashMapIterator && ( (HashMapIterator)first ).myMode == HashMapIterator.PAIR )
+      {
+      // Read the pairs of another HashMap in place rather than as new Pairs.
+      for ( HashMapIterator i = new HashMapIterator( (HashMapIterator)first ); !i.equals( last ); i.advance() )
+        if ( replace )
+          putAux( i.key(), i.value() );
+        else
+          addAux( i.key(), i.value() );
+
+      return;
+      }
+
+    InputIterator iterator = (InputIterator)first.clone();
+
+    while ( !iterator.equals( last ) )
+      {
+      Object object = iterator.nextElement();
+
+      if ( object == null )
+        throw new NullPointerException();
+
+      if ( !( object instanceof Pair ) )
+        throw new IllegalArgumentException( "object is not pair" );
+
+      Pair pair = (Pair)object;
+
+      if ( replace )
+        putAux( pair.first, pair.second );
+      else
+        addAux( pair.first, pair.second );
+      }
+    }
+
   /**
    * Return an Enumeration of all my keys.
    */
@@ -742,6 +1024,19 @@ public class HashMap extends Map
     return array.elements();
     }
 
+  /**
+   * Apply a function to the key and value of each of my pairs in iteration
+   * order. No Pair is created for any of them, so scanning even a very large
+   * map this way allocates nothing. The result of the function is ignored, and
+   * the function must not modify me.
+   * @param function A function that takes a key and its value.
+   */
+  public synchronized void forEachEntry( BinaryFunction function )
+    {
+    for ( HashMapNode node = first(); node != null; node = successor( node ) )
+      function.execute( node.key, node.value );
+    }
+
   /**
    * Return an iterator positioned at the first location that a
    * pair with a specified key could be inserted without violating the ordering
@@ -775,37 +1070,75 @@ public class HashMap extends Map
    */
   public synchronized Range equalRange( Object key )
     {
-    int hash = key.hashCode() & 0x7FFFFFFF;
+    int hash = hash( key );
 
-    for ( HashMapNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.key, key ) )
-        {
-        HashMapNode begin = node;
-        node = node.next == null ? next( node ) : node.next;  // fixed 8/9/96 pdj
+    HashMapNode node = lookup( key, hash );
 
-        while ( node != null && hash == node.hash && comparator.execute( node.key, key ) )
-          node = node.next == null ? next( node ) : node.next;
+    if ( node != null )
+      {
+      HashMapNode begin = node;
+      node = successor( node );  // fixed 8/9/96 pdj
 
-        return new Range( new HashMapIterator( begin, this, HashMapIterator.PAIR ),
-                          new HashMapIterator( node, this, HashMapIterator.PAIR ) );
-        }
+      while ( node != null && hash == node.hash && comparator.execute( node.key, key ) )
+        node = successor( node );
+
+      return new Range( new HashMapIterator( begin, this, HashMapIterator.PAIR ),
+                        new HashMapIterator( node, this, HashMapIterator.PAIR ) );
+      }
 
     return new Range( end(), end() );
     }
 
-  private HashMapNode first()
+  /**
+   * Return my first node. While an expansion is being migrated, the nodes
+   * that are still in the old buckets come first.
+   */
+  HashMapNode first()
     {
     if ( size > 0 )
+      {
+      if ( oldBuckets != null )
+        for ( int i = migrated; i < oldLength; i++ )
+          if ( oldBuckets[ i ] != null )
+            return oldBuckets[ i ];
+
       for ( int i = 0; i < length; i++ )
         if ( buckets[ i ] != null )
           return buckets[ i ];
+      }
 
     return null;
     }
 
-  private HashMapNode next( HashMapNode node )
+  /**
+   * Return the node that follows a node in my iteration order, or null.
+   */
+  HashMapNode successor( HashMapNode node )
+    {
+    return node.next != null ? node.next : next( node );
+    }
+
+  /**
+   * Return the node that follows the last node of a chain.
+   */
+  HashMapNode next( HashMapNode node )
     {
-    for ( int i = ( node.hash % length ) + 1; i < length; i++ )
+    int i;
+
+    if ( oldBuckets != null && oldBuckets[ i = bucket( node.hash, oldLength ) ] != null )
+      {
+      while ( ++i < oldLength )
+        if ( oldBuckets[ i ] != null )
+          return oldBuckets[ i ];
+
+      i = -1;
+      }
+    else
+      {
+      i = bucket( node.hash, length );
+      }
+
+    while ( ++i < length )
       if ( buckets[ i ] != null )
         return buckets[ i ];
 
@@ -813,126 +1146,842 @@ public class HashMap extends Map
     }
 
   /**
-   * Return true if adding an object to myself could result in an expansion
-   * of the number of hash buckets I currently use.
+   * Return a new node for a pair. The match is a node with an equal key, or
+   * null if the key is new. Subclasses that thread their nodes override this.
    */
-  public boolean expansionAllowed()
+  HashMapNode createNode( Object key, Object value, int hash, HashMapNode match )
     {
-    return expandActive;
+    HashMapNode node = new HashMapNode();
+    node.key = key;
+    node.value = value;
+    node.hash = hash;
+    return node;
     }
 
   /**
-   * Enable or disable the current expansion mode.  If disabled, no new
-   * hash buckets will ever be created regardless of my size.
-   * @param allow The new expansion mode.
+   * Called after a node has been unlinked from its chain.
    */
-  public synchronized void allowExpansion( boolean allow )
+  void removed( HashMapNode node )
     {
-    expandActive = allow;
     }
 
   /**
-   * Return the number of new buckets to create when expanding the
-   * collection.  The number returned must be positive, and should be
-   * greater than the current bucket size. It is advisable to have
-   * the new size be prime (or have few divisors less than 20) for
-   * the best hash distribution.
-   * @param length The current number of buckets.
-   * @return length * 2 + 1
+   * Called after the key or value of a node has been replaced, with the key and
+   * value that it held before.
    */
-  protected int nextBucketSize( int length )
+  void replaced( HashMapNode node, Object key, Object value )
     {
-    return length * 2 + 1;
     }
 
-  private void expand()
+  /**
+   * Called after the value of a node has been retrieved or replaced by its key.
+   */
+  void accessed( HashMapNode node )
     {
-    if ( !expansionAllowed() )
-      return;
+    }
 
-    int newLength = nextBucketSize( length );
-    HashMapNode[] newBuckets = new HashMapNode[ newLength ];
+  /**
+   * Return the first node that matches a given key, or null if there is none.
+   */
+  final HashMapNode lookup( Object key, int hash )
+    {
+    if ( filter == null )
+      return search( key, hash );
 
-    for ( int i = 0; i < length; i++ )
-      {
-      HashMapNode node = buckets[ i ];
+    if ( !filter.mightContain( hash ) )
+      return null;
 
-      while ( node != null )
-        {
-        HashMapNode current = node;
-        node = node.next;
-        int probe = current.hash % newLength;
-        current.next = newBuckets[ probe ];
-        newBuckets[ probe ] = current;
-        }
-      }
+    HashMapNode node = search( key, hash );
 
-    buckets = newBuckets;
-    length = newLength;
-    limit = (int)( length * ratio );
+    if ( node == null )
+      filter.falsePositive();
+
+    return node;
     }
 
-  private boolean same( Enumeration src, Enumeration dst )
+  private HashMapNode search( Object key, int hash )
     {
-    Array srcValues = new Array();
-    Array dstValues = new Array();
+    HashMapNode[] table = buckets;
+    HashBucketTree[] tableTrees = trees;
+    int probe = bucket( hash, length );
 
-    while ( src.hasMoreElements() )
-      srcValues.add( src.nextElement() );
-
-    while ( dst.hasMoreElements() )
-      dstValues.add( dst.nextElement() );
-
-    if ( srcValues.size() != dstValues.size() )
-      return false;
-
-    for ( int i = 0; i < srcValues.size(); i++ )
+    if ( oldBuckets != null && oldBuckets[ bucket( hash, oldLength ) ] != null )
       {
-      Object x = srcValues.at( i );
-      int srcCount = 0;
-      int dstCount = 0;
+      table = oldBuckets;
+      tableTrees = oldTrees;
+      probe = bucket( hash, oldLength );
+      }
 
-      // Count the number of times 'x' occurs in each array of values.
-      for ( int j = 0; j < dstValues.size(); j++ )
-        {
-        if ( srcValues.at( j ).equals( x ) )
-          ++srcCount;
+    if ( tableTrees != null && tableTrees[ probe ] != null )
+      return (HashMapNode)tableTrees[ probe ].find( hash, key, comparator );
 
-        if ( dstValues.at( j ).equals( x ) )
-          ++dstCount;
-        }
+    for ( HashMapNode node = table[ probe ]; node != null; node = node.next )
+      if ( hash == node.hash && comparator.execute( node.key, key ) )
+        return node;
 
-      if ( srcCount != dstCount )
-        return false;
-      }
+    return null;
+    }
 
-    return true;
+  /**
+   * Return my hash spreader, or null if I select buckets by division.
+   */
+  public HashSpreader getSpreader()
+    {
+    return spreader;
     }
 
-  private void size( int newsize )
+  /**
+   * Change the way that I select hash buckets. If the spreader is not null, my
+   * number of buckets is rounded up to a power of two and a bucket is selected
+   * by masking the spread hash code of a key. If the spreader is null, buckets
+   * are selected by dividing the hash code by the number of buckets, which is
+   * the default. My pairs are redistributed immediately.
+   * @param spreader The new spreader, or null.
+   */
+  public synchronized void setSpreader( HashSpreader spreader )
     {
-    size = newsize;
+    this.spreader = spreader;
+    rehash( spreader == null ? length : powerOfTwo( length ), true );
     }
 
-  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+  /**
+   * Change the way that I select hash buckets to a power-of-two number of
+   * buckets using the default spreader.
+   */
+  public void setSpreader()
     {
-    stream.defaultWriteObject();
-    stream.writeInt( size );
-    Enumeration iter = begin();
-    while ( iter.hasMoreElements() )
-      stream.writeObject( iter.nextElement() );
+    setSpreader( new xSpreader() );
     }
 
-  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+  /**
+   * Return my hasher, or null if I hash my keys using hashCode().
+   */
+  public Hasher getHasher()
     {
-    stream.defaultReadObject();
-    buckets = new HashMapNode[ length ];
+    return hasher;
+    }
+
+  /**
+   * Change the way that I compute the hash codes of my keys. The hasher must
+   * return the same hash code for any two keys that match according to my
+   * comparator. If the hasher is null, which is the default, the hashCode()
+   * method of each key is used. My pairs are redistributed immediately.
+   * @param hasher The new hasher, or null.
+   */
+  public synchronized void setHasher( Hasher hasher )
+    {
+    this.hasher = hasher;
+    rehash( length, true );
+    }
+
+  /**
+   * Return the ordering that I use to treeify long chains, or null if my
+   * chains are never treeified.
+   */
+  public BinaryPredicate getCollisionOrdering()
+    {
+    return ordering;
+    }
+
+  /**
+   * Change the ordering that I use to treeify long chains. Once a chain holds
+   * more than eight pairs, they are also indexed by a balanced tree ordered by
+   * hash code and then by the ordering, so that a key whose hash code is
+   * shared by many others is still found in logarithmic time. The tree is
+   * discarded when its chain shrinks below six pairs. The ordering must be a
+   * strict ordering under which keys that match according to my comparator
+   * are equivalent. If the ordering is null, which is the default, my chains
+   * are never treeified.
+   * @param ordering The new ordering, or null.
+   */
+  public synchronized void setCollisionOrdering( BinaryPredicate ordering )
+    {
+    this.ordering = ordering;
+    trees = ordering == null ? null : treeifyAll( buckets );
+    oldTrees = ordering == null || oldBuckets == null ? null : treeifyAll( oldBuckets );
+    }
+
+  /**
+   * Return true if adding an object to myself could result in an expansion
+   * of the number of hash buckets I currently use.
+   */
+  public boolean expansionAllowed()
+    {
+    return expandActive;
+    }
+
+  /**
+   * Enable or disable the current expansion mode.  If disabled, no new
+   * hash buckets will ever be created regardless of my size.
+   * @param allow The new expansion mode.
+   */
+  public synchronized void allowExpansion( boolean allow )
+    {
+    expandActive = allow;
+    }
+
+  /**
+   * Make room for a specified number of pairs, so that I will not expand until
+   * I hold more than that many. This operation does not change the value
+   * returned by size(), and has no effect if expansion is disabled.
+   * @param n The number of pairs to make room for.
+   * @exception IllegalArgumentException If the specified number is negative.
+   */
+  public synchronized void ensureCapacity( int n )
+    {
+    if ( n < 0 )
+      throw new IllegalArgumentException( "Attempt to reserve a negative size." );
+
+    if ( n <= limit || !expansionAllowed() )
+      return;
+
+    int newLength = length;
+
+    while ( (int)( newLength * ratio ) < n && newLength < ( 1 << 30 ) )
+      newLength = spreader == null ? nextBucketSize( newLength ) : newLength * 2;
+
+    rehash( newLength, false );
+    }
+
+  /**
+   * Reduce my hash buckets to the fewest that can hold my pairs without an
+   * expansion, to save space and speed up iteration after many removals. This
+   * operation does not change the value returned by size(), and has no effect if
+   * expansion is disabled.
+   */
+  public synchronized void trimToSize()
+    {
+    if ( expansionAllowed() )
+      resize( size, ratio, 1 );
+    }
+
+  /**
+   * Return the load ratio below which I shrink automatically, or 0 if I never do.
+   */
+  public float getShrinkRatio()
+    {
+    return shrinkRatio;
+    }
+
+  /**
+   * Set the load ratio below which I shrink automatically after a removal. When
+   * my load falls below it, my hash buckets are reduced until my load is half of my
+   * maximum load ratio, but never to fewer than the default number of buckets.
+   * Since the shrink ratio may not exceed a quarter of the maximum load ratio, many
+   * pairs must be added or removed before my buckets change again. If the
+   * ratio is 0, which is the default, I never shrink automatically. Nor do I
+   * shrink if expansion is disabled.
+   * @param ratio The new shrink ratio.
+   * @exception IllegalArgumentException If the ratio is negative or exceeds a quarter
+   * of my maximum load ratio.
+   */
+  public synchronized void setShrinkRatio( float ratio )
+    {
+    if ( ratio < 0 || ratio > this.ratio / 4 )
+      throw new IllegalArgumentException( "Shrink ratio must be between 0 and a quarter of the load ratio" );
+
+    shrinkRatio = ratio;
+    shrink();
+    }
+
+  /**
+   * Return the BloomFilter that summarizes the hash codes of my keys, or null if I have none.
+   */
+  public BloomFilter getFilter()
+    {
+    return filter;
+    }
+
+  /**
+   * Place a BloomFilter in front of my lookups and removals, so that most of those
+   * for keys that I do not contain are rejected without searching my buckets.
+   * The filter is kept up to date as pairs are added, cleared with me, and
+   * rebuilt whenever my buckets are rehashed or removals have made it stale.
+   * @param falsePositiveRate The fraction of missing keys that the filter may let through.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public synchronized void enableFilter( double falsePositiveRate )
+    {
+    filter = new BloomFilter( Math.max( limit, size ), falsePositiveRate );
+    rebuildFilter();
+    }
+
+  /**
+   * Discard my BloomFilter, if any.
+   */
+  public synchronized void disableFilter()
+    {
+    filter = null;
+    }
+
+  /**
+   * Return the maximum number of old hash buckets that are migrated by each
+   * insertion or removal after an expansion, or 0 if expansion is not incremental.
+   */
+  public int getExpansionStep()
+    {
+    return expansionStep;
+    }
+
+  /**
+   * Set the maximum number of old hash buckets that are migrated by each
+   * insertion or removal after an expansion. If the step is 0, which is the
+   * default, an expansion redistributes all of my pairs at once. A step of 2
+   * or more finishes each migration before the next expansion is due.
+   * @param step The new expansion step.
+   * @exception IllegalArgumentException If the step is negative.
+   */
+  public synchronized void setExpansionStep( int step )
+    {
+    if ( step < 0 )
+      throw new IllegalArgumentException( "Attempt to set a negative expansion step" );
+
+    expansionStep = step;
+
+    if ( step == 0 )
+      finishExpansion();
+    }
+
+  /**
+   * Return true if the pairs in my old hash buckets are still being migrated
+   * after an incremental expansion.
+   */
+  public boolean isExpanding()
+    {
+    return oldBuckets != null;
+    }
+
+  /**
+   * Return the number of new buckets to create when expanding the
+   * collection.  The number returned must be positive, and should be
+   * greater than the current bucket size. It is advisable to have
+   * the new size be prime (or have few divisors less than 20) for
+   * the best hash distribution. This method is not used if I have a
+   * spreader, in which case the number of buckets is simply doubled.
+   * @param length The current number of buckets.
+   * @return length * 2 + 1
+   */
+  protected int nextBucketSize( int length )
+    {
+    return length * 2 + 1;
+    }
+
+  private void expand()
+    {
+    if ( !expansionAllowed() )
+      return;
+
+    int newLength = spreader == null ? nextBucketSize( length ) : length * 2;
+
+    if ( expansionStep == 0 )
+      {
+      rehash( newLength, false );
+      return;
+      }
+
+    finishExpansion();
+    oldBuckets = buckets;
+    oldTrees = trees;
+    oldLength = length;
+    migrated = 0;
+    buckets = new HashMapNode[ newLength ];
+    trees = null;
+    length = newLength;
+    limit = (int)( length * ratio );
+    }
+
+  /**
+   * Prepare to modify the chain for a given hash code by migrating its old
+   * bucket, then migrate up to the expansion step of the remaining old
+   * buckets. Return the bucket of the hash code in the current table.
+   */
+  private int migrate( int hash )
+    {
+    if ( oldBuckets != null )
+      {
+      migrateBucket( bucket( hash, oldLength ) );
+
+      for ( int n = expansionStep; n > 0 && oldBuckets != null; n-- )
+        migrateBucket( migrated );
+      }
+
+    return bucket( hash, length );
+    }
+
+  private void migrateBucket( int i )
+    {
+    HashMapNode node = oldBuckets[ i ];
+    oldBuckets[ i ] = null;
+
+    if ( oldTrees != null )
+      oldTrees[ i ] = null;
+
+    while ( node != null )
+      {
+      HashMapNode current = node;
+      node = node.next;
+      int probe = bucket( current.hash, length );
+
+      if ( trees != null && trees[ probe ] != null )
+        {
+        linkAfter( buckets, probe, (HashMapNode)trees[ probe ].insert( current.hash, current.key, current ), current );
+        }
+      else
+        {
+        current.next = buckets[ probe ];
+        buckets[ probe ] = current;
+
+        if ( ordering != null )
+          treeify( probe );
+        }
+      }
+
+    while ( migrated < oldLength && oldBuckets[ migrated ] == null )
+      ++migrated;
+
+    if ( migrated == oldLength )
+      {
+      oldBuckets = null;
+      oldTrees = null;
+      }
+    }
+
+  /**
+   * Shrink automatically if my load has fallen below my shrink ratio.
+   */
+  private void shrink()
+    {
+    if ( size < length * shrinkRatio && expansionAllowed() )
+      resize( size, ratio / 2, DEFAULT_SIZE );
+
+    if ( filter != null && filter.isStale( size ) )
+      rebuildFilter();
+    }
+
+  /**
+   * Rehash into the fewest buckets, but at least a given minimum, that hold a given
+   * number of pairs at no more than a given load, if that is fewer than I have now.
+   */
+  private void resize( int n, float load, int minimum )
+    {
+    int newLength = Math.max( (int)Math.ceil( n / load ), minimum );
+
+    while ( (int)( newLength * ratio ) < n )
+      ++newLength;
+
+    // Prefer odd lengths when dividing, as nextBucketSize() does.
+    newLength = spreader == null ? newLength | 1 : powerOfTwo( newLength );
+
+    if ( newLength < length )
+      rehash( newLength, false );
+    }
+
+  private void finishExpansion()
+    {
+    while ( oldBuckets != null )
+      migrateBucket( migrated );
+    }
+
+  private void rehash( int newLength, boolean rehashKeys )
+    {
+    finishExpansion();
+    trees = null;
+    HashMapNode[] newBuckets = new HashMapNode[ newLength ];
+
+    for ( int i = 0; i < length; i++ )
+      {
+      HashMapNode node = buckets[ i ];
+
+      while ( node != null )
+        {
+        HashMapNode current = node;
+        node = node.next;
+
+        if ( rehashKeys )
+          current.hash = hash( current.key );
+
+        int probe = bucket( current.hash, newLength );
+        current.next = newBuckets[ probe ];
+        newBuckets[ probe ] = current;
+        }
+      }
+
+    buckets = newBuckets;
+    length = newLength;
+    limit = (int)( length * ratio );
+
+    if ( ordering != null )
+      trees = treeifyAll( buckets );
+
+    if ( filter != null )
+      rebuildFilter();
+    }
+
+  /**
+   * Add the hash code of a new node to my filter, rebuilding it if it is full.
+   */
+  private void added( int hash )
+    {
+    if ( filter != null )
+      {
+      filter.add( hash );
+
+      if ( filter.isStale( size + 1 ) )
+        rebuildFilter();
+      }
+    }
+
+  /**
+   * Size my filter for my current table and refill it with the hash codes of my nodes.
+   */
+  private void rebuildFilter()
+    {
+    filter.reset( Math.max( limit, size ) );
+    addHashes( buckets );
+
+    if ( oldBuckets != null )
+      addHashes( oldBuckets );
+    }
+
+  private void addHashes( HashMapNode[] table )
+    {
+    for ( int i = 0; i < table.length; i++ )
+      for ( HashMapNode node = table[ i ]; node != null; node = node.next )
+        filter.add( node.hash );
+    }
+
+  private static HashMapNode[] copyBuckets( HashMapNode[] source )
+    {
+    HashMapNode[] result = new HashMapNode[ source.length ];
+
+    for ( int i = 0; i < source.length; i++ )
+      {
+      HashMapNode previous = null;
+
+      for ( HashMapNode node = source[ i ]; node != null; node = node.next )
+        {
+        HashMapNode newNode = new HashMapNode();
+        newNode.key = node.key;
+        newNode.value = node.value;
+        newNode.hash = node.hash;
+
+        if ( previous == null )
+          result[ i ] = newNode;
+        else
+          previous.next = newNode;
+
+        previous = newNode;
+        }
+      }
+
+    return result;
+    }
+
+  private Object addToTree( int probe, Object key, Object value, int hash, boolean replace )
+    {
+    HashBucketTree tree = trees[ probe ];
+    HashMapNode node = (HashMapNode)tree.find( hash, key, comparator );
+
+    if ( node != null )
+      {
+      if ( replace )
+        {
+        Object previousKey = node.key;
+        Object previous = node.value;
+        node.key = key;
+        node.value = value;
+        replaced( node, previousKey, previous );
+        accessed( node );
+        return previous;
+        }
+
+      if ( !allowDups )
+        {
+        accessed( node );
+        return node.value;
+        }
+      }
+
+    HashMapNode newNode = createNode( key, value, hash, node );
+    linkAfter( buckets, probe, (HashMapNode)tree.insert( hash, key, newNode ), newNode );
+    added( hash );
+
+    if ( ++size > limit )
+      expand();
+
+    return null;
+    }
+
+  private Pair removeAux( int probe, Object key, int hash, int maximum )
+    {
+    HashBucketTree tree = trees[ probe ];
+    HashMapNode node = (HashMapNode)tree.find( hash, key, comparator );
+
+    if ( node == null )
+      return new Pair( null, new Integer( 0 ) );
+
+    HashMapNode previous = (HashMapNode)tree.remove( hash, node.key, node );
+    HashMapNode end = node.next;
+    Object value = node.value; // we only want the first one.
+    int count = 1;
+    --maximum;
+    removed( node );
+
+    if ( allowDups )
+      {
+      while ( maximum > 0 && end != null && end.hash == hash && comparator.execute( end.key, key ) )
+        {
+        tree.remove( hash, end.key, end );
+        removed( end );
+        ++count;
+        --maximum;
+        end = end.next;
+        }
+      }
+
+    unlink( buckets, probe, previous, end );
+
+    if ( tree.size() < UNTREEIFY_THRESHOLD )
+      trees[ probe ] = null;
+
+    size -= count;
+    shrink();
+    return new Pair( value, new Integer( count ) );
+    }
+
+  /**
+   * Treeify a bucket of my current table if its chain has become too long.
+   */
+  private void treeify( int probe )
+    {
+    if ( ( trees == null || trees[ probe ] == null ) && longer( buckets[ probe ], TREEIFY_THRESHOLD ) )
+      {
+      if ( trees == null )
+        trees = new HashBucketTree[ length ];
+
+      trees[ probe ] = buildTree( buckets, probe );
+      }
+    }
+
+  /**
+   * Treeify every long chain of a table and return the trees, or null if
+   * there are none.
+   */
+  private HashBucketTree[] treeifyAll( HashMapNode[] table )
+    {
+    HashBucketTree[] result = null;
+
+    for ( int i = 0; i < table.length; i++ )
+      if ( longer( table[ i ], TREEIFY_THRESHOLD ) )
+        {
+        if ( result == null )
+          result = new HashBucketTree[ table.length ];
+
+        result[ i ] = buildTree( table, i );
+        }
+
+    return result;
+    }
+
+  /**
+   * Index the chain of a bucket by a new tree, relinking the chain in tree order.
+   */
+  private HashBucketTree buildTree( HashMapNode[] table, int probe )
+    {
+    HashBucketTree tree = new HashBucketTree( ordering );
+    HashMapNode node = table[ probe ];
+    table[ probe ] = null;
+
+    while ( node != null )
+      {
+      HashMapNode current = node;
+      node = node.next;
+      linkAfter( table, probe, (HashMapNode)tree.insert( current.hash, current.key, current ), current );
+      }
+
+    return tree;
+    }
+
+  private static boolean longer( HashMapNode node, int n )
+    {
+    for ( ; node != null; node = node.next )
+      if ( n-- == 0 )
+        return true;
+
+    return false;
+    }
+
+  private static void linkAfter( HashMapNode[] table, int probe, HashMapNode previous, HashMapNode node )
+    {
+    if ( previous == null )
+      {
+      node.next = table[ probe ];
+      table[ probe ] = node;
+      }
+    else
+      {
+      node.next = previous.next;
+      previous.next = node;
+      }
+    }
+
+  private static void unlink( HashMapNode[] table, int probe, HashMapNode previous, HashMapNode next )
+    {
+    if ( previous == null )
+      table[ probe ] = next;
+    else
+      previous.next = next;
+    }
+
+  /**
+   * Return the hash code of a key, computed by my hasher if I have one and
+   * spread if necessary, as a non-negative number.
+   */
+  final int hash( Object key )
+    {
+    int hash = hasher == null ? key.hashCode() : hasher.hash( key );
+
+    if ( spreader != null )
+      hash = spreader.spread( hash );
+
+    return hash & 0x7FFFFFFF;
+    }
+
+  /**
+   * Return the bucket that a hash code selects in a table of a given length.
+   */
+  final int bucket( int hash, int length )
+    {
+    return spreader == null ? hash % length : hash & ( length - 1 );
+    }
+
+  static int powerOfTwo( int length )
+    {
+    int n = 1;
+
+    while ( n < length && n < ( 1 << 30 ) )
+      n <<= 1;
+
+    return n;
+    }
+
+  /**
+   * Return false if another map that hashes its keys the same way as me holds a
+   * different number of pairs or a different sum of hash codes in any bucket, which
+   * proves that its pairs differ from mine. Return true otherwise.
+   */
+  private boolean sameBuckets( HashMap map )
+    {
+    if ( length != map.length || oldBuckets != null || map.oldBuckets != null || hasher != map.hasher || spreader != map.spreader )
+      return true;
+
+    for ( int i = 0; i < length; i++ )
+      {
+      int n = 0;
+      int sum = 0;
+
+      for ( HashMapNode node = buckets[ i ]; node != null; node = node.next )
+        {
+        ++n;
+        sum += node.hash;
+        }
+
+      for ( HashMapNode node = map.buckets[ i ]; node != null; node = node.next )
+        {
+        --n;
+        sum -= node.hash;
+        }
+
+      if ( n != 0 || sum != 0 )
+        return false;
+      }
+
+    return true;
+    }
+
+  /**
+   * Return true if each run of nodes with matching keys in a range of buckets
+   * has the same values as the run with that key in another map. The chains are
+   * walked directly, since subclasses may iterate in a different order.
+   */
+  private boolean sameRuns( HashMapNode[] table, int from, int to, HashMap map )
+    {
+    for ( int i = from; i < to; i++ )
+      {
+      HashMapNode node = table[ i ];
+
+      while ( node != null )
+        {
+        HashMapNode match = map.lookup( node.key, map.hash( node.key ) );
+        HashMapNode last = node;
+        int n = 1;
+
+        while ( last.next != null && last.next.hash == node.hash && comparator.execute( last.next.key, node.key ) )
+          {
+          last = last.next;
+          ++n;
+          }
+
+        if ( match == null || !sameValues( node, match, n, map.comparator ) )
+          return false;
+
+        node = last.next;
+        }
+      }
+
+    return true;
+    }
+
+  /**
+   * Return true if the run of n nodes starting at src and the run of nodes with
+   * matching keys starting at dst hold the same values, in any order.
+   */
+  private static boolean sameValues( HashMapNode src, HashMapNode dst, int n, BinaryPredicate comparator )
+    {
+    if ( n == 1 )
+      return ( dst.next == null || dst.next.hash != dst.hash || !comparator.execute( dst.next.key, dst.key ) )
+        && src.value.equals( dst.value );
+
+    HashMultiSet values = new HashMultiSet();
+
+    for ( int i = 0; i < n; i++, src = src.next )
+      values.add( src.value );
+
+    for ( HashMapNode node = dst; node != null && node.hash == dst.hash && comparator.execute( node.key, dst.key ); node = node.next )
+      if ( values.remove( node.value, 1 ) == 0 )
+        return false;
+
+    return values.isEmpty();
+    }
+
+  private void size( int newsize )
+    {
+    size = newsize;
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeInt( size );
+    Enumeration iter = begin();
+    while ( iter.hasMoreElements() )
+      stream.writeObject( iter.nextElement() );
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    buckets = new HashMapNode[ length ];
+
+    if ( filter != null )
+      filter.clear();
+
     int count = stream.readInt();
     while ( count-- > 0 )
       add( stream.readObject() );
     }
 
-  static final class HashMapNode
+  static class HashMapNode
     {
     Object key = null;
     Object value = null;
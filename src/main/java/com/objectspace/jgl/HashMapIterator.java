@@ -8,7 +8,12 @@ package com.objectspace.jgl;
  * the contents of a HashMap. It has a mode that allows selection of the current
  * position's key, value, or key-value pair.
  * <p>
+ * In PAIR mode, get() and nextElement() return a new Pair for each pair. A loop
+ * that calls key() and value() and then advance() creates no objects, and can
+ * be used in any mode.
+ * <p>
  * @see ForwardIterator
+ * @see HashMap#forEachEntry
  * @version 3.1.0
  * @author ObjectSpace, Inc.
  */
@@ -77,11 +82,7 @@ public final class HashMapIterator implements ForwardIterator, Opaque
    */
   public boolean atBegin()
     {
-    for ( int i = 0; i < myHashMap.length; i++ )
-      if ( myHashMap.buckets[ i ] != null )
-        return myNode == myHashMap.buckets[ i ];
-
-    return true;
+    return myNode == myHashMap.first();
     }
 
   /**
@@ -105,7 +106,7 @@ public final class HashMapIterator implements ForwardIterator, Opaque
    */
   public void advance()
     {
-    myNode = ( myNode.next != null ? myNode.next : next( myNode ) );
+    myNode = myHashMap.successor( myNode );
     }
 
   /**
@@ -146,7 +147,7 @@ public final class HashMapIterator implements ForwardIterator, Opaque
           break;
         }
 
-      myNode = ( myNode.next != null ? myNode.next : next( myNode ) );
+      myNode = myHashMap.successor( myNode );
       return result;
       }
     catch ( NullPointerException ex )
@@ -193,6 +194,9 @@ public final class HashMapIterator implements ForwardIterator, Opaque
    */
   public void put( Object object )
     {
+    Object key = myNode.key;
+    Object value = myNode.value;
+
     switch ( myMode )
       {
       case PAIR:
@@ -209,6 +213,8 @@ public final class HashMapIterator implements ForwardIterator, Opaque
         myNode.value = object;
         break;
       }
+
+    myHashMap.replaced( myNode, key, value );
     }
 
   /**
@@ -246,7 +252,9 @@ public final class HashMapIterator implements ForwardIterator, Opaque
    */
   public void value( Object value )
     {
+    Object previous = myNode.value;
     myNode.value = value;
+    myHashMap.replaced( myNode, myNode.key, previous );
     }
 
   /**
@@ -263,22 +271,13 @@ public final class HashMapIterator implements ForwardIterator, Opaque
     while ( myNode != node )
       {
       ++n;
-      myNode = ( myNode.next != null ? myNode.next : next( myNode ) );
+      myNode = myHashMap.successor( myNode );
       }
 
     myNode = oldNode;
     return n;
     }
 
-  private HashMap.HashMapNode next( HashMap.HashMapNode node )
-    {
-    for ( int i = ( node.hash % myHashMap.length ) + 1; i < myHashMap.length; i++ )
-      if ( myHashMap.buckets[ i ] != null )
-        return myHashMap.buckets[ i ];
-
-    return null;
-    }
-
   /**
    * Return my associated container.
    */
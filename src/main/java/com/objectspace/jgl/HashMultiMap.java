@@ -0,0 +1,578 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+
+/**
+ * A HashMultiMap is a hashed map that allows any number of values per key. Unlike
+ * a HashMap that allows duplicates, which chains a separate node for every pair, a
+ * HashMultiMap keeps a single entry per key whose values are held in an Array. The
+ * number of values of a key is therefore found in constant time, and the values of
+ * a key can be enumerated without being copied.
+ * <p>
+ * Keys are hashed and matched exactly as in a HashMap. The values of a key are kept
+ * in the order in which they were added, and my pairs are enumerated key by key.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see HashMultiMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class HashMultiMap extends Map
+  {
+  HashMap myMap; // maps each key to a non-empty Array of its values.
+  int size; // # key/value pairs.
+
+  /**
+   * Construct myself to be an empty HashMultiMap that compares keys using equals().
+   */
+  public HashMultiMap()
+    {
+    this( new HashMap() );
+    }
+
+  /**
+   * Construct myself to be an empty HashMultiMap that compares keys using the
+   * specified binary predicate.
+   * @param comparator The predicate for comparing keys.
+   */
+  public HashMultiMap( BinaryPredicate comparator )
+    {
+    this( new HashMap( comparator ) );
+    }
+
+  /**
+   * Construct myself to be an empty HashMultiMap that compares keys using the
+   * specified binary predicate. The initial buckets and load ratio must also be
+   * specified.
+   * @param comparator The predicate for comparing keys.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   */
+  public HashMultiMap( BinaryPredicate comparator, int capacity, float loadRatio )
+    {
+    this( new HashMap( comparator, capacity, loadRatio ) );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing HashMultiMap.
+   * @param map The HashMultiMap to copy.
+   */
+  public HashMultiMap( HashMultiMap map )
+    {
+    copy( map );
+    }
+
+  HashMultiMap( HashMap map )
+    {
+    myMap = map;
+    }
+
+  /**
+   * Return the binary predicate that I use for comparing keys.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return myMap.getComparator();
+    }
+
+  /**
+   * Return the number of distinct keys that I contain.
+   */
+  public int keyCount()
+    {
+    return myMap.size();
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new HashMultiMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing HashMultiMap.
+   * @param map The HashMultiMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( HashMultiMap map )
+    {
+    synchronized( map )
+      {
+      HashMap copy = new HashMap( map.myMap );
+
+      for ( HashMapIterator i = copy.begin(); i.hasMoreElements(); i.advance() )
+        i.value( new Array( (Array)i.value() ) );
+
+      myMap = copy;
+      size = map.size;
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "HashMultiMap" );
+    }
+
+  /**
+   * Return an Enumeration of the values of all my pairs.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin( HashMultiMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized HashMultiMapIterator begin()
+    {
+    return begin( HashMultiMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized HashMultiMapIterator end()
+    {
+    return new HashMultiMapIterator( this, null, 0, HashMultiMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no pairs.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of key/value pairs that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if object is a HashMultiMap that associates each key with the same
+   * values in the same order as me.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof HashMultiMap && equals( (HashMultiMap)object );
+    }
+
+  /**
+   * Return true if a HashMultiMap associates each key with the same values in the
+   * same order as me.
+   * @param map The HashMultiMap to compare myself against.
+   */
+  public synchronized boolean equals( HashMultiMap map )
+    {
+    synchronized( map )
+      {
+      if ( size != map.size || myMap.size() != map.myMap.size() )
+        return false;
+
+      for ( HashMapIterator i = myMap.begin(); i.hasMoreElements(); i.advance() )
+        if ( !i.value().equals( map.myMap.get( i.key() ) ) )
+          return false;
+
+      return true;
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers. It is the same as that
+   * of a HashMap that allows duplicates and contains the same pairs.
+   */
+  public synchronized int hashCode()
+    {
+    int h = 0;
+
+    // The hash codes of a key's pairs cancel out in pairs.
+    for ( HashMapIterator i = myMap.begin(); i.hasMoreElements(); i.advance() )
+      if ( ( ( (Array)i.value() ).size() & 1 ) != 0 )
+        h ^= i.key().hashCode();
+
+    return h;
+    }
+
+  /**
+   * Swap my contents with another HashMultiMap.
+   * @param map The HashMultiMap that I will swap my contents with.
+   */
+  public synchronized void swap( HashMultiMap map )
+    {
+    synchronized( map )
+      {
+      HashMap tmpMap = myMap;
+      myMap = map.myMap;
+      map.myMap = tmpMap;
+
+      int tmpSize = size;
+      size = map.size;
+      map.size = tmpSize;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    myMap.clear();
+    size = 0;
+    }
+
+  /**
+   * Remove all key/value pairs that match a particular key.
+   * @param key The key of the pairs to be removed.
+   * @return The first value removed, or null if the key does not exist.
+   */
+  public synchronized Object remove( Object key )
+    {
+    Array values = (Array)myMap.remove( key );
+
+    if ( values == null )
+      return null;
+
+    size -= values.size();
+    return values.at( 0 );
+    }
+
+  /**
+   * Remove at most a given number of key/value pairs that match a particular key.
+   * The first values of the key are removed.
+   * @param key The key of the pairs to be removed.
+   * @param count The maximum number of pairs to remove.
+   * @return The number of pairs removed.
+   */
+  public synchronized int remove( Object key, int count )
+    {
+    HashMapIterator i = myMap.find( key );
+
+    if ( count <= 0 || !i.hasMoreElements() )
+      return 0;
+
+    Array values = (Array)i.value();
+
+    if ( count >= values.size() )
+      {
+      count = values.size();
+      myMap.remove( i );
+      }
+    else
+      {
+      values.remove( 0, count - 1 );
+      }
+
+    size -= count;
+    return count;
+    }
+
+  /**
+   * Remove the pair at a particular position.
+   * @param e An Enumeration positioned at the pair to remove.
+   * @exception IllegalArgumentException If the Enumeration isn't a
+   * HashMultiMapIterator for this HashMultiMap.
+   * @return The value of the pair.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( !( e instanceof HashMultiMapIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a HashMultiMapIterator" );
+
+    if ( ( (HashMultiMapIterator)e ).myMultiMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this HashMultiMap" );
+
+    HashMultiMapIterator pos = (HashMultiMapIterator)e;
+    Object value = pos.value();
+    remove( pos.myNode, pos.myIndex, pos.myIndex + 1 );
+    return value;
+    }
+
+  /**
+   * Remove the pairs within a specified range.
+   * @param first An Enumeration positioned at the first pair to remove.
+   * @param last An Enumeration positioned immediately after the last pair to remove.
+   * @exception IllegalArgumentException If the Enumerations aren't
+   * HashMultiMapIterators for this HashMultiMap.
+   * @return The number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( !( first instanceof HashMultiMapIterator ) || !( last instanceof HashMultiMapIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a HashMultiMapIterator" );
+
+    if ( ( (HashMultiMapIterator)first ).myMultiMap != this || ( (HashMultiMapIterator)last ).myMultiMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this HashMultiMap" );
+
+    HashMultiMapIterator begin = (HashMultiMapIterator)first;
+    HashMultiMapIterator end = (HashMultiMapIterator)last;
+    Array nodes = new Array();
+
+    // Each key's values in the range are removed at once. The entries are collected
+    // first, since removing a key may rehash my map.
+    for ( HashMap.HashMapNode node = begin.myNode; node != end.myNode; node = myMap.successor( node ) )
+      nodes.pushBack( node );
+
+    int index = begin.myIndex;
+    int count = 0;
+
+    for ( int i = 0; i < nodes.size(); i++ )
+      {
+      HashMap.HashMapNode node = (HashMap.HashMapNode)nodes.at( i );
+      count += remove( node, index, ( (Array)node.value ).size() );
+      index = 0;
+      }
+
+    if ( end.myNode != null )
+      count += remove( end.myNode, index, end.myIndex );
+
+    return count;
+    }
+
+  /**
+   * Find the first key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized HashMultiMapIterator find( Object key )
+    {
+    HashMapIterator i = myMap.find( key );
+    return new HashMultiMapIterator( this, i.myNode, 0, HashMultiMapIterator.PAIR );
+    }
+
+  /**
+   * Return a range whose first element is an iterator positioned
+   * at the first occurence of a specific key and whose second element is an
+   * iterator positioned immediately after the last occurence of that key.
+   * If no matching key is found, both ends of the range will be the same.
+   * @param key The key whose bounds are to be found.
+   */
+  public synchronized Range equalRange( Object key )
+    {
+    HashMapIterator i = myMap.find( key );
+
+    if ( !i.hasMoreElements() )
+      return new Range( end(), end() );
+
+    HashMultiMapIterator last = new HashMultiMapIterator( this, myMap.successor( i.myNode ), 0, HashMultiMapIterator.PAIR );
+    return new Range( new HashMultiMapIterator( this, i.myNode, 0, HashMultiMapIterator.PAIR ), last );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key. This takes
+   * constant time.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    Array values = (Array)myMap.get( key );
+    return values == null ? 0 : values.size();
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int count = 0;
+
+    for ( HashMapIterator i = myMap.begin(); i.hasMoreElements(); i.advance() )
+      count += ( (Array)i.value() ).count( value );
+
+    return count;
+    }
+
+  /**
+   * Return the first value associated with a key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    Array values = (Array)myMap.get( key );
+    return values == null ? null : values.at( 0 );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the first value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    Array values = (Array)myMap.get( key );
+
+    if ( values == null )
+      {
+      add( key, value );
+      return null;
+      }
+
+    Object previous = values.at( 0 );
+    values.put( 0, value );
+    return previous;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. Associate the value with the key, after any values that
+   * are already associated with it, and return null.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !( object instanceof Pair ) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair)object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * Associate a value with a key, after any values that are already associated
+   * with it, and return null.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    Array values = (Array)myMap.get( key );
+
+    if ( values == null )
+      {
+      values = new Array( 0 );
+      myMap.put( key, values );
+      }
+
+    values.pushBack( value );
+    ++size;
+    return null;
+    }
+
+  /**
+   * Return an Enumeration of the keys of all my pairs, so that a key is
+   * enumerated once for each of its values.
+   */
+  public synchronized Enumeration keys()
+    {
+    return begin( HashMultiMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of my distinct keys.
+   */
+  public synchronized Enumeration distinctKeys()
+    {
+    return myMap.keys();
+    }
+
+  /**
+   * Return an Enumeration of the keys of all my pairs whose value matches a
+   * particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( HashMapIterator i = myMap.begin(); i.hasMoreElements(); i.advance() )
+      for ( int n = ( (Array)i.value() ).count( value ); n > 0; n-- )
+        array.pushBack( i.key() );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the values associated with a particular key. The
+   * values are read directly from my storage rather than copied, so the enumeration
+   * is invalidated by any change to the values of the key.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array values = (Array)myMap.get( key );
+    return values == null ? new Array( 0 ).elements() : values.elements();
+    }
+
+  HashMultiMapIterator begin( int mode )
+    {
+    return new HashMultiMapIterator( this, myMap.first(), 0, mode );
+    }
+
+  /**
+   * Remove the values of a node's key between two indices, removing the key too
+   * if none are left. Return the number of values removed.
+   */
+  private int remove( HashMap.HashMapNode node, int first, int last )
+    {
+    Array values = (Array)node.value;
+
+    if ( first >= last )
+      return 0;
+
+    if ( last - first == values.size() )
+      myMap.remove( new HashMapIterator( node, myMap, HashMapIterator.PAIR ) );
+    else
+      values.remove( first, last - 1 );
+
+    size -= last - first;
+    return last - first;
+    }
+
+  static final long serialVersionUID = 2209474856418374128L;
+  }
@@ -0,0 +1,291 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A HashMultiMapIterator is a forward iterator that allows you to iterate through
+ * the contents of a HashMultiMap. It has a mode that allows selection of the current
+ * position's key, value, or key-value pair.
+ * <p>
+ * @see ForwardIterator
+ * @see HashMultiMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class HashMultiMapIterator implements ForwardIterator
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  HashMultiMap myMultiMap;
+  HashMap.HashMapNode myNode; // the entry of my key, or null at the end.
+  int myIndex; // the index of my value among the values of my key.
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public HashMultiMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public HashMultiMapIterator( HashMultiMapIterator iterator )
+    {
+    myMultiMap = iterator.myMultiMap;
+    myNode = iterator.myNode;
+    myIndex = iterator.myIndex;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular value of a key in a
+   * specified map.
+   * @param map My associated map.
+   * @param node The entry of the key.
+   * @param index The index of the value.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  HashMultiMapIterator( HashMultiMap map, HashMap.HashMapNode node, int index, int mode )
+    {
+    myMultiMap = map;
+    myNode = node;
+    myIndex = index;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new HashMultiMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof HashMultiMapIterator && equals( (HashMultiMapIterator)object );
+    }
+
+  /**
+   * Return true if iterator is positioned at the same element as me.
+   * @param iterator The iterator to compare myself against.
+   */
+  public boolean equals( HashMultiMapIterator iterator )
+    {
+    return iterator.myNode == myNode && iterator.myIndex == myIndex;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIndex == 0 && myNode == myMultiMap.myMap.first();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myNode == null;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myNode != null;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    if ( ++myIndex == values().size() )
+      {
+      myNode = myMultiMap.myMap.successor( myNode );
+      myIndex = 0;
+      }
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myNode == null )
+      throw new java.util.NoSuchElementException( "HashMultiMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myNode.key, values().at( myIndex ) );
+
+      case KEY:
+        return myNode.key;
+
+      case VALUE:
+        return values().at( myIndex );
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    HashMultiMapIterator i = new HashMultiMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. Keys cannot
+   * be changed, so in PAIR mode the key of the pair must match my current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the key would be changed.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair)object;
+
+        if ( !myMultiMap.getComparator().execute( myNode.key, pair.first ) )
+          throw new InvalidOperationException( "Cannot change the key of a HashMultiMap pair." );
+
+        values().put( myIndex, pair.second );
+        break;
+
+      case KEY:
+        throw new InvalidOperationException( "Cannot change the key of a HashMultiMap pair." );
+
+      case VALUE:
+        values().put( myIndex, object );
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    HashMultiMapIterator i = new HashMultiMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myNode.key;
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return values().at( myIndex );
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param value The new value.
+   */
+  public void value( Object value )
+    {
+    values().put( myIndex, value );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    HashMultiMapIterator last = (HashMultiMapIterator)iterator;
+    HashMap.HashMapNode node = myNode;
+    int n = -myIndex;
+
+    while ( node != last.myNode && node != null )
+      {
+      n += ( (Array)node.value ).size();
+      node = myMultiMap.myMap.successor( node );
+      }
+
+    return n + last.myIndex;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMultiMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return iterator instanceof HashMultiMapIterator && myMultiMap == ( (HashMultiMapIterator)iterator ).myMultiMap;
+    }
+
+  private Array values()
+    {
+    return (Array)myNode.value;
+    }
+  }
@@ -0,0 +1,523 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+
+/**
+ * A HashMultiSet is a hashed set that allows any number of copies of an element.
+ * Unlike a HashSet that allows duplicates, which chains a separate node for every
+ * copy, a HashMultiSet keeps a single entry per element together with a count of
+ * its copies. The number of copies of an element is therefore found in constant
+ * time, and adding or removing copies takes no extra space.
+ * <p>
+ * Elements are hashed and matched exactly as in a HashSet. Since only the first
+ * copy of an element is stored, every copy is represented by that object.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashSet
+ * @see HashMultiSetIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class HashMultiSet implements Set
+  {
+  HashMap myMap; // maps each element to the Count of its copies.
+  int size; // # copies of all elements.
+
+  /**
+   * Construct myself to be an empty HashMultiSet that compares elements using equals().
+   */
+  public HashMultiSet()
+    {
+    this( new HashMap() );
+    }
+
+  /**
+   * Construct myself to be an empty HashMultiSet that compares elements using the
+   * specified binary predicate.
+   * @param comparator The predicate for comparing elements.
+   */
+  public HashMultiSet( BinaryPredicate comparator )
+    {
+    this( new HashMap( comparator ) );
+    }
+
+  /**
+   * Construct myself to be an empty HashMultiSet that compares elements using the
+   * specified binary predicate. The initial buckets and load ratio must also be
+   * specified.
+   * @param comparator The predicate for comparing elements.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   */
+  public HashMultiSet( BinaryPredicate comparator, int capacity, float loadRatio )
+    {
+    this( new HashMap( comparator, capacity, loadRatio ) );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing HashMultiSet.
+   * @param set The HashMultiSet to copy.
+   */
+  public HashMultiSet( HashMultiSet set )
+    {
+    copy( set );
+    }
+
+  HashMultiSet( HashMap map )
+    {
+    myMap = map;
+    }
+
+  /**
+   * Return the binary predicate that I use for comparing elements.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return myMap.getComparator();
+    }
+
+  /**
+   * Return the number of distinct elements that I contain.
+   */
+  public int distinctCount()
+    {
+    return myMap.size();
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new HashMultiSet( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing HashMultiSet.
+   * @param set The HashMultiSet that I shall become a shallow copy of.
+   */
+  public synchronized void copy( HashMultiSet set )
+    {
+    synchronized( set )
+      {
+      HashMap copy = new HashMap( set.myMap );
+
+      for ( HashMapIterator i = copy.begin(); i.hasMoreElements(); i.advance() )
+        i.value( new Count( ( (Count)i.value() ).value ) );
+
+      myMap = copy;
+      size = set.size;
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "HashMultiSet" );
+    }
+
+  /**
+   * Return an Enumeration of my elements, in which each element appears once
+   * for each of its copies.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an Enumeration of my distinct elements.
+   */
+  public synchronized Enumeration distinctElements()
+    {
+    return myMap.keys();
+    }
+
+  /**
+   * Return an iterator positioned at my first element.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last element.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first element.
+   */
+  public synchronized HashMultiSetIterator begin()
+    {
+    return new HashMultiSetIterator( this, myMap.first(), 0 );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last element.
+   */
+  public synchronized HashMultiSetIterator end()
+    {
+    return new HashMultiSetIterator( this, null, 0 );
+    }
+
+  /**
+   * Return true if I contain no elements.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of elements that I contain, counting every copy.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if object is a HashMultiSet with the same number of copies of
+   * each element as me.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof HashMultiSet && equals( (HashMultiSet)object );
+    }
+
+  /**
+   * Return true if a HashMultiSet has the same number of copies of each element as me.
+   * @param set The HashMultiSet to compare myself against.
+   */
+  public synchronized boolean equals( HashMultiSet set )
+    {
+    synchronized( set )
+      {
+      if ( size != set.size || myMap.size() != set.myMap.size() )
+        return false;
+
+      for ( HashMapIterator i = myMap.begin(); i.hasMoreElements(); i.advance() )
+        {
+        Count count = (Count)set.myMap.get( i.key() );
+
+        if ( count == null || count.value != ( (Count)i.value() ).value )
+          return false;
+        }
+
+      return true;
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers. It is the same as that
+   * of a HashSet that allows duplicates and contains the same elements.
+   */
+  public synchronized int hashCode()
+    {
+    int h = 0;
+
+    // The hash codes of an element's copies cancel out in pairs.
+    for ( HashMapIterator i = myMap.begin(); i.hasMoreElements(); i.advance() )
+      if ( ( ( (Count)i.value() ).value & 1 ) != 0 )
+        h ^= i.key().hashCode();
+
+    return h;
+    }
+
+  /**
+   * Swap my contents with another HashMultiSet.
+   * @param set The HashMultiSet that I will swap my contents with.
+   */
+  public synchronized void swap( HashMultiSet set )
+    {
+    synchronized( set )
+      {
+      HashMap tmpMap = myMap;
+      myMap = set.myMap;
+      set.myMap = tmpMap;
+
+      int tmpSize = size;
+      size = set.size;
+      set.size = tmpSize;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    myMap.clear();
+    size = 0;
+    }
+
+  /**
+   * Remove every copy of an object and return the number of copies removed.
+   * @param object The object to match for removals.
+   */
+  public synchronized int remove( Object object )
+    {
+    Count count = (Count)myMap.remove( object );
+
+    if ( count == null )
+      return 0;
+
+    size -= count.value;
+    return count.value;
+    }
+
+  /**
+   * Remove at most a given number of copies of an object and return the number
+   * of copies removed.
+   * @param object The object to match for removals.
+   * @param count The maximum number of copies to remove.
+   */
+  public synchronized int remove( Object object, int count )
+    {
+    HashMapIterator i = myMap.find( object );
+
+    if ( count <= 0 || !i.hasMoreElements() )
+      return 0;
+
+    return remove( i.myNode, count );
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException If the Enumeration isn't a
+   * HashMultiSetIterator for this HashMultiSet.
+   * @return The element removed.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( !( e instanceof HashMultiSetIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a HashMultiSetIterator" );
+
+    if ( ( (HashMultiSetIterator)e ).myMultiSet != this )
+      throw new IllegalArgumentException( "Enumeration not for this HashMultiSet" );
+
+    HashMap.HashMapNode node = ( (HashMultiSetIterator)e ).myNode;
+    Object element = node.key;
+    remove( node, 1 );
+    return element;
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException If the Enumerations aren't
+   * HashMultiSetIterators for this HashMultiSet.
+   * @return The number of elements removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( !( first instanceof HashMultiSetIterator ) || !( last instanceof HashMultiSetIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a HashMultiSetIterator" );
+
+    if ( ( (HashMultiSetIterator)first ).myMultiSet != this || ( (HashMultiSetIterator)last ).myMultiSet != this )
+      throw new IllegalArgumentException( "Enumeration not for this HashMultiSet" );
+
+    HashMultiSetIterator begin = (HashMultiSetIterator)first;
+    HashMultiSetIterator end = (HashMultiSetIterator)last;
+    Array nodes = new Array();
+
+    // Copies are interchangeable, so each element's copies in the range are removed
+    // at once. The entries are collected first, since removing an element may rehash
+    // my map.
+    for ( HashMap.HashMapNode node = begin.myNode; node != end.myNode; node = myMap.successor( node ) )
+      nodes.pushBack( node );
+
+    int index = begin.myIndex;
+    int count = 0;
+
+    for ( int i = 0; i < nodes.size(); i++ )
+      {
+      HashMap.HashMapNode node = (HashMap.HashMapNode)nodes.at( i );
+      count += remove( node, ( (Count)node.value ).value - index );
+      index = 0;
+      }
+
+    if ( end.myNode != null && end.myIndex > index )
+      count += remove( end.myNode, end.myIndex - index );
+
+    return count;
+    }
+
+  /**
+   * Find the first copy of an object and return its position. If the object is
+   * not found, return end().
+   * @param object The object to locate.
+   */
+  public synchronized HashMultiSetIterator find( Object object )
+    {
+    return new HashMultiSetIterator( this, myMap.find( object ).myNode, 0 );
+    }
+
+  /**
+   * Return a range whose first element is an iterator positioned at the first copy
+   * of an object and whose second element is an iterator positioned immediately
+   * after its last copy. If no matching element is found, both ends of the range
+   * will be the same.
+   * @param object The object whose bounds are to be found.
+   */
+  public synchronized Range equalRange( Object object )
+    {
+    HashMapIterator i = myMap.find( object );
+
+    if ( !i.hasMoreElements() )
+      return new Range( end(), end() );
+
+    return new Range
+      (
+      new HashMultiSetIterator( this, i.myNode, 0 ),
+      new HashMultiSetIterator( this, myMap.successor( i.myNode ), 0 )
+      );
+    }
+
+  /**
+   * Return the number of copies of an object. This takes constant time.
+   * @param object The object to match against.
+   */
+  public synchronized int count( Object object )
+    {
+    Count count = (Count)myMap.get( object );
+    return count == null ? 0 : count.value;
+    }
+
+  /**
+   * Add a copy of an object and return null.
+   * @param object The object to add.
+   * @exception NullPointerException If the object is null.
+   */
+  public synchronized Object add( Object object )
+    {
+    add( object, 1 );
+    return null;
+    }
+
+  /**
+   * Add a number of copies of an object and return the resulting number of copies.
+   * @param object The object to add.
+   * @param count The number of copies to add.
+   * @exception NullPointerException If the object is null.
+   * @exception IllegalArgumentException If the count is negative.
+   */
+  public synchronized int add( Object object, int count )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( count < 0 )
+      throw new IllegalArgumentException( "Attempt to add a negative number of copies" );
+
+    Count copies = (Count)myMap.get( object );
+
+    if ( copies == null )
+      {
+      if ( count == 0 )
+        return 0;
+
+      copies = new Count( 0 );
+      myMap.put( object, copies );
+      }
+
+    copies.value += count;
+    size += count;
+    return copies.value;
+    }
+
+  /**
+   * Return the first object that matches the given object, or null if no match exists.
+   * @param object The object to match against.
+   */
+  public synchronized Object get( Object object )
+    {
+    HashMapIterator i = myMap.find( object );
+    return i.hasMoreElements() ? i.key() : null;
+    }
+
+  /**
+   * If the object doesn't exist, add the object and return null, otherwise replace
+   * the stored element that matches, which stands for all of its copies, and return
+   * the old element.
+   * @param object The object to add.
+   * @exception NullPointerException If the object is null.
+   */
+  public synchronized Object put( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    HashMapIterator i = myMap.find( object );
+
+    if ( !i.hasMoreElements() )
+      {
+      add( object, 1 );
+      return null;
+      }
+
+    Object previous = i.key();
+    i.myNode.key = object;
+    return previous;
+    }
+
+  /**
+   * Remove up to a number of copies of a node's element, removing the element too
+   * if none are left. Return the number of copies removed.
+   */
+  private int remove( HashMap.HashMapNode node, int count )
+    {
+    Count copies = (Count)node.value;
+
+    if ( count >= copies.value )
+      {
+      count = copies.value;
+      myMap.remove( new HashMapIterator( node, myMap, HashMapIterator.PAIR ) );
+      }
+    else
+      {
+      copies.value -= count;
+      }
+
+    size -= count;
+    return count;
+    }
+
+  static final class Count implements java.io.Serializable
+    {
+    int value;
+
+    Count( int value )
+      {
+      this.value = value;
+      }
+
+    static final long serialVersionUID = -3460163734938917556L;
+    }
+
+  static final long serialVersionUID = -4911245137458390061L;
+  }
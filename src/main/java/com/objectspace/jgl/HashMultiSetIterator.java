@@ -0,0 +1,229 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A HashMultiSetIterator is a forward iterator that allows you to iterate through
+ * the contents of a HashMultiSet. Each element is visited once for each of its copies.
+ * <p>
+ * @see ForwardIterator
+ * @see HashMultiSet
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class HashMultiSetIterator implements ForwardIterator
+  {
+  HashMultiSet myMultiSet;
+  HashMap.HashMapNode myNode; // the entry of my element, or null at the end.
+  int myIndex; // the index of my copy among the copies of my element.
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public HashMultiSetIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public HashMultiSetIterator( HashMultiSetIterator iterator )
+    {
+    myMultiSet = iterator.myMultiSet;
+    myNode = iterator.myNode;
+    myIndex = iterator.myIndex;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular copy of an element in a
+   * specified set.
+   * @param set My associated set.
+   * @param node The entry of the element.
+   * @param index The index of the copy.
+   */
+  HashMultiSetIterator( HashMultiSet set, HashMap.HashMapNode node, int index )
+    {
+    myMultiSet = set;
+    myNode = node;
+    myIndex = index;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new HashMultiSetIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof HashMultiSetIterator && equals( (HashMultiSetIterator)object );
+    }
+
+  /**
+   * Return true if iterator is positioned at the same element as me.
+   * @param iterator The iterator to compare myself against.
+   */
+  public boolean equals( HashMultiSetIterator iterator )
+    {
+    return iterator.myNode == myNode && iterator.myIndex == myIndex;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIndex == 0 && myNode == myMultiSet.myMap.first();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myNode == null;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myNode != null;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    if ( ++myIndex == copies() )
+      {
+      myNode = myMultiSet.myMap.successor( myNode );
+      myIndex = 0;
+      }
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myNode == null )
+      throw new java.util.NoSuchElementException( "HashMultiSetIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    return myNode.key;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    HashMultiSetIterator i = new HashMultiSetIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. An element stands
+   * for all of its copies, so it cannot be changed through an iterator.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the object is not my current element.
+   */
+  public void put( Object object )
+    {
+    if ( object != myNode.key )
+      throw new InvalidOperationException( "Cannot change an element of a HashMultiSet." );
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    HashMultiSetIterator i = new HashMultiSetIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    HashMultiSetIterator last = (HashMultiSetIterator)iterator;
+    HashMap.HashMapNode node = myNode;
+    int n = -myIndex;
+
+    while ( node != last.myNode && node != null )
+      {
+      n += ( (HashMultiSet.Count)node.value ).value;
+      node = myMultiSet.myMap.successor( node );
+      }
+
+    return n + last.myIndex;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMultiSet;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return iterator instanceof HashMultiSetIterator && myMultiSet == ( (HashMultiSetIterator)iterator ).myMultiSet;
+    }
+
+  private int copies()
+    {
+    return ( (HashMultiSet.Count)myNode.value ).value;
+    }
+  }
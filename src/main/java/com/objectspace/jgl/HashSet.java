@@ -23,12 +23,34 @@ import java.io.IOException;
  * HashSets are useful when fast associate lookup is important, when
  * index-based lookup is unnecessary, and when duplicates are not allowed.
  * <p>
+ * By default an item's bucket is found by dividing its hash code by the number of
+ * buckets. If a HashSpreader is installed, the number of buckets is kept at a
+ * power of two and the spread hash code is masked instead, which is cheaper and
+ * copes better with regular hash codes such as those of sequential Integers.
+ * <p>
+ * Hash codes are obtained from hashCode() unless a Hasher is installed, which
+ * allows a cheaper or stronger hash to be used for a particular container.
+ * <p>
+ * Expansion normally redistributes every object at once. If an expansion step is
+ * set, the old buckets are kept alongside the new ones after an expansion and a
+ * bounded number of them are migrated by each subsequent insertion or removal,
+ * so that no single operation pays for the whole redistribution.
+ * <p>
+ * If a collision ordering is set, a chain that grows long because many objects
+ * share a hash code is indexed by a balanced tree, which keeps lookups
+ * logarithmic even when the hash codes are chosen by an adversary.
+ * <p>
+ * If a filter is enabled, the hash codes of my objects are also summarized by a
+ * BloomFilter, which rejects most lookups and removals of objects that I do not
+ * contain without touching my buckets at all.
+ * <p>
  * Insertion can invalidate iterators.
  * <p>
  * Removal can invalidate iterators.
  * <p>
  * @see Set
  * @see BinaryPredicate
+ * @see BloomFilter
  * @see com.objectspace.jgl.algorithms.SetOperations
  * @see com.objectspace.jgl.examples.HashSetExamples
  * @version 3.1.0
@@ -39,6 +61,8 @@ public class HashSet implements Set
   {
   static final int DEFAULT_SIZE = 257;
   static final float DEFAULT_RATIO = 0.75F;
+  static final int TREEIFY_THRESHOLD = 8; // longer chains are treeified.
+  static final int UNTREEIFY_THRESHOLD = 6; // smaller trees are discarded.
 
   BinaryPredicate comparator;
   boolean allowDups = false; // does the set allow duplicates?
@@ -48,6 +72,17 @@ public class HashSet implements Set
   int length; // buckets.length, cached for speed.
   int limit;
   float ratio;
+  HashSpreader spreader; // non-null if the number of buckets is a power of two.
+  Hasher hasher; // hashes my objects instead of hashCode(), or null.
+  int expansionStep; // # old buckets to migrate per mutation, 0 if expansion is not incremental.
+  float shrinkRatio; // shrink when my load falls below this, or 0 if I never shrink automatically.
+  transient HashSetNode[] oldBuckets; // buckets still being migrated, or null.
+  transient int oldLength; // oldBuckets.length, cached for speed.
+  transient int migrated; // old buckets before this index have been migrated.
+  BinaryPredicate ordering; // orders the objects of long chains, or null if chains are never treeified.
+  transient HashBucketTree[] trees; // the trees of my treeified buckets, or null.
+  transient HashBucketTree[] oldTrees; // the trees of my old treeified buckets, or null.
+  BloomFilter filter; // summarizes the hash codes of my objects, or null.
 
   /**
    * Construct myself to be an empty HashSet that compares objects using equals() and
@@ -121,6 +156,23 @@ public class HashSet implements Set
     buckets = new HashSetNode[ length ];
     }
 
+  /**
+   * Construct myself to be an empty HashSet that compares objects using the specified
+   * binary predicate and conditionally allows duplicates. Buckets are selected by
+   * masking hash codes that are mixed by the specified spreader, so the initial
+   * number of buckets is rounded up to a power of two.
+   * @param comparator The predicate for comparing objects.
+   * @param allowDuplicates true if duplicates are allowed.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @param spreader The spreader used to mix hash codes, or null to select buckets by division.
+   */
+  public HashSet( BinaryPredicate comparator, boolean allowDuplicates, int capacity, float loadRatio, HashSpreader spreader )
+    {
+    this( comparator, allowDuplicates, spreader == null ? capacity : HashMap.powerOfTwo( capacity ), loadRatio );
+    this.spreader = spreader;
+    }
+
   /**
    * Construct myself to be a shallow copy of an existing HashSet.
    * @param set The HashSet to copy.
@@ -175,29 +227,19 @@ public class HashSet implements Set
       ratio = set.ratio;
       limit = set.limit;
       size = set.size;
-      buckets = new HashSetNode[ length ];
+      buckets = copyBuckets( set.buckets );
+      oldLength = set.oldLength;
+      oldBuckets = set.oldBuckets == null ? null : copyBuckets( set.oldBuckets );
+      migrated = set.migrated;
+      expansionStep = set.expansionStep;
+      shrinkRatio = set.shrinkRatio;
       allowDups = set.allowDups;
-
-      for ( int i = 0; i < length; i++ )
-        {
-        HashSetNode oldNode = null;
-        HashSetNode node = set.buckets[ i ];
-
-        while ( node != null )
-          {
-          HashSetNode newNode = new HashSetNode();
-          newNode.object = node.object;
-          newNode.hash = node.hash;
-
-          if ( buckets[ i ] == null )
-            buckets[ i ] = newNode;
-          else
-            oldNode.next = newNode;
-
-          oldNode = newNode;
-          node = node.next;
-          }
-        }
+      spreader = set.spreader;
+      hasher = set.hasher;
+      ordering = set.ordering;
+      trees = ordering == null ? null : treeifyAll( buckets );
+      oldTrees = ordering == null || oldBuckets == null ? null : treeifyAll( oldBuckets );
+      filter = set.filter == null ? null : new BloomFilter( set.filter );
       }
     }
 
@@ -284,32 +326,39 @@ public class HashSet implements Set
 
   /**
    * Return true if I contain exactly the same items as another HashSet.
-   * Use equals() to compare the individual elements.
+   * Use equals() to compare the individual elements. If duplicates are allowed,
+   * the number of copies of each element is compared, in linear time.
    * @param set The HashSet to compare myself against.
    */
   public synchronized boolean equals( HashSet set )
     {
     synchronized( set )
       {
-      if ( size != set.size )
+      if ( size != set.size || !sameBuckets( set ) )
         return false;
 
       if ( allowDups )
         {
-        Object previous = null;
+        HashSetNode node = first();
 
-        for ( HashSetIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+        // Compare the length of each run of matching objects with the other set's run.
+        while ( node != null )
           {
-          Object object = iterator.get();
+          HashSetNode match = set.lookup( node.object, set.hash( node.object ) );
+          HashSetNode last = node;
 
-          // Execute the following code for each unique object in the source.
-          if ( previous == null || !object.equals( previous ) )
+          while ( matches( last.next, node ) )
             {
-            if ( count( object ) != set.count( object ) )
-              return false;
+            last = last.next;
 
-            previous = object;
+            if ( match != null )
+              match = set.matches( match.next, match ) ? match.next : null;
             }
+
+          if ( match == null || set.matches( match.next, match ) )
+            return false;
+
+          node = last.next != null ? last.next : next( last );
           }
         }
       else
@@ -361,6 +410,50 @@ public class HashSet implements Set
       boolean tmpDups = allowDups;
       allowDups = set.allowDups;
       set.allowDups = tmpDups;
+
+      HashSpreader tmpSpreader = spreader;
+      spreader = set.spreader;
+      set.spreader = tmpSpreader;
+
+      Hasher tmpHasher = hasher;
+      hasher = set.hasher;
+      set.hasher = tmpHasher;
+
+      int tmpStep = expansionStep;
+      expansionStep = set.expansionStep;
+      set.expansionStep = tmpStep;
+
+      float tmpShrinkRatio = shrinkRatio;
+      shrinkRatio = set.shrinkRatio;
+      set.shrinkRatio = tmpShrinkRatio;
+
+      HashSetNode[] tmpOldBuckets = oldBuckets;
+      oldBuckets = set.oldBuckets;
+      set.oldBuckets = tmpOldBuckets;
+
+      int tmpOldLength = oldLength;
+      oldLength = set.oldLength;
+      set.oldLength = tmpOldLength;
+
+      int tmpMigrated = migrated;
+      migrated = set.migrated;
+      set.migrated = tmpMigrated;
+
+      BinaryPredicate tmpOrdering = ordering;
+      ordering = set.ordering;
+      set.ordering = tmpOrdering;
+
+      HashBucketTree[] tmpTrees = trees;
+      trees = set.trees;
+      set.trees = tmpTrees;
+
+      HashBucketTree[] tmpOldTrees = oldTrees;
+      oldTrees = set.oldTrees;
+      set.oldTrees = tmpOldTrees;
+
+      BloomFilter tmpFilter = filter;
+      filter = set.filter;
+      set.filter = tmpFilter;
       }
     }
 
@@ -370,7 +463,13 @@ public class HashSet implements Set
   public synchronized void clear()
     {
     buckets = new HashSetNode[ length ];
+    oldBuckets = null;
+    trees = null;
+    oldTrees = null;
     size = 0;
+
+    if ( filter != null )
+      filter.clear();
     }
 
   /**
@@ -400,8 +499,15 @@ public class HashSet implements Set
     {
     if ( maximum > 0 )
       {
-      int hash = object.hashCode() & 0x7FFFFFFF;
-      int probe = hash % length;
+      int hash = hash( object );
+
+      if ( filter != null && !filter.mightContain( hash ) )
+        return new Pair( null, new Integer( 0 ) );
+
+      int probe = migrate( hash );
+
+      if ( trees != null && trees[ probe ] != null )
+        return removeAux( probe, object, hash, maximum );
 
       for ( HashSetNode node = buckets[ probe ], previous = null; node != null; previous = node, node = node.next )
         if ( node.hash == hash && comparator.execute( node.object, object ) )
@@ -428,6 +534,7 @@ public class HashSet implements Set
             previous.next = end;
 
           size -= count;
+          shrink();
           return new Pair( value, new Integer( count ) );
           }
       }
@@ -449,21 +556,48 @@ public class HashSet implements Set
     if ( ((HashSetIterator)e).myHashSet != this )
       throw new IllegalArgumentException( "Enumeration not for this HashSet" );
 
-    HashSetIterator pos = (HashSetIterator)e;
-    HashSetNode target = pos.myNode;
-    int probe = target.hash % length;
-    HashSetNode node = buckets[ probe ];
+    Object result = removeAux( ( (HashSetIterator)e ).myNode );
+    shrink();
+    return result;
+    }
+
+  private Object removeAux( HashSetNode target )
+    {
+    HashSetNode[] table = buckets;
+    HashBucketTree[] tableTrees = trees;
+    int probe = bucket( target.hash, length );
 
-    if ( target == node )
+    // The target has not been migrated if its old bucket is still in use.
+    if ( oldBuckets != null && oldBuckets[ bucket( target.hash, oldLength ) ] != null )
       {
-      buckets[ probe ] = target.next;
+      table = oldBuckets;
+      tableTrees = oldTrees;
+      probe = bucket( target.hash, oldLength );
+      }
+
+    if ( tableTrees != null && tableTrees[ probe ] != null )
+      {
+      HashBucketTree tree = tableTrees[ probe ];
+      unlink( table, probe, (HashSetNode)tree.remove( target.hash, target.object, target ), target.next );
+
+      if ( tree.size() < UNTREEIFY_THRESHOLD )
+        tableTrees[ probe ] = null;
       }
     else
       {
-      while ( node.next != target )
-        node = node.next;
+      HashSetNode node = table[ probe ];
+
+      if ( target == node )
+        {
+        table[ probe ] = target.next;
+        }
+      else
+        {
+        while ( node.next != target )
+          node = node.next;
 
-      node.next = target.next;
+        node.next = target.next;
+        }
       }
 
     --size;
@@ -498,10 +632,12 @@ public class HashSet implements Set
       {
       HashSetIterator next = new HashSetIterator( begin );
       next.advance();
-      remove( begin );
+      removeAux( begin.myNode );
       begin = next;
       ++count;
       }
+
+    shrink();
     return count;
     }
 
@@ -512,11 +648,12 @@ public class HashSet implements Set
    */
   public synchronized HashSetIterator find( Object object )
     {
-    int hash = object.hashCode() & 0x7FFFFFFF;
+    int hash = hash( object );
 
-    for ( HashSetNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.object, object ) )
-        return new HashSetIterator( node, this );
+    HashSetNode node = lookup( object, hash );
+
+    if ( node != null )
+      return new HashSetIterator( node, this );
 
     return new HashSetIterator( null, this );
     }
@@ -527,31 +664,22 @@ public class HashSet implements Set
    */
   public synchronized int count( Object object )
     {
-    int hash = object.hashCode() & 0x7FFFFFFF;
+    int hash = hash( object );
 
-    for ( HashSetNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.object,object ) )
-        {
-        if ( allowDups )
-          {
-          int n = 1;
-          node = node.next;
+    HashSetNode node = lookup( object, hash );
 
-          while ( node != null && hash == node.hash && comparator.execute( node.object, object ) )
-            {
-            ++n;
-            node = node.next;
-            }
+    if ( node == null )
+      return 0;
 
-          return n;
-          }
-        else
-          {
-          return 1;
-          }
-        }
+    if ( !allowDups )
+      return 1;
+
+    int n = 1;
+
+    for ( node = node.next; node != null && hash == node.hash && comparator.execute( node.object, object ); node = node.next )
+      ++n;
 
-    return 0;
+    return n;
     }
 
   /**
@@ -561,12 +689,20 @@ public class HashSet implements Set
    * @exception NullPointerException If the value of the object is equal to null.
    */
   public synchronized Object add( Object object )
+    {
+    return addAux( object );
+    }
+
+  Object addAux( Object object )
     {
     if ( object == null )
       throw new NullPointerException();
 
-    int hash = object.hashCode() & 0x7FFFFFFF;
-    int probe = hash % length;
+    int hash = hash( object );
+    int probe = migrate( hash );
+
+    if ( trees != null && trees[ probe ] != null )
+      return addToTree( probe, object, hash, false );
 
     // find if object already exists first
     for ( HashSetNode node = buckets[ probe ]; node != null; node = node.next )
@@ -580,6 +716,10 @@ public class HashSet implements Set
           newNode.hash = hash;
           newNode.next = node.next;
           node.next = newNode;
+          added( hash );
+
+          if ( ordering != null )
+            treeify( probe );
 
           if ( ++size > limit )
             expand();
@@ -599,6 +739,10 @@ public class HashSet implements Set
     newNode.hash = hash;
     newNode.next = buckets[ probe ];
     buckets[ probe ] = newNode;
+    added( hash );
+
+    if ( ordering != null )
+      treeify( probe );
 
     if ( ++size > limit )
       expand();
@@ -606,17 +750,71 @@ public class HashSet implements Set
     return null;
     }
 
+  /**
+   * Add every element of a container to myself as if by add(). Room for all of
+   * the elements is made before any of them are inserted.
+   * @param container The container.
+   * @exception NullPointerException If an element is null.
+   */
+  public synchronized void addAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    ensureCapacity( size + container.size() );
+    insert( container.start(), container.finish() );
+    }
+
+  /**
+   * Add every object in a range to myself as if by add(). If the range is given
+   * by random access iterators, room for all of the objects is made before any
+   * of them are inserted.
+   * @param first An iterator positioned at the first object to insert.
+   * @param last An iterator positioned immediately after the last object to insert.
+   * @exception NullPointerException If an object is null.
+   */
+  public synchronized void addAll( InputIterator first, InputIterator last )
+    {
+    if ( first instanceof RandomAccessIterator )
+      ensureCapacity( size + ( (RandomAccessIterator)first ).distance( (RandomAccessIterator)last ) );
+
+    insert( first, last );
+    }
+
+  /**
+   * Add every object in an array to myself as if by add(). Room for all of the
+   * objects is made before any of them are inserted.
+   * @param objects The objects.
+   * @exception NullPointerException If an object is null.
+   */
+  public synchronized void addAll( Object[] objects )
+    {
+    ensureCapacity( size + objects.length );
+
+    for ( int i = 0; i < objects.length; i++ )
+      addAux( objects[ i ] );
+    }
+
+  private void insert( InputIterator first, InputIterator last )
+    {
+    InputIterator iterator = (InputIterator)first.clone();
+
+    while ( !iterator.equals( last ) )
+      addAux( iterator.nextElement() );
+    }
+
   /**
    * Return the first object that matches the given object, or null if no match exists.
    * @param object The object to match against.
    */
   public synchronized Object get( Object object )
     {
-    int hash = object.hashCode() & 0x7FFFFFFF;
+    int hash = hash( object );
 
-    for ( HashSetNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.object, object ) )
-        return node.object;
+    HashSetNode node = lookup( object, hash );
+
+    if ( node != null )
+      return node.object;
 
     return null;
     }
@@ -628,12 +826,20 @@ public class HashSet implements Set
    * @exception NullPointerException If the value of the object is equal to null.
    */
   public synchronized Object put( Object object )
+    {
+    return putAux( object );
+    }
+
+  Object putAux( Object object )
     {
     if ( object == null )
       throw new NullPointerException();
 
-    int hash = object.hashCode() & 0x7FFFFFFF;
-    int probe = hash % length;
+    int hash = hash( object );
+    int probe = migrate( hash );
+
+    if ( trees != null && trees[ probe ] != null )
+      return addToTree( probe, object, hash, true );
 
     // find if object already exists first
     for ( HashSetNode node = buckets[ probe ]; node != null; node = node.next )
@@ -651,6 +857,10 @@ public class HashSet implements Set
     newNode.hash = hash;
     newNode.next = buckets[ probe ];
     buckets[ probe ] = newNode;
+    added( hash );
+
+    if ( ordering != null )
+      treeify( probe );
 
     if ( ++size > limit )
       expand();
@@ -851,46 +1061,197 @@ public class HashSet implements Set
    */
   public synchronized Range equalRange( Object object )
     {
-    int hash = object.hashCode() & 0x7FFFFFFF;
+    int hash = hash( object );
 
-    for ( HashSetNode node = buckets[ hash % length ]; node != null; node = node.next )
-      if ( hash == node.hash && comparator.execute( node.object, object ) )
-        {
-        HashSetNode begin = node;
-        node = node.next;
+    HashSetNode node = lookup( object, hash );
 
-        while ( node != null && hash == node.hash && comparator.execute( node.object, object ) )
-          node = node.next == null ? next( node ) : node.next;
+    if ( node != null )
+      {
+      HashSetNode begin = node;
+      node = node.next;
 
-        return new Range
-          (
-          new HashSetIterator( begin, this ),
-          new HashSetIterator( node, this )
-          );
-        }
+      while ( node != null && hash == node.hash && comparator.execute( node.object, object ) )
+        node = node.next == null ? next( node ) : node.next;
+
+      return new Range
+        (
+        new HashSetIterator( begin, this ),
+        new HashSetIterator( node, this )
+        );
+      }
 
     return new Range( end(), end() );
     }
 
-  private HashSetNode first()
+  /**
+   * Return my first node. While an expansion is being migrated, the nodes
+   * that are still in the old buckets come first.
+   */
+  HashSetNode first()
     {
     if ( size > 0 )
+      {
+      if ( oldBuckets != null )
+        for ( int i = migrated; i < oldLength; i++ )
+          if ( oldBuckets[ i ] != null )
+            return oldBuckets[ i ];
+
       for ( int i = 0; i < length; i++ )
         if ( buckets[ i ] != null )
           return buckets[ i ];
+      }
 
     return null;
     }
 
-  private HashSetNode next( HashSetNode node )
+  /**
+   * Return the node that follows the last node of a chain.
+   */
+  HashSetNode next( HashSetNode node )
     {
-    for ( int i = ( node.hash % length ) + 1; i < length; i++ )
+    int i;
+
+    if ( oldBuckets != null && oldBuckets[ i = bucket( node.hash, oldLength ) ] != null )
+      {
+      while ( ++i < oldLength )
+        if ( oldBuckets[ i ] != null )
+          return oldBuckets[ i ];
+
+      i = -1;
+      }
+    else
+      {
+      i = bucket( node.hash, length );
+      }
+
+    while ( ++i < length )
       if ( buckets[ i ] != null )
         return buckets[ i ];
 
     return null;
     }
 
+  /**
+   * Return the first node that matches a given object, or null if there is none.
+   */
+  final HashSetNode lookup( Object object, int hash )
+    {
+    if ( filter == null )
+      return search( object, hash );
+
+    if ( !filter.mightContain( hash ) )
+      return null;
+
+    HashSetNode node = search( object, hash );
+
+    if ( node == null )
+      filter.falsePositive();
+
+    return node;
+    }
+
+  private HashSetNode search( Object object, int hash )
+    {
+    HashSetNode[] table = buckets;
+    HashBucketTree[] tableTrees = trees;
+    int probe = bucket( hash, length );
+
+    if ( oldBuckets != null && oldBuckets[ bucket( hash, oldLength ) ] != null )
+      {
+      table = oldBuckets;
+      tableTrees = oldTrees;
+      probe = bucket( hash, oldLength );
+      }
+
+    if ( tableTrees != null && tableTrees[ probe ] != null )
+      return (HashSetNode)tableTrees[ probe ].find( hash, object, comparator );
+
+    for ( HashSetNode node = table[ probe ]; node != null; node = node.next )
+      if ( hash == node.hash && comparator.execute( node.object, object ) )
+        return node;
+
+    return null;
+    }
+
+  /**
+   * Return my hash spreader, or null if I select buckets by division.
+   */
+  public HashSpreader getSpreader()
+    {
+    return spreader;
+    }
+
+  /**
+   * Change the way that I select hash buckets. If the spreader is not null, my
+   * number of buckets is rounded up to a power of two and a bucket is selected
+   * by masking the spread hash code of an object. If the spreader is null, buckets
+   * are selected by dividing the hash code by the number of buckets, which is
+   * the default. My objects are redistributed immediately.
+   * @param spreader The new spreader, or null.
+   */
+  public synchronized void setSpreader( HashSpreader spreader )
+    {
+    this.spreader = spreader;
+    rehash( spreader == null ? length : HashMap.powerOfTwo( length ), true );
+    }
+
+  /**
+   * Change the way that I select hash buckets to a power-of-two number of
+   * buckets using the default spreader.
+   */
+  public void setSpreader()
+    {
+    setSpreader( new xSpreader() );
+    }
+
+  /**
+   * Return my hasher, or null if I hash my objects using hashCode().
+   */
+  public Hasher getHasher()
+    {
+    return hasher;
+    }
+
+  /**
+   * Change the way that I compute the hash codes of my objects. The hasher must
+   * return the same hash code for any two objects that match according to my
+   * comparator. If the hasher is null, which is the default, the hashCode()
+   * method of each object is used. My objects are redistributed immediately.
+   * @param hasher The new hasher, or null.
+   */
+  public synchronized void setHasher( Hasher hasher )
+    {
+    this.hasher = hasher;
+    rehash( length, true );
+    }
+
+  /**
+   * Return the ordering that I use to treeify long chains, or null if my
+   * chains are never treeified.
+   */
+  public BinaryPredicate getCollisionOrdering()
+    {
+    return ordering;
+    }
+
+  /**
+   * Change the ordering that I use to treeify long chains. Once a chain holds
+   * more than eight objects, they are also indexed by a balanced tree ordered by
+   * hash code and then by the ordering, so that an object whose hash code is
+   * shared by many others is still found in logarithmic time. The tree is
+   * discarded when its chain shrinks below six objects. The ordering must be a
+   * strict ordering under which objects that match according to my comparator
+   * are equivalent. If the ordering is null, which is the default, my chains
+   * are never treeified.
+   * @param ordering The new ordering, or null.
+   */
+  public synchronized void setCollisionOrdering( BinaryPredicate ordering )
+    {
+    this.ordering = ordering;
+    trees = ordering == null ? null : treeifyAll( buckets );
+    oldTrees = ordering == null || oldBuckets == null ? null : treeifyAll( oldBuckets );
+    }
+
   /**
    * Return true if adding an object to myself could result in an expansion
    * of the number of hash buckets I currently use.
@@ -910,12 +1271,144 @@ public class HashSet implements Set
     expandActive = allow;
     }
 
+  /**
+   * Make room for a specified number of objects, so that I will not expand until
+   * I hold more than that many. This operation does not change the value
+   * returned by size(), and has no effect if expansion is disabled.
+   * @param n The number of objects to make room for.
+   * @exception IllegalArgumentException If the specified number is negative.
+   */
+  public synchronized void ensureCapacity( int n )
+    {
+    if ( n < 0 )
+      throw new IllegalArgumentException( "Attempt to reserve a negative size." );
+
+    if ( n <= limit || !expansionAllowed() )
+      return;
+
+    int newLength = length;
+
+    while ( (int)( newLength * ratio ) < n && newLength < ( 1 << 30 ) )
+      newLength = spreader == null ? nextBucketSize( newLength ) : newLength * 2;
+
+    rehash( newLength, false );
+    }
+
+  /**
+   * Reduce my hash buckets to the fewest that can hold my objects without an
+   * expansion, to save space and speed up iteration after many removals. This
+   * operation does not change the value returned by size(), and has no effect if
+   * expansion is disabled.
+   */
+  public synchronized void trimToSize()
+    {
+    if ( expansionAllowed() )
+      resize( size, ratio, 1 );
+    }
+
+  /**
+   * Return the load ratio below which I shrink automatically, or 0 if I never do.
+   */
+  public float getShrinkRatio()
+    {
+    return shrinkRatio;
+    }
+
+  /**
+   * Set the load ratio below which I shrink automatically after a removal. When
+   * my load falls below it, my hash buckets are reduced until my load is half of my
+   * maximum load ratio, but never to fewer than the default number of buckets.
+   * Since the shrink ratio may not exceed a quarter of the maximum load ratio, many
+   * objects must be added or removed before my buckets change again. If the
+   * ratio is 0, which is the default, I never shrink automatically. Nor do I
+   * shrink if expansion is disabled.
+   * @param ratio The new shrink ratio.
+   * @exception IllegalArgumentException If the ratio is negative or exceeds a quarter
+   * of my maximum load ratio.
+   */
+  public synchronized void setShrinkRatio( float ratio )
+    {
+    if ( ratio < 0 || ratio > this.ratio / 4 )
+      throw new IllegalArgumentException( "Shrink ratio must be between 0 and a quarter of the load ratio" );
+
+    shrinkRatio = ratio;
+    shrink();
+    }
+
+  /**
+   * Return the BloomFilter that summarizes my hash codes, or null if I have none.
+   */
+  public BloomFilter getFilter()
+    {
+    return filter;
+    }
+
+  /**
+   * Place a BloomFilter in front of my lookups and removals, so that most of those
+   * for objects that I do not contain are rejected without searching my buckets.
+   * The filter is kept up to date as objects are added, cleared with me, and
+   * rebuilt whenever my buckets are rehashed or removals have made it stale.
+   * @param falsePositiveRate The fraction of missing objects that the filter may let through.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public synchronized void enableFilter( double falsePositiveRate )
+    {
+    filter = new BloomFilter( Math.max( limit, size ), falsePositiveRate );
+    rebuildFilter();
+    }
+
+  /**
+   * Discard my BloomFilter, if any.
+   */
+  public synchronized void disableFilter()
+    {
+    filter = null;
+    }
+
+  /**
+   * Return the maximum number of old hash buckets that are migrated by each
+   * insertion or removal after an expansion, or 0 if expansion is not incremental.
+   */
+  public int getExpansionStep()
+    {
+    return expansionStep;
+    }
+
+  /**
+   * Set the maximum number of old hash buckets that are migrated by each
+   * insertion or removal after an expansion. If the step is 0, which is the
+   * default, an expansion redistributes all of my objects at once. A step of 2
+   * or more finishes each migration before the next expansion is due.
+   * @param step The new expansion step.
+   * @exception IllegalArgumentException If the step is negative.
+   */
+  public synchronized void setExpansionStep( int step )
+    {
+    if ( step < 0 )
+      throw new IllegalArgumentException( "Attempt to set a negative expansion step" );
+
+    expansionStep = step;
+
+    if ( step == 0 )
+      finishExpansion();
+    }
+
+  /**
+   * Return true if the objects in my old hash buckets are still being migrated
+   * after an incremental expansion.
+   */
+  public boolean isExpanding()
+    {
+    return oldBuckets != null;
+    }
+
   /**
    * Return the number of new buckets to create when expanding the
    * collection.  The number returned must be positive, and should be
    * greater than the current bucket size. It is advisable to have
    * the new size be prime (or have few divisors less than 20) for
-   * the best hash distribution.
+   * the best hash distribution. This method is not used if I have a
+   * spreader, in which case the number of buckets is simply doubled.
    * @param length The current number of buckets.
    * @return length * 2 + 1
    */
@@ -929,7 +1422,121 @@ public class HashSet implements Set
     if ( !expansionAllowed() )
       return;
 
-    int newLength = nextBucketSize( length );
+    int newLength = spreader == null ? nextBucketSize( length ) : length * 2;
+
+    if ( expansionStep == 0 )
+      {
+      rehash( newLength, false );
+      return;
+      }
+
+    finishExpansion();
+    oldBuckets = buckets;
+    oldTrees = trees;
+    oldLength = length;
+    migrated = 0;
+    buckets = new HashSetNode[ newLength ];
+    trees = null;
+    length = newLength;
+    limit = (int)( length * ratio );
+    }
+
+  /**
+   * Prepare to modify the chain for a given hash code by migrating its old
+   * bucket, then migrate up to the expansion step of the remaining old
+   * buckets. Return the bucket of the hash code in the current table.
+   */
+  private int migrate( int hash )
+    {
+    if ( oldBuckets != null )
+      {
+      migrateBucket( bucket( hash, oldLength ) );
+
+      for ( int n = expansionStep; n > 0 && oldBuckets != null; n-- )
+        migrateBucket( migrated );
+      }
+
+    return bucket( hash, length );
+    }
+
+  private void migrateBucket( int i )
+    {
+    HashSetNode node = oldBuckets[ i ];
+    oldBuckets[ i ] = null;
+
+    if ( oldTrees != null )
+      oldTrees[ i ] = null;
+
+    while ( node != null )
+      {
+      HashSetNode current = node;
+      node = node.next;
+      int probe = bucket( current.hash, length );
+
+      if ( trees != null && trees[ probe ] != null )
+        {
+        linkAfter( buckets, probe, (HashSetNode)trees[ probe ].insert( current.hash, current.object, current ), current );
+        }
+      else
+        {
+        current.next = buckets[ probe ];
+        buckets[ probe ] = current;
+
+        if ( ordering != null )
+          treeify( probe );
+        }
+      }
+
+    while ( migrated < oldLength && oldBuckets[ migrated ] == null )
+      ++migrated;
+
+    if ( migrated == oldLength )
+      {
+      oldBuckets = null;
+      oldTrees = null;
+      }
+    }
+
+  /**
+   * Shrink automatically if my load has fallen below my shrink ratio.
+   */
+  private void shrink()
+    {
+    if ( size < length * shrinkRatio && expansionAllowed() )
+      resize( size, ratio / 2, DEFAULT_SIZE );
+
+    if ( filter != null && filter.isStale( size ) )
+      rebuildFilter();
+    }
+
+  /**
+   * Rehash into the fewest buckets, but at least a given minimum, that hold a given
+   * number of objects at no more than a given load, if that is fewer than I have now.
+   */
+  private void resize( int n, float load, int minimum )
+    {
+    int newLength = Math.max( (int)Math.ceil( n / load ), minimum );
+
+    while ( (int)( newLength * ratio ) < n )
+      ++newLength;
+
+    // Prefer odd lengths when dividing, as nextBucketSize() does.
+    newLength = spreader == null ? newLength | 1 : HashMap.powerOfTwo( newLength );
+
+    if ( newLength < length )
+      rehash( newLength, false );
+    }
+
+  private void finishExpansion()
+    {
+    while ( oldBuckets != null )
+      migrateBucket( migrated );
+    }
+
+  private void rehash( int newLength, boolean rehashObjects )
+    {
+    finishExpansion();
+    trees = null;
     HashSetNode[] newBuckets = new HashSetNode[ newLength ];
 
     for ( int i = 0; i < length; i++ )
@@ -940,7 +1547,11 @@ public class HashSet implements Set
         {
         HashSetNode current = node;
         node = node.next;
-        int probe = current.hash % newLength;
+
+        if ( rehashObjects )
+          current.hash = hash( current.object );
+
+        int probe = bucket( current.hash, newLength );
         current.next = newBuckets[ probe ];
         newBuckets[ probe ] = current;
         }
@@ -949,6 +1560,242 @@ public class HashSet implements Set
     buckets = newBuckets;
     length = newLength;
     limit = (int)( length * ratio );
+
+    if ( ordering != null )
+      trees = treeifyAll( buckets );
+
+    if ( filter != null )
+      rebuildFilter();
+    }
+
+  /**
+   * Add the hash code of a new node to my filter, rebuilding it if it is full.
+   */
+  private void added( int hash )
+    {
+    if ( filter != null )
+      {
+      filter.add( hash );
+
+      if ( filter.isStale( size + 1 ) )
+        rebuildFilter();
+      }
+    }
+
+  /**
+   * Size my filter for my current table and refill it with the hash codes of my nodes.
+   */
+  private void rebuildFilter()
+    {
+    filter.reset( Math.max( limit, size ) );
+    addHashes( buckets );
+
+    if ( oldBuckets != null )
+      addHashes( oldBuckets );
+    }
+
+  private void addHashes( HashSetNode[] table )
+    {
+    for ( int i = 0; i < table.length; i++ )
+      for ( HashSetNode node = table[ i ]; node != null; node = node.next )
+        filter.add( node.hash );
+    }
+
+  private static HashSetNode[] copyBuckets( HashSetNode[] source )
+    {
+    HashSetNode[] result = new HashSetNode[ source.length ];
+
+    for ( int i = 0; i < source.length; i++ )
+      {
+      HashSetNode previous = null;
+
+      for ( HashSetNode node = source[ i ]; node != null; node = node.next )
+        {
+        HashSetNode newNode = new HashSetNode();
+        newNode.object = node.object;
+        newNode.hash = node.hash;
+
+        if ( previous == null )
+          result[ i ] = newNode;
+        else
+          previous.next = newNode;
+
+        previous = newNode;
+        }
+      }
+
+    return result;
+    }
+
+  private Object addToTree( int probe, Object object, int hash, boolean replace )
+    {
+    HashBucketTree tree = trees[ probe ];
+    HashSetNode node = (HashSetNode)tree.find( hash, object, comparator );
+
+    if ( node != null )
+      {
+      if ( replace )
+        {
+        Object previous = node.object;
+        node.object = object;
+        return previous;
+        }
+
+      if ( !allowDups )
+        return node.object;
+      }
+
+    HashSetNode newNode = new HashSetNode();
+    newNode.object = object;
+    newNode.hash = hash;
+    linkAfter( buckets, probe, (HashSetNode)tree.insert( hash, object, newNode ), newNode );
+    added( hash );
+
+    if ( ++size > limit )
+      expand();
+
+    return null;
+    }
+
+  private Pair removeAux( int probe, Object object, int hash, int maximum )
+    {
+    HashBucketTree tree = trees[ probe ];
+    HashSetNode node = (HashSetNode)tree.find( hash, object, comparator );
+
+    if ( node == null )
+      return new Pair( null, new Integer( 0 ) );
+
+    HashSetNode previous = (HashSetNode)tree.remove( hash, node.object, node );
+    HashSetNode end = node.next;
+    Object value = node.object; // we only want the first one.
+    int count = 1;
+    --maximum;
+
+    if ( allowDups )
+      {
+      while ( maximum > 0 && end != null && end.hash == hash && comparator.execute( end.object, object ) )
+        {
+        tree.remove( hash, end.object, end );
+        ++count;
+        --maximum;
+        end = end.next;
+        }
+      }
+
+    unlink( buckets, probe, previous, end );
+
+    if ( tree.size() < UNTREEIFY_THRESHOLD )
+      trees[ probe ] = null;
+
+    size -= count;
+    shrink();
+    return new Pair( value, new Integer( count ) );
+    }
+
+  /**
+   * Treeify a bucket of my current table if its chain has become too long.
+   */
+  private void treeify( int probe )
+    {
+    if ( ( trees == null || trees[ probe ] == null ) && longer( buckets[ probe ], TREEIFY_THRESHOLD ) )
+      {
+      if ( trees == null )
+        trees = new HashBucketTree[ length ];
+
+      trees[ probe ] = buildTree( buckets, probe );
+      }
+    }
+
+  /**
+   * Treeify every long chain of a table and return the trees, or null if
+   * there are none.
+   */
+  private HashBucketTree[] treeifyAll( HashSetNode[] table )
+    {
+    HashBucketTree[] result = null;
+
+    for ( int i = 0; i < table.length; i++ )
+      if ( longer( table[ i ], TREEIFY_THRESHOLD ) )
+        {
+        if ( result == null )
+          result = new HashBucketTree[ table.length ];
+
+        result[ i ] = buildTree( table, i );
+        }
+
+    return result;
+    }
+
+  /**
+   * Index the chain of a bucket by a new tree, relinking the chain in tree order.
+   */
+  private HashBucketTree buildTree( HashSetNode[] table, int probe )
+    {
+    HashBucketTree tree = new HashBucketTree( ordering );
+    HashSetNode node = table[ probe ];
+    table[ probe ] = null;
+
+    while ( node != null )
+      {
+      HashSetNode current = node;
+      node = node.next;
+      linkAfter( table, probe, (HashSetNode)tree.insert( current.hash, current.object, current ), current );
+      }
+
+    return tree;
+    }
+
+  private static boolean longer( HashSetNode node, int n )
+    {
+    for ( ; node != null; node = node.next )
+      if ( n-- == 0 )
+        return true;
+
+    return false;
+    }
+
+  private static void linkAfter( HashSetNode[] table, int probe, HashSetNode previous, HashSetNode node )
+    {
+    if ( previous == null )
+      {
+      node.next = table[ probe ];
+      table[ probe ] = node;
+      }
+    else
+      {
+      node.next = previous.next;
+      previous.next = node;
+      }
+    }
+
+  private static void unlink( HashSetNode[] table, int probe, HashSetNode previous, HashSetNode next )
+    {
+    if ( previous == null )
+      table[ probe ] = next;
+    else
+      previous.next = next;
+    }
+
+  /**
+   * Return the hash code of an object, computed by my hasher if I have one and
+   * spread if necessary, as a non-negative number.
+   */
+  final int hash( Object object )
+    {
+    int hash = hasher == null ? object.hashCode() : hasher.hash( object );
+
+    if ( spreader != null )
+      hash = spreader.spread( hash );
+
+    return hash & 0x7FFFFFFF;
+    }
+
+  /**
+   * Return the bucket that a hash code selects in a table of a given length.
+   */
+  final int bucket( int hash, int length )
+    {
+    return spreader == null ? hash % length : hash & ( length - 1 );
     }
 
   private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
@@ -964,11 +1811,57 @@ public class HashSet implements Set
     {
     stream.defaultReadObject();
     buckets = new HashSetNode[ length ];
+
+    if ( filter != null )
+      filter.clear();
+
     int count = stream.readInt();
     while ( count-- > 0 )
       add( stream.readObject() );
     }
 
+  /**
+   * Return true if a node is not null and its object matches that of another node.
+   */
+  private boolean matches( HashSetNode node, HashSetNode target )
+    {
+    return node != null && node.hash == target.hash && comparator.execute( node.object, target.object );
+    }
+
+  /**
+   * Return false if another set that hashes its objects the same way as me holds
+   * a different number of objects or a different sum of hash codes in any bucket,
+   * which proves that its objects differ from mine. Return true otherwise.
+   */
+  private boolean sameBuckets( HashSet set )
+    {
+    if ( length != set.length || oldBuckets != null || set.oldBuckets != null || hasher != set.hasher || spreader != set.spreader )
+      return true;
+
+    for ( int i = 0; i < length; i++ )
+      {
+      int n = 0;
+      int sum = 0;
+
+      for ( HashSetNode node = buckets[ i ]; node != null; node = node.next )
+        {
+        ++n;
+        sum += node.hash;
+        }
+
+      for ( HashSetNode node = set.buckets[ i ]; node != null; node = node.next )
+        {
+        --n;
+        sum -= node.hash;
+        }
+
+      if ( n != 0 || sum != 0 )
+        return false;
+      }
+
+    return true;
+    }
+
   static final class HashSetNode
     {
     Object object = null;
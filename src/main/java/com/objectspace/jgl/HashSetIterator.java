@@ -71,11 +71,7 @@ public final class HashSetIterator implements ForwardIterator, Opaque
     if ( myHashSet == null )
       return false;
 
-    for ( int i = 0; i < myHashSet.length; i++ )
-      if ( myHashSet.buckets[ i ] != null )
-        return myNode == myHashSet.buckets[ i ];
-
-    return true;
+    return myNode == myHashSet.first();
     }
 
   /**
@@ -99,7 +95,7 @@ public final class HashSetIterator implements ForwardIterator, Opaque
    */
   public void advance()
     {
-    myNode = ( myNode.next != null ? myNode.next : next( myNode ) );
+    myNode = ( myNode.next != null ? myNode.next : myHashSet.next( myNode ) );
     }
 
   /**
@@ -124,7 +120,7 @@ public final class HashSetIterator implements ForwardIterator, Opaque
     try
       {
       Object object = myNode.object;
-      myNode = ( myNode.next != null ? myNode.next : next( myNode ) );
+      myNode = ( myNode.next != null ? myNode.next : myHashSet.next( myNode ) );
       return object;
       }
     catch ( NullPointerException ex )
@@ -189,7 +185,7 @@ public final class HashSetIterator implements ForwardIterator, Opaque
     while ( myNode != node )
       {
       ++n;
-      myNode = ( myNode.next != null ? myNode.next : next( myNode ) );
+      myNode = ( myNode.next != null ? myNode.next : myHashSet.next( myNode ) );
       }
 
     myNode = oldNode;
@@ -233,12 +229,4 @@ public final class HashSetIterator implements ForwardIterator, Opaque
     return System.identityHashCode( myHashSet );
     }
 
-  private HashSet.HashSetNode next( HashSet.HashSetNode node )
-    {
-    for ( int i = ( node.hash % myHashSet.length ) + 1; i < myHashSet.length; i++ )
-      if ( myHashSet.buckets[ i ] != null )
-        return myHashSet.buckets[ i ];
-
-    return null;
-    }
   }
@@ -0,0 +1,30 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.io.Serializable;
+
+/**
+ * HashSpreader is the interface that must be implemented by objects that mix
+ * the bits of a hash code before it is used to select a hash bucket. Hashing
+ * containers that use a power-of-two number of buckets only look at the low
+ * bits of a hash code, so a spreader should fold the high bits into the low
+ * bits. A spreader must always return the same result for the same hash code.
+ * <p>
+ * @see HashMap#setSpreader
+ * @see HashSet#setSpreader
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public interface HashSpreader extends Serializable
+  {
+  /**
+   * Return a hash code whose low bits depend on all the bits of the operand.
+   * @param hash The hash code to spread.
+   * @return The spread hash code.
+   */
+  int spread( int hash );
+
+  static final long serialVersionUID = -1624802557315328430L;
+  }
@@ -0,0 +1,34 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.io.Serializable;
+
+/**
+ * Hasher is the interface that must be implemented by hashing strategies. A
+ * hashing container uses its hasher instead of hashCode() to find the bucket of
+ * an object, which allows hash quality to be traded against speed on a per
+ * container basis. A hasher must return the same hash code for any two objects
+ * that match according to the comparator of the container that uses it.
+ * <p>
+ * @see com.objectspace.jgl.functions.Hash
+ * @see com.objectspace.jgl.functions.IdentityHash
+ * @see com.objectspace.jgl.functions.StringHash
+ * @see com.objectspace.jgl.functions.UnaryFunctionHasher
+ * @see HashMap#setHasher
+ * @see HashSet#setHasher
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public interface Hasher extends Serializable
+  {
+  /**
+   * Return the hash code of an object.
+   * @param object The object to hash.
+   * @return The hash code of the object.
+   */
+  int hash( Object object );
+
+  static final long serialVersionUID = 2417395560273180362L;
+  }
@@ -0,0 +1,699 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import com.objectspace.jgl.predicates.IdenticalTo;
+import java.util.Enumeration;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * An IdentityHashMap is an associative container that matches keys by identity
+ * rather than by equals(). It behaves like a HashMap that uses an IdenticalTo
+ * comparator, but hashes keys with System.identityHashCode() and compares them
+ * with == directly, so a lookup never calls a key's hashCode() or a
+ * BinaryPredicate. Duplicate keys are not allowed.
+ * <p>
+ * Keys and values are stored side by side in a single array and collisions are
+ * resolved by linear probing, so a lookup usually reads one or two adjacent slots
+ * and no node is allocated per pair. Removal shifts the entries that follow back
+ * towards their home slots rather than leaving tombstones.
+ * <p>
+ * Identity maps are useful for keys whose equals() and hashCode() are expensive
+ * or not meaningful, such as graph nodes, proxies and objects being serialized.
+ * Values are still compared using equals().
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see OpenHashMap
+ * @see IdentityHashSet
+ * @see com.objectspace.jgl.benchmarks.IdentityMapBenchmarks
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class IdentityHashMap extends Map
+  {
+  static final int DEFAULT_SIZE = 32;
+  static final float DEFAULT_RATIO = 0.5F;
+
+  transient int size; // # pairs.
+  transient Object[] table; // key of slot i at 2i, its value at 2i + 1.
+  int capacity; // # slots, always a power of two.
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be an empty IdentityHashMap.
+   */
+  public IdentityHashMap()
+    {
+    this( DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IdentityHashMap with room for a given number
+   * of pairs before expanding.
+   * @param expected The number of pairs to reserve room for.
+   */
+  public IdentityHashMap( int expected )
+    {
+    this( (int)( expected / DEFAULT_RATIO ) + 1, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IdentityHashMap. The initial slots and load
+   * ratio must be specified. The number of slots is rounded up to the next power
+   * of two.
+   * @param capacity The initial number of slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   */
+  public IdentityHashMap( int capacity, float loadRatio )
+    {
+    if ( loadRatio <= 0.0F || loadRatio >= 1.0F )
+      throw new IllegalArgumentException( "load ratio must be between 0 and 1" );
+
+    ratio = loadRatio;
+    allocate( HashMap.powerOfTwo( capacity ) );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing IdentityHashMap.
+   * @param map The IdentityHashMap to copy.
+   */
+  public IdentityHashMap( IdentityHashMap map )
+    {
+    copy( map );
+    }
+
+  /**
+   * Return an IdenticalTo predicate, which describes how I compare keys.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return new IdenticalTo();
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new IdentityHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing IdentityHashMap.
+   * @param map The IdentityHashMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( IdentityHashMap map )
+    {
+    synchronized( map )
+      {
+      capacity = map.capacity;
+      ratio = map.ratio;
+      limit = map.limit;
+      size = map.size;
+      table = (Object[])map.table.clone();
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "IdentityHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public synchronized Enumeration elements()
+    {
+    return new IdentityHashMapIterator( first(), this, IdentityHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized IdentityHashMapIterator begin()
+    {
+    return new IdentityHashMapIterator( first(), this, IdentityHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized IdentityHashMapIterator end()
+    {
+    return new IdentityHashMapIterator( -1, this, IdentityHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof IdentityHashMap && equals( (IdentityHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another
+   * IdentityHashMap. Keys must be identical, and values are compared using equals().
+   * @param map The IdentityHashMap to compare myself against.
+   */
+  public synchronized boolean equals( IdentityHashMap map )
+    {
+    synchronized( map )
+      {
+      if ( size != map.size )
+        return false;
+
+      for ( int i = first(); i >= 0; i = next( i ) )
+        {
+        int slot = map.locate( table[ i ] );
+
+        if ( slot < 0 || !table[ i + 1 ].equals( map.table[ slot + 1 ] ) )
+          return false;
+        }
+      }
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers. It combines the
+   * identity hash codes of my keys, which is consistent with equals().
+   */
+  public synchronized int hashCode()
+    {
+    int h = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      h ^= System.identityHashCode( table[ i ] );
+
+    return h;
+    }
+
+  /**
+   * Swap my contents with another IdentityHashMap.
+   * @param map The IdentityHashMap that I will swap my contents with.
+   */
+  public synchronized void swap( IdentityHashMap map )
+    {
+    synchronized( map )
+      {
+      int tmpSize = size;
+      size = map.size;
+      map.size = tmpSize;
+
+      Object[] tmpTable = table;
+      table = map.table;
+      map.table = tmpTable;
+
+      int tmpCapacity = capacity;
+      capacity = map.capacity;
+      map.capacity = tmpCapacity;
+
+      int tmpLimit = limit;
+      limit = map.limit;
+      map.limit = tmpLimit;
+
+      float tmpRatio = ratio;
+      ratio = map.ratio;
+      map.ratio = tmpRatio;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    table = new Object[ table.length ];
+    size = 0;
+    }
+
+  /**
+   * Remove the key/value pair whose key is identical to a particular key.
+   * @param key The key of the pair to be removed.
+   * @return The value removed or null if not changed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    int slot = locate( key );
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = table[ slot + 1 ];
+    delete( slot );
+    return value;
+    }
+
+  /**
+   * Remove the key/value pair whose key is identical to a particular key if the
+   * count is positive.
+   * @param key The key of the pair to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    return count > 0 && remove( key ) != null ? 1 : 0;
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * IdentityHashMapIterator for this IdentityHashMap object.
+   * @return Return the value associated with the enumeration.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof IdentityHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not an IdentityHashMapIterator" );
+
+    if ( ((IdentityHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this IdentityHashMap" );
+
+    int slot = ( (IdentityHashMapIterator)e ).myIndex;
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = table[ slot + 1 ];
+    delete( slot );
+    return value;
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * IdentityHashMapIterator for this IdentityHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof IdentityHashMapIterator) ) ||
+        ( ! (last instanceof IdentityHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not an IdentityHashMapIterator" );
+
+    if ( ( ((IdentityHashMapIterator)first).myMap != this ) ||
+        ( ((IdentityHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this IdentityHashMap" );
+
+    int begin = ( (IdentityHashMapIterator)first ).myIndex;
+    int end = ( (IdentityHashMapIterator)last ).myIndex;
+    Object[] doomed = new Object[ size ];
+    int count = 0;
+
+    // Removal can move a later pair into an earlier slot, so collect the keys
+    // first and then remove them one at a time.
+    for ( int i = begin; i != end; i = next( i ) )
+      doomed[ count++ ] = table[ i ];
+
+    for ( int i = 0; i < count; i++ )
+      delete( locate( doomed[ i ] ) );
+
+    return count;
+    }
+
+  /**
+   * Find a key/value pair whose key is identical to a particular key and return
+   * its position. If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized IdentityHashMapIterator find( Object key )
+    {
+    return new IdentityHashMapIterator( locate( key ), this, IdentityHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return the number of key/value pairs whose key is identical to a particular
+   * key, which is 0 or 1.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    return locate( key ) < 0 ? 0 : 1;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int count = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( table[ i + 1 ].equals( value ) )
+        ++count;
+
+    return count;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    int slot = locate( key );
+    return slot < 0 ? null : table[ slot + 1 ];
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int i = probe( key );
+
+    if ( table[ i ] != null )
+      {
+      // replace old version & return it
+      Object previous = table[ i + 1 ];
+      table[ i + 1 ] = value;
+      return previous;
+      }
+
+    insert( i, key, value );
+    return null;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int i = probe( key );
+
+    if ( table[ i ] != null )
+      return table[ i + 1 ]; // DO NOT add
+
+    insert( i, key, value );
+    return null;
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return new IdentityHashMapIterator( first(), this, IdentityHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( table[ i + 1 ].equals( value ) )
+        array.pushBack( table[ i ] );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    int slot = locate( key );
+
+    if ( slot >= 0 )
+      array.pushBack( table[ slot + 1 ] );
+
+    return array.elements();
+    }
+
+  /**
+   * Make sure that I can hold a given number of pairs without expanding.
+   * @param n The number of pairs.
+   */
+  public synchronized void ensureCapacity( int n )
+    {
+    int needed = HashMap.powerOfTwo( (int)( n / ratio ) + 1 );
+
+    if ( needed > capacity )
+      rehash( needed );
+    }
+
+  /**
+   * Return the index of the key in my first occupied slot, or -1 if I'm empty.
+   */
+  int first()
+    {
+    return size == 0 ? -1 : next( -2 );
+    }
+
+  /**
+   * Return the index of the key in the first occupied slot after the one whose
+   * key is at a given index, or -1 if there is none.
+   */
+  int next( int index )
+    {
+    for ( int i = index + 2; i < table.length; i += 2 )
+      if ( table[ i ] != null )
+        return i;
+
+    return -1;
+    }
+
+  /**
+   * Return the index of the key that is identical to a given key, or -1 if there
+   * is none.
+   */
+  int locate( Object key )
+    {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+
+    for ( int i = home( key, mask ); ; i = ( i + 2 ) & mask )
+      {
+      Object k = tab[ i ];
+
+      if ( k == key )
+        return i;
+
+      if ( k == null )
+        return -1;
+      }
+    }
+
+  /**
+   * Return the index of the key that is identical to a given key, or of the empty
+   * slot where it belongs if there is none.
+   */
+  private int probe( Object key )
+    {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    int i = home( key, mask );
+
+    while ( tab[ i ] != null && tab[ i ] != key )
+      i = ( i + 2 ) & mask;
+
+    return i;
+    }
+
+  /**
+   * Return the index of the home slot of a key. Identity hash codes are already
+   * well scattered, so the high bits are only folded in to help small tables.
+   */
+  private static int home( Object key, int mask )
+    {
+    int h = System.identityHashCode( key );
+    return ( ( h ^ ( h >>> 16 ) ) << 1 ) & mask;
+    }
+
+  private void insert( int i, Object key, Object value )
+    {
+    table[ i ] = key;
+    table[ i + 1 ] = value;
+
+    if ( ++size > limit )
+      rehash( capacity * 2 );
+    }
+
+  /**
+   * Empty the slot whose key is at a given index and move back any entries that
+   * follow it in the same cluster and would otherwise become unreachable.
+   */
+  private void delete( int i )
+    {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    tab[ i ] = null;
+    tab[ i + 1 ] = null;
+    --size;
+
+    for ( int j = ( i + 2 ) & mask; tab[ j ] != null; j = ( j + 2 ) & mask )
+      {
+      int h = home( tab[ j ], mask );
+
+      // Move the entry at j into the hole at i unless its home lies cyclically
+      // in (i, j], in which case it is still reachable.
+      if ( ( j > i && ( h <= i || h > j ) ) || ( j < i && ( h <= i && h > j ) ) )
+        {
+        tab[ i ] = tab[ j ];
+        tab[ i + 1 ] = tab[ j + 1 ];
+        tab[ j ] = null;
+        tab[ j + 1 ] = null;
+        i = j;
+        }
+      }
+    }
+
+  private void rehash( int newCapacity )
+    {
+    Object[] old = table;
+    allocate( newCapacity );
+    Object[] tab = table;
+    int mask = tab.length - 1;
+
+    for ( int j = 0; j < old.length; j += 2 )
+      if ( old[ j ] != null )
+        {
+        int i = home( old[ j ], mask );
+
+        while ( tab[ i ] != null )
+          i = ( i + 2 ) & mask;
+
+        tab[ i ] = old[ j ];
+        tab[ i + 1 ] = old[ j + 1 ];
+        }
+    }
+
+  private void allocate( int newCapacity )
+    {
+    capacity = newCapacity;
+    limit = (int)( capacity * ratio );
+    table = new Object[ capacity * 2 ];
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeInt( size );
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      {
+      stream.writeObject( table[ i ] );
+      stream.writeObject( table[ i + 1 ] );
+      }
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    allocate( capacity );
+    int count = stream.readInt();
+    while ( count-- > 0 )
+      put( stream.readObject(), stream.readObject() );
+    }
+
+  static final long serialVersionUID = 4137026620838312207L;
+  }
@@ -0,0 +1,289 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * An IdentityHashMapIterator is a forward iterator that allows you to iterate through
+ * the contents of an IdentityHashMap. It has a mode that allows selection of the current
+ * position's key, value, or key-value pair.
+ * <p>
+ * @see ForwardIterator
+ * @see IdentityHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class IdentityHashMapIterator implements ForwardIterator, Opaque
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  IdentityHashMap myMap;
+  int myIndex = -1; // index of the key of an occupied slot, or -1 at the end.
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public IdentityHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public IdentityHashMapIterator( IdentityHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myIndex = iterator.myIndex;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular slot in a specified map.
+   * @param index The index of my key in the table, or -1 for the end position.
+   * @param map My associated map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  IdentityHashMapIterator( int index, IdentityHashMap map, int mode )
+    {
+    myMap = map;
+    myIndex = index;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new IdentityHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof IdentityHashMapIterator
+      && myIndex == ( (IdentityHashMapIterator)object ).myIndex
+      && myMap == ( (IdentityHashMapIterator)object ).myMap;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIndex == myMap.first();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myIndex < 0;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myIndex >= 0;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    myIndex = myMap.next( myIndex );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myIndex < 0 )
+      throw new java.util.NoSuchElementException( "IdentityHashMapIterator" );
+
+    Object result = get();
+    myIndex = myMap.next( myIndex );
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myMap.table[ myIndex ], myMap.table[ myIndex + 1 ] );
+
+      case KEY:
+        return myMap.table[ myIndex ];
+
+      case VALUE:
+        return myMap.table[ myIndex + 1 ];
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    IdentityHashMapIterator i = new IdentityHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. A key's slot
+   * depends on its identity, so in PAIR and KEY mode the key must be identical
+   * to my current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the key would be changed.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+
+        if ( pair.first != myMap.table[ myIndex ] )
+          throw new InvalidOperationException( "Cannot change the key of an IdentityHashMap pair." );
+
+        myMap.table[ myIndex + 1 ] = pair.second;
+        break;
+
+      case KEY:
+        if ( object != myMap.table[ myIndex ] )
+          throw new InvalidOperationException( "Cannot change the key of an IdentityHashMap pair." );
+        break;
+
+      case VALUE:
+        myMap.table[ myIndex + 1 ] = object;
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    IdentityHashMapIterator i = new IdentityHashMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myMap.table[ myIndex ];
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myMap.table[ myIndex + 1 ];
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param object The new value.
+   */
+  public void value( Object value )
+    {
+    myMap.table[ myIndex + 1 ] = value;
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    int last = ( (IdentityHashMapIterator)iterator ).myIndex;
+    int n = 0;
+
+    for ( int i = myIndex; i != last; i = myMap.next( i ) )
+      ++n;
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return null;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+  }
@@ -0,0 +1,677 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import com.objectspace.jgl.predicates.IdenticalTo;
+import java.util.Enumeration;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * An IdentityHashSet is a set that matches its objects by identity rather than by
+ * equals(). It behaves like a HashSet that uses an IdenticalTo comparator, but
+ * hashes objects with System.identityHashCode() and compares them with ==
+ * directly, so a lookup never calls an object's hashCode() or a BinaryPredicate.
+ * Duplicates are not allowed.
+ * <p>
+ * Objects are stored in a single array and collisions are resolved by linear
+ * probing, exactly as in an IdentityHashMap.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashSet
+ * @see IdentityHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class IdentityHashSet implements Set
+  {
+  static final int DEFAULT_SIZE = 32;
+  static final float DEFAULT_RATIO = 0.5F;
+
+  transient int size; // # objects.
+  transient Object[] table; // object in each slot, null if the slot is empty.
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be an empty IdentityHashSet.
+   */
+  public IdentityHashSet()
+    {
+    this( DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IdentityHashSet with room for a given number
+   * of objects before expanding.
+   * @param expected The number of objects to reserve room for.
+   */
+  public IdentityHashSet( int expected )
+    {
+    this( (int)( expected / DEFAULT_RATIO ) + 1, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IdentityHashSet. The initial slots and load
+   * ratio must be specified. The number of slots is rounded up to the next power
+   * of two.
+   * @param capacity The initial number of slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   */
+  public IdentityHashSet( int capacity, float loadRatio )
+    {
+    if ( loadRatio <= 0.0F || loadRatio >= 1.0F )
+      throw new IllegalArgumentException( "load ratio must be between 0 and 1" );
+
+    ratio = loadRatio;
+    allocate( HashMap.powerOfTwo( capacity ) );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing IdentityHashSet.
+   * @param set The IdentityHashSet to copy.
+   */
+  public IdentityHashSet( IdentityHashSet set )
+    {
+    copy( set );
+    }
+
+  /**
+   * Return an IdenticalTo predicate, which describes how I compare objects.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return new IdenticalTo();
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new IdentityHashSet( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing IdentityHashSet.
+   * @param set The IdentityHashSet that I shall become a shallow copy of.
+   */
+  public synchronized void copy( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      ratio = set.ratio;
+      limit = set.limit;
+      size = set.size;
+      table = (Object[])set.table.clone();
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "IdentityHashSet" );
+    }
+
+  /**
+   * Return an Enumeration of my objects.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned at my first item.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last item.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first item.
+   */
+  public synchronized IdentityHashSetIterator begin()
+    {
+    return new IdentityHashSetIterator( first(), this );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last item.
+   */
+  public synchronized IdentityHashSetIterator end()
+    {
+    return new IdentityHashSetIterator( -1, this );
+    }
+
+  /**
+   * Return true if I contain no objects.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of objects that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of objects that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof IdentityHashSet && equals( (IdentityHashSet)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same objects as another IdentityHashSet.
+   * @param set The IdentityHashSet to compare myself against.
+   */
+  public synchronized boolean equals( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      return size == set.size && subsetOf( set );
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers. It combines the
+   * identity hash codes of my objects, which is consistent with equals().
+   */
+  public synchronized int hashCode()
+    {
+    int h = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      h ^= System.identityHashCode( table[ i ] );
+
+    return h;
+    }
+
+  /**
+   * Swap my contents with another IdentityHashSet.
+   * @param set The IdentityHashSet that I will swap my contents with.
+   */
+  public synchronized void swap( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      int tmpSize = size;
+      size = set.size;
+      set.size = tmpSize;
+
+      Object[] tmpTable = table;
+      table = set.table;
+      set.table = tmpTable;
+
+      int tmpLimit = limit;
+      limit = set.limit;
+      set.limit = tmpLimit;
+
+      float tmpRatio = ratio;
+      ratio = set.ratio;
+      set.ratio = tmpRatio;
+      }
+    }
+
+  /**
+   * Remove all of my objects.
+   */
+  public synchronized void clear()
+    {
+    table = new Object[ table.length ];
+    size = 0;
+    }
+
+  /**
+   * Remove the object that is identical to a given object.
+   * @param object The object to remove.
+   * @return The number of objects removed, which is 0 or 1.
+   */
+  public synchronized int remove( Object object )
+    {
+    int slot = locate( object );
+
+    if ( slot < 0 )
+      return 0;
+
+    delete( slot );
+    return 1;
+    }
+
+  /**
+   * Remove the object that is identical to a given object if the count is positive.
+   * @param object The object to remove.
+   * @param count The maximum number of objects to remove.
+   * @return The number of objects removed.
+   */
+  public int remove( Object object, int count )
+    {
+    return count > 0 ? remove( object ) : 0;
+    }
+
+  /**
+   * Remove the object at a particular position.
+   * @param e An Enumeration positioned at the object to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * IdentityHashSetIterator for this IdentityHashSet object.
+   * @return Return the object that was removed, or null if none.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof IdentityHashSetIterator) )
+      throw new IllegalArgumentException( "Enumeration not an IdentityHashSetIterator" );
+
+    if ( ((IdentityHashSetIterator)e).mySet != this )
+      throw new IllegalArgumentException( "Enumeration not for this IdentityHashSet" );
+
+    int slot = ( (IdentityHashSetIterator)e ).myIndex;
+
+    if ( slot < 0 )
+      return null;
+
+    Object object = table[ slot ];
+    delete( slot );
+    return object;
+    }
+
+  /**
+   * Remove the objects within a specified range.
+   * @param first An Enumeration positioned at the first object to remove.
+   * @param last An Enumeration positioned immediately after the last object to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * IdentityHashSetIterator for this IdentityHashSet object.
+   * @return Return the number of objects removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof IdentityHashSetIterator) ) ||
+        ( ! (last instanceof IdentityHashSetIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not an IdentityHashSetIterator" );
+
+    if ( ( ((IdentityHashSetIterator)first).mySet != this ) ||
+        ( ((IdentityHashSetIterator)last).mySet != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this IdentityHashSet" );
+
+    int begin = ( (IdentityHashSetIterator)first ).myIndex;
+    int end = ( (IdentityHashSetIterator)last ).myIndex;
+    Object[] doomed = new Object[ size ];
+    int count = 0;
+
+    // Removal can move a later object into an earlier slot, so collect the
+    // objects first and then remove them one at a time.
+    for ( int i = begin; i != end; i = next( i ) )
+      doomed[ count++ ] = table[ i ];
+
+    for ( int i = 0; i < count; i++ )
+      delete( locate( doomed[ i ] ) );
+
+    return count;
+    }
+
+  /**
+   * Find an object and return its position. If the object is not found,
+   * return end().
+   * @param object The object to locate.
+   */
+  public synchronized IdentityHashSetIterator find( Object object )
+    {
+    return new IdentityHashSetIterator( locate( object ), this );
+    }
+
+  /**
+   * Return the number of objects that are identical to a given object, which is 0 or 1.
+   * @param object The object to match against.
+   */
+  public synchronized int count( Object object )
+    {
+    return locate( object ) < 0 ? 0 : 1;
+    }
+
+  /**
+   * If the object isn't present, add it and return null, otherwise don't modify
+   * the set and return the object.
+   * @param object The object to be added.
+   * @exception NullPointerException If the value of the object is equal to null.
+   */
+  public synchronized Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    int i = probe( object );
+
+    if ( table[ i ] != null )
+      return table[ i ]; // DO NOT add
+
+    insert( i, object );
+    return null;
+    }
+
+  /**
+   * Return the object if I contain it, or null otherwise.
+   * @param object The object to match against.
+   */
+  public synchronized Object get( Object object )
+    {
+    return locate( object ) < 0 ? null : object;
+    }
+
+  /**
+   * If the object isn't present, add it and return null, otherwise return the
+   * object. An identical object cannot be replaced by anything but itself, so
+   * this behaves exactly like add().
+   * @param object The object to add.
+   * @exception NullPointerException If the value of the object is equal to null.
+   */
+  public Object put( Object object )
+    {
+    return add( object );
+    }
+
+  /**
+   * Return a new IdentityHashSet that contains all of my objects and all of the
+   * objects in a specified IdentityHashSet.
+   * @param set The IdentityHashSet to union myself with.
+   */
+  public synchronized IdentityHashSet union( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      IdentityHashSet result = new IdentityHashSet( this );
+
+      for ( int i = set.first(); i >= 0; i = set.next( i ) )
+        result.add( set.table[ i ] );
+
+      return result;
+      }
+    }
+
+  /**
+   * Return a new IdentityHashSet that contains the objects that are both in me
+   * and in a specified set.
+   * @param set The IdentityHashSet to intersect myself with.
+   */
+  public synchronized IdentityHashSet intersection( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      IdentityHashSet small = size <= set.size ? this : set;
+      IdentityHashSet large = small == this ? set : this;
+      IdentityHashSet result = new IdentityHashSet( small.size );
+
+      // Loop through the smallest set.
+      for ( int i = small.first(); i >= 0; i = small.next( i ) )
+        if ( large.locate( small.table[ i ] ) >= 0 )
+          result.add( small.table[ i ] );
+
+      return result;
+      }
+    }
+
+  /**
+   * Return a new IdentityHashSet that contains the objects that are in me but
+   * not in a specified set.
+   * @param set The IdentityHashSet to difference myself with.
+   */
+  public synchronized IdentityHashSet difference( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      IdentityHashSet result = new IdentityHashSet( size );
+
+      for ( int i = first(); i >= 0; i = next( i ) )
+        if ( set.locate( table[ i ] ) < 0 )
+          result.add( table[ i ] );
+
+      return result;
+      }
+    }
+
+  /**
+   * Return a new IdentityHashSet that contains the objects that are either in
+   * me or in a specified IdentityHashSet, but not both.
+   * @param set The IdentityHashSet to symmetric difference myself with.
+   */
+  public synchronized IdentityHashSet symmetricDifference( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      IdentityHashSet result = new IdentityHashSet( size + set.size );
+
+      for ( int i = first(); i >= 0; i = next( i ) )
+        if ( set.locate( table[ i ] ) < 0 )
+          result.add( table[ i ] );
+
+      for ( int i = set.first(); i >= 0; i = set.next( i ) )
+        if ( locate( set.table[ i ] ) < 0 )
+          result.add( set.table[ i ] );
+
+      return result;
+      }
+    }
+
+  /**
+   * Return true if every object in me is also in a specified IdentityHashSet.
+   * @param set The IdentityHashSet to test against.
+   */
+  public synchronized boolean subsetOf( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      for ( int i = first(); i >= 0; i = next( i ) )
+        if ( set.locate( table[ i ] ) < 0 )
+          return false;
+
+      return true;
+      }
+    }
+
+  /**
+   * Return true if every object in me is also in a specified IdentityHashSet and
+   * I'm smaller than the specified IdentityHashSet.
+   * @param set The IdentityHashSet to test against.
+   */
+  public synchronized boolean properSubsetOf( IdentityHashSet set )
+    {
+    synchronized( set )
+      {
+      return size < set.size && subsetOf( set );
+      }
+    }
+
+  /**
+   * Make sure that I can hold a given number of objects without expanding.
+   * @param n The number of objects.
+   */
+  public synchronized void ensureCapacity( int n )
+    {
+    int needed = HashMap.powerOfTwo( (int)( n / ratio ) + 1 );
+
+    if ( needed > table.length )
+      rehash( needed );
+    }
+
+  /**
+   * Return my first occupied slot, or -1 if I'm empty.
+   */
+  int first()
+    {
+    return size == 0 ? -1 : next( -1 );
+    }
+
+  /**
+   * Return the first occupied slot after a given slot, or -1 if there is none.
+   */
+  int next( int slot )
+    {
+    for ( int i = slot + 1; i < table.length; i++ )
+      if ( table[ i ] != null )
+        return i;
+
+    return -1;
+    }
+
+  /**
+   * Return the slot of the object that is identical to a given object, or -1 if
+   * there is none.
+   */
+  int locate( Object object )
+    {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+
+    for ( int i = home( object, mask ); ; i = ( i + 1 ) & mask )
+      {
+      Object o = tab[ i ];
+
+      if ( o == object )
+        return i;
+
+      if ( o == null )
+        return -1;
+      }
+    }
+
+  /**
+   * Return the slot of the object that is identical to a given object, or the
+   * empty slot where it belongs if there is none.
+   */
+  private int probe( Object object )
+    {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    int i = home( object, mask );
+
+    while ( tab[ i ] != null && tab[ i ] != object )
+      i = ( i + 1 ) & mask;
+
+    return i;
+    }
+
+  private static int home( Object object, int mask )
+    {
+    int h = System.identityHashCode( object );
+    return ( h ^ ( h >>> 16 ) ) & mask;
+    }
+
+  private void insert( int i, Object object )
+    {
+    table[ i ] = object;
+
+    if ( ++size > limit )
+      rehash( table.length * 2 );
+    }
+
+  /**
+   * Empty a slot and move back any objects that follow it in the same cluster
+   * and would otherwise become unreachable.
+   */
+  private void delete( int i )
+    {
+    Object[] tab = table;
+    int mask = tab.length - 1;
+    tab[ i ] = null;
+    --size;
+
+    for ( int j = ( i + 1 ) & mask; tab[ j ] != null; j = ( j + 1 ) & mask )
+      {
+      int h = home( tab[ j ], mask );
+
+      // Move the object at j into the hole at i unless its home lies cyclically
+      // in (i, j], in which case it is still reachable.
+      if ( ( j > i && ( h <= i || h > j ) ) || ( j < i && ( h <= i && h > j ) ) )
+        {
+        tab[ i ] = tab[ j ];
+        tab[ j ] = null;
+        i = j;
+        }
+      }
+    }
+
+  private void rehash( int newCapacity )
+    {
+    Object[] old = table;
+    allocate( newCapacity );
+    Object[] tab = table;
+    int mask = tab.length - 1;
+
+    for ( int j = 0; j < old.length; j++ )
+      if ( old[ j ] != null )
+        {
+        int i = home( old[ j ], mask );
+
+        while ( tab[ i ] != null )
+          i = ( i + 1 ) & mask;
+
+        tab[ i ] = old[ j ];
+        }
+    }
+
+  private void allocate( int capacity )
+    {
+    limit = (int)( capacity * ratio );
+    table = new Object[ capacity ];
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeInt( table.length );
+    stream.writeInt( size );
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      stream.writeObject( table[ i ] );
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    allocate( stream.readInt() );
+    int count = stream.readInt();
+    while ( count-- > 0 )
+      add( stream.readObject() );
+    }
+
+  static final long serialVersionUID = -6427914780335629918L;
+  }
@@ -0,0 +1,224 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * An IdentityHashSetIterator is a forward iterator that allows you to iterate
+ * through the contents of an IdentityHashSet.
+ * <p>
+ * @see ForwardIterator
+ * @see IdentityHashSet
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class IdentityHashSetIterator implements ForwardIterator, Opaque
+  {
+  IdentityHashSet mySet;
+  int myIndex = -1; // occupied slot, or -1 when positioned at the end.
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public IdentityHashSetIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public IdentityHashSetIterator( IdentityHashSetIterator iterator )
+    {
+    mySet = iterator.mySet;
+    myIndex = iterator.myIndex;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular slot in a specified set.
+   * @param index My associated slot, or -1 for the end position.
+   * @param set My associated IdentityHashSet.
+   */
+  IdentityHashSetIterator( int index, IdentityHashSet set )
+    {
+    mySet = set;
+    myIndex = index;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new IdentityHashSetIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof IdentityHashSetIterator
+      && myIndex == ( (IdentityHashSetIterator)object ).myIndex
+      && mySet == ( (IdentityHashSetIterator)object ).mySet;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIndex == mySet.first();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myIndex < 0;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myIndex >= 0;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    myIndex = mySet.next( myIndex );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myIndex < 0 )
+      throw new java.util.NoSuchElementException( "IdentityHashSetIterator" );
+
+    Object result = mySet.table[ myIndex ];
+    myIndex = mySet.next( myIndex );
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    return mySet.table[ myIndex ];
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    IdentityHashSetIterator i = new IdentityHashSetIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    IdentityHashSetIterator i = new IdentityHashSetIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Set the object at my current position to a specified value. An object's slot
+   * depends on its identity, so only the object itself may be written.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the object would be changed.
+   */
+  public void put( Object object )
+    {
+    if ( object != mySet.table[ myIndex ] )
+      throw new InvalidOperationException( "Cannot change an object in an IdentityHashSet." );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    int last = ( (IdentityHashSetIterator)iterator ).myIndex;
+    int n = 0;
+
+    for ( int i = myIndex; i != last; i = mySet.next( i ) )
+      ++n;
+
+    return n;
+    }
+
+  /**
+   * Return my associated IdentityHashSet.
+   */
+  public Container getContainer()
+    {
+    return mySet;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return null;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( mySet );
+    }
+  }
@@ -0,0 +1,170 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * An LFUPolicy evicts the entry that has been used least often, and of those the
+ * one that was used least recently. Entries are grouped on one list per use
+ * count, and the lists are themselves linked in order of increasing count, so
+ * that counting a use moves an entry to the next list in constant time.
+ * <p>
+ * Use counts are never reduced, so an entry that was popular once can outlive
+ * entries that are popular now. TinyLFUPolicy does not have this problem.
+ * <p>
+ * @see CacheMap
+ * @see EvictionPolicy
+ * @see TinyLFUPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class LFUPolicy implements EvictionPolicy
+  {
+  transient Frequency header; // sentinel of the circular list of use counts.
+
+  /**
+   * Construct myself to know no entries.
+   */
+  public LFUPolicy()
+    {
+    clear();
+    }
+
+  /**
+   * Return a new LFUPolicy.
+   */
+  public EvictionPolicy emptyCopy()
+    {
+    return new LFUPolicy();
+    }
+
+  /**
+   * Ignore the maximum weight, which does not affect my order.
+   * @param maximumWeight The total weight that my cache may hold.
+   */
+  public void setMaximumWeight( long maximumWeight )
+    {
+    }
+
+  /**
+   * Place a new entry at the end of the list of entries used once.
+   * @param entry The new entry.
+   */
+  public void added( CacheEntry entry )
+    {
+    Frequency first = header.next;
+
+    if ( first.count != 1 )
+      first = insertAfter( header, 1 );
+
+    first.addLast( entry );
+    }
+
+  /**
+   * Move an entry to the end of the list for its new use count.
+   * @param entry The entry.
+   */
+  public void accessed( CacheEntry entry )
+    {
+    Frequency frequency = (Frequency)entry.list;
+    Frequency next = frequency.next;
+
+    if ( next.count != frequency.count + 1 )
+      next = insertAfter( frequency, frequency.count + 1 );
+
+    frequency.remove( entry );
+    next.addLast( entry );
+    discardIfEmpty( frequency );
+    }
+
+  /**
+   * Account for the new weight of an entry and count a use of it.
+   * @param entry The entry.
+   * @param previousWeight The weight of the entry before the change.
+   */
+  public void updated( CacheEntry entry, int previousWeight )
+    {
+    entry.list.reweigh( entry, previousWeight );
+    accessed( entry );
+    }
+
+  /**
+   * Unlink an entry from the list for its use count.
+   * @param entry The entry.
+   */
+  public void removed( CacheEntry entry )
+    {
+    Frequency frequency = (Frequency)entry.list;
+    frequency.remove( entry );
+    discardIfEmpty( frequency );
+    }
+
+  /**
+   * Return the least recently used of the least frequently used entries, or
+   * null if I know no entries.
+   */
+  public CacheEntry victim()
+    {
+    return header.next == header ? null : header.next.first();
+    }
+
+  /**
+   * Forget all of my entries and their use counts.
+   */
+  public void clear()
+    {
+    header = new Frequency( 0 );
+    header.previous = header;
+    header.next = header;
+    }
+
+  /**
+   * Return the number of times that an entry has been used.
+   * @param entry The entry.
+   */
+  public int frequency( CacheEntry entry )
+    {
+    return ( (Frequency)entry.list ).count;
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return "LFUPolicy";
+    }
+
+  private Frequency insertAfter( Frequency frequency, int count )
+    {
+    Frequency result = new Frequency( count );
+    result.previous = frequency;
+    result.next = frequency.next;
+    frequency.next.previous = result;
+    frequency.next = result;
+    return result;
+    }
+
+  private void discardIfEmpty( Frequency frequency )
+    {
+    if ( frequency.isEmpty() )
+      {
+      frequency.previous.next = frequency.next;
+      frequency.next.previous = frequency.previous;
+      }
+    }
+
+  static final class Frequency extends CacheList
+    {
+    int count;
+    Frequency previous;
+    Frequency next;
+
+    Frequency( int count )
+      {
+      this.count = count;
+      }
+    }
+
+  static final long serialVersionUID = -2283719043512865470L;
+  }
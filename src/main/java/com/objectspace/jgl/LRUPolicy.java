@@ -0,0 +1,107 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * An LRUPolicy evicts the entry that was least recently added or accessed. Its
+ * entries are kept on a single list in the order of their last use, so every
+ * operation takes constant time.
+ * <p>
+ * @see CacheMap
+ * @see EvictionPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class LRUPolicy implements EvictionPolicy
+  {
+  transient CacheList entries;
+
+  /**
+   * Construct myself to know no entries.
+   */
+  public LRUPolicy()
+    {
+    clear();
+    }
+
+  /**
+   * Return a new LRUPolicy.
+   */
+  public EvictionPolicy emptyCopy()
+    {
+    return new LRUPolicy();
+    }
+
+  /**
+   * Ignore the maximum weight, which does not affect my order.
+   * @param maximumWeight The total weight that my cache may hold.
+   */
+  public void setMaximumWeight( long maximumWeight )
+    {
+    }
+
+  /**
+   * Place a new entry at the end of my list.
+   * @param entry The new entry.
+   */
+  public void added( CacheEntry entry )
+    {
+    entries.addLast( entry );
+    }
+
+  /**
+   * Move an entry to the end of my list.
+   * @param entry The entry.
+   */
+  public void accessed( CacheEntry entry )
+    {
+    entries.moveToLast( entry );
+    }
+
+  /**
+   * Account for the new weight of an entry and move it to the end of my list.
+   * @param entry The entry.
+   * @param previousWeight The weight of the entry before the change.
+   */
+  public void updated( CacheEntry entry, int previousWeight )
+    {
+    entries.reweigh( entry, previousWeight );
+    entries.moveToLast( entry );
+    }
+
+  /**
+   * Unlink an entry from my list.
+   * @param entry The entry.
+   */
+  public void removed( CacheEntry entry )
+    {
+    entries.remove( entry );
+    }
+
+  /**
+   * Return the least recently used entry, or null if I know no entries.
+   */
+  public CacheEntry victim()
+    {
+    return entries.first();
+    }
+
+  /**
+   * Forget all of my entries.
+   */
+  public void clear()
+    {
+    entries = new CacheList();
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return "LRUPolicy";
+    }
+
+  static final long serialVersionUID = 3187650225437096613L;
+  }
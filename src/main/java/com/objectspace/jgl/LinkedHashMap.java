@@ -0,0 +1,385 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A LinkedHashMap is a HashMap that also threads its key/value pairs on a doubly
+ * linked list, and is iterated in the order of that list rather than bucket by
+ * bucket. Iterating a LinkedHashMap therefore takes time proportional to its size,
+ * regardless of how many buckets it has.
+ * <p>
+ * By default pairs are listed in the order in which their keys were first inserted;
+ * replacing the value of a key does not move it. In access order, a key moves to
+ * the end of the list whenever its value is retrieved by get() or add(), or replaced
+ * by put(), so the first pair is the least recently used one. Duplicates of a key are always
+ * listed together, in the order in which they were added.
+ * <p>
+ * If a maximum size is set, the first pairs are removed whenever an insertion
+ * would make me larger than that size. Combined with access order, this makes a
+ * LinkedHashMap a simple LRU cache.
+ * <p>
+ * A LinkedHashMap can only swap its contents with another LinkedHashMap.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see BinaryPredicate
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class LinkedHashMap extends HashMap
+  {
+  boolean accessOrder; // is the list in access order rather than insertion order?
+  int maximumSize; // # pairs to keep, or 0 if unlimited.
+  transient LinkedNode head; // first pair in iteration order.
+  transient LinkedNode tail; // last pair in iteration order.
+
+  /**
+   * Construct myself to be an empty LinkedHashMap in insertion order that compares
+   * keys using equals() and does not allow duplicates.
+   */
+  public LinkedHashMap()
+    {
+    this( new xEqualTo(), false, DEFAULT_SIZE, DEFAULT_RATIO, false );
+    }
+
+  /**
+   * Construct myself to be an empty LinkedHashMap in insertion or access order that
+   * compares keys using equals() and does not allow duplicates.
+   * @param accessOrder true if pairs should be listed in access order.
+   */
+  public LinkedHashMap( boolean accessOrder )
+    {
+    this( new xEqualTo(), false, DEFAULT_SIZE, DEFAULT_RATIO, accessOrder );
+    }
+
+  /**
+   * Construct myself to be an empty LinkedHashMap in insertion order that compares
+   * keys using the specified binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public LinkedHashMap( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    this( comparator, allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO, false );
+    }
+
+  /**
+   * Construct myself to be an empty LinkedHashMap in insertion or access order that
+   * compares keys using the specified binary predicate and conditionally allows
+   * duplicates. The initial buckets and load ratio must also be specified.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @param accessOrder true if pairs should be listed in access order.
+   */
+  public LinkedHashMap( BinaryPredicate comparator, boolean allowDuplicates, int capacity, float loadRatio, boolean accessOrder )
+    {
+    super( comparator, allowDuplicates, capacity, loadRatio );
+    this.accessOrder = accessOrder;
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing LinkedHashMap.
+   * @param map The LinkedHashMap to copy.
+   */
+  public LinkedHashMap( LinkedHashMap map )
+    {
+    super( map );
+    }
+
+  /**
+   * Return true if my pairs are listed in access order rather than insertion order.
+   */
+  public boolean isAccessOrder()
+    {
+    return accessOrder;
+    }
+
+  /**
+   * Return the maximum number of pairs that I keep, or 0 if I am unlimited.
+   */
+  public int getMaximumSize()
+    {
+    return maximumSize;
+    }
+
+  /**
+   * Set the maximum number of pairs that I keep. While I hold more pairs than that,
+   * my first pair is removed. If the size is 0, which is the default, I am unlimited.
+   * @param size The new maximum size.
+   * @exception IllegalArgumentException If the size is negative.
+   */
+  public synchronized void setMaximumSize( int size )
+    {
+    if ( size < 0 )
+      throw new IllegalArgumentException( "Attempt to set a negative maximum size" );
+
+    maximumSize = size;
+    evict();
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new LinkedHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing HashMap. My pairs are listed in the
+   * iteration order of the map, and if it is a LinkedHashMap I also adopt its
+   * order and maximum size.
+   * @param map The HashMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( HashMap map )
+    {
+    synchronized( map )
+      {
+      super.copy( map );
+      clear();
+
+      if ( map instanceof LinkedHashMap )
+        {
+        accessOrder = ( (LinkedHashMap)map ).accessOrder;
+        maximumSize = ( (LinkedHashMap)map ).maximumSize;
+        }
+
+      for ( HashMapIterator iterator = map.begin(); iterator.hasMoreElements(); iterator.advance() )
+        super.addAux( iterator.key(), iterator.value() );
+
+      evict();
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "LinkedHashMap" );
+    }
+
+  /**
+   * Swap my contents with another LinkedHashMap.
+   * @param map The LinkedHashMap that I will swap my contents with.
+   * @exception IllegalArgumentException If the map is not a LinkedHashMap.
+   */
+  public synchronized void swap( HashMap map )
+    {
+    if ( !( map instanceof LinkedHashMap ) )
+      throw new IllegalArgumentException( "HashMap not a LinkedHashMap" );
+
+    synchronized( map )
+      {
+      super.swap( map );
+      LinkedHashMap linked = (LinkedHashMap)map;
+
+      LinkedNode tmpHead = head;
+      head = linked.head;
+      linked.head = tmpHead;
+
+      LinkedNode tmpTail = tail;
+      tail = linked.tail;
+      linked.tail = tmpTail;
+
+      boolean tmpOrder = accessOrder;
+      accessOrder = linked.accessOrder;
+      linked.accessOrder = tmpOrder;
+
+      int tmpMaximum = maximumSize;
+      maximumSize = linked.maximumSize;
+      linked.maximumSize = tmpMaximum;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    super.clear();
+    head = null;
+    tail = null;
+    }
+
+  /**
+   * Find the first key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized HashMapIterator find( Object key )
+    {
+    HashMapNode node = lookup( key, hash( key ) );
+    return new HashMapIterator( node == null ? null : runBegin( (LinkedNode)node ), this, HashMapIterator.PAIR );
+    }
+
+  /**
+   * Return a range whose first element is an iterator positioned
+   * at the first occurence of a specific key and whose second element is an
+   * iterator positioned immediately after the last occurence of that key.
+   * If no matching key is found, both ends of the range will be the same.
+   * @param key The key whose bounds are to be found.
+   */
+  public synchronized Range equalRange( Object key )
+    {
+    HashMapNode node = lookup( key, hash( key ) );
+
+    if ( node == null )
+      return new Range( end(), end() );
+
+    return new Range
+      (
+      new HashMapIterator( runBegin( (LinkedNode)node ), this, HashMapIterator.PAIR ),
+      new HashMapIterator( runEnd( (LinkedNode)node ).after, this, HashMapIterator.PAIR )
+      );
+    }
+
+  Object putAux( Object key, Object value )
+    {
+    Object result = super.putAux( key, value );
+    evict();
+    return result;
+    }
+
+  Object addAux( Object key, Object value )
+    {
+    Object result = super.addAux( key, value );
+    evict();
+    return result;
+    }
+
+  HashMapNode first()
+    {
+    return head;
+    }
+
+  HashMapNode successor( HashMapNode node )
+    {
+    return ( (LinkedNode)node ).after;
+    }
+
+  HashMapNode createNode( Object key, Object value, int hash, HashMapNode match )
+    {
+    LinkedNode node = new LinkedNode();
+    node.key = key;
+    node.value = value;
+    node.hash = hash;
+
+    // A duplicate is listed after the other pairs with the same key.
+    link( node, match == null ? tail : runEnd( (LinkedNode)match ) );
+    return node;
+    }
+
+  void removed( HashMapNode node )
+    {
+    LinkedNode linked = (LinkedNode)node;
+    unlink( linked, linked );
+    }
+
+  void accessed( HashMapNode node )
+    {
+    if ( accessOrder && node != tail )
+      {
+      LinkedNode first = runBegin( (LinkedNode)node );
+      LinkedNode last = runEnd( (LinkedNode)node );
+
+      if ( last != tail )
+        {
+        unlink( first, last );
+        first.before = tail;
+        last.after = null;
+        tail.after = first;
+        tail = last;
+        }
+      }
+    }
+
+  /**
+   * Remove my first pairs while I am larger than my maximum size.
+   */
+  private void evict()
+    {
+    while ( maximumSize > 0 && size > maximumSize )
+      remove( new HashMapIterator( head, this, HashMapIterator.PAIR ) );
+    }
+
+  /**
+   * Link a node into my list after another node, or at the front if it is null.
+   */
+  private void link( LinkedNode node, LinkedNode previous )
+    {
+    LinkedNode next = previous == null ? head : previous.after;
+    node.before = previous;
+    node.after = next;
+
+    if ( previous == null )
+      head = node;
+    else
+      previous.after = node;
+
+    if ( next == null )
+      tail = node;
+    else
+      next.before = node;
+    }
+
+  /**
+   * Unlink a sequence of nodes from my list. The links of the nodes themselves
+   * are left intact so that an iterator positioned at a removed node can advance.
+   */
+  private void unlink( LinkedNode first, LinkedNode last )
+    {
+    if ( first.before == null )
+      head = last.after;
+    else
+      first.before.after = last.after;
+
+    if ( last.after == null )
+      tail = first.before;
+    else
+      last.after.before = first.before;
+    }
+
+  /**
+   * Return the first node of the run of nodes whose key matches a node's.
+   */
+  private LinkedNode runBegin( LinkedNode node )
+    {
+    if ( allowDups )
+      while ( node.before != null && matches( node.before, node ) )
+        node = node.before;
+
+    return node;
+    }
+
+  /**
+   * Return the last node of the run of nodes whose key matches a node's.
+   */
+  private LinkedNode runEnd( LinkedNode node )
+    {
+    if ( allowDups )
+      while ( node.after != null && matches( node.after, node ) )
+        node = node.after;
+
+    return node;
+    }
+
+  private boolean matches( HashMapNode node, HashMapNode other )
+    {
+    return node.hash == other.hash && comparator.execute( node.key, other.key );
+    }
+
+  static final class LinkedNode extends HashMapNode
+    {
+    LinkedNode before = null;
+    LinkedNode after = null;
+    }
+
+  static final long serialVersionUID = -4417839458806419025L;
+  }
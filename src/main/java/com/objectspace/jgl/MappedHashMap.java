@@ -0,0 +1,1302 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * A MappedHashMap is an associative container whose key/value pairs live in a
+ * memory-mapped file. Opening an existing file only maps it into memory, so a map
+ * of any size is ready in milliseconds and its pages are read in by the operating
+ * system as they are used. Keys and values are stored by a pair of codecs and, as
+ * in an OffHeapHashMap, keys are matched by their encoded bytes. A key or value is
+ * decoded directly from the mapped file, which needs no copying at all with a
+ * codec such as ByteBufferCodec.
+ * <p>
+ * The file consists of a header, followed by a log to which every change is
+ * appended. All numbers are big-endian and every record starts at a multiple of
+ * eight bytes.
+ * <pre>
+ *   header      1024 bytes: two 512 byte copies, written alternately
+ *     0  long   magic number 0x4A474C4D484D3031 ("JGLMHM01")
+ *     8  int    version, currently 1
+ *    12  int    segment size, a power of two
+ *    16  long   sequence number; the valid copy with the higher number is used
+ *    24  int    flags; bit 0 is set while there are changes that are not synced
+ *    28  int    number of pairs
+ *    32  long   end of the synced log
+ *    40  long   offset of the bucket index
+ *    48  int    number of slots in the bucket index
+ *    52  float  load ratio
+ *    56  long   CRC-32 of bytes 0 to 55
+ *   log         records, each one of:
+ *     pair      int key length, int value length, int hash, int 0, key, value
+ *     removal   int key length, int -1, int hash, int 0, key
+ *     index     int -2, int flags, long length, slots; flags bit 0 is set if the
+ *               map was cleared, so the pairs before the index are discarded
+ *     padding   int -1, up to the end of the segment
+ * </pre>
+ * The bucket index is an open-addressed table of longs. Each non-zero slot holds
+ * the offset of the latest pair with a key divided by eight in its low 40 bits, and
+ * the upper 24 bits of the hash code of the key in its high bits. When the index
+ * grows, a new one is appended to the log. The file is mapped in segments, and no
+ * record or index crosses the boundary between two segments.
+ * <p>
+ * Changes are made by appending records and updating the index in place, and are
+ * made durable by sync(). Before the first change after a sync the header is
+ * marked as having unsynced changes. If the file is opened while it is marked,
+ * because the process stopped before syncing, the log is truncated to its synced
+ * end and the index is rebuilt from it, which reverts the map to its last synced
+ * state. Records that have been replaced or removed, including those discarded
+ * by clear(), remain in the log until the file is rewritten by compact().
+ * <p>
+ * A MappedHashMap cannot be cloned or serialized; the file itself is its
+ * persistent form. It must not be used after it is closed.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see Codec
+ * @see OffHeapHashMap
+ * @see com.objectspace.jgl.codecs.ByteBufferCodec
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class MappedHashMap extends Map
+  {
+  static final long MAGIC = 0x4A474C4D484D3031L;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 1024;
+  static final int HEADER_COPY = 512;
+  static final int RECORD_HEADER = 16;
+  static final int REMOVED = -1;
+  static final int PADDING = -1;
+  static final int INDEX = -2;
+  static final int DIRTY = 1;
+  static final int CLEARED = 1;
+  static final int DEFAULT_SIZE = 1024;
+  static final float DEFAULT_RATIO = 0.75F;
+  static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+  static final long GROWTH = 1 << 20;
+  static final long OFFSET_MASK = ( 1L << 40 ) - 1;
+
+  File file;
+  Codec keyCodec;
+  Codec valueCodec;
+  transient RandomAccessFile stream;
+  transient FileChannel channel;
+  transient MappedByteBuffer header;
+  transient MappedByteBuffer[] segments = new MappedByteBuffer[ 0 ];
+  transient ByteBuffer scratch; // holds the encoded form of the object being looked up.
+  transient ByteBuffer slots; // the segment that holds the bucket index.
+  int segmentShift;
+  long fileLength; // # bytes in the file.
+  long end; // end of the log.
+  long committed; // end of the synced log.
+  long sequence; // sequence number of the latest header.
+  boolean dirty; // are there changes that are not synced?
+  long index; // offset of the bucket index.
+  int base; // offset of the bucket index within its segment.
+  int size; // # pairs.
+  int capacity; // # slots, always a power of two.
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be the map held in a file, creating an empty map if the
+   * file does not exist or is empty.
+   * @param file The file.
+   * @param keyCodec The codec for keys.
+   * @param valueCodec The codec for values.
+   * @exception IOException If the file cannot be opened or is not a valid map.
+   */
+  public MappedHashMap( File file, Codec keyCodec, Codec valueCodec ) throws IOException
+    {
+    this( file, keyCodec, valueCodec, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be the map held in a file, creating an empty map if the
+   * file does not exist or is empty. The initial slots and load ratio of a new map
+   * must also be specified; an existing map keeps its own.
+   * @param file The file.
+   * @param keyCodec The codec for keys.
+   * @param valueCodec The codec for values.
+   * @param capacity The initial number of slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   * @exception IOException If the file cannot be opened or is not a valid map.
+   */
+  public MappedHashMap( File file, Codec keyCodec, Codec valueCodec, int capacity, float loadRatio ) throws IOException
+    {
+    this( file, keyCodec, valueCodec, capacity, loadRatio, DEFAULT_SEGMENT_SIZE );
+    }
+
+  MappedHashMap( File file, Codec keyCodec, Codec valueCodec, int capacity, float loadRatio, int segmentSize ) throws IOException
+    {
+    if ( loadRatio <= 0.0F || loadRatio >= 1.0F )
+      throw new IllegalArgumentException( "load ratio must be between 0 and 1" );
+
+    this.file = file;
+    this.keyCodec = keyCodec;
+    this.valueCodec = valueCodec;
+    ratio = loadRatio;
+    segmentShift = Integer.numberOfTrailingZeros( OpenHashMap.powerOfTwo( segmentSize ) );
+    open( OpenHashMap.powerOfTwo( capacity ) );
+    }
+
+  /**
+   * Return my file.
+   */
+  public File getFile()
+    {
+    return file;
+    }
+
+  /**
+   * Return my key codec.
+   */
+  public Codec getKeyCodec()
+    {
+    return keyCodec;
+    }
+
+  /**
+   * Return my value codec.
+   */
+  public Codec getValueCodec()
+    {
+    return valueCodec;
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return the number of bytes in my log, including the records of pairs that have
+   * been replaced or removed.
+   */
+  public synchronized long logSize()
+    {
+    return end;
+    }
+
+  /**
+   * Throw an InvalidOperationException, since the file is my only copy.
+   * @exception InvalidOperationException Always.
+   */
+  public Object clone()
+    {
+    throw new InvalidOperationException( "MappedHashMap cannot be cloned" );
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "MappedHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public synchronized Enumeration elements()
+    {
+    return new MappedHashMapIterator( first(), this, MappedHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized MappedHashMapIterator begin()
+    {
+    return new MappedHashMapIterator( first(), this, MappedHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized MappedHashMapIterator end()
+    {
+    return new MappedHashMapIterator( -1, this, MappedHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof MappedHashMap && equals( (MappedHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another
+   * MappedHashMap that uses the same kinds of codecs. The pairs are compared
+   * by their encoded bytes without being decoded.
+   * @param map The MappedHashMap to compare myself against.
+   */
+  public synchronized boolean equals( MappedHashMap map )
+    {
+    if ( map == this )
+      return true;
+
+    synchronized( map )
+      {
+      if ( size != map.size
+          || keyCodec.getClass() != map.keyCodec.getClass()
+          || valueCodec.getClass() != map.valueCodec.getClass() )
+        return false;
+
+      for ( int i = first(); i >= 0; i = next( i ) )
+        {
+        long record = record( i );
+        ByteBuffer segment = segment( record );
+        int offset = offset( record );
+        int j = map.locate( segment, offset + RECORD_HEADER, segment.getInt( offset ), segment.getInt( offset + 8 ) );
+
+        if ( j < 0 )
+          return false;
+
+        long mapRecord = map.record( j );
+        ByteBuffer mapSegment = map.segment( mapRecord );
+        int mapOffset = map.offset( mapRecord );
+        int length = length( segment, offset );
+
+        if ( length != length( mapSegment, mapOffset ) || !OffHeapHashMap.sameBytes( segment, offset, mapSegment, mapOffset, length ) )
+          return false;
+        }
+      }
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers. It is computed from the
+   * encoded bytes of my keys.
+   */
+  public synchronized int hashCode()
+    {
+    int hash = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      {
+      long record = record( i );
+      hash += segment( record ).getInt( offset( record ) + 8 );
+      }
+
+    return hash;
+    }
+
+  /**
+   * Remove all of my elements. Like any other change, this is undone if my file is
+   * opened again before a sync(). The space in the file is reclaimed by compact().
+   */
+  public synchronized void clear()
+    {
+    beginChange();
+    size = 0;
+    appendIndex( DEFAULT_SIZE );
+
+    // The synced log is kept, so recovery must know to discard what precedes this.
+    slots.putInt( base - RECORD_HEADER + 4, CLEARED );
+    }
+
+  /**
+   * Make all of my changes durable and mark my file as consistent.
+   * @exception IOException If the file cannot be written.
+   */
+  public synchronized void sync() throws IOException
+    {
+    if ( !dirty )
+      return;
+
+    for ( int i = 0; i < segments.length; i++ )
+      segments[ i ].force();
+
+    committed = end;
+    writeHeader( 0 );
+    dirty = false;
+    }
+
+  /**
+   * Sync my changes and close my file.
+   * @exception IOException If the file cannot be written or closed.
+   */
+  public synchronized void close() throws IOException
+    {
+    sync();
+    channel.close();
+    stream.close();
+    segments = new MappedByteBuffer[ 0 ];
+    slots = null;
+    header = null;
+    }
+
+  /**
+   * Rewrite my file so that it holds only my current pairs, reclaiming the space
+   * of the pairs that were replaced or removed. The new file is written next to
+   * my file and then renamed over it, so a failure leaves my file intact.
+   * @exception IOException If the file cannot be written.
+   */
+  public synchronized void compact() throws IOException
+    {
+    File tmp = new File( file.getPath() + ".compact" );
+    tmp.delete();
+
+    MappedHashMap map = new MappedHashMap( tmp, keyCodec, valueCodec, capacity, ratio, 1 << segmentShift );
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      {
+      long record = record( i );
+      ByteBuffer segment = segment( record );
+      int offset = offset( record );
+      map.beginChange();
+      map.insert( segment.getInt( offset + 8 ), map.append( segment, offset, length( segment, offset ) ) );
+      }
+
+    map.close();
+    close();
+    java.nio.file.Files.move( tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE );
+    open( capacity );
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key.
+   * @param key The key of the pair to be removed.
+   * @return The value removed or null if not changed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    int slot = locate( key );
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = value( slot );
+    delete( slot );
+    return value;
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key if the count is positive.
+   * @param key The key of the pair to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Object key, int count )
+    {
+    if ( count <= 0 )
+      return 0;
+
+    int slot = locate( key );
+
+    if ( slot < 0 )
+      return 0;
+
+    delete( slot );
+    return 1;
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * MappedHashMapIterator for this MappedHashMap object.
+   * @return Return the value associated with the enumeration.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof MappedHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not a MappedHashMapIterator" );
+
+    if ( ((MappedHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this MappedHashMap" );
+
+    int slot = ( (MappedHashMapIterator)e ).myIndex;
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = value( slot );
+    delete( slot );
+    return value;
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * MappedHashMapIterator for this MappedHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof MappedHashMapIterator) ) ||
+        ( ! (last instanceof MappedHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a MappedHashMapIterator" );
+
+    if ( ( ((MappedHashMapIterator)first).myMap != this ) ||
+        ( ((MappedHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this MappedHashMap" );
+
+    int begin = ( (MappedHashMapIterator)first ).myIndex;
+    int end = ( (MappedHashMapIterator)last ).myIndex;
+    long[] records = new long[ size ];
+    int count = 0;
+
+    // Removal shifts entries between slots, so the records are collected first.
+    for ( int i = begin; i != end && i >= 0; i = next( i ) )
+      records[ count++ ] = record( i );
+
+    for ( int i = 0; i < count; i++ )
+      {
+      ByteBuffer segment = segment( records[ i ] );
+      int offset = offset( records[ i ] );
+      delete( locate( segment, offset + RECORD_HEADER, segment.getInt( offset ), segment.getInt( offset + 8 ) ) );
+      }
+
+    return count;
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized MappedHashMapIterator find( Object key )
+    {
+    return new MappedHashMapIterator( locate( key ), this, MappedHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    return locate( key ) < 0 ? 0 : 1;
+    }
+
+  /**
+   * Return the number of values whose encoded bytes match those of a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int length = encode( valueCodec, value );
+    int count = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( hasValue( i, length ) )
+        ++count;
+
+    return count;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    int slot = locate( key );
+    return slot < 0 ? null : value( slot );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int length = encode( keyCodec, key );
+    int hash = OffHeapHashMap.hash( scratch, 0, length );
+    int slot = locate( scratch, 0, length, hash );
+    beginChange();
+    long record = append( scratch, 0, length, hash, value );
+
+    if ( slot < 0 )
+      {
+      insert( hash, record );
+      return null;
+      }
+
+    // replace old version & return it
+    Object previous = value( slot );
+    setSlot( slot, hash, record );
+    return previous;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int length = encode( keyCodec, key );
+    int hash = OffHeapHashMap.hash( scratch, 0, length );
+    int slot = locate( scratch, 0, length, hash );
+
+    if ( slot >= 0 )
+      return value( slot ); // DO NOT add
+
+    beginChange();
+    insert( hash, append( scratch, 0, length, hash, value ) );
+    return null;
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return new MappedHashMapIterator( first(), this, MappedHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a value whose
+   * encoded bytes match those of a particular object.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    int length = encode( valueCodec, value );
+    Array array = new Array();
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( hasValue( i, length ) )
+        array.pushBack( key( i ) );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    int slot = locate( key );
+
+    if ( slot >= 0 )
+      array.pushBack( value( slot ) );
+
+    return array.elements();
+    }
+
+  /**
+   * Return the slot of my first pair, or -1 if I'm empty.
+   */
+  int first()
+    {
+    return size == 0 ? -1 : next( -1 );
+    }
+
+  /**
+   * Return the first occupied slot after a given slot, or -1 if there is none.
+   */
+  int next( int slot )
+    {
+    for ( int i = slot + 1; i < capacity; i++ )
+      if ( slots.getLong( base + 8 * i ) != 0 )
+        return i;
+
+    return -1;
+    }
+
+  /**
+   * Return the decoded key of the pair in a slot.
+   */
+  Object key( int slot )
+    {
+    long record = record( slot );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    int length = segment.getInt( offset );
+    return keyCodec.decode( OffHeapHashMap.region( segment, offset + RECORD_HEADER, length ), length );
+    }
+
+  /**
+   * Return the decoded value of the pair in a slot.
+   */
+  Object value( int slot )
+    {
+    long record = record( slot );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    int length = segment.getInt( offset + 4 );
+    return valueCodec.decode( OffHeapHashMap.region( segment, offset + RECORD_HEADER + segment.getInt( offset ), length ), length );
+    }
+
+  /**
+   * Return true if the pair in a slot has a key that is encoded as the same bytes as a
+   * given key.
+   */
+  synchronized boolean hasKey( int slot, Object key )
+    {
+    int length = encode( keyCodec, key );
+    long record = record( slot );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    return segment.getInt( offset ) == length && OffHeapHashMap.sameBytes( segment, offset + RECORD_HEADER, scratch, 0, length );
+    }
+
+  /**
+   * Replace the value of the pair in a slot by appending a new record for it.
+   */
+  synchronized void replace( int slot, Object value )
+    {
+    long record = record( slot );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    int hash = segment.getInt( offset + 8 );
+    beginChange();
+    setSlot( slot, hash, append( segment, offset + RECORD_HEADER, segment.getInt( offset ), hash, value ) );
+    }
+
+  /**
+   * Return the slot of the pair whose key matches, or -1 if there is none.
+   */
+  private int locate( Object key )
+    {
+    int length = encode( keyCodec, key );
+    return locate( scratch, 0, length, OffHeapHashMap.hash( scratch, 0, length ) );
+    }
+
+  /**
+   * Return the slot of the pair whose key is encoded as the given bytes, or -1 if
+   * there is none.
+   */
+  int locate( ByteBuffer buffer, int start, int length, int hash )
+    {
+    int mask = capacity - 1;
+    long tag = tag( hash );
+
+    for ( int i = hash & mask; ; i = ( i + 1 ) & mask )
+      {
+      long entry = slots.getLong( base + 8 * i );
+
+      if ( entry == 0 )
+        return -1;
+
+      if ( ( entry & ~OFFSET_MASK ) == tag )
+        {
+        long record = ( entry & OFFSET_MASK ) << 3;
+        ByteBuffer segment = segment( record );
+        int offset = offset( record );
+
+        if ( segment.getInt( offset ) == length && OffHeapHashMap.sameBytes( segment, offset + RECORD_HEADER, buffer, start, length ) )
+          return i;
+        }
+      }
+    }
+
+  /**
+   * Return true if the value in a slot is encoded as the bytes in my scratch buffer.
+   */
+  private boolean hasValue( int slot, int length )
+    {
+    long record = record( slot );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    return segment.getInt( offset + 4 ) == length && OffHeapHashMap.sameBytes( segment, offset + RECORD_HEADER + segment.getInt( offset ), scratch, 0, length );
+    }
+
+  /**
+   * Encode an object into my scratch buffer and return the number of bytes.
+   */
+  private int encode( Codec codec, Object object )
+    {
+    int length = codec.size( object );
+
+    if ( scratch == null || scratch.capacity() < length )
+      scratch = ByteBuffer.allocate( Math.max( length, scratch == null ? 64 : 2 * scratch.capacity() ) );
+
+    scratch.clear();
+    codec.encode( object, scratch );
+
+    if ( scratch.position() != length )
+      throw new IllegalStateException( "codec wrote " + scratch.position() + " bytes instead of " + length );
+
+    return length;
+    }
+
+  /**
+   * Return the offset of the record in a slot.
+   */
+  long record( int slot )
+    {
+    return ( slots.getLong( base + 8 * slot ) & OFFSET_MASK ) << 3;
+    }
+
+  /**
+   * Return the segment that holds an offset.
+   */
+  ByteBuffer segment( long offset )
+    {
+    return segments[ (int)( offset >>> segmentShift ) ];
+    }
+
+  /**
+   * Return the position of an offset within its segment.
+   */
+  int offset( long offset )
+    {
+    return (int)( offset & ( ( 1L << segmentShift ) - 1 ) );
+    }
+
+  /**
+   * Mark the header as having unsynced changes before the first change after a sync.
+   */
+  private void beginChange()
+    {
+    if ( !dirty )
+      {
+      writeHeader( DIRTY );
+      dirty = true;
+      }
+    }
+
+  /**
+   * Append a record for a key whose bytes are in a buffer and a value, and return
+   * its offset.
+   */
+  private long append( ByteBuffer buffer, int start, int keyLength, int hash, Object value )
+    {
+    int valueLength = valueCodec.size( value );
+    long record = reserve( RECORD_HEADER + keyLength + valueLength );
+    ByteBuffer target = OffHeapHashMap.region( segment( record ), offset( record ), RECORD_HEADER + keyLength + valueLength );
+    target.putInt( keyLength );
+    target.putInt( valueLength );
+    target.putInt( hash );
+    target.putInt( 0 );
+    target.put( OffHeapHashMap.region( buffer, start, keyLength ) );
+    valueCodec.encode( value, target );
+
+    if ( target.hasRemaining() )
+      throw new IllegalStateException( "codec wrote fewer bytes than it measured" );
+
+    return record;
+    }
+
+  /**
+   * Append a copy of an existing record and return its offset.
+   */
+  private long append( ByteBuffer buffer, int start, int length )
+    {
+    long record = reserve( length );
+    OffHeapHashMap.region( segment( record ), offset( record ), length ).put( OffHeapHashMap.region( buffer, start, length ) );
+    return record;
+    }
+
+  /**
+   * Append a bucket index with the given number of slots.
+   */
+  private void appendIndex( int newCapacity )
+    {
+    long record = reserve( RECORD_HEADER + 8L * newCapacity );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    segment.putInt( offset, INDEX );
+    segment.putInt( offset + 4, 0 );
+    segment.putLong( offset + 8, 8L * newCapacity );
+
+    // A log that was truncated by recovery may have left data here.
+    for ( int i = 0; i < newCapacity; i++ )
+      segment.putLong( offset + RECORD_HEADER + 8 * i, 0 );
+
+    index = record + RECORD_HEADER;
+    slots = segment;
+    base = offset + RECORD_HEADER;
+    capacity = newCapacity;
+    limit = (int)( capacity * ratio );
+    }
+
+  /**
+   * Reserve space for a record at the end of the log and return its offset.
+   */
+  private long reserve( long length )
+    {
+    long segmentSize = 1L << segmentShift;
+
+    if ( length > segmentSize - HEADER_SIZE )
+      throw new IllegalArgumentException( "record of " + length + " bytes is larger than a segment" );
+
+    long segmentEnd = ( end | ( segmentSize - 1 ) ) + 1;
+
+    if ( end + length > segmentEnd )
+      {
+      ensure( end + 4 );
+      segment( end ).putInt( offset( end ), PADDING );
+      end = segmentEnd;
+      }
+
+    ensure( end + length );
+    long record = end;
+    end = ( end + length + 7 ) & ~7L;
+    return record;
+    }
+
+  /**
+   * Store a record with the given key hash in the first free slot of its probe sequence.
+   */
+  private void insert( int hash, long record )
+    {
+    int mask = capacity - 1;
+    int i = hash & mask;
+
+    while ( slots.getLong( base + 8 * i ) != 0 )
+      i = ( i + 1 ) & mask;
+
+    setSlot( i, hash, record );
+
+    if ( ++size > limit )
+      rehash( capacity * 2 );
+    }
+
+  private void setSlot( int slot, int hash, long record )
+    {
+    slots.putLong( base + 8 * slot, tag( hash ) | ( record >>> 3 ) );
+    }
+
+  /**
+   * Append a removal record for the pair in a slot and remove it from the index,
+   * shifting the entries that follow it back towards their home slots.
+   */
+  private void delete( int slot )
+    {
+    long record = record( slot );
+    ByteBuffer segment = segment( record );
+    int offset = offset( record );
+    int length = segment.getInt( offset );
+    beginChange();
+
+    long removal = reserve( RECORD_HEADER + length );
+    ByteBuffer target = OffHeapHashMap.region( segment( removal ), offset( removal ), RECORD_HEADER + length );
+    target.putInt( length );
+    target.putInt( REMOVED );
+    target.putInt( segment.getInt( offset + 8 ) );
+    target.putInt( 0 );
+    target.put( OffHeapHashMap.region( segment, offset + RECORD_HEADER, length ) );
+
+    unlink( slot );
+    }
+
+  /**
+   * Remove the entry in a slot from the index.
+   */
+  private void unlink( int slot )
+    {
+    int mask = capacity - 1;
+    int i = slot;
+
+    for ( int j = ( i + 1 ) & mask; slots.getLong( base + 8 * j ) != 0; j = ( j + 1 ) & mask )
+      {
+      long record = record( j );
+      int home = segment( record ).getInt( offset( record ) + 8 ) & mask;
+
+      // The entry may move back unless its home lies after the hole.
+      if ( ( ( j - home ) & mask ) >= ( ( j - i ) & mask ) )
+        {
+        slots.putLong( base + 8 * i, slots.getLong( base + 8 * j ) );
+        i = j;
+        }
+      }
+
+    slots.putLong( base + 8 * i, 0 );
+    --size;
+    }
+
+  /**
+   * Append a bucket index with the given number of slots and move my entries into it.
+   */
+  private void rehash( int newCapacity )
+    {
+    if ( RECORD_HEADER + 8L * newCapacity > ( 1L << segmentShift ) - HEADER_SIZE )
+      {
+      if ( size < capacity - 1 )
+        return; // the index cannot grow any further, so it fills up instead.
+
+      throw new IllegalStateException( "MappedHashMap index is full" );
+      }
+
+    ByteBuffer oldSlots = slots;
+    int oldBase = base;
+    int oldCapacity = capacity;
+    appendIndex( newCapacity );
+    size = 0;
+
+    for ( int i = 0; i < oldCapacity; i++ )
+      {
+      long entry = oldSlots.getLong( oldBase + 8 * i );
+
+      if ( entry != 0 )
+        {
+        long record = ( entry & OFFSET_MASK ) << 3;
+        insert( segment( record ).getInt( offset( record ) + 8 ), record );
+        }
+      }
+    }
+
+  /**
+   * Open my file, creating it if it's empty and recovering it if it has unsynced changes.
+   */
+  private void open( int initialCapacity ) throws IOException
+    {
+    stream = new RandomAccessFile( file, "rw" );
+    channel = stream.getChannel();
+    fileLength = stream.length();
+
+    if ( fileLength == 0 )
+      {
+      stream.setLength( HEADER_SIZE );
+      fileLength = HEADER_SIZE;
+      }
+    else if ( fileLength < HEADER_SIZE )
+      {
+      stream.close();
+      throw new IOException( file + " is not a MappedHashMap" );
+      }
+
+    header = channel.map( FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE );
+    segments = new MappedByteBuffer[ 0 ];
+    index = 0;
+    map();
+
+    if ( !readHeader() )
+      {
+      if ( header.getLong( 0 ) != 0 || header.getLong( HEADER_COPY ) != 0 )
+        {
+        stream.close();
+        throw new IOException( file + " is not a MappedHashMap" );
+        }
+
+      // A new file.
+      sequence = 0;
+      end = HEADER_SIZE;
+      size = 0;
+      appendIndex( initialCapacity );
+      dirty = true;
+      sync();
+      return;
+      }
+
+    end = committed;
+
+    if ( dirty )
+      recover();
+    }
+
+  /**
+   * Map the parts of my file that are not mapped yet.
+   */
+  private void map() throws IOException
+    {
+    long segmentSize = 1L << segmentShift;
+    int count = (int)( ( fileLength + segmentSize - 1 ) >>> segmentShift );
+    int first = segments.length;
+
+    // The last segment may have been mapped before the file grew.
+    if ( first > 0 && segments[ first - 1 ].capacity() < segmentSize )
+      --first;
+
+    MappedByteBuffer[] tmp = new MappedByteBuffer[ count ];
+    System.arraycopy( segments, 0, tmp, 0, first );
+
+    for ( int i = first; i < count; i++ )
+      {
+      long start = (long)i << segmentShift;
+      tmp[ i ] = channel.map( FileChannel.MapMode.READ_WRITE, start, Math.min( segmentSize, fileLength - start ) );
+      }
+
+    segments = tmp;
+
+    if ( index != 0 )
+      slots = segment( index );
+    }
+
+  /**
+   * Grow my file so that it holds at least the given number of bytes.
+   */
+  private void ensure( long needed )
+    {
+    if ( needed <= fileLength )
+      return;
+
+    long newLength = Math.max( needed, fileLength + Math.max( GROWTH, Math.min( fileLength, 1L << segmentShift ) ) );
+    newLength = ( newLength + GROWTH - 1 ) / GROWTH * GROWTH;
+
+    try
+      {
+      stream.setLength( newLength );
+      fileLength = newLength;
+      map();
+      }
+    catch ( IOException exception )
+      {
+      throw new IllegalStateException( "cannot grow " + file + ": " + exception );
+      }
+    }
+
+  /**
+   * Rebuild my index from the synced part of my log.
+   */
+  private void recover() throws IOException
+    {
+    long last = committed;
+    long segmentSize = 1L << segmentShift;
+    size = 0;
+    appendIndex( capacity );
+
+    for ( long position = HEADER_SIZE; position < last; )
+      {
+      ByteBuffer segment = segment( position );
+      int offset = offset( position );
+      int keyLength = segment.getInt( offset );
+
+      if ( keyLength == INDEX )
+        {
+        if ( ( segment.getInt( offset + 4 ) & CLEARED ) != 0 )
+          {
+          for ( int i = 0; i < capacity; i++ )
+            slots.putLong( base + 8 * i, 0 );
+
+          size = 0;
+          }
+
+        position += RECORD_HEADER + segment.getLong( offset + 8 );
+        }
+      else if ( keyLength == PADDING )
+        {
+        position = ( position | ( segmentSize - 1 ) ) + 1;
+        continue;
+        }
+      else
+        {
+        int valueLength = segment.getInt( offset + 4 );
+        int hash = segment.getInt( offset + 8 );
+        int slot = locate( segment, offset + RECORD_HEADER, keyLength, hash );
+
+        if ( valueLength == REMOVED )
+          {
+          if ( slot >= 0 )
+            unlink( slot );
+
+          valueLength = 0;
+          }
+        else if ( slot >= 0 )
+          {
+          setSlot( slot, hash, position );
+          }
+        else
+          {
+          insert( hash, position );
+          }
+
+        position += RECORD_HEADER + keyLength + valueLength;
+        }
+
+      position = ( position + 7 ) & ~7L;
+      }
+
+    sync();
+    }
+
+  /**
+   * Read the latest valid copy of my header and return true if there is one.
+   */
+  private boolean readHeader()
+    {
+    int latest = -1;
+
+    for ( int copy = 0; copy < HEADER_SIZE; copy += HEADER_COPY )
+      if ( header.getLong( copy ) == MAGIC && header.getLong( copy + 56 ) == checksum( copy ) )
+        if ( latest < 0 || header.getLong( copy + 16 ) > header.getLong( latest + 16 ) )
+          latest = copy;
+
+    if ( latest < 0 )
+      return false;
+
+    if ( header.getInt( latest + 8 ) != VERSION )
+      throw new IllegalStateException( file + " has an unsupported version" );
+
+    segmentShift = Integer.numberOfTrailingZeros( header.getInt( latest + 12 ) );
+    sequence = header.getLong( latest + 16 );
+    dirty = ( header.getInt( latest + 24 ) & DIRTY ) != 0;
+    size = header.getInt( latest + 28 );
+    committed = header.getLong( latest + 32 );
+    capacity = header.getInt( latest + 48 );
+    ratio = header.getFloat( latest + 52 );
+    limit = (int)( capacity * ratio );
+
+    // The segments were mapped before the segment size was known.
+    segments = new MappedByteBuffer[ 0 ];
+    index = 0;
+
+    try
+      {
+      map();
+      }
+    catch ( IOException exception )
+      {
+      throw new IllegalStateException( "cannot map " + file + ": " + exception );
+      }
+
+    index = header.getLong( latest + 40 );
+
+    if ( index != 0 )
+      {
+      slots = segment( index );
+      base = offset( index );
+      }
+
+    return true;
+    }
+
+  /**
+   * Write a new copy of my header over the older one and force it to the disk.
+   */
+  private void writeHeader( int flags )
+    {
+    int copy = (int)( ++sequence & 1 ) * HEADER_COPY;
+    header.putLong( copy, MAGIC );
+    header.putInt( copy + 8, VERSION );
+    header.putInt( copy + 12, 1 << segmentShift );
+    header.putLong( copy + 16, sequence );
+    header.putInt( copy + 24, flags );
+    header.putInt( copy + 28, size );
+    header.putLong( copy + 32, committed );
+    header.putLong( copy + 40, index );
+    header.putInt( copy + 48, capacity );
+    header.putFloat( copy + 52, ratio );
+    header.putLong( copy + 56, checksum( copy ) );
+    header.force();
+    }
+
+  private long checksum( int copy )
+    {
+    CRC32 crc = new CRC32();
+
+    for ( int i = 0; i < 56; i++ )
+      crc.update( header.get( copy + i ) );
+
+    return crc.getValue();
+    }
+
+  /**
+   * Return the number of bytes in the record at an offset.
+   */
+  private int length( ByteBuffer segment, int offset )
+    {
+    return RECORD_HEADER + segment.getInt( offset ) + segment.getInt( offset + 4 );
+    }
+
+  /**
+   * Return the bits of a slot that hold the upper bits of a hash code.
+   */
+  private static long tag( int hash )
+    {
+    return (long)( hash >>> 8 ) << 40;
+    }
+
+  private void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    throw new NotSerializableException( "MappedHashMap" );
+    }
+
+  static final long serialVersionUID = -5562430719839256042L;
+  }
@@ -0,0 +1,288 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A MappedHashMapIterator is a forward iterator that allows you to iterate through
+ * the contents of a MappedHashMap. It has a mode that allows selection of the current
+ * position's key, value, or key-value pair. Keys and values are decoded each time
+ * they are returned, so moving an iterator over a pair does not decode it.
+ * <p>
+ * @see ForwardIterator
+ * @see MappedHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class MappedHashMapIterator implements ForwardIterator, Opaque
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  MappedHashMap myMap;
+  int myIndex = -1; // occupied slot, or -1 when positioned at the end.
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public MappedHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public MappedHashMapIterator( MappedHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myIndex = iterator.myIndex;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular slot in a specified map.
+   * @param index My associated slot, or -1 for the end position.
+   * @param map My associated map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  MappedHashMapIterator( int index, MappedHashMap map, int mode )
+    {
+    myMap = map;
+    myIndex = index;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new MappedHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof MappedHashMapIterator
+      && myIndex == ( (MappedHashMapIterator)object ).myIndex
+      && myMap == ( (MappedHashMapIterator)object ).myMap;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIndex == myMap.first();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myIndex < 0;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myIndex >= 0;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    myIndex = myMap.next( myIndex );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myIndex < 0 )
+      throw new java.util.NoSuchElementException( "MappedHashMapIterator" );
+
+    Object result = get();
+    myIndex = myMap.next( myIndex );
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myMap.key( myIndex ), myMap.value( myIndex ) );
+
+      case KEY:
+        return myMap.key( myIndex );
+
+      case VALUE:
+        return myMap.value( myIndex );
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    MappedHashMapIterator i = new MappedHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. Since keys are
+   * stored by their encoded bytes, only the value of a pair can be changed; in PAIR
+   * mode the key of the new pair must be encoded as the same bytes as the current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If I'm in KEY mode or the key would change.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+
+        if ( !myMap.hasKey( myIndex, pair.first ) )
+          throw new InvalidOperationException( "Cannot change the key of a pair in a MappedHashMap." );
+
+        myMap.replace( myIndex, pair.second );
+        break;
+
+      case KEY:
+        throw new InvalidOperationException( "Cannot change the key of a pair in a MappedHashMap." );
+
+      case VALUE:
+        myMap.replace( myIndex, object );
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    MappedHashMapIterator i = new MappedHashMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myMap.key( myIndex );
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myMap.value( myIndex );
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param object The new value.
+   */
+  public void value( Object value )
+    {
+    myMap.replace( myIndex, value );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    int last = ( (MappedHashMapIterator)iterator ).myIndex;
+    int n = 0;
+
+    for ( int i = myIndex; i != last; i = myMap.next( i ) )
+      ++n;
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return null;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+  }
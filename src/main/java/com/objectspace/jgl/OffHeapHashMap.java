@@ -0,0 +1,994 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.nio.ByteBuffer;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * An OffHeapHashMap is an associative container that keeps its key/value pairs
+ * outside of the Java heap, so that very large maps do not lengthen garbage
+ * collection. Each pair is encoded by a pair of codecs into a single record in
+ * memory managed by a SlabAllocator; the record holds the length of the key, the
+ * length of the value, and then their bytes. The only data that lives on the heap
+ * is a compact open-addressed index of twelve bytes per slot that holds the
+ * address of each record and the hash code of its key.
+ * <p>
+ * Keys are matched by comparing their encoded bytes, so the key codec must always
+ * encode equal keys into the same bytes; the hash code of a key is also computed
+ * from its bytes. Reverse lookups such as keys( value ) likewise match values by
+ * their encoded bytes. Keys and values are only decoded when they are returned,
+ * which is also when an iterator decodes them. Duplicate keys are not allowed.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see Codec
+ * @see SlabAllocator
+ * @see OpenHashMap
+ * @see com.objectspace.jgl.codecs.ByteArrayCodec
+ * @see com.objectspace.jgl.benchmarks.OffHeapMapBenchmarks
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class OffHeapHashMap extends Map
+  {
+  static final int DEFAULT_SIZE = 256;
+  static final float DEFAULT_RATIO = 0.75F;
+  static final int HEADER = 8; // the lengths of the key and the value.
+
+  Codec keyCodec;
+  Codec valueCodec;
+  int slabSize;
+  transient SlabAllocator allocator;
+  transient int size; // # pairs.
+  transient long[] addresses; // Address of the record in each slot, 0 if the slot is empty.
+  transient int[] hashes; // Hash code of the key in each slot.
+  transient ByteBuffer scratch; // holds the encoded form of the object being looked up.
+  int capacity; // # slots, always a power of two.
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be an empty OffHeapHashMap that stores its keys and values
+   * using the specified codecs.
+   * @param keyCodec The codec for keys.
+   * @param valueCodec The codec for values.
+   */
+  public OffHeapHashMap( Codec keyCodec, Codec valueCodec )
+    {
+    this( keyCodec, valueCodec, DEFAULT_SIZE, DEFAULT_RATIO, SlabAllocator.DEFAULT_SLAB_SIZE );
+    }
+
+  /**
+   * Construct myself to be an empty OffHeapHashMap that stores its keys and values
+   * using the specified codecs. The initial slots and load ratio must also be
+   * specified.
+   * @param keyCodec The codec for keys.
+   * @param valueCodec The codec for values.
+   * @param capacity The initial number of slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   */
+  public OffHeapHashMap( Codec keyCodec, Codec valueCodec, int capacity, float loadRatio )
+    {
+    this( keyCodec, valueCodec, capacity, loadRatio, SlabAllocator.DEFAULT_SLAB_SIZE );
+    }
+
+  /**
+   * Construct myself to be an empty OffHeapHashMap that stores its keys and values
+   * using the specified codecs in slabs of the specified size. The initial slots and
+   * load ratio must also be specified. The number of slots is rounded up to the next
+   * power of two, and no record can be larger than a slab.
+   * @param keyCodec The codec for keys.
+   * @param valueCodec The codec for values.
+   * @param capacity The initial number of slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @param slabSize The number of bytes that are reserved off the heap at a time.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   */
+  public OffHeapHashMap( Codec keyCodec, Codec valueCodec, int capacity, float loadRatio, int slabSize )
+    {
+    if ( loadRatio <= 0.0F || loadRatio >= 1.0F )
+      throw new IllegalArgumentException( "load ratio must be between 0 and 1" );
+
+    this.keyCodec = keyCodec;
+    this.valueCodec = valueCodec;
+    this.slabSize = slabSize;
+    ratio = loadRatio;
+    allocator = new SlabAllocator( slabSize );
+    allocate( OpenHashMap.powerOfTwo( capacity ) );
+    }
+
+  /**
+   * Construct myself to be a copy of an existing OffHeapHashMap. The records are
+   * copied into memory of my own.
+   * @param map The OffHeapHashMap to copy.
+   */
+  public OffHeapHashMap( OffHeapHashMap map )
+    {
+    copy( map );
+    }
+
+  /**
+   * Return my key codec.
+   */
+  public Codec getKeyCodec()
+    {
+    return keyCodec;
+    }
+
+  /**
+   * Return my value codec.
+   */
+  public Codec getValueCodec()
+    {
+    return valueCodec;
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return the number of bytes that I have reserved outside of the Java heap.
+   */
+  public long offHeapSize()
+    {
+    return allocator.reserved();
+    }
+
+  /**
+   * Return a copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new OffHeapHashMap( this );
+    }
+
+  /**
+   * Become a copy of an existing OffHeapHashMap. The records are copied into
+   * memory of my own.
+   * @param map The OffHeapHashMap that I shall become a copy of.
+   */
+  public synchronized void copy( OffHeapHashMap map )
+    {
+    synchronized( map )
+      {
+      keyCodec = map.keyCodec;
+      valueCodec = map.valueCodec;
+      slabSize = map.slabSize;
+      ratio = map.ratio;
+      allocator = new SlabAllocator( slabSize );
+      allocate( map.capacity );
+      size = map.size;
+      hashes = (int[])map.hashes.clone();
+
+      for ( int i = 0; i < capacity; i++ )
+        {
+        long address = map.addresses[ i ];
+
+        if ( address != 0 )
+          {
+          ByteBuffer slab = map.allocator.slab( address );
+          int offset = SlabAllocator.offset( address );
+          addresses[ i ] = store( slab, offset, length( slab, offset ) );
+          }
+        }
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "OffHeapHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public synchronized Enumeration elements()
+    {
+    return new OffHeapHashMapIterator( first(), this, OffHeapHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized OffHeapHashMapIterator begin()
+    {
+    return new OffHeapHashMapIterator( first(), this, OffHeapHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized OffHeapHashMapIterator end()
+    {
+    return new OffHeapHashMapIterator( -1, this, OffHeapHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof OffHeapHashMap && equals( (OffHeapHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another
+   * OffHeapHashMap that uses the same kinds of codecs. The pairs are compared
+   * by their encoded bytes without being decoded.
+   * @param map The OffHeapHashMap to compare myself against.
+   */
+  public synchronized boolean equals( OffHeapHashMap map )
+    {
+    synchronized( map )
+      {
+      if ( size != map.size
+          || keyCodec.getClass() != map.keyCodec.getClass()
+          || valueCodec.getClass() != map.valueCodec.getClass() )
+        return false;
+
+      for ( int i = first(); i >= 0; i = next( i ) )
+        {
+        ByteBuffer slab = allocator.slab( addresses[ i ] );
+        int offset = SlabAllocator.offset( addresses[ i ] );
+        int j = map.locate( slab, offset + HEADER, slab.getInt( offset ), hashes[ i ] );
+
+        if ( j < 0 )
+          return false;
+
+        ByteBuffer mapSlab = map.allocator.slab( map.addresses[ j ] );
+        int mapOffset = SlabAllocator.offset( map.addresses[ j ] );
+        int length = length( slab, offset );
+
+        if ( length != map.length( mapSlab, mapOffset ) || !sameBytes( slab, offset, mapSlab, mapOffset, length ) )
+          return false;
+        }
+      }
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers. It is computed from the
+   * encoded bytes of my keys.
+   */
+  public synchronized int hashCode()
+    {
+    int hash = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      hash += hashes[ i ];
+
+    return hash;
+    }
+
+  /**
+   * Swap my contents with another OffHeapHashMap.
+   * @param map The OffHeapHashMap that I will swap my contents with.
+   */
+  public synchronized void swap( OffHeapHashMap map )
+    {
+    synchronized( map )
+      {
+      Codec tmpKeyCodec = keyCodec;
+      keyCodec = map.keyCodec;
+      map.keyCodec = tmpKeyCodec;
+
+      Codec tmpValueCodec = valueCodec;
+      valueCodec = map.valueCodec;
+      map.valueCodec = tmpValueCodec;
+
+      int tmpSlabSize = slabSize;
+      slabSize = map.slabSize;
+      map.slabSize = tmpSlabSize;
+
+      SlabAllocator tmpAllocator = allocator;
+      allocator = map.allocator;
+      map.allocator = tmpAllocator;
+
+      int tmpSize = size;
+      size = map.size;
+      map.size = tmpSize;
+
+      long[] tmpAddresses = addresses;
+      addresses = map.addresses;
+      map.addresses = tmpAddresses;
+
+      int[] tmpHashes = hashes;
+      hashes = map.hashes;
+      map.hashes = tmpHashes;
+
+      int tmpCapacity = capacity;
+      capacity = map.capacity;
+      map.capacity = tmpCapacity;
+
+      int tmpLimit = limit;
+      limit = map.limit;
+      map.limit = tmpLimit;
+
+      float tmpRatio = ratio;
+      ratio = map.ratio;
+      map.ratio = tmpRatio;
+      }
+    }
+
+  /**
+   * Remove all of my elements and release the memory that they occupied.
+   */
+  public synchronized void clear()
+    {
+    allocator.clear();
+    addresses = new long[ capacity ];
+    size = 0;
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key.
+   * @param key The key of the pair to be removed.
+   * @return The value removed or null if not changed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    int slot = locate( key );
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = value( slot );
+    delete( slot );
+    return value;
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key if the count is positive.
+   * @param key The key of the pair to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Object key, int count )
+    {
+    if ( count <= 0 )
+      return 0;
+
+    int slot = locate( key );
+
+    if ( slot < 0 )
+      return 0;
+
+    delete( slot );
+    return 1;
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OffHeapHashMapIterator for this OffHeapHashMap object.
+   * @return Return the value associated with the enumeration.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof OffHeapHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not an OffHeapHashMapIterator" );
+
+    if ( ((OffHeapHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this OffHeapHashMap" );
+
+    int slot = ( (OffHeapHashMapIterator)e ).myIndex;
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = value( slot );
+    delete( slot );
+    return value;
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OffHeapHashMapIterator for this OffHeapHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof OffHeapHashMapIterator) ) ||
+        ( ! (last instanceof OffHeapHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not an OffHeapHashMapIterator" );
+
+    if ( ( ((OffHeapHashMapIterator)first).myMap != this ) ||
+        ( ((OffHeapHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this OffHeapHashMap" );
+
+    int begin = ( (OffHeapHashMapIterator)first ).myIndex;
+    int end = ( (OffHeapHashMapIterator)last ).myIndex;
+    long[] records = new long[ size ];
+    int count = 0;
+
+    // Removal shifts entries between slots, so the records are collected first.
+    for ( int i = begin; i != end && i >= 0; i = next( i ) )
+      records[ count++ ] = addresses[ i ];
+
+    for ( int i = 0; i < count; i++ )
+      {
+      ByteBuffer slab = allocator.slab( records[ i ] );
+      int offset = SlabAllocator.offset( records[ i ] );
+      int length = slab.getInt( offset );
+      delete( locate( slab, offset + HEADER, length, hash( slab, offset + HEADER, length ) ) );
+      }
+
+    return count;
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized OffHeapHashMapIterator find( Object key )
+    {
+    return new OffHeapHashMapIterator( locate( key ), this, OffHeapHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    return locate( key ) < 0 ? 0 : 1;
+    }
+
+  /**
+   * Return the number of values whose encoded bytes match those of a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int length = encode( valueCodec, value );
+    int count = 0;
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( hasValue( i, length ) )
+        ++count;
+
+    return count;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    int slot = locate( key );
+    return slot < 0 ? null : value( slot );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int length = encode( keyCodec, key );
+    int hash = hash( scratch, 0, length );
+    int slot = locate( scratch, 0, length, hash );
+
+    if ( slot >= 0 )
+      {
+      // replace old version & return it
+      Object previous = value( slot );
+      replace( slot, value );
+      return previous;
+      }
+
+    insert( hash, store( scratch, 0, length, value ) );
+    return null;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int length = encode( keyCodec, key );
+    int hash = hash( scratch, 0, length );
+    int slot = locate( scratch, 0, length, hash );
+
+    if ( slot >= 0 )
+      return value( slot ); // DO NOT add
+
+    insert( hash, store( scratch, 0, length, value ) );
+    return null;
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return new OffHeapHashMapIterator( first(), this, OffHeapHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a value whose
+   * encoded bytes match those of a particular object.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    int length = encode( valueCodec, value );
+    Array array = new Array();
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( hasValue( i, length ) )
+        array.pushBack( key( i ) );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    int slot = locate( key );
+
+    if ( slot >= 0 )
+      array.pushBack( value( slot ) );
+
+    return array.elements();
+    }
+
+  /**
+   * Return the slot of my first pair, or -1 if I'm empty.
+   */
+  int first()
+    {
+    return size == 0 ? -1 : next( -1 );
+    }
+
+  /**
+   * Return the first occupied slot after a given slot, or -1 if there is none.
+   */
+  int next( int slot )
+    {
+    for ( int i = slot + 1; i < capacity; i++ )
+      if ( addresses[ i ] != 0 )
+        return i;
+
+    return -1;
+    }
+
+  /**
+   * Return the decoded key of the pair in a slot.
+   */
+  Object key( int slot )
+    {
+    long address = addresses[ slot ];
+    ByteBuffer slab = allocator.slab( address );
+    int offset = SlabAllocator.offset( address );
+    int length = slab.getInt( offset );
+    return keyCodec.decode( region( slab, offset + HEADER, length ), length );
+    }
+
+  /**
+   * Return the decoded value of the pair in a slot.
+   */
+  Object value( int slot )
+    {
+    long address = addresses[ slot ];
+    ByteBuffer slab = allocator.slab( address );
+    int offset = SlabAllocator.offset( address );
+    int length = slab.getInt( offset + 4 );
+    return valueCodec.decode( region( slab, offset + HEADER + slab.getInt( offset ), length ), length );
+    }
+
+  /**
+   * Return true if the pair in a slot has a key that is encoded as the same bytes as a
+   * given key.
+   */
+  synchronized boolean hasKey( int slot, Object key )
+    {
+    int length = encode( keyCodec, key );
+    long address = addresses[ slot ];
+    ByteBuffer slab = allocator.slab( address );
+    int offset = SlabAllocator.offset( address );
+    return slab.getInt( offset ) == length && sameBytes( slab, offset + HEADER, scratch, 0, length );
+    }
+
+  /**
+   * Replace the value of the pair in a slot, reusing its record if the new value fits.
+   */
+  synchronized void replace( int slot, Object value )
+    {
+    long address = addresses[ slot ];
+    ByteBuffer slab = allocator.slab( address );
+    int offset = SlabAllocator.offset( address );
+    int keyLength = slab.getInt( offset );
+    int length = length( slab, offset );
+    int valueLength = valueCodec.size( value );
+
+    if ( SlabAllocator.blockSize( length ) == SlabAllocator.blockSize( HEADER + keyLength + valueLength ) )
+      {
+      write( address, null, 0, keyLength, value, valueLength );
+      return;
+      }
+
+    long record = allocator.allocate( HEADER + keyLength + valueLength );
+    write( record, slab, offset + HEADER, keyLength, value, valueLength );
+    allocator.free( address, length );
+    addresses[ slot ] = record;
+    }
+
+  /**
+   * Return the slot of the pair whose key matches, or -1 if there is none.
+   */
+  private int locate( Object key )
+    {
+    int length = encode( keyCodec, key );
+    return locate( scratch, 0, length, hash( scratch, 0, length ) );
+    }
+
+  /**
+   * Return the slot of the pair whose key is encoded as the given bytes, or -1 if
+   * there is none.
+   */
+  int locate( ByteBuffer buffer, int start, int length, int hash )
+    {
+    int mask = capacity - 1;
+
+    for ( int i = hash & mask; addresses[ i ] != 0; i = ( i + 1 ) & mask )
+      if ( hashes[ i ] == hash )
+        {
+        ByteBuffer slab = allocator.slab( addresses[ i ] );
+        int offset = SlabAllocator.offset( addresses[ i ] );
+
+        if ( slab.getInt( offset ) == length && sameBytes( slab, offset + HEADER, buffer, start, length ) )
+          return i;
+        }
+
+    return -1;
+    }
+
+  /**
+   * Return true if the value in a slot is encoded as the bytes in my scratch buffer.
+   */
+  private boolean hasValue( int slot, int length )
+    {
+    ByteBuffer slab = allocator.slab( addresses[ slot ] );
+    int offset = SlabAllocator.offset( addresses[ slot ] );
+    return slab.getInt( offset + 4 ) == length && sameBytes( slab, offset + HEADER + slab.getInt( offset ), scratch, 0, length );
+    }
+
+  /**
+   * Encode an object into my scratch buffer and return the number of bytes.
+   */
+  private int encode( Codec codec, Object object )
+    {
+    int length = codec.size( object );
+
+    if ( scratch == null || scratch.capacity() < length )
+      scratch = ByteBuffer.allocate( Math.max( length, scratch == null ? 64 : 2 * scratch.capacity() ) );
+
+    scratch.clear();
+    codec.encode( object, scratch );
+
+    if ( scratch.position() != length )
+      throw new IllegalStateException( "codec wrote " + scratch.position() + " bytes instead of " + length );
+
+    return length;
+    }
+
+  /**
+   * Allocate a record for a key whose bytes are in a buffer and a value, and return
+   * its address.
+   */
+  private long store( ByteBuffer buffer, int start, int keyLength, Object value )
+    {
+    int valueLength = valueCodec.size( value );
+    long address = allocator.allocate( HEADER + keyLength + valueLength );
+    write( address, buffer, start, keyLength, value, valueLength );
+    return address;
+    }
+
+  /**
+   * Allocate a copy of an existing record and return its address.
+   */
+  private long store( ByteBuffer buffer, int start, int length )
+    {
+    long address = allocator.allocate( length );
+    region( allocator.slab( address ), SlabAllocator.offset( address ), length ).put( region( buffer, start, length ) );
+    return address;
+    }
+
+  /**
+   * Write a record. If the buffer is null the key is already in place.
+   */
+  private void write( long address, ByteBuffer buffer, int start, int keyLength, Object value, int valueLength )
+    {
+    ByteBuffer record = region( allocator.slab( address ), SlabAllocator.offset( address ), HEADER + keyLength + valueLength );
+    record.putInt( keyLength );
+    record.putInt( valueLength );
+
+    if ( buffer == null )
+      record.position( record.position() + keyLength );
+    else
+      record.put( region( buffer, start, keyLength ) );
+
+    valueCodec.encode( value, record );
+
+    if ( record.hasRemaining() )
+      throw new IllegalStateException( "codec wrote fewer bytes than it measured" );
+    }
+
+  /**
+   * Store a record with the given key hash in the first free slot of its probe sequence.
+   */
+  private void insert( int hash, long address )
+    {
+    int mask = capacity - 1;
+    int i = hash & mask;
+
+    while ( addresses[ i ] != 0 )
+      i = ( i + 1 ) & mask;
+
+    addresses[ i ] = address;
+    hashes[ i ] = hash;
+
+    if ( ++size > limit )
+      rehash( capacity * 2 );
+    }
+
+  /**
+   * Free the record in a slot and shift the entries that follow it back towards
+   * their home slots, so that no probe sequence is broken.
+   */
+  private void delete( int slot )
+    {
+    long address = addresses[ slot ];
+    ByteBuffer slab = allocator.slab( address );
+    allocator.free( address, length( slab, SlabAllocator.offset( address ) ) );
+
+    int mask = capacity - 1;
+    int i = slot;
+
+    for ( int j = ( i + 1 ) & mask; addresses[ j ] != 0; j = ( j + 1 ) & mask )
+      {
+      int home = hashes[ j ] & mask;
+
+      // The entry may move back unless its home lies after the hole.
+      if ( ( ( j - home ) & mask ) >= ( ( j - i ) & mask ) )
+        {
+        addresses[ i ] = addresses[ j ];
+        hashes[ i ] = hashes[ j ];
+        i = j;
+        }
+      }
+
+    addresses[ i ] = 0;
+    --size;
+    }
+
+  /**
+   * Redistribute my index over the given number of slots. The records themselves
+   * are not touched.
+   */
+  private void rehash( int newCapacity )
+    {
+    long[] oldAddresses = addresses;
+    int[] oldHashes = hashes;
+
+    allocate( newCapacity );
+
+    for ( int i = 0; i < oldAddresses.length; i++ )
+      if ( oldAddresses[ i ] != 0 )
+        insert( oldHashes[ i ], oldAddresses[ i ] );
+    }
+
+  private void allocate( int newCapacity )
+    {
+    capacity = newCapacity;
+    limit = (int)( capacity * ratio );
+    addresses = new long[ capacity ];
+    hashes = new int[ capacity ];
+    size = 0;
+    }
+
+  /**
+   * Return the number of bytes in the record at an offset.
+   */
+  private int length( ByteBuffer slab, int offset )
+    {
+    return HEADER + slab.getInt( offset ) + slab.getInt( offset + 4 );
+    }
+
+  /**
+   * Return a view of a region of a buffer whose position is the start of the region.
+   */
+  static ByteBuffer region( ByteBuffer buffer, int start, int length )
+    {
+    ByteBuffer region = buffer.duplicate();
+    region.clear();
+    region.limit( start + length );
+    region.position( start );
+    return region;
+    }
+
+  /**
+   * Return the hash code of the given bytes.
+   */
+  static int hash( ByteBuffer buffer, int start, int length )
+    {
+    int hash = length;
+    int i = 0;
+
+    for ( ; i + 4 <= length; i += 4 )
+      hash = 31 * hash + buffer.getInt( start + i );
+
+    for ( ; i < length; i++ )
+      hash = 31 * hash + buffer.get( start + i );
+
+    return OpenHashMap.spread( hash );
+    }
+
+  /**
+   * Return true if two regions of buffers hold the same bytes.
+   */
+  static boolean sameBytes( ByteBuffer first, int firstStart, ByteBuffer second, int secondStart, int length )
+    {
+    int i = 0;
+
+    for ( ; i + 8 <= length; i += 8 )
+      if ( first.getLong( firstStart + i ) != second.getLong( secondStart + i ) )
+        return false;
+
+    for ( ; i < length; i++ )
+      if ( first.get( firstStart + i ) != second.get( secondStart + i ) )
+        return false;
+
+    return true;
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeInt( size );
+
+    byte[] bytes = new byte[ 0 ];
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      {
+      ByteBuffer slab = allocator.slab( addresses[ i ] );
+      int offset = SlabAllocator.offset( addresses[ i ] );
+      int length = length( slab, offset );
+
+      if ( bytes.length < length )
+        bytes = new byte[ length ];
+
+      region( slab, offset, length ).get( bytes, 0, length );
+      stream.writeInt( length );
+      stream.write( bytes, 0, length );
+      }
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    allocator = new SlabAllocator( slabSize );
+    allocate( capacity );
+    int count = stream.readInt();
+
+    byte[] bytes = new byte[ 0 ];
+
+    while ( count-- > 0 )
+      {
+      int length = stream.readInt();
+
+      if ( bytes.length < length )
+        bytes = new byte[ length ];
+
+      stream.readFully( bytes, 0, length );
+      ByteBuffer buffer = ByteBuffer.wrap( bytes );
+      insert( hash( buffer, HEADER, buffer.getInt( 0 ) ), store( buffer, 0, length ) );
+      }
+    }
+
+  static final long serialVersionUID = 3184672209530165118L;
+  }
@@ -0,0 +1,967 @@
+// Copyright(c) 1996,1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * An OpenHashMap is an associative container that manages a set of key/value
+ * pairs without allocating a node per pair. Keys, values and hash codes are
+ * stored in parallel arrays and collisions are resolved by linear probing using
+ * the Robin Hood discipline: an entry that is further from its home slot takes
+ * the place of an entry that is closer to its own, which keeps probe sequences
+ * short and groups every key with the same home slot into one contiguous run.
+ * <p>
+ * Keys are matched by default using a BinaryPredicate that uses equals() for
+ * comparisons, exactly as in a HashMap. Duplicate keys are not allowed unless
+ * explicitly specified, in which case all the pairs that share a key occupy
+ * adjacent slots.
+ * <p>
+ * The number of home slots is always a power of two. A small overflow area
+ * follows the home slots so that a run never wraps around the end of the table,
+ * which is why the iteration order is simply the slot order.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see BinaryPredicate
+ * @see com.objectspace.jgl.benchmarks.OpenHashMapBenchmarks
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class OpenHashMap extends Map
+  {
+  static final int DEFAULT_SIZE = 256;
+  static final float DEFAULT_RATIO = 0.75F;
+  static final int MIN_OVERFLOW = 16;
+
+  BinaryPredicate comparator;
+  boolean allowDups; // does the map allow duplicate keys?
+  boolean expandActive = true; // will expand() have any effect?
+  transient int size; // # pairs.
+  transient Object[] keys; // Key of each slot, null if the slot is empty.
+  transient Object[] values; // Value of each slot.
+  transient int[] hashes; // Spread hash code of each slot.
+  int capacity; // # home slots, always a power of two.
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be an empty OpenHashMap that compares keys using equals() and
+   * does not allow duplicates.
+   */
+  public OpenHashMap()
+    {
+    this( new xEqualTo(), false, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty OpenHashMap that compares keys using equals() and
+   * conditionally allows duplicates.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public OpenHashMap( boolean allowDuplicates )
+    {
+    this( new xEqualTo(), allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty OpenHashMap that compares keys using the specified
+   * binary predicate and does not allow duplicates.
+   * @param comparator The predicate for comparing keys.
+   */
+  public OpenHashMap( BinaryPredicate comparator )
+    {
+    this( comparator, false, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty OpenHashMap that compares keys using the specified
+   * binary predicate and conditionally allows duplicates.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   */
+  public OpenHashMap( BinaryPredicate comparator, boolean allowDuplicates )
+    {
+    this( comparator, allowDuplicates, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty OpenHashMap that compares keys using the specified
+   * binary predicate. The initial slots and load ratio must also be specified.
+   * @param comparator The predicate for comparing keys.
+   * @param capacity The initial number of home slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   */
+  public OpenHashMap( BinaryPredicate comparator, int capacity, float loadRatio )
+    {
+    this( comparator, false, capacity, loadRatio );
+    }
+
+  /**
+   * Construct myself to be an empty OpenHashMap that compares keys using the specified
+   * binary predicate and conditionally allows duplicates. The initial slots and
+   * load ratio must also be specified. The number of slots is rounded up to
+   * the next power of two.
+   * @param comparator The predicate for comparing keys.
+   * @param allowDuplicates true if duplicates are allowed.
+   * @param capacity The initial number of home slots to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the load ratio is not between 0 and 1.
+   */
+  public OpenHashMap( BinaryPredicate comparator, boolean allowDuplicates, int capacity, float loadRatio )
+    {
+    if ( loadRatio <= 0.0F || loadRatio >= 1.0F )
+      throw new IllegalArgumentException( "load ratio must be between 0 and 1" );
+
+    this.comparator = comparator;
+    allowDups = allowDuplicates;
+    ratio = loadRatio;
+    allocate( powerOfTwo( capacity ) );
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing OpenHashMap.
+   * @param map The OpenHashMap to copy.
+   */
+  public OpenHashMap( OpenHashMap map )
+    {
+    copy( map );
+    }
+
+  /**
+   * Return true if I allow duplicate keys.
+   */
+  public boolean allowsDuplicates()
+    {
+    return allowDups;
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return comparator;
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new OpenHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing OpenHashMap.
+   * @param map The OpenHashMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( OpenHashMap map )
+    {
+    synchronized( map )
+      {
+      comparator = map.comparator;
+      allowDups = map.allowDups;
+      expandActive = map.expandActive;
+      capacity = map.capacity;
+      ratio = map.ratio;
+      limit = map.limit;
+      size = map.size;
+      keys = (Object[])map.keys.clone();
+      values = (Object[])map.values.clone();
+      hashes = (int[])map.hashes.clone();
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "OpenHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public synchronized Enumeration elements()
+    {
+    return new OpenHashMapIterator( first(), this, OpenHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized OpenHashMapIterator begin()
+    {
+    return new OpenHashMapIterator( first(), this, OpenHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized OpenHashMapIterator end()
+    {
+    return new OpenHashMapIterator( -1, this, OpenHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof OpenHashMap && equals( (OpenHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another OpenHashMap.
+   * Use equals() to compare values.
+   * @param map The OpenHashMap to compare myself against.
+   */
+  public synchronized boolean equals( OpenHashMap map )
+    {
+    synchronized( map )
+      {
+      if ( size != map.size )
+        return false;
+
+      for ( int i = first(); i >= 0; )
+        {
+        int j = map.locate( keys[ i ], hashes[ i ] );
+
+        if ( j < 0 )
+          return false;
+
+        int end = runEnd( i );
+        int mapEnd = map.runEnd( j );
+
+        if ( end - i != mapEnd - j || !sameValues( values, i, end, map.values, j ) )
+          return false;
+
+        i = next( end - 1 );
+        }
+      }
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public synchronized int hashCode()
+    {
+    ForwardIterator start = new OpenHashMapIterator( first(), this, OpenHashMapIterator.KEY );
+    return Algos.Hashing.unorderedHash( start );
+    }
+
+  /**
+   * Swap my contents with another OpenHashMap.
+   * @param map The OpenHashMap that I will swap my contents with.
+   */
+  public synchronized void swap( OpenHashMap map )
+    {
+    synchronized( map )
+      {
+      int tmpSize = size;
+      size = map.size;
+      map.size = tmpSize;
+
+      Object[] tmpKeys = keys;
+      keys = map.keys;
+      map.keys = tmpKeys;
+
+      Object[] tmpValues = values;
+      values = map.values;
+      map.values = tmpValues;
+
+      int[] tmpHashes = hashes;
+      hashes = map.hashes;
+      map.hashes = tmpHashes;
+
+      int tmpCapacity = capacity;
+      capacity = map.capacity;
+      map.capacity = tmpCapacity;
+
+      int tmpLimit = limit;
+      limit = map.limit;
+      map.limit = tmpLimit;
+
+      float tmpRatio = ratio;
+      ratio = map.ratio;
+      map.ratio = tmpRatio;
+
+      boolean tmpDups = allowDups;
+      allowDups = map.allowDups;
+      map.allowDups = tmpDups;
+
+      BinaryPredicate tmpComparator = comparator;
+      comparator = map.comparator;
+      map.comparator = tmpComparator;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    keys = new Object[ keys.length ];
+    values = new Object[ values.length ];
+    size = 0;
+    }
+
+  /**
+   * Remove all key/value pairs that match a particular key.
+   * @param key The key of the pair(s) to be removed.
+   * @return the first value pair removed or null if not changed.
+   */
+  public Object remove( Object key )
+    {
+    return removeAux( key, size ).first;
+    }
+
+  /**
+   * Remove at most a given number of key/value pairs that match a particular key.
+   * @param key The key of the pair(s) to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    Pair result = removeAux( key, count );
+    return ( (Number)result.second ).intValue();
+    }
+
+  synchronized Pair removeAux( Object key, int maximum )
+    {
+    if ( maximum > 0 )
+      {
+      int slot = locate( key, spread( key.hashCode() ) );
+
+      if ( slot >= 0 )
+        {
+        int count = Math.min( runEnd( slot ) - slot, maximum );
+        Object value = values[ slot ]; // we only want the first one.
+        delete( slot, count );
+        return new Pair( value, new Integer( count ) );
+        }
+      }
+    return new Pair( null, new Integer( 0 ) );
+    }
+
+  /**
+   * Remove the element at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OpenHashMapIterator for this OpenHashMap object.
+   * @return Return the value associated with the enumeration.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof OpenHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not an OpenHashMapIterator" );
+
+    if ( ((OpenHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this OpenHashMap" );
+
+    int slot = ( (OpenHashMapIterator)e ).myIndex;
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = values[ slot ];
+    delete( slot, 1 );
+    return value;
+    }
+
+  /**
+   * Remove the elements within a specified range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OpenHashMapIterator for this OpenHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof OpenHashMapIterator) ) ||
+        ( ! (last instanceof OpenHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not an OpenHashMapIterator" );
+
+    if ( ( ((OpenHashMapIterator)first).myMap != this ) ||
+        ( ((OpenHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this OpenHashMap" );
+
+    int begin = ( (OpenHashMapIterator)first ).myIndex;
+    int end = ( (OpenHashMapIterator)last ).myIndex;
+    int[] slots = new int[ size ];
+    int count = 0;
+
+    for ( int i = begin; i != end; i = next( i ) )
+      slots[ count++ ] = i;
+
+    // Removing a slot only ever shifts the entries that follow it, so
+    // working backwards leaves the remaining slot numbers valid.
+    for ( int i = count - 1; i >= 0; i-- )
+      delete( slots[ i ], 1 );
+
+    return count;
+    }
+
+  /**
+   * Find the first key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized OpenHashMapIterator find( Object key )
+    {
+    return new OpenHashMapIterator( locate( key, spread( key.hashCode() ) ), this, OpenHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    int slot = locate( key, spread( key.hashCode() ) );
+
+    if ( slot < 0 )
+      return 0;
+
+    return runEnd( slot ) - slot;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    return Algos.Counting.count
+      (
+      new OpenHashMapIterator( first(), this, OpenHashMapIterator.VALUE ),
+      new OpenHashMapIterator( -1, this, OpenHashMapIterator.VALUE ),
+      value
+      );
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    int slot = locate( key, spread( key.hashCode() ) );
+    return slot < 0 ? null : values[ slot ];
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the first value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int hash = spread( key.hashCode() );
+    int slot = locate( key, hash );
+
+    if ( slot >= 0 )
+      {
+      // replace old version & return it
+      keys[ slot ] = key;
+      Object previous = values[ slot ];
+      values[ slot ] = value;
+      return previous;
+      }
+
+    insert( probe( hash ), key, value, hash );
+    return null;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist or duplicates are allowed,
+   * associate the value with the key and return null, otherwise don't modify the map and
+   * return the current value associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    if ( ((Pair)object).first == null || ((Pair)object).second == null )
+      throw new NullPointerException();
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist or duplicates are allowed, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    int hash = spread( key.hashCode() );
+    int slot = locate( key, hash );
+
+    if ( slot >= 0 )
+      {
+      if ( !allowDups )
+        return values[ slot ]; // DO NOT add
+
+      // duplicate key, add this pair to the end of its run.
+      insert( runEnd( slot ), key, value, hash );
+      return null;
+      }
+
+    insert( probe( hash ), key, value, hash );
+    return null;
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return new OpenHashMapIterator( first(), this, OpenHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( int i = first(); i >= 0; i = next( i ) )
+      if ( values[ i ].equals( value ) )
+        array.pushBack( keys[ i ] );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of all my values that are associated with a particular key.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    int slot = locate( key, spread( key.hashCode() ) );
+
+    if ( slot >= 0 )
+      for ( int end = runEnd( slot ); slot < end; slot++ )
+        array.add( values[ slot ] );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an iterator positioned at the first location that a
+   * pair with a specified key could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param key The key.
+   */
+  public synchronized OpenHashMapIterator lowerBound( Object key )
+    {
+    return (OpenHashMapIterator)equalRange( key ).begin;
+    }
+
+  /**
+   * Return an iterator positioned at the last location that
+   * a pair with a specified key could be inserted without violating the ordering
+   * criteria. If no such location is found, return an iterator positioned at end().
+   * @param key The key.
+   */
+  public synchronized OpenHashMapIterator upperBound( Object key )
+    {
+    return (OpenHashMapIterator)equalRange( key ).end;
+    }
+
+  /**
+   * Return a range whose first element is an iterator positioned
+   * at the first occurence of a specific key and whose second element is an
+   * iterator positioned immediately after the last occurence of that key.
+   * Note that all key inbetween these iterators will also match the specified
+   * key. If no matching key is found, both ends of the range will be the
+   * same.
+   * @param object The key whose bounds are to be found.
+   */
+  public synchronized Range equalRange( Object key )
+    {
+    int slot = locate( key, spread( key.hashCode() ) );
+
+    if ( slot < 0 )
+      return new Range( end(), end() );
+
+    return new Range( new OpenHashMapIterator( slot, this, OpenHashMapIterator.PAIR ),
+                      new OpenHashMapIterator( next( runEnd( slot ) - 1 ), this, OpenHashMapIterator.PAIR ) );
+    }
+
+  /**
+   * Return true if adding an object to myself could result in an expansion
+   * of the number of home slots I currently use.
+   */
+  public boolean expansionAllowed()
+    {
+    return expandActive;
+    }
+
+  /**
+   * Enable or disable the current expansion mode.  If disabled, no new
+   * home slots will ever be created regardless of my size, and collisions
+   * are absorbed by the overflow area instead.
+   * @param allow The new expansion mode.
+   */
+  public synchronized void allowExpansion( boolean allow )
+    {
+    expandActive = allow;
+    }
+
+  /**
+   * Return the slot of my first pair, or -1 if I'm empty.
+   */
+  int first()
+    {
+    return size == 0 ? -1 : next( -1 );
+    }
+
+  /**
+   * Return the first occupied slot after a given slot, or -1 if there is none.
+   */
+  int next( int slot )
+    {
+    for ( int i = slot + 1; i < keys.length; i++ )
+      if ( keys[ i ] != null )
+        return i;
+
+    return -1;
+    }
+
+  /**
+   * Return the slot of the first pair whose key matches, or -1 if there is none.
+   * The search stops as soon as it meets an entry that is closer to its home
+   * slot than the key would be, because Robin Hood insertion would have placed
+   * the key in front of such an entry.
+   */
+  int locate( Object key, int hash )
+    {
+    int mask = capacity - 1;
+
+    for ( int i = hash & mask, distance = 0; i < keys.length && keys[ i ] != null; i++, distance++ )
+      {
+      int h = hashes[ i ];
+
+      if ( i - ( h & mask ) < distance )
+        break;
+
+      if ( h == hash && comparator.execute( keys[ i ], key ) )
+        return i;
+      }
+
+    return -1;
+    }
+
+  /**
+   * Return the slot immediately after the run of pairs whose key matches the pair
+   * in the given slot.
+   */
+  int runEnd( int slot )
+    {
+    int end = slot + 1;
+
+    if ( allowDups )
+      {
+      int hash = hashes[ slot ];
+      Object key = keys[ slot ];
+
+      while ( end < keys.length && keys[ end ] != null && hashes[ end ] == hash && comparator.execute( keys[ end ], key ) )
+        ++end;
+      }
+
+    return end;
+    }
+
+  /**
+   * Return the slot in which a new key with the given hash belongs: the first
+   * slot whose entry is closer to its home than the new key would be.
+   */
+  private int probe( int hash )
+    {
+    int mask = capacity - 1;
+    int i = hash & mask;
+
+    for ( int distance = 0; i < keys.length && keys[ i ] != null && i - ( hashes[ i ] & mask ) >= distance; distance++ )
+      ++i;
+
+    return i;
+    }
+
+  /**
+   * Store a pair at the given slot, shifting the entries up to the next empty
+   * slot one place to the right.
+   */
+  private void insert( int slot, Object key, Object value, int hash )
+    {
+    store( slot, key, value, hash );
+
+    if ( ++size > limit )
+      expand();
+    }
+
+  private void store( int slot, Object key, Object value, int hash )
+    {
+    int empty = slot;
+
+    while ( empty < keys.length && keys[ empty ] != null )
+      ++empty;
+
+    if ( empty == keys.length )
+      grow( empty + 1 );
+
+    if ( empty > slot )
+      {
+      System.arraycopy( keys, slot, keys, slot + 1, empty - slot );
+      System.arraycopy( values, slot, values, slot + 1, empty - slot );
+      System.arraycopy( hashes, slot, hashes, slot + 1, empty - slot );
+      }
+
+    keys[ slot ] = key;
+    values[ slot ] = value;
+    hashes[ slot ] = hash;
+    }
+
+  /**
+   * Remove a number of adjacent slots and shift the entries that follow back
+   * towards their home slots.
+   */
+  private void delete( int slot, int count )
+    {
+    int mask = capacity - 1;
+    int target = slot;
+    int source = slot + count;
+
+    for ( ; source < keys.length && keys[ source ] != null; ++source, ++target )
+      {
+      int home = hashes[ source ] & mask;
+
+      if ( home >= source )
+        break;
+
+      while ( target < home )
+        {
+        keys[ target ] = null;
+        values[ target++ ] = null;
+        }
+
+      keys[ target ] = keys[ source ];
+      values[ target ] = values[ source ];
+      hashes[ target ] = hashes[ source ];
+      }
+
+    while ( target < source )
+      {
+      keys[ target ] = null;
+      values[ target++ ] = null;
+      }
+
+    size -= count;
+    }
+
+  /**
+   * Enlarge the overflow area so that the arrays hold at least the given number of slots.
+   */
+  private void grow( int minimum )
+    {
+    int newLength = Math.max( minimum, keys.length + Math.max( MIN_OVERFLOW, keys.length - capacity ) );
+
+    Object[] tmpKeys = new Object[ newLength ];
+    System.arraycopy( keys, 0, tmpKeys, 0, keys.length );
+    keys = tmpKeys;
+
+    Object[] tmpValues = new Object[ newLength ];
+    System.arraycopy( values, 0, tmpValues, 0, values.length );
+    values = tmpValues;
+
+    int[] tmpHashes = new int[ newLength ];
+    System.arraycopy( hashes, 0, tmpHashes, 0, hashes.length );
+    hashes = tmpHashes;
+    }
+
+  private void expand()
+    {
+    if ( expansionAllowed() )
+      rehash( capacity * 2 );
+    }
+
+  /**
+   * Redistribute my pairs over the given number of home slots. Pairs are
+   * reinserted in slot order, which keeps each run of duplicates adjacent.
+   */
+  private void rehash( int newCapacity )
+    {
+    Object[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+
+    allocate( newCapacity );
+
+    for ( int i = 0; i < oldKeys.length; i++ )
+      if ( oldKeys[ i ] != null )
+        store( probe( oldHashes[ i ] ), oldKeys[ i ], oldValues[ i ], oldHashes[ i ] );
+    }
+
+  private void allocate( int newCapacity )
+    {
+    capacity = newCapacity;
+    limit = (int)( capacity * ratio );
+    keys = new Object[ capacity + MIN_OVERFLOW ];
+    values = new Object[ capacity + MIN_OVERFLOW ];
+    hashes = new int[ capacity + MIN_OVERFLOW ];
+    }
+
+  /**
+   * Return true if the run of values from first up to last in src and the run of
+   * the same length starting at start in dst hold the same values, in any order.
+   */
+  private static boolean sameValues( Object[] src, int first, int last, Object[] dst, int start )
+    {
+    if ( last - first == 1 )
+      return src[ first ].equals( dst[ start ] );
+
+    HashMultiSet values = new HashMultiSet();
+
+    for ( int i = first; i < last; i++ )
+      values.add( src[ i ] );
+
+    for ( int i = start; i < start + last - first; i++ )
+      if ( values.remove( dst[ i ], 1 ) == 0 )
+        return false;
+
+    return true;
+    }
+
+  /**
+   * Return the smallest power of two that is at least the given capacity.
+   */
+  static int powerOfTwo( int capacity )
+    {
+    int n = 1;
+
+    while ( n < capacity && n < ( 1 << 30 ) )
+      n <<= 1;
+
+    return n;
+    }
+
+  /**
+   * Mix the bits of a hash code so that keys with regular hash codes, such as
+   * sequential Integers, are scattered over the whole table.
+   */
+  static int spread( int hash )
+    {
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    return hash ^ ( hash >>> 16 );
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    stream.writeInt( size );
+    Enumeration iter = begin();
+    while ( iter.hasMoreElements() )
+      stream.writeObject( iter.nextElement() );
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    allocate( capacity );
+    int count = stream.readInt();
+    while ( count-- > 0 )
+      add( stream.readObject() );
+    }
+
+  static final long serialVersionUID = -2386217438451702553L;
+  }
@@ -0,0 +1,282 @@
+// Copyright(c) 1996,1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * An OpenHashMapIterator is a forward iterator that allows you to iterate through
+ * the contents of an OpenHashMap. It has a mode that allows selection of the current
+ * position's key, value, or key-value pair.
+ * <p>
+ * @see ForwardIterator
+ * @see OpenHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class OpenHashMapIterator implements ForwardIterator, Opaque
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  OpenHashMap myMap;
+  int myIndex = -1; // occupied slot, or -1 when positioned at the end.
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public OpenHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public OpenHashMapIterator( OpenHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myIndex = iterator.myIndex;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular slot in a specified map.
+   * @param index My associated slot, or -1 for the end position.
+   * @param map My associated map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  OpenHashMapIterator( int index, OpenHashMap map, int mode )
+    {
+    myMap = map;
+    myIndex = index;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new OpenHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof OpenHashMapIterator
+      && myIndex == ( (OpenHashMapIterator)object ).myIndex
+      && myMap == ( (OpenHashMapIterator)object ).myMap;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myIndex == myMap.first();
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myIndex < 0;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myIndex >= 0;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    myIndex = myMap.next( myIndex );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myIndex < 0 )
+      throw new java.util.NoSuchElementException( "OpenHashMapIterator" );
+
+    Object result = get();
+    myIndex = myMap.next( myIndex );
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myMap.keys[ myIndex ], myMap.values[ myIndex ] );
+
+      case KEY:
+        return myMap.keys[ myIndex ];
+
+      case VALUE:
+        return myMap.values[ myIndex ];
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    OpenHashMapIterator i = new OpenHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value.
+   * @param object The object to be written at my current position.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+        myMap.keys[ myIndex ] = pair.first;
+        myMap.values[ myIndex ] = pair.second;
+        break;
+
+      case KEY:
+        myMap.keys[ myIndex ] = object;
+        break;
+
+      case VALUE:
+        myMap.values[ myIndex ] = object;
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    OpenHashMapIterator i = new OpenHashMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myMap.keys[ myIndex ];
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myMap.values[ myIndex ];
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param object The new value.
+   */
+  public void value( Object value )
+    {
+    myMap.values[ myIndex ] = value;
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    int last = ( (OpenHashMapIterator)iterator ).myIndex;
+    int n = 0;
+
+    for ( int i = myIndex; i != last; i = myMap.next( i ) )
+      ++n;
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return null;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+  }
@@ -40,12 +40,21 @@ import java.io.IOException;
  * node of the red-black tree holds a Pair( key, value ). The comparator is
  * used to order the Pairs based only on their keys.
  * <p>
+ * If a filter is enabled, the hash codes of my keys are also summarized by a
+ * BloomFilter, which rejects most lookups and removals of keys that I do not
+ * contain without descending the tree.
+ * <p>
+ * Each node also records the size of its subtree, so the element at an index, the
+ * index of a key and the distance between two iterators are found in O( log N ).
+ * subMap(), headMap() and tailMap() return live views of a range of my keys.
+ * <p>
  * Insertion does not affect iterators or references.
  * <p>
  * Removal only invalidates the iterators and references to the removed
  * elements.
  * <p>
  * @see BinaryPredicate
+ * @see BloomFilter
  * @see com.objectspace.jgl.examples.OrderedMapExamples
  * @version 3.1.0
  * @author ObjectSpace, Inc.
@@ -251,6 +260,8 @@ public class OrderedMap extends Map
       Tree tmp = myTree;
       myTree = map.myTree;
       map.myTree = tmp;
+      myTree.myContainer = this;
+      map.myTree.myContainer = map;
       }
     }
 
@@ -348,6 +359,27 @@ public class OrderedMap extends Map
     return myTree.count( key );
     }
 
+  /**
+   * Return the key/value pair at a given index of my ordering in O( log N ) time.
+   * @param index The index.
+   * @exception IndexOutOfBoundsException If the index is invalid.
+   */
+  public synchronized Pair at( int index )
+    {
+    return (Pair)myTree.at( index ).object;
+    }
+
+  /**
+   * Return the index of the first pair that matches a given key in O( log N ) time,
+   * or -1 if there is none.
+   * @param key The key to match against.
+   */
+  public synchronized int indexOf( Object key )
+    {
+    Tree.TreeNode node = myTree.find( key );
+    return node == myTree.myHeader ? -1 : myTree.indexOf( node );
+    }
+
   /**
    * Return the number of values that match a given object.
    * @param value The value to match against.
@@ -396,6 +428,51 @@ public class OrderedMap extends Map
       );
     }
 
+  /**
+   * Return a live view of my pairs whose keys are not less than one key and are
+   * less than another. Nothing is copied.
+   * @param from The first key of the range.
+   * @param to The key that follows the range.
+   * @exception IllegalArgumentException If <CODE>to</CODE> is less than <CODE>from</CODE>.
+   * @exception NullPointerException If a key is null.
+   * @see OrderedSubMap
+   */
+  public OrderedSubMap subMap( Object from, Object to )
+    {
+    if ( from == null || to == null )
+      throw new NullPointerException();
+
+    return new OrderedSubMap( this, from, to );
+    }
+
+  /**
+   * Return a live view of my pairs whose keys are less than a given key.
+   * @param to The key that follows the range.
+   * @exception NullPointerException If the key is null.
+   * @see OrderedSubMap
+   */
+  public OrderedSubMap headMap( Object to )
+    {
+    if ( to == null )
+      throw new NullPointerException();
+
+    return new OrderedSubMap( this, null, to );
+    }
+
+  /**
+   * Return a live view of my pairs whose keys are not less than a given key.
+   * @param from The first key of the range.
+   * @exception NullPointerException If the key is null.
+   * @see OrderedSubMap
+   */
+  public OrderedSubMap tailMap( Object from )
+    {
+    if ( from == null )
+      throw new NullPointerException();
+
+    return new OrderedSubMap( this, from, null );
+    }
+
   /**
    * Return my comparator.
    */
@@ -404,6 +481,49 @@ public class OrderedMap extends Map
     return myTree.myComparator;
     }
 
+  /**
+   * Return the BloomFilter that summarizes the hash codes of my keys, or null if I have none.
+   */
+  public BloomFilter getFilter()
+    {
+    return myTree.myFilter;
+    }
+
+  /**
+   * Place a BloomFilter in front of my lookups and removals, so that most of those
+   * for keys that I do not contain are rejected without descending my tree.
+   * Keys are hashed using hashCode(), which agrees with the default comparator.
+   * @param falsePositiveRate The fraction of missing keys that the filter may let through.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public void enableFilter( double falsePositiveRate )
+    {
+    enableFilter( null, falsePositiveRate );
+    }
+
+  /**
+   * Place a BloomFilter in front of my lookups and removals, hashing my keys
+   * with a given hasher. The hasher must return the same hash code for any two
+   * keys that my comparator considers equivalent. The filter is kept up to
+   * date as keys are added, cleared with me, and rebuilt whenever it fills up or
+   * removals have made it stale.
+   * @param hasher The hasher, or null to use hashCode().
+   * @param falsePositiveRate The fraction of missing keys that the filter may let through.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public synchronized void enableFilter( Hasher hasher, double falsePositiveRate )
+    {
+    myTree.enableFilter( hasher, falsePositiveRate );
+    }
+
+  /**
+   * Discard my BloomFilter, if any.
+   */
+  public synchronized void disableFilter()
+    {
+    myTree.disableFilter();
+    }
+
   /**
    * Return the value associated with key, or null if the key does not exist.
    * @param key The key to search against.
@@ -427,11 +547,15 @@ public class OrderedMap extends Map
 
     Tree.InsertResult result = myTree.put( new Pair( key, value ) );
     if ( result.ok )
+      {
+      added( result.node );
       return null;
+      }
 
     Pair pair = (Pair)result.node.object;
     Object previous = pair.second;
     pair.second = value;
+    replaced( result.node, pair.first, previous );
     return previous;
     }
 
@@ -474,7 +598,179 @@ public class OrderedMap extends Map
       throw new NullPointerException();
 
     Tree.InsertResult result = myTree.insert( new Pair( key, value ) );
-    return result.ok ? null : ( (Pair)result.node.object).second;
+    if ( !result.ok )
+      return ( (Pair)result.node.object).second;
+
+    added( result.node );
+    return null;
+    }
+
+  /**
+   * Put every pair of a container into myself as if by put(). Pairs that arrive in
+   * sorted order, such as those of another OrderedMap with the same comparator,
+   * are linked in without searching my tree.
+   * @param container A container of Pairs.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void putAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    insert( container.start(), container.finish(), true );
+    }
+
+  /**
+   * Put every pair in a range into myself as if by put(). Pairs that arrive in
+   * sorted order are linked in without searching my tree.
+   * @param first An iterator positioned at the first Pair to insert.
+   * @param last An iterator positioned immediately after the last Pair to insert.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void putAll( InputIterator first, InputIterator last )
+    {
+    insert( first, last, true );
+    }
+
+  /**
+   * Put every key in an array into myself with the value at the same index of
+   * another array, as if by put(). Keys that are sorted are linked in without
+   * searching my tree.
+   * @param keys The keys.
+   * @param values The values.
+   * @exception IllegalArgumentException If the arrays have different lengths.
+   * @exception NullPointerException If a key or value is null.
+   */
+  public synchronized void putAll( Object[] keys, Object[] values )
+    {
+    insert( keys, values, true );
+    }
+
+  /**
+   * Add every pair of a container to myself as if by add(). Pairs that arrive in
+   * sorted order, such as those of another OrderedMap with the same comparator,
+   * are linked in without searching my tree.
+   * @param container A container of Pairs.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void addAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    insert( container.start(), container.finish(), false );
+    }
+
+  /**
+   * Add every pair in a range to myself as if by add(). Pairs that arrive in
+   * sorted order are linked in without searching my tree.
+   * @param first An iterator positioned at the first Pair to insert.
+   * @param last An iterator positioned immediately after the last Pair to insert.
+   * @exception IllegalArgumentException If an element is not a Pair.
+   * @exception NullPointerException If an element or its key or value is null.
+   */
+  public synchronized void addAll( InputIterator first, InputIterator last )
+    {
+    insert( first, last, false );
+    }
+
+  /**
+   * Add every key in an array to myself with the value at the same index of
+   * another array, as if by add(). Keys that are sorted are linked in without
+   * searching my tree.
+   * @param keys The keys.
+   * @param values The values.
+   * @exception IllegalArgumentException If the arrays have different lengths.
+   * @exception NullPointerException If a key or value is null.
+   */
+  public synchronized void addAll( Object[] keys, Object[] values )
+    {
+    insert( keys, values, false );
+    }
+
+  private void insert( InputIterator first, InputIterator last, boolean replace )
+    {
+    Tree.TreeNode hint = myTree.myHeader;
+
+    if ( first instanceof HashMapIterator && ( (HashMapIterator)first ).myMode == HashMapIterator.PAIR )
+      {
+      // Read the pairs of a HashMap in place rather than as new Pairs.
+      for ( HashMapIterator i = new HashMapIterator( (HashMapIterator)first ); !i.equals( last ); i.advance() )
+        hint = insert( hint, i.key(), i.value(), replace );
+
+      return;
+      }
+
+    InputIterator iterator = (InputIterator)first.clone();
+
+    while ( !iterator.equals( last ) )
+      {
+      Object object = iterator.nextElement();
+
+      if ( object == null )
+        throw new NullPointerException();
+
+      if ( !( object instanceof Pair ) )
+        throw new IllegalArgumentException( "object is not pair" );
+
+      Pair pair = (Pair)object;
+      hint = insert( hint, pair.first, pair.second, replace );
+      }
+    }
+
+  private void insert( Object[] keys, Object[] values, boolean replace )
+    {
+    if ( keys.length != values.length )
+      throw new IllegalArgumentException( "Arrays of keys and values have different lengths" );
+
+    Tree.TreeNode hint = myTree.myHeader;
+
+    for ( int i = 0; i < keys.length; i++ )
+      hint = insert( hint, keys[ i ], values[ i ], replace );
+    }
+
+  /**
+   * Insert a key/value pair using the node of the previous pair as a hint, and
+   * return the node at which the pair was inserted or found.
+   */
+  private Tree.TreeNode insert( Tree.TreeNode hint, Object key, Object value, boolean replace )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    Tree.InsertResult result = myTree.insertAfter( hint, new Pair( key, value ), !replace );
+
+    if ( result.ok )
+      {
+      added( result.node );
+      }
+    else if ( replace )
+      {
+      Pair pair = (Pair)result.node.object;
+      Object previous = pair.second;
+      pair.second = value;
+      replaced( result.node, pair.first, previous );
+      }
+
+    return result.node;
+    }
+
+  /**
+   * Called after a node has been inserted.
+   */
+  void added( Tree.TreeNode node )
+    {
+    }
+
+  /**
+   * Called after the pair of a node has been replaced or its value changed, with
+   * the key and value that it held before.
+   */
+  void replaced( Tree.TreeNode node, Object key, Object value )
+    {
     }
 
   /**
@@ -503,6 +799,23 @@ public class OrderedMap extends Map
     return myTree.values( key ).elements();
     }
 
+  /**
+   * Apply a function to the key and value of each of my pairs in order. My tree
+   * is walked directly, so not even an iterator is created. The result of the
+   * function is ignored, and the function must not modify me.
+   * @param function A function that takes a key and its value.
+   */
+  public synchronized void forEachEntry( BinaryFunction function )
+    {
+    Tree.TreeNode header = myTree.myHeader;
+
+    for ( Tree.TreeNode node = header.left; node != header; node = Tree.increment( node, myTree.NIL ) )
+      {
+      Pair pair = (Pair)node.object;
+      function.execute( pair.first, pair.second );
+      }
+    }
+
   private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
     {
     stream.defaultReadObject();
@@ -8,7 +8,13 @@ package com.objectspace.jgl;
  * the contents of a OrderedMap. It has a mode that allows selection of the current
  * position's key, value, or key-value pair.
  * <p>
+ * In PAIR mode, get() and nextElement() return the Pair that the map itself
+ * holds rather than a copy, so iterating creates no objects in any mode.
+ * <p>
+ * An iterator obtained from an OrderedSubMap stops at the end of its range.
+ * <p>
  * @see BidirectionalIterator
+ * @see OrderedMap#forEachEntry
  * @version 3.1.0
  * @author ObjectSpace, Inc.
  */
@@ -22,6 +28,8 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
   OrderedMap myOrderedMap;
   Tree myTree;
   Tree.TreeNode myNode;
+  Tree.TreeNode myLimit; // where I stop short of myTree.myHeader, or null.
+  OrderedSubMap myView; // the view that I belong to, or null.
   int myMode = PAIR;
 
   /**
@@ -40,6 +48,8 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
     myOrderedMap = iterator.myOrderedMap;
     myTree = iterator.myTree;
     myNode = iterator.myNode;
+    myLimit = iterator.myLimit;
+    myView = iterator.myView;
     myMode = iterator.myMode;
     }
 
@@ -57,6 +67,37 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
     myMode = mode;
     }
 
+  /**
+   * Construct myself to be positioned at a particular node in a specified Tree,
+   * as an iterator of a view that stops enumerating at the end of the view.
+   * @param tree My associated tree.
+   * @param node My associated node.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   * @param view The view that I belong to.
+   */
+  OrderedMapIterator( Tree tree, Tree.TreeNode node, OrderedMap map, int mode, OrderedSubMap view )
+    {
+    this( tree, node, map, mode );
+    myView = view;
+    myLimit = view.last();
+    }
+
+  /**
+   * Return the index in my tree of my first element.
+   */
+  private int first()
+    {
+    return myView == null ? 0 : myTree.indexOf( myView.first() );
+    }
+
+  /**
+   * Return the index in my tree of the position after my last element.
+   */
+  private int limit()
+    {
+    return myLimit == null ? myTree.size : myTree.indexOf( myLimit );
+    }
+
   /**
    * Return a clone of myself.
    */
@@ -80,7 +121,7 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
    */
   public boolean atBegin()
     {
-    return myNode == myTree.myHeader.left;
+    return myNode == ( myView == null ? myTree.myHeader.left : myView.first() );
     }
 
   /**
@@ -88,7 +129,7 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
    */
   public boolean atEnd()
     {
-    return myNode == myTree.myHeader;
+    return myNode == myTree.myHeader || myNode == myLimit;
     }
 
   /**
@@ -96,7 +137,7 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
    */
   public boolean hasMoreElements()
     {
-    return myNode != myTree.myHeader;
+    return myNode != myTree.myHeader && myNode != myLimit;
     }
 
   /**
@@ -108,17 +149,31 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
     }
 
   /**
-   * Advance by a specified amount.
+   * Advance by a specified amount in O( log N ) time.
    * @param n The amount to advance.
+   * @exception IndexOutOfBoundsException If I would move before my first element
+   * or after my last.
    */
   public void advance( int n )
     {
-    if ( n >= 0 )
-      while ( n-- > 0 )
-        advance();
-    else
-      while ( n++ < 0 )
-        retreat();
+    if ( n == 1 )
+      advance();
+    else if ( n == -1 )
+      retreat();
+    else if ( n != 0 )
+      {
+      int first = first();
+      int limit = limit();
+      int index = myTree.indexOf( myNode ) + n;
+
+      if ( index < first || index > limit )
+        throw new IndexOutOfBoundsException
+          (
+          "Attempt to move to index " + ( index - first ) + "; valid range is 0.." + ( limit - first )
+          );
+
+      myNode = index == myTree.size ? myTree.myHeader : myTree.at( index );
+      }
     }
 
   /**
@@ -130,8 +185,10 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
     }
 
   /**
-   * Retreat by a specified amount.
+   * Retreat by a specified amount in O( log N ) time.
    * @param n The amount to retreat.
+   * @exception IndexOutOfBoundsException If I would move before my first element
+   * or after my last.
    */
   public void retreat( int n )
     {
@@ -144,7 +201,7 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
    */
   public Object nextElement()
     {
-    if ( myNode == myTree.myHeader ) // at end?
+    if ( myNode == myTree.myHeader || myNode == myLimit ) // at end?
       throw new java.util.NoSuchElementException( "OrderedMapIterator" );
 
     Object object = myNode.object;
@@ -191,7 +248,9 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
    */
   public void put( Object object )
     {
+    Pair previous = (Pair) myNode.object;
     myNode.object = object;
+    myOrderedMap.replaced( myNode, previous.first, previous.second );
     }
 
   /**
@@ -216,7 +275,10 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
    */
   public void value( Object object )
     {
-    ((Pair) myNode.object).second = object;
+    Pair pair = (Pair) myNode.object;
+    Object previous = pair.second;
+    pair.second = object;
+    myOrderedMap.replaced( myNode, pair.first, previous );
     }
 
   /**
@@ -259,22 +321,22 @@ public final class OrderedMapIterator implements BidirectionalIterator, Opaque
     }
 
   /**
-   * Return the distance from myself to another iterator.
+   * Return the distance from myself to another iterator in O( log N ) time.
    * I should be before the specified iterator.
    * @param iterator The iterator to compare myself against.
    */
   public int distance( ForwardIterator iterator )
     {
-    Tree.TreeNode node = (Tree.TreeNode)( (Opaque)iterator ).opaqueData();
-    int n = 0;
-
-    while ( node != myNode )
-      {
-      ++n;
-      node = Tree.decrement( node, myTree.NIL );
-      }
+    return myTree.distance( myNode, (Tree.TreeNode)( (Opaque)iterator ).opaqueData() );
+    }
 
-    return n;
+  /**
+   * Return the number of elements of my container, or of my view if I belong to
+   * one, before my current position in O( log N ) time. At the end, this is its size.
+   */
+  public int index()
+    {
+    return myTree.indexOf( myNode ) - first();
     }
 
   /**
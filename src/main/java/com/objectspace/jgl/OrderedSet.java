@@ -45,6 +45,14 @@ import java.io.IOException;
  * through an associative container and access its elements in a sequenced
  * manner.
  * <p>
+ * If a filter is enabled, the hash codes of my objects are also summarized by a
+ * BloomFilter, which rejects most lookups and removals of objects that I do not
+ * contain without descending the tree.
+ * <p>
+ * Each node also records the size of its subtree, so the element at an index, the
+ * index of an object and the distance between two iterators are found in O( log N ).
+ * subSet(), headSet() and tailSet() return live views of a range of my objects.
+ * <p>
  * Insertion does not affect iterators or references.
  * <p>
  * Removal only invalidates the iterators and references to the removed
@@ -52,6 +60,7 @@ import java.io.IOException;
  * <p>
  * @see Set
  * @see BinaryPredicate
+ * @see BloomFilter
  * @see com.objectspace.jgl.algorithms.SetOperations
  * @see com.objectspace.jgl.examples.OrderedSetExamples
  * @version 3.1.0
@@ -351,6 +360,27 @@ public class OrderedSet implements Set
     return myTree.count( object );
     }
 
+  /**
+   * Return the object at a given index of my ordering in O( log N ) time.
+   * @param index The index.
+   * @exception IndexOutOfBoundsException If the index is invalid.
+   */
+  public synchronized Object at( int index )
+    {
+    return myTree.at( index ).object;
+    }
+
+  /**
+   * Return the index of the first object that matches a given object in O( log N )
+   * time, or -1 if there is none.
+   * @param object The object to match against.
+   */
+  public synchronized int indexOf( Object object )
+    {
+    Tree.TreeNode node = myTree.find( object );
+    return node == myTree.myHeader ? -1 : myTree.indexOf( node );
+    }
+
   /**
    * Return an iterator positioned at the first location that a
    * particular object could be inserted without violating the ordering
@@ -390,6 +420,51 @@ public class OrderedSet implements Set
       );
     }
 
+  /**
+   * Return a live view of my objects that are not less than one object and are
+   * less than another. Nothing is copied.
+   * @param from The first object of the range.
+   * @param to The object that follows the range.
+   * @exception IllegalArgumentException If <CODE>to</CODE> is less than <CODE>from</CODE>.
+   * @exception NullPointerException If an object is null.
+   * @see OrderedSubSet
+   */
+  public OrderedSubSet subSet( Object from, Object to )
+    {
+    if ( from == null || to == null )
+      throw new NullPointerException();
+
+    return new OrderedSubSet( this, from, to );
+    }
+
+  /**
+   * Return a live view of my objects that are less than a given object.
+   * @param to The object that follows the range.
+   * @exception NullPointerException If the object is null.
+   * @see OrderedSubSet
+   */
+  public OrderedSubSet headSet( Object to )
+    {
+    if ( to == null )
+      throw new NullPointerException();
+
+    return new OrderedSubSet( this, null, to );
+    }
+
+  /**
+   * Return a live view of my objects that are not less than a given object.
+   * @param from The first object of the range.
+   * @exception NullPointerException If the object is null.
+   * @see OrderedSubSet
+   */
+  public OrderedSubSet tailSet( Object from )
+    {
+    if ( from == null )
+      throw new NullPointerException();
+
+    return new OrderedSubSet( this, from, null );
+    }
+
   /**
    * Return my comparator.
    */
@@ -398,6 +473,49 @@ public class OrderedSet implements Set
     return myTree.myComparator;
     }
 
+  /**
+   * Return the BloomFilter that summarizes the hash codes of my objects, or null if I have none.
+   */
+  public BloomFilter getFilter()
+    {
+    return myTree.myFilter;
+    }
+
+  /**
+   * Place a BloomFilter in front of my lookups and removals, so that most of those
+   * for objects that I do not contain are rejected without descending my tree.
+   * Objects are hashed using hashCode(), which agrees with the default comparator.
+   * @param falsePositiveRate The fraction of missing objects that the filter may let through.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public void enableFilter( double falsePositiveRate )
+    {
+    enableFilter( null, falsePositiveRate );
+    }
+
+  /**
+   * Place a BloomFilter in front of my lookups and removals, hashing my objects
+   * with a given hasher. The hasher must return the same hash code for any two
+   * objects that my comparator considers equivalent. The filter is kept up to
+   * date as objects are added, cleared with me, and rebuilt whenever it fills up or
+   * removals have made it stale.
+   * @param hasher The hasher, or null to use hashCode().
+   * @param falsePositiveRate The fraction of missing objects that the filter may let through.
+   * @exception IllegalArgumentException If the rate is not between 0 and 1.
+   */
+  public synchronized void enableFilter( Hasher hasher, double falsePositiveRate )
+    {
+    myTree.enableFilter( hasher, falsePositiveRate );
+    }
+
+  /**
+   * Discard my BloomFilter, if any.
+   */
+  public synchronized void disableFilter()
+    {
+    myTree.disableFilter();
+    }
+
   /**
    * If the object doesn't exist or duplicates are allowed, add the object and return null,
    * otherwise don't modify the set and return the matching object.
@@ -413,6 +531,63 @@ public class OrderedSet implements Set
     return result.ok ? null : result.node.object;
     }
 
+  /**
+   * Add every element of a container to myself as if by add(). Elements that arrive
+   * in sorted order, such as those of another OrderedSet with the same comparator,
+   * are linked in without searching my tree.
+   * @param container The container.
+   * @exception NullPointerException If an element is null.
+   */
+  public synchronized void addAll( Container container )
+    {
+    if ( container == this )
+      container = (Container)clone();
+
+    addAll( container.start(), container.finish() );
+    }
+
+  /**
+   * Add every object in a range to myself as if by add(). Objects that arrive in
+   * sorted order are linked in without searching my tree.
+   * @param first An iterator positioned at the first object to insert.
+   * @param last An iterator positioned immediately after the last object to insert.
+   * @exception NullPointerException If an object is null.
+   */
+  public synchronized void addAll( InputIterator first, InputIterator last )
+    {
+    InputIterator iterator = (InputIterator)first.clone();
+    Tree.TreeNode hint = myTree.myHeader;
+
+    while ( !iterator.equals( last ) )
+      hint = insert( hint, iterator.nextElement() );
+    }
+
+  /**
+   * Add every object in an array to myself as if by add(). Objects that are sorted
+   * are linked in without searching my tree.
+   * @param objects The objects.
+   * @exception NullPointerException If an object is null.
+   */
+  public synchronized void addAll( Object[] objects )
+    {
+    Tree.TreeNode hint = myTree.myHeader;
+
+    for ( int i = 0; i < objects.length; i++ )
+      hint = insert( hint, objects[ i ] );
+    }
+
+  /**
+   * Insert an object using the node of the previous object as a hint, and return
+   * the node at which the object was inserted or found.
+   */
+  private Tree.TreeNode insert( Tree.TreeNode hint, Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    return myTree.insertAfter( hint, object, true ).node;
+    }
+
   /**
    * Return the first object that matches the given object, or null if no match exists.
    * @param object The object to match against.
@@ -7,6 +7,8 @@ package com.objectspace.jgl;
  * A OrderedSetIterator is a bidirectional iterator that allows you to iterate through
  * the contents of a OrderedSet.
  * <p>
+ * An iterator obtained from an OrderedSubSet stops at the end of its range.
+ * <p>
  * @see BidirectionalIterator
  * @version 3.1.0
  * @author ObjectSpace, Inc.
@@ -17,6 +19,8 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
   OrderedSet myOrderedSet;
   Tree myTree;
   Tree.TreeNode myNode;
+  Tree.TreeNode myLimit; // where I stop short of myTree.myHeader, or null.
+  OrderedSubSet myView; // the view that I belong to, or null.
 
   /**
    * Construct myself to be an iterator with no associated data structure or position.
@@ -34,6 +38,8 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
     myOrderedSet = iterator.myOrderedSet;
     myTree = iterator.myTree;
     myNode = iterator.myNode;
+    myLimit = iterator.myLimit;
+    myView = iterator.myView;
     }
 
   /**
@@ -48,6 +54,36 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
     myNode = node;
     }
 
+  /**
+   * Construct myself to be positioned at a particular node in a specified Tree,
+   * as an iterator of a view that stops enumerating at the end of the view.
+   * @param tree My associated tree.
+   * @param node My associated node.
+   * @param view The view that I belong to.
+   */
+  OrderedSetIterator( Tree tree, Tree.TreeNode node, OrderedSet set, OrderedSubSet view )
+    {
+    this( tree, node, set );
+    myView = view;
+    myLimit = view.last();
+    }
+
+  /**
+   * Return the index in my tree of my first element.
+   */
+  private int first()
+    {
+    return myView == null ? 0 : myTree.indexOf( myView.first() );
+    }
+
+  /**
+   * Return the index in my tree of the position after my last element.
+   */
+  private int limit()
+    {
+    return myLimit == null ? myTree.size : myTree.indexOf( myLimit );
+    }
+
   /**
    * Return a clone of myself.
    */
@@ -71,7 +107,7 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
    */
   public boolean atBegin()
     {
-    return myNode == myTree.myHeader.left;
+    return myNode == ( myView == null ? myTree.myHeader.left : myView.first() );
     }
 
   /**
@@ -79,7 +115,7 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
    */
   public boolean atEnd()
     {
-    return myNode == myTree.myHeader;
+    return myNode == myTree.myHeader || myNode == myLimit;
     }
 
   /**
@@ -87,7 +123,7 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
    */
   public boolean hasMoreElements()
     {
-    return myNode != myTree.myHeader;
+    return myNode != myTree.myHeader && myNode != myLimit;
     }
 
   /**
@@ -99,17 +135,31 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
     }
 
   /**
-   * Advance by a specified amount.
+   * Advance by a specified amount in O( log N ) time.
    * @param n The amount to advance.
+   * @exception IndexOutOfBoundsException If I would move before my first element
+   * or after my last.
    */
   public void advance( int n )
     {
-    if ( n >= 0 )
-      while ( n-- > 0 )
-        advance();
-    else
-      while ( n++ < 0 )
-        retreat();
+    if ( n == 1 )
+      advance();
+    else if ( n == -1 )
+      retreat();
+    else if ( n != 0 )
+      {
+      int first = first();
+      int limit = limit();
+      int index = myTree.indexOf( myNode ) + n;
+
+      if ( index < first || index > limit )
+        throw new IndexOutOfBoundsException
+          (
+          "Attempt to move to index " + ( index - first ) + "; valid range is 0.." + ( limit - first )
+          );
+
+      myNode = index == myTree.size ? myTree.myHeader : myTree.at( index );
+      }
     }
 
   /**
@@ -121,8 +171,10 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
     }
 
   /**
-   * Retreat by a specified amount.
+   * Retreat by a specified amount in O( log N ) time.
    * @param n The amount to retreat.
+   * @exception IndexOutOfBoundsException If I would move before my first element
+   * or after my last.
    */
   public void retreat( int n )
     {
@@ -135,7 +187,7 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
    */
   public Object nextElement()
     {
-    if ( myNode == myTree.myHeader ) // at end?
+    if ( myNode == myTree.myHeader || myNode == myLimit ) // at end?
       throw new java.util.NoSuchElementException( "OrderedSetIterator" );
 
     Object object = myNode.object;
@@ -187,22 +239,22 @@ public final class OrderedSetIterator implements BidirectionalIterator, Opaque
     }
 
   /**
-   * Return the distance from myself to another iterator.
+   * Return the distance from myself to another iterator in O( log N ) time.
    * I should be before the specified iterator.
    * @param iterator The iterator to compare myself against.
    */
   public int distance( ForwardIterator iterator )
     {
-    Tree.TreeNode node = (Tree.TreeNode)( (Opaque)iterator ).opaqueData();
-    int n = 0;
-
-    while ( node != myNode )
-      {
-      ++n;
-      node = Tree.decrement( node, myTree.NIL );
-      }
+    return myTree.distance( myNode, (Tree.TreeNode)( (Opaque)iterator ).opaqueData() );
+    }
 
-    return n;
+  /**
+   * Return the number of elements of my container, or of my view if I belong to
+   * one, before my current position in O( log N ) time. At the end, this is its size.
+   */
+  public int index()
+    {
+    return myTree.indexOf( myNode ) - first();
     }
 
   /**
@@ -0,0 +1,685 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+
+/**
+ * An OrderedSubMap is a live view of the pairs of an OrderedMap whose keys lie in
+ * a range. The range starts at a key, or at the start of the map, and ends just
+ * before another key, or at the end of the map. It is obtained from
+ * OrderedMap.subMap(), headMap() or tailMap().
+ * <p>
+ * A view copies nothing. Its pairs are the pairs of its map, so changes made
+ * through either one are seen by both, and its iterators are OrderedMapIterators
+ * that stop at the end of the range. Its bounds are found in O( log N ) whenever
+ * they are needed, so size() costs O( log N ) and enumerating k pairs costs
+ * O( log N + k ).
+ * <p>
+ * Lookups and removals of keys or positions outside my range find nothing. Adding
+ * a key outside my range throws an exception. A view is only equal to another
+ * view. A view locks its map, not itself.
+ * <p>
+ * An enumeration stops at the pair that followed my range when it was created, so
+ * removing that pair invalidates it, just as it invalidates iterators positioned
+ * at that pair.
+ * <p>
+ * @see OrderedMap#subMap
+ * @see OrderedSubSet
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class OrderedSubMap extends Map
+  {
+  OrderedMap myMap;
+  Object myFrom; // first key in range, or null if unbounded.
+  Object myTo; // first key past range, or null if unbounded.
+
+  /**
+   * Construct myself to be a view of the pairs of a map whose keys are not less than
+   * one key and are less than another.
+   * @param map The map.
+   * @param from The first key in my range, or null for the start of the map.
+   * @param to The first key past my range, or null for the end of the map.
+   * @exception IllegalArgumentException If <CODE>to</CODE> is less than <CODE>from</CODE>.
+   */
+  OrderedSubMap( OrderedMap map, Object from, Object to )
+    {
+    if ( from != null && to != null && map.getComparator().execute( to, from ) )
+      throw new IllegalArgumentException( "Range ends before it starts" );
+
+    myMap = map;
+    myFrom = from;
+    myTo = to;
+    }
+
+  /**
+   * Return true if a key is in my range.
+   */
+  boolean contains( Object key )
+    {
+    BinaryPredicate comparator = myMap.getComparator();
+    return ( myFrom == null || !comparator.execute( key, myFrom ) )
+      && ( myTo == null || comparator.execute( key, myTo ) );
+    }
+
+  /**
+   * Return my first node.
+   */
+  Tree.TreeNode first()
+    {
+    Tree tree = myMap.myTree;
+    return myFrom == null ? tree.myHeader.left : tree.lowerBoundAux( myFrom );
+    }
+
+  /**
+   * Return the node that follows my last node.
+   */
+  Tree.TreeNode last()
+    {
+    Tree tree = myMap.myTree;
+    return myTo == null ? tree.myHeader : tree.lowerBoundAux( myTo );
+    }
+
+  private OrderedMapIterator iterator( Tree.TreeNode node, int mode )
+    {
+    return new OrderedMapIterator( myMap.myTree, node, myMap, mode, this );
+    }
+
+  /**
+   * Return the OrderedMap that I am a view of.
+   */
+  public OrderedMap getMap()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if duplicates are allowed.
+   */
+  public boolean allowsDuplicates()
+    {
+    return myMap.allowsDuplicates();
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return myMap.getComparator();
+    }
+
+  /**
+   * Return a new OrderedMap that holds a shallow copy of the pairs in my range.
+   */
+  public Object clone()
+    {
+    synchronized( myMap )
+      {
+      OrderedMap map = new OrderedMap( getComparator(), allowsDuplicates() );
+      map.addAll( begin(), end() );
+      return map;
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    synchronized( myMap )
+      {
+      return Algos.Printing.toString( this, "OrderedSubMap" );
+      }
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof OrderedSubMap && equals( (OrderedSubMap)object );
+    }
+
+  /**
+   * Return true if I contain the same items in the same order as
+   * another OrderedSubMap. Use equals() to compare the individual elements.
+   * @param map The OrderedSubMap to compare myself against.
+   */
+  public boolean equals( OrderedSubMap map )
+    {
+    synchronized( myMap )
+      {
+      synchronized( map.myMap )
+        {
+        return Algos.Comparing.equal( this, map );
+        }
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public int hashCode()
+    {
+    synchronized( myMap )
+      {
+      return Algos.Hashing.orderedHash( iterator( first(), OrderedMapIterator.KEY ), size() );
+      }
+    }
+
+  /**
+   * Return an Enumeration of my values
+   */
+  public Enumeration elements()
+    {
+    synchronized( myMap )
+      {
+      return iterator( first(), OrderedMapIterator.VALUE );
+      }
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public OrderedMapIterator begin()
+    {
+    synchronized( myMap )
+      {
+      return iterator( first(), OrderedMapIterator.PAIR );
+      }
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public OrderedMapIterator end()
+    {
+    synchronized( myMap )
+      {
+      return iterator( last(), OrderedMapIterator.PAIR );
+      }
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    synchronized( myMap )
+      {
+      return first() == last();
+      }
+    }
+
+  /**
+   * Return the number of entries that I contain, in O( log N ) time.
+   */
+  public int size()
+    {
+    synchronized( myMap )
+      {
+      return myMap.myTree.distance( first(), last() );
+      }
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return myMap.maxSize();
+    }
+
+  /**
+   * Remove all of my pairs from my map.
+   */
+  public void clear()
+    {
+    synchronized( myMap )
+      {
+      myMap.remove( begin(), end() );
+      }
+    }
+
+  /**
+   * If my range includes a key, remove all of the pairs that match it and return
+   * the first value removed.
+   * @param key The key of the pair(s) to be removed.
+   * @return The first value removed or null if the container is unchanged.
+   */
+  public Object remove( Object key )
+    {
+    synchronized( myMap )
+      {
+      return contains( key ) ? myMap.remove( key ) : null;
+      }
+    }
+
+  /**
+   * If my range includes a key, remove at most a given number of the pairs that
+   * match it and return the number of pairs removed.
+   * @param key The key of the pair(s) to be removed.
+   * @param count The maximum number of objects to remove.
+   * @return The number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    synchronized( myMap )
+      {
+      return contains( key ) ? myMap.remove( key, count ) : 0;
+      }
+    }
+
+  /**
+   * Return the node of an iterator for my map.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OrderedMapIterator for my map.
+   */
+  private Tree.TreeNode node( Enumeration e )
+    {
+    if ( ! (e instanceof OrderedMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not an OrderedMapIterator" );
+
+    if ( ((OrderedMapIterator)e).myOrderedMap != myMap )
+      throw new IllegalArgumentException( "Enumeration not for this OrderedSubMap's map" );
+
+    return ((OrderedMapIterator)e).myNode;
+    }
+
+  /**
+   * Remove the element at a particular position and return its value. A position
+   * outside my range removes nothing.
+   * @param pos An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OrderedMapIterator for my map.
+   * @return The value that was removed or null if none.
+   */
+  public Object remove( Enumeration pos )
+    {
+    synchronized( myMap )
+      {
+      Tree tree = myMap.myTree;
+      int index = tree.indexOf( node( pos ) );
+
+      if ( index < tree.indexOf( first() ) || index >= tree.indexOf( last() ) )
+        return null;
+
+      return myMap.remove( pos );
+      }
+    }
+
+  /**
+   * Remove the elements within a specified range that are also within my range.
+   * @param first An iterator positioned at the first element to remove.
+   * @param last An iterator positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OrderedMapIterator for my map.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Enumeration first, Enumeration last )
+    {
+    synchronized( myMap )
+      {
+      Tree tree = myMap.myTree;
+      Tree.TreeNode start = node( first );
+      Tree.TreeNode finish = node( last );
+
+      if ( tree.indexOf( start ) < tree.indexOf( first() ) )
+        start = first();
+
+      if ( tree.indexOf( finish ) > tree.indexOf( last() ) )
+        finish = last();
+
+      if ( tree.indexOf( start ) >= tree.indexOf( finish ) )
+        return 0;
+
+      return myMap.remove( iterator( start, OrderedMapIterator.PAIR ), iterator( finish, OrderedMapIterator.PAIR ) );
+      }
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position.
+   * If the pair is not found, return end().
+   * @param key The key to locate.
+   */
+  public OrderedMapIterator find( Object key )
+    {
+    synchronized( myMap )
+      {
+      Tree tree = myMap.myTree;
+      Tree.TreeNode node = contains( key ) ? tree.find( key ) : tree.myHeader;
+      return iterator( node == tree.myHeader ? last() : node, OrderedMapIterator.PAIR );
+      }
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key.
+   * @param key The key to match against.
+   */
+  public int count( Object key )
+    {
+    synchronized( myMap )
+      {
+      return contains( key ) ? myMap.count( key ) : 0;
+      }
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public int countValues( Object value )
+    {
+    synchronized( myMap )
+      {
+      return Algos.Counting.count( iterator( first(), OrderedMapIterator.VALUE ),
+                             iterator( last(), OrderedMapIterator.VALUE ),
+                             value );
+      }
+    }
+
+  /**
+   * Return an iterator positioned at the first location that a pair with a specified
+   * key could be inserted without violating the ordering criteria, within my range.
+   * @param key The key.
+   */
+  public OrderedMapIterator lowerBound( Object key )
+    {
+    synchronized( myMap )
+      {
+      Tree.TreeNode node;
+
+      if ( myFrom != null && getComparator().execute( key, myFrom ) )
+        node = first();
+      else if ( myTo != null && !getComparator().execute( key, myTo ) )
+        node = last();
+      else
+        node = myMap.myTree.lowerBoundAux( key );
+
+      return iterator( node, OrderedMapIterator.PAIR );
+      }
+    }
+
+  /**
+   * Return an iterator positioned at the last location that a pair with a specified
+   * key could be inserted without violating the ordering criteria, within my range.
+   * @param key The key.
+   */
+  public OrderedMapIterator upperBound( Object key )
+    {
+    synchronized( myMap )
+      {
+      Tree.TreeNode node;
+
+      if ( myFrom != null && getComparator().execute( key, myFrom ) )
+        node = first();
+      else if ( myTo != null && !getComparator().execute( key, myTo ) )
+        node = last();
+      else
+        node = myMap.myTree.upperBoundAux( key );
+
+      return iterator( node, OrderedMapIterator.PAIR );
+      }
+    }
+
+  /**
+   * Return a pair of iterators whose first element is equal to
+   * lowerBound() and whose second element is equal to upperBound().
+   * @param key The key whose bounds are to be found.
+   */
+  public Range equalRange( Object key )
+    {
+    synchronized( myMap )
+      {
+      return new Range( lowerBound( key ), upperBound( key ) );
+      }
+    }
+
+  /**
+   * Return the key/value pair at a given index of my range in O( log N ) time.
+   * @param index The index.
+   * @exception IndexOutOfBoundsException If the index is invalid.
+   */
+  public Pair at( int index )
+    {
+    synchronized( myMap )
+      {
+      int size = size();
+
+      if ( index < 0 || index >= size )
+        throw new IndexOutOfBoundsException
+          (
+          "Attempt to access index " + index + "; valid range is 0.." + ( size - 1 )
+          );
+
+      Tree tree = myMap.myTree;
+      return (Pair)tree.at( tree.indexOf( first() ) + index ).object;
+      }
+    }
+
+  /**
+   * Return the index within my range of the first pair that matches a given key in
+   * O( log N ) time, or -1 if there is none.
+   * @param key The key to match against.
+   */
+  public int indexOf( Object key )
+    {
+    synchronized( myMap )
+      {
+      int index = contains( key ) ? myMap.indexOf( key ) : -1;
+      return index < 0 ? -1 : index - myMap.myTree.indexOf( first() );
+      }
+    }
+
+  /**
+   * Return the value associated with key, or null if the key is not in my range.
+   * @param key The key to search against.
+   */
+  public Object get( Object key )
+    {
+    synchronized( myMap )
+      {
+      return contains( key ) ? myMap.get( key ) : null;
+      }
+    }
+
+  /**
+   * Put a key and value into my map as if by OrderedMap.put().
+   * @param key The key.
+   * @param value The value.
+   * @exception IllegalArgumentException If the key is not in my range.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public Object put( Object key, Object value )
+    {
+    synchronized( myMap )
+      {
+      check( key );
+      return myMap.put( key, value );
+      }
+    }
+
+  /**
+   * Add a Pair to my map as if by OrderedMap.add().
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair or its key
+   * is not in my range.
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not Pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * Add a key and value to my map as if by OrderedMap.add().
+   * @param key The key.
+   * @param value The value.
+   * @exception IllegalArgumentException If the key is not in my range.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public Object add( Object key, Object value )
+    {
+    synchronized( myMap )
+      {
+      check( key );
+      return myMap.add( key, value );
+      }
+    }
+
+  private void check( Object key )
+    {
+    if ( key == null )
+      throw new NullPointerException();
+
+    if ( !contains( key ) )
+      throw new IllegalArgumentException( "Key out of range" );
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public Enumeration keys()
+    {
+    synchronized( myMap )
+      {
+      return iterator( first(), OrderedMapIterator.KEY );
+      }
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public Enumeration keys( Object value )
+    {
+    synchronized( myMap )
+      {
+      Array array = new Array();
+      Tree.TreeNode last = last();
+
+      for ( Tree.TreeNode node = first(); node != last; node = Tree.increment( node, myMap.myTree.NIL ) )
+        if ( ( (Pair)node.object ).second.equals( value ) )
+          array.add( ( (Pair)node.object ).first );
+
+      return array.elements();
+      }
+    }
+
+  /**
+   * Return an Enumeration of all my values that are associated with a particular key.
+   * @param key The key to match.
+   */
+  public Enumeration values( Object key )
+    {
+    synchronized( myMap )
+      {
+      return contains( key ) ? myMap.values( key ) : new Array().elements();
+      }
+    }
+
+  /**
+   * Apply a function to the key and value of each of my pairs in order, as
+   * OrderedMap.forEachEntry() does.
+   * @param function A function that takes a key and its value.
+   */
+  public void forEachEntry( BinaryFunction function )
+    {
+    synchronized( myMap )
+      {
+      Tree.TreeNode last = last();
+
+      for ( Tree.TreeNode node = first(); node != last; node = Tree.increment( node, myMap.myTree.NIL ) )
+        {
+        Pair pair = (Pair)node.object;
+        function.execute( pair.first, pair.second );
+        }
+      }
+    }
+
+  /**
+   * Return a view of the pairs in my range whose keys are not less than one key and
+   * are less than another.
+   * @param from The first key of the range.
+   * @param to The key that follows the range.
+   * @exception IllegalArgumentException If a key is not in my range or <CODE>to</CODE>
+   * is less than <CODE>from</CODE>.
+   * @exception NullPointerException If a key is null.
+   */
+  public OrderedSubMap subMap( Object from, Object to )
+    {
+    return new OrderedSubMap( myMap, narrowFrom( from ), narrowTo( to ) );
+    }
+
+  /**
+   * Return a view of the pairs in my range whose keys are less than a given key.
+   * @param to The key that follows the range.
+   * @exception IllegalArgumentException If the key is not in my range.
+   * @exception NullPointerException If the key is null.
+   */
+  public OrderedSubMap headMap( Object to )
+    {
+    return new OrderedSubMap( myMap, myFrom, narrowTo( to ) );
+    }
+
+  /**
+   * Return a view of the pairs in my range whose keys are not less than a given key.
+   * @param from The first key of the range.
+   * @exception IllegalArgumentException If the key is not in my range.
+   * @exception NullPointerException If the key is null.
+   */
+  public OrderedSubMap tailMap( Object from )
+    {
+    return new OrderedSubMap( myMap, narrowFrom( from ), myTo );
+    }
+
+  private Object narrowFrom( Object from )
+    {
+    check( from );
+    return from;
+    }
+
+  private Object narrowTo( Object to )
+    {
+    if ( to == null )
+      throw new NullPointerException();
+
+    BinaryPredicate comparator = getComparator();
+
+    // A narrower range may end where I end.
+    if ( ( myFrom != null && comparator.execute( to, myFrom ) ) || ( myTo != null && comparator.execute( myTo, to ) ) )
+      throw new IllegalArgumentException( "Key out of range" );
+
+    return to;
+    }
+
+  static final long serialVersionUID = 2953370485123062907L;
+  }
@@ -0,0 +1,585 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+
+/**
+ * An OrderedSubSet is a live view of the objects of an OrderedSet that lie in a
+ * range. The range starts at an object, or at the start of the set, and ends just
+ * before another object, or at the end of the set. It is obtained from
+ * OrderedSet.subSet(), headSet() or tailSet().
+ * <p>
+ * A view copies nothing. Its objects are the objects of its set, so changes made
+ * through either one are seen by both, and its iterators are OrderedSetIterators
+ * that stop at the end of the range. Its bounds are found in O( log N ) whenever
+ * they are needed, so size() costs O( log N ) and enumerating k objects costs
+ * O( log N + k ).
+ * <p>
+ * Lookups and removals of objects or positions outside my range find nothing.
+ * Adding an object outside my range throws an exception. A view is only equal to
+ * another view. A view locks its set, not itself.
+ * <p>
+ * An enumeration stops at the object that followed my range when it was created,
+ * so removing that object invalidates it, just as it invalidates iterators
+ * positioned at that object.
+ * <p>
+ * @see OrderedSet#subSet
+ * @see OrderedSubMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class OrderedSubSet implements Set
+  {
+  OrderedSet mySet;
+  Object myFrom; // first object in range, or null if unbounded.
+  Object myTo; // first object past range, or null if unbounded.
+
+  /**
+   * Construct myself to be a view of the objects of a set that are not less than
+   * one object and are less than another.
+   * @param set The set.
+   * @param from The first object in my range, or null for the start of the set.
+   * @param to The first object past my range, or null for the end of the set.
+   * @exception IllegalArgumentException If <CODE>to</CODE> is less than <CODE>from</CODE>.
+   */
+  OrderedSubSet( OrderedSet set, Object from, Object to )
+    {
+    if ( from != null && to != null && set.getComparator().execute( to, from ) )
+      throw new IllegalArgumentException( "Range ends before it starts" );
+
+    mySet = set;
+    myFrom = from;
+    myTo = to;
+    }
+
+  /**
+   * Return true if an object is in my range.
+   */
+  boolean contains( Object object )
+    {
+    BinaryPredicate comparator = mySet.getComparator();
+    return ( myFrom == null || !comparator.execute( object, myFrom ) )
+      && ( myTo == null || comparator.execute( object, myTo ) );
+    }
+
+  /**
+   * Return my first node.
+   */
+  Tree.TreeNode first()
+    {
+    Tree tree = mySet.myTree;
+    return myFrom == null ? tree.myHeader.left : tree.lowerBoundAux( myFrom );
+    }
+
+  /**
+   * Return the node that follows my last node.
+   */
+  Tree.TreeNode last()
+    {
+    Tree tree = mySet.myTree;
+    return myTo == null ? tree.myHeader : tree.lowerBoundAux( myTo );
+    }
+
+  private OrderedSetIterator iterator( Tree.TreeNode node )
+    {
+    return new OrderedSetIterator( mySet.myTree, node, mySet, this );
+    }
+
+  /**
+   * Return the OrderedSet that I am a view of.
+   */
+  public OrderedSet getSet()
+    {
+    return mySet;
+    }
+
+  /**
+   * Return true if duplicates are allowed.
+   */
+  public boolean allowsDuplicates()
+    {
+    return mySet.allowsDuplicates();
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return mySet.getComparator();
+    }
+
+  /**
+   * Return a new OrderedSet that holds a shallow copy of the objects in my range.
+   */
+  public Object clone()
+    {
+    synchronized( mySet )
+      {
+      OrderedSet set = new OrderedSet( getComparator(), allowsDuplicates() );
+      set.addAll( begin(), end() );
+      return set;
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    synchronized( mySet )
+      {
+      return Algos.Printing.toString( this, "OrderedSubSet" );
+      }
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof OrderedSubSet && equals( (OrderedSubSet)object );
+    }
+
+  /**
+   * Return true if I contain the same items in the same order as
+   * another OrderedSubSet. Use equals() to compare the individual elements.
+   * @param set The OrderedSubSet to compare myself against.
+   */
+  public boolean equals( OrderedSubSet set )
+    {
+    synchronized( mySet )
+      {
+      synchronized( set.mySet )
+        {
+        return Algos.Comparing.equal( this, set );
+        }
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public int hashCode()
+    {
+    synchronized( mySet )
+      {
+      return Algos.Hashing.orderedHash( iterator( first() ), size() );
+      }
+    }
+
+  /**
+   * Return an Enumeration of my objects.
+   */
+  public Enumeration elements()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned at my first item.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last item.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first item.
+   */
+  public OrderedSetIterator begin()
+    {
+    synchronized( mySet )
+      {
+      return iterator( first() );
+      }
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last item.
+   */
+  public OrderedSetIterator end()
+    {
+    synchronized( mySet )
+      {
+      return iterator( last() );
+      }
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    synchronized( mySet )
+      {
+      return first() == last();
+      }
+    }
+
+  /**
+   * Return the number of entries that I contain, in O( log N ) time.
+   */
+  public int size()
+    {
+    synchronized( mySet )
+      {
+      return mySet.myTree.distance( first(), last() );
+      }
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return mySet.maxSize();
+    }
+
+  /**
+   * Remove all of my objects from my set.
+   */
+  public void clear()
+    {
+    synchronized( mySet )
+      {
+      mySet.remove( begin(), end() );
+      }
+    }
+
+  /**
+   * If my range includes an object, remove all objects that match it.
+   * @param object The object to match for removals
+   * @return Return The number of objects removed.
+   */
+  public int remove( Object object )
+    {
+    synchronized( mySet )
+      {
+      return contains( object ) ? mySet.remove( object ) : 0;
+      }
+    }
+
+  /**
+   * If my range includes an object, remove at most a given number of objects that
+   * match it.
+   * @param object The object to match for removals
+   * @param count The maximum number of objects to remove.
+   * @return Return The number of objects removed.
+   */
+  public int remove( Object object, int count )
+    {
+    synchronized( mySet )
+      {
+      return contains( object ) ? mySet.remove( object, count ) : 0;
+      }
+    }
+
+  /**
+   * Return the node of an iterator for my set.
+   * @exception IllegalArgumentException if the Enumeration isn't an
+   * OrderedSetIterator for my set.
+   */
+  private Tree.TreeNode node( Enumeration e )
+    {
+    if ( ! (e instanceof OrderedSetIterator) )
+      throw new IllegalArgumentException( "Enumeration not a OrderedSetIterator" );
+
+    if ( ((OrderedSetIterator)e).myOrderedSet != mySet )
+      throw new IllegalArgumentException( "Enumeration not for this OrderedSubSet's set" );
+
+    return ((OrderedSetIterator)e).myNode;
+    }
+
+  /**
+   * Remove the element at a particular position. A position outside my range
+   * removes nothing.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException if the Enumeration isn't an
+   * OrderedSetIterator for my set.
+   * @return The object that was removed or null if none
+   */
+  public Object remove( Enumeration e )
+    {
+    synchronized( mySet )
+      {
+      Tree tree = mySet.myTree;
+      int index = tree.indexOf( node( e ) );
+
+      if ( index < tree.indexOf( first() ) || index >= tree.indexOf( last() ) )
+        return null;
+
+      return mySet.remove( e );
+      }
+    }
+
+  /**
+   * Remove the elements within a specified range that are also within my range.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't an
+   * OrderedSetIterator for my set.
+   * @return Return the number of values removed.
+   */
+  public int remove( Enumeration first, Enumeration last )
+    {
+    synchronized( mySet )
+      {
+      Tree tree = mySet.myTree;
+      Tree.TreeNode start = node( first );
+      Tree.TreeNode finish = node( last );
+
+      if ( tree.indexOf( start ) < tree.indexOf( first() ) )
+        start = first();
+
+      if ( tree.indexOf( finish ) > tree.indexOf( last() ) )
+        finish = last();
+
+      if ( tree.indexOf( start ) >= tree.indexOf( finish ) )
+        return 0;
+
+      return mySet.remove( iterator( start ), iterator( finish ) );
+      }
+    }
+
+  /**
+   * Find an object and return its position. If the object
+   * is not found, return end().
+   * @param object The object to locate.
+   */
+  public OrderedSetIterator find( Object object )
+    {
+    synchronized( mySet )
+      {
+      Tree tree = mySet.myTree;
+      Tree.TreeNode node = contains( object ) ? tree.find( object ) : tree.myHeader;
+      return iterator( node == tree.myHeader ? last() : node );
+      }
+    }
+
+  /**
+   * Return the number of items that match a particular object.
+   * @param object The object to match against.
+   */
+  public int count( Object object )
+    {
+    synchronized( mySet )
+      {
+      return contains( object ) ? mySet.count( object ) : 0;
+      }
+    }
+
+  /**
+   * Return an iterator positioned at the first location that a particular object
+   * could be inserted without violating the ordering criteria, within my range.
+   * @param object The object in question.
+   */
+  public OrderedSetIterator lowerBound( Object object )
+    {
+    synchronized( mySet )
+      {
+      Tree.TreeNode node;
+
+      if ( myFrom != null && getComparator().execute( object, myFrom ) )
+        node = first();
+      else if ( myTo != null && !getComparator().execute( object, myTo ) )
+        node = last();
+      else
+        node = mySet.myTree.lowerBoundAux( object );
+
+      return iterator( node );
+      }
+    }
+
+  /**
+   * Return an iterator positioned at the last location that a particular object
+   * could be inserted without violating the ordering criteria, within my range.
+   * @param object The object in question.
+   */
+  public OrderedSetIterator upperBound( Object object )
+    {
+    synchronized( mySet )
+      {
+      Tree.TreeNode node;
+
+      if ( myFrom != null && getComparator().execute( object, myFrom ) )
+        node = first();
+      else if ( myTo != null && !getComparator().execute( object, myTo ) )
+        node = last();
+      else
+        node = mySet.myTree.upperBoundAux( object );
+
+      return iterator( node );
+      }
+    }
+
+  /**
+   * Return a pair of iterators whose first element is equal to
+   * lowerBound() and whose second element is equal to upperBound().
+   * @param object The object whose bounds are to be found.
+   */
+  public Range equalRange( Object object )
+    {
+    synchronized( mySet )
+      {
+      return new Range( lowerBound( object ), upperBound( object ) );
+      }
+    }
+
+  /**
+   * Return the object at a given index of my range in O( log N ) time.
+   * @param index The index.
+   * @exception IndexOutOfBoundsException If the index is invalid.
+   */
+  public Object at( int index )
+    {
+    synchronized( mySet )
+      {
+      int size = size();
+
+      if ( index < 0 || index >= size )
+        throw new IndexOutOfBoundsException
+          (
+          "Attempt to access index " + index + "; valid range is 0.." + ( size - 1 )
+          );
+
+      Tree tree = mySet.myTree;
+      return tree.at( tree.indexOf( first() ) + index ).object;
+      }
+    }
+
+  /**
+   * Return the index within my range of the first object that matches a given
+   * object in O( log N ) time, or -1 if there is none.
+   * @param object The object to match against.
+   */
+  public int indexOf( Object object )
+    {
+    synchronized( mySet )
+      {
+      int index = contains( object ) ? mySet.indexOf( object ) : -1;
+      return index < 0 ? -1 : index - mySet.myTree.indexOf( first() );
+      }
+    }
+
+  /**
+   * Return the first object that matches the given object, or null if no match
+   * exists in my range.
+   * @param object The object to match against.
+   */
+  public Object get( Object object )
+    {
+    synchronized( mySet )
+      {
+      return contains( object ) ? mySet.get( object ) : null;
+      }
+    }
+
+  /**
+   * Put an object into my set as if by OrderedSet.put().
+   * @param object The object to be put.
+   * @exception IllegalArgumentException If the object is not in my range.
+   * @exception NullPointerException If the object is null.
+   */
+  public Object put( Object object )
+    {
+    synchronized( mySet )
+      {
+      check( object );
+      return mySet.put( object );
+      }
+    }
+
+  /**
+   * Add an object to my set as if by OrderedSet.add().
+   * @param object The object to be added.
+   * @exception IllegalArgumentException If the object is not in my range.
+   * @exception NullPointerException If the object is null.
+   */
+  public Object add( Object object )
+    {
+    synchronized( mySet )
+      {
+      check( object );
+      return mySet.add( object );
+      }
+    }
+
+  private void check( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !contains( object ) )
+      throw new IllegalArgumentException( "Object out of range" );
+    }
+
+  /**
+   * Return a view of the objects in my range that are not less than one object and
+   * are less than another.
+   * @param from The first object of the range.
+   * @param to The object that follows the range.
+   * @exception IllegalArgumentException If an object is not in my range or
+   * <CODE>to</CODE> is less than <CODE>from</CODE>.
+   * @exception NullPointerException If an object is null.
+   */
+  public OrderedSubSet subSet( Object from, Object to )
+    {
+    return new OrderedSubSet( mySet, narrowFrom( from ), narrowTo( to ) );
+    }
+
+  /**
+   * Return a view of the objects in my range that are less than a given object.
+   * @param to The object that follows the range.
+   * @exception IllegalArgumentException If the object is not in my range.
+   * @exception NullPointerException If the object is null.
+   */
+  public OrderedSubSet headSet( Object to )
+    {
+    return new OrderedSubSet( mySet, myFrom, narrowTo( to ) );
+    }
+
+  /**
+   * Return a view of the objects in my range that are not less than a given object.
+   * @param from The first object of the range.
+   * @exception IllegalArgumentException If the object is not in my range.
+   * @exception NullPointerException If the object is null.
+   */
+  public OrderedSubSet tailSet( Object from )
+    {
+    return new OrderedSubSet( mySet, narrowFrom( from ), myTo );
+    }
+
+  private Object narrowFrom( Object from )
+    {
+    check( from );
+    return from;
+    }
+
+  private Object narrowTo( Object to )
+    {
+    if ( to == null )
+      throw new NullPointerException();
+
+    BinaryPredicate comparator = getComparator();
+
+    // A narrower range may end where I end.
+    if ( ( myFrom != null && comparator.execute( to, myFrom ) ) || ( myTo != null && comparator.execute( myTo, to ) ) )
+      throw new IllegalArgumentException( "Object out of range" );
+
+    return to;
+    }
+
+  static final long serialVersionUID = -6108337250394821466L;
+  }
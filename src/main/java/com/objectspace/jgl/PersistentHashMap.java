@@ -0,0 +1,718 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+
+/**
+ * A PersistentHashMap is an immutable associative container of key/value pairs,
+ * stored in a hash array mapped trie. Keys are matched by default using a
+ * BinaryPredicate that uses equals() for comparisons, and duplicate keys are not
+ * allowed.
+ * <p>
+ * A PersistentHashMap is never modified. Instead, with() and without() return a
+ * new version that shares all but the changed path of the trie with the old one,
+ * so an update takes O(log32 n) time and space and the old version remains valid.
+ * Since no version ever changes, any number of threads may read any version
+ * without locking, and a version can be kept as a consistent snapshot for as long
+ * as it is needed. The methods that would modify a Map in place throw an
+ * InvalidOperationException; use a SnapshotHashMap for a mutable map that
+ * publishes a new version on each change.
+ * <p>
+ * @see SnapshotHashMap
+ * @see PersistentHashMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class PersistentHashMap extends Map
+  {
+  static final int BITS = 5; // # hash bits consumed by each level of the trie.
+  static final int MASK = ( 1 << BITS ) - 1;
+  static final Node EMPTY = new TrieNode( 0, new Object[ 0 ] );
+
+  final BinaryPredicate comparator;
+  final Node root;
+  final int size;
+
+  /**
+   * Construct myself to be an empty PersistentHashMap that compares keys using equals().
+   */
+  public PersistentHashMap()
+    {
+    this( new xEqualTo() );
+    }
+
+  /**
+   * Construct myself to be an empty PersistentHashMap that compares keys using the
+   * specified binary predicate.
+   * @param comparator The predicate for comparing keys.
+   */
+  public PersistentHashMap( BinaryPredicate comparator )
+    {
+    this( comparator, EMPTY, 0 );
+    }
+
+  PersistentHashMap( BinaryPredicate comparator, Node root, int size )
+    {
+    this.comparator = comparator;
+    this.root = root;
+    this.size = size;
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return comparator;
+    }
+
+  /**
+   * Return myself, since I never change.
+   */
+  public Object clone()
+    {
+    return this;
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return Algos.Printing.toString( this, "PersistentHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public Enumeration elements()
+    {
+    return begin( this, PersistentHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public PersistentHashMapIterator begin()
+    {
+    return begin( this, PersistentHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public PersistentHashMapIterator end()
+    {
+    return new PersistentHashMapIterator( this, PersistentHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof PersistentHashMap && equals( (PersistentHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another
+   * PersistentHashMap. Use equals() to compare values. Versions that share
+   * their trie are recognized without comparing their pairs.
+   * @param map The PersistentHashMap to compare myself against.
+   */
+  public boolean equals( PersistentHashMap map )
+    {
+    if ( root == map.root )
+      return true;
+
+    if ( size != map.size )
+      return false;
+
+    for ( PersistentHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      {
+      Object value = map.get( iterator.key() );
+
+      if ( value == null || !value.equals( iterator.value() ) )
+        return false;
+      }
+
+    return true;
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public int hashCode()
+    {
+    return Algos.Hashing.unorderedHash( begin( this, PersistentHashMapIterator.KEY ) );
+    }
+
+  /**
+   * Return a version of myself that contains a key/value pair. If the key exists,
+   * its pair is replaced in the new version. If the key already has the value,
+   * return myself.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public PersistentHashMap with( Object key, Object value )
+    {
+    return with( key, value, new Change( true ) );
+    }
+
+  /**
+   * Return a version of myself that does not contain a key. If the key does not
+   * exist, return myself.
+   * @param key The key to remove.
+   */
+  public PersistentHashMap without( Object key )
+    {
+    return without( key, new Change( true ) );
+    }
+
+  /**
+   * Return a version of myself that also contains the key/value pairs of a Map,
+   * replacing any of my pairs with the same keys.
+   * @param map The Map whose pairs are to be added.
+   * @exception NullPointerException If a key or value is null.
+   */
+  public PersistentHashMap withAll( Map map )
+    {
+    PersistentHashMap result = this;
+
+    for ( ForwardIterator iterator = map.start(); iterator.hasMoreElements(); iterator.advance() )
+      {
+      Pair pair = (Pair)iterator.get();
+      result = result.with( pair.first, pair.second );
+      }
+
+    return result;
+    }
+
+  /**
+   * Throw an InvalidOperationException, since I cannot be changed.
+   * @exception InvalidOperationException Always.
+   */
+  public void clear()
+    {
+    throw new InvalidOperationException( "PersistentHashMap cannot be changed" );
+    }
+
+  /**
+   * Throw an InvalidOperationException, since I cannot be changed. Use without()
+   * to obtain a version without the key.
+   * @param key The key of the pair to be removed.
+   * @exception InvalidOperationException Always.
+   */
+  public Object remove( Object key )
+    {
+    throw new InvalidOperationException( "PersistentHashMap cannot be changed" );
+    }
+
+  /**
+   * Throw an InvalidOperationException, since I cannot be changed.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception InvalidOperationException Always.
+   */
+  public Object remove( Enumeration e )
+    {
+    throw new InvalidOperationException( "PersistentHashMap cannot be changed" );
+    }
+
+  /**
+   * Throw an InvalidOperationException, since I cannot be changed.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception InvalidOperationException Always.
+   */
+  public int remove( Enumeration first, Enumeration last )
+    {
+    throw new InvalidOperationException( "PersistentHashMap cannot be changed" );
+    }
+
+  /**
+   * Throw an InvalidOperationException, since I cannot be changed. Use with()
+   * to obtain a version with the pair.
+   * @param key The key.
+   * @param value The value.
+   * @exception InvalidOperationException Always.
+   */
+  public Object put( Object key, Object value )
+    {
+    throw new InvalidOperationException( "PersistentHashMap cannot be changed" );
+    }
+
+  /**
+   * Throw an InvalidOperationException, since I cannot be changed.
+   * @param object The pair to add.
+   * @exception InvalidOperationException Always.
+   */
+  public Object add( Object object )
+    {
+    throw new InvalidOperationException( "PersistentHashMap cannot be changed" );
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position.
+   * If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public PersistentHashMapIterator find( Object key )
+    {
+    return find( this, key );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key, which is 0 or 1.
+   * @param key The key to match against.
+   */
+  public int count( Object key )
+    {
+    return get( key ) == null ? 0 : 1;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public int countValues( Object value )
+    {
+    return Algos.Counting.count( begin( this, PersistentHashMapIterator.VALUE ), end(), value );
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public Object get( Object key )
+    {
+    return root.find( 0, hash( key ), key, comparator );
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public Enumeration keys()
+    {
+    return begin( this, PersistentHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( PersistentHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      if ( iterator.value().equals( value ) )
+        array.pushBack( iterator.key() );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * @param key The key to match.
+   */
+  public Enumeration values( Object key )
+    {
+    Array array = new Array();
+    Object value = get( key );
+
+    if ( value != null )
+      array.pushBack( value );
+
+    return array.elements();
+    }
+
+  /**
+   * Return a version with a pair, recording in a change whether the key was found
+   * and its previous value. If the change does not replace, an existing pair is
+   * left alone.
+   */
+  PersistentHashMap with( Object key, Object value, Change change )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    Node node = root.with( 0, hash( key ), key, value, comparator, change );
+
+    if ( node == root )
+      return this;
+
+    return new PersistentHashMap( comparator, node, change.found ? size : size + 1 );
+    }
+
+  /**
+   * Return a version without a key, recording in a change whether the key was
+   * found and its value.
+   */
+  PersistentHashMap without( Object key, Change change )
+    {
+    Node node = root.without( 0, hash( key ), key, comparator, change );
+
+    if ( node == root )
+      return this;
+
+    return new PersistentHashMap( comparator, node == null ? EMPTY : node, size - 1 );
+    }
+
+  /**
+   * Return an iterator over my pairs that belongs to a given container.
+   */
+  PersistentHashMapIterator begin( Map map, int mode )
+    {
+    return new PersistentHashMapIterator( map, root, mode );
+    }
+
+  /**
+   * Return an iterator positioned at the pair of a key that belongs to a given
+   * container, or an iterator positioned at the end.
+   */
+  PersistentHashMapIterator find( Map map, Object key )
+    {
+    PersistentHashMapIterator iterator = new PersistentHashMapIterator( map, PersistentHashMapIterator.PAIR );
+    iterator.seek( root, hash( key ), key, comparator );
+    return iterator;
+    }
+
+  /**
+   * Return the hash code of a key, with its high bits folded into the low bits
+   * that select the branches near the root.
+   */
+  static int hash( Object key )
+    {
+    int h = key.hashCode();
+    return h ^ ( h >>> 16 );
+    }
+
+  /**
+   * Return the number of bits that are set in a word.
+   */
+  static int bitCount( int i )
+    {
+    i = i - ( ( i >>> 1 ) & 0x55555555 );
+    i = ( i & 0x33333333 ) + ( ( i >>> 2 ) & 0x33333333 );
+    i = ( i + ( i >>> 4 ) ) & 0x0F0F0F0F;
+    return ( i * 0x01010101 ) >>> 24;
+    }
+
+  /**
+   * Return a copy of an array with one element replaced.
+   */
+  static Object[] replace( Object[] array, int i, Object object )
+    {
+    Object[] result = new Object[ array.length ];
+    System.arraycopy( array, 0, result, 0, array.length );
+    result[ i ] = object;
+    return result;
+    }
+
+  /**
+   * Return a copy of an array with a key/value pair inserted at an even index.
+   */
+  static Object[] insert( Object[] array, int i, Object key, Object value )
+    {
+    Object[] result = new Object[ array.length + 2 ];
+    System.arraycopy( array, 0, result, 0, i );
+    result[ i ] = key;
+    result[ i + 1 ] = value;
+    System.arraycopy( array, i, result, i + 2, array.length - i );
+    return result;
+    }
+
+  /**
+   * Return a copy of an array without the key/value pair at an even index.
+   */
+  static Object[] remove( Object[] array, int i )
+    {
+    Object[] result = new Object[ array.length - 2 ];
+    System.arraycopy( array, 0, result, 0, i );
+    System.arraycopy( array, i + 2, result, i, array.length - i - 2 );
+    return result;
+    }
+
+  /**
+   * The outcome of an update: whether the key was found and its previous value.
+   */
+  static final class Change
+    {
+    boolean replace; // should an existing pair be replaced?
+    boolean found;
+    Object previous;
+
+    Change( boolean replace )
+      {
+      this.replace = replace;
+      }
+    }
+
+  /**
+   * A node of the trie. Its array holds a key and a value for each pair, or null
+   * and a child node for each branch. Nodes are never changed once published.
+   */
+  abstract static class Node implements java.io.Serializable
+    {
+    final Object[] array;
+
+    Node( Object[] array )
+      {
+      this.array = array;
+      }
+
+    abstract Object find( int shift, int hash, Object key, BinaryPredicate comparator );
+
+    abstract Node with( int shift, int hash, Object key, Object value, BinaryPredicate comparator, Change change );
+
+    abstract Node without( int shift, int hash, Object key, BinaryPredicate comparator, Change change );
+
+    static final long serialVersionUID = 3140572418823317530L;
+    }
+
+  /**
+   * A node that holds an entry for each branch whose bit is set in its bitmap.
+   */
+  static final class TrieNode extends Node
+    {
+    final int bitmap;
+
+    TrieNode( int bitmap, Object[] array )
+      {
+      super( array );
+      this.bitmap = bitmap;
+      }
+
+    Object find( int shift, int hash, Object key, BinaryPredicate comparator )
+      {
+      int bit = 1 << ( ( hash >>> shift ) & MASK );
+
+      if ( ( bitmap & bit ) == 0 )
+        return null;
+
+      int i = 2 * bitCount( bitmap & ( bit - 1 ) );
+      Object k = array[ i ];
+
+      if ( k == null )
+        return ( (Node)array[ i + 1 ] ).find( shift + BITS, hash, key, comparator );
+
+      return comparator.execute( k, key ) ? array[ i + 1 ] : null;
+      }
+
+    Node with( int shift, int hash, Object key, Object value, BinaryPredicate comparator, Change change )
+      {
+      int bit = 1 << ( ( hash >>> shift ) & MASK );
+      int i = 2 * bitCount( bitmap & ( bit - 1 ) );
+
+      if ( ( bitmap & bit ) == 0 )
+        return new TrieNode( bitmap | bit, insert( array, i, key, value ) );
+
+      Object k = array[ i ];
+      Object v = array[ i + 1 ];
+
+      if ( k == null )
+        {
+        Node child = ( (Node)v ).with( shift + BITS, hash, key, value, comparator, change );
+        return child == v ? this : new TrieNode( bitmap, replace( array, i + 1, child ) );
+        }
+
+      if ( comparator.execute( k, key ) )
+        {
+        change.found = true;
+        change.previous = v;
+
+        if ( !change.replace || ( v == value && k == key ) )
+          return this;
+
+        Object[] result = replace( array, i + 1, value );
+        result[ i ] = key;
+        return new TrieNode( bitmap, result );
+        }
+
+      // Two keys share this branch, so it becomes a child node.
+      Node child = branch( shift + BITS, k, v, hash( k ), key, value, hash );
+      Object[] result = replace( array, i + 1, child );
+      result[ i ] = null;
+      return new TrieNode( bitmap, result );
+      }
+
+    Node without( int shift, int hash, Object key, BinaryPredicate comparator, Change change )
+      {
+      int bit = 1 << ( ( hash >>> shift ) & MASK );
+
+      if ( ( bitmap & bit ) == 0 )
+        return this;
+
+      int i = 2 * bitCount( bitmap & ( bit - 1 ) );
+      Object k = array[ i ];
+      Object v = array[ i + 1 ];
+
+      if ( k == null )
+        {
+        Node child = ( (Node)v ).without( shift + BITS, hash, key, comparator, change );
+
+        if ( child == v )
+          return this;
+
+        if ( child != null )
+          {
+          // A child left with a single pair is folded back into this node.
+          if ( child.array.length == 2 && child.array[ 0 ] != null )
+            {
+            Object[] result = replace( array, i + 1, child.array[ 1 ] );
+            result[ i ] = child.array[ 0 ];
+            return new TrieNode( bitmap, result );
+            }
+
+          return new TrieNode( bitmap, replace( array, i + 1, child ) );
+          }
+        }
+      else if ( comparator.execute( k, key ) )
+        {
+        change.found = true;
+        change.previous = v;
+        }
+      else
+        {
+        return this;
+        }
+
+      return bitmap == bit ? null : new TrieNode( bitmap ^ bit, remove( array, i ) );
+      }
+
+    /**
+     * Return a node that holds two pairs with different keys.
+     */
+    static Node branch( int shift, Object key1, Object value1, int hash1, Object key2, Object value2, int hash2 )
+      {
+      if ( hash1 == hash2 )
+        return new CollisionNode( hash1, new Object[]{ key1, value1, key2, value2 } );
+
+      int bit1 = 1 << ( ( hash1 >>> shift ) & MASK );
+      int bit2 = 1 << ( ( hash2 >>> shift ) & MASK );
+
+      if ( bit1 == bit2 )
+        return new TrieNode( bit1, new Object[]{ null, branch( shift + BITS, key1, value1, hash1, key2, value2, hash2 ) } );
+
+      return bit1 < bit2
+        ? new TrieNode( bit1 | bit2, new Object[]{ key1, value1, key2, value2 } )
+        : new TrieNode( bit1 | bit2, new Object[]{ key2, value2, key1, value1 } );
+      }
+
+    static final long serialVersionUID = -5262185731939011473L;
+    }
+
+  /**
+   * A node that holds the pairs of keys whose hash codes are all the same.
+   */
+  static final class CollisionNode extends Node
+    {
+    final int hash;
+
+    CollisionNode( int hash, Object[] array )
+      {
+      super( array );
+      this.hash = hash;
+      }
+
+    Object find( int shift, int hash, Object key, BinaryPredicate comparator )
+      {
+      int i = indexOf( key, comparator );
+      return i < 0 ? null : array[ i + 1 ];
+      }
+
+    Node with( int shift, int hash, Object key, Object value, BinaryPredicate comparator, Change change )
+      {
+      if ( hash != this.hash )
+        {
+        // Nest myself below a node that tells my hash code and the key's apart.
+        Node node = new TrieNode( 1 << ( ( this.hash >>> shift ) & MASK ), new Object[]{ null, this } );
+        return node.with( shift, hash, key, value, comparator, change );
+        }
+
+      int i = indexOf( key, comparator );
+
+      if ( i < 0 )
+        return new CollisionNode( hash, insert( array, array.length, key, value ) );
+
+      change.found = true;
+      change.previous = array[ i + 1 ];
+
+      if ( !change.replace )
+        return this;
+
+      Object[] result = replace( array, i + 1, value );
+      result[ i ] = key;
+      return new CollisionNode( hash, result );
+      }
+
+    Node without( int shift, int hash, Object key, BinaryPredicate comparator, Change change )
+      {
+      int i = hash == this.hash ? indexOf( key, comparator ) : -1;
+
+      if ( i < 0 )
+        return this;
+
+      change.found = true;
+      change.previous = array[ i + 1 ];
+      return array.length == 2 ? null : new CollisionNode( hash, remove( array, i ) );
+      }
+
+    private int indexOf( Object key, BinaryPredicate comparator )
+      {
+      for ( int i = 0; i < array.length; i += 2 )
+        if ( comparator.execute( array[ i ], key ) )
+          return i;
+
+      return -1;
+      }
+
+    static final long serialVersionUID = 8349153076270817749L;
+    }
+
+  static final long serialVersionUID = -2853176350215743968L;
+  }
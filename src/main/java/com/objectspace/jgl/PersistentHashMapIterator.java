@@ -0,0 +1,351 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A PersistentHashMapIterator is a forward iterator that allows you to iterate
+ * through the contents of a PersistentHashMap or a SnapshotHashMap. It has a mode
+ * that allows selection of the current position's key, value, or key-value pair.
+ * <p>
+ * A PersistentHashMapIterator walks a single version of a map, which never changes,
+ * so it is never invalidated and does not see later changes to a SnapshotHashMap.
+ * Pairs cannot be changed through it.
+ * <p>
+ * @see ForwardIterator
+ * @see PersistentHashMap
+ * @see SnapshotHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class PersistentHashMapIterator implements ForwardIterator
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  static final int MAX_DEPTH = 8; // 32 / BITS levels of the trie and a collision node.
+
+  Map myMap;
+  PersistentHashMap.Node[] myNodes = new PersistentHashMap.Node[ MAX_DEPTH ]; // the path from the root.
+  int[] myIndices = new int[ MAX_DEPTH ]; // the index of the entry taken in each node of the path.
+  int myDepth = -1; // the depth of the node that holds my pair, or -1 at the end.
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public PersistentHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public PersistentHashMapIterator( PersistentHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myDepth = iterator.myDepth;
+    myMode = iterator.myMode;
+    System.arraycopy( iterator.myNodes, 0, myNodes, 0, MAX_DEPTH );
+    System.arraycopy( iterator.myIndices, 0, myIndices, 0, MAX_DEPTH );
+    }
+
+  /**
+   * Construct myself to be positioned after the last pair of a specified map.
+   * @param map My associated map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  PersistentHashMapIterator( Map map, int mode )
+    {
+    myMap = map;
+    myMode = mode;
+    }
+
+  /**
+   * Construct myself to be positioned at the first pair of a trie.
+   * @param map My associated map.
+   * @param root The root of the trie.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  PersistentHashMapIterator( Map map, PersistentHashMap.Node root, int mode )
+    {
+    myMap = map;
+    myMode = mode;
+    myDepth = 0;
+    myNodes[ 0 ] = root;
+    myIndices[ 0 ] = 0;
+    settle();
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new PersistentHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof PersistentHashMapIterator && equals( (PersistentHashMapIterator)object );
+    }
+
+  /**
+   * Return true if iterator is positioned at the same element as me.
+   * @param iterator The iterator to compare myself against.
+   */
+  public boolean equals( PersistentHashMapIterator iterator )
+    {
+    if ( myDepth < 0 || iterator.myDepth < 0 )
+      return myDepth == iterator.myDepth;
+
+    return myNodes[ myDepth ] == iterator.myNodes[ iterator.myDepth ] && myIndices[ myDepth ] == iterator.myIndices[ iterator.myDepth ];
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return equals( new PersistentHashMapIterator( myMap, myNodes[ 0 ], myMode ) );
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myDepth < 0;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myDepth >= 0;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    myIndices[ myDepth ] += 2;
+    settle();
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myDepth < 0 )
+      throw new java.util.NoSuchElementException( "PersistentHashMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( key(), value() );
+
+      case KEY:
+        return key();
+
+      case VALUE:
+        return value();
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    PersistentHashMapIterator i = new PersistentHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Throw an InvalidOperationException, since the pairs of a version never change.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException Always.
+   */
+  public void put( Object object )
+    {
+    throw new InvalidOperationException( "Cannot change a pair through a PersistentHashMapIterator." );
+    }
+
+  /**
+   * Throw an InvalidOperationException, since the pairs of a version never change.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException Always.
+   */
+  public void put( int offset, Object object )
+    {
+    put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myNodes[ myDepth ].array[ myIndices[ myDepth ] ];
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myNodes[ myDepth ].array[ myIndices[ myDepth ] + 1 ];
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    PersistentHashMapIterator i = new PersistentHashMapIterator( this );
+    int n = 0;
+
+    while ( !i.equals( iterator ) && i.hasMoreElements() )
+      {
+      ++n;
+      i.advance();
+      }
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return iterator instanceof PersistentHashMapIterator && myMap == ( (PersistentHashMapIterator)iterator ).myMap;
+    }
+
+  /**
+   * Position myself at the pair of a key in a trie, or at the end if there is none.
+   */
+  void seek( PersistentHashMap.Node node, int hash, Object key, BinaryPredicate comparator )
+    {
+    for ( int depth = 0, shift = 0; ; ++depth, shift += PersistentHashMap.BITS )
+      {
+      int i = -1;
+      myNodes[ depth ] = node;
+
+      if ( node instanceof PersistentHashMap.TrieNode )
+        {
+        int bitmap = ( (PersistentHashMap.TrieNode)node ).bitmap;
+        int bit = 1 << ( ( hash >>> shift ) & PersistentHashMap.MASK );
+
+        if ( ( bitmap & bit ) != 0 )
+          i = 2 * PersistentHashMap.bitCount( bitmap & ( bit - 1 ) );
+        }
+      else
+        {
+        for ( int j = 0; j < node.array.length && i < 0; j += 2 )
+          if ( comparator.execute( node.array[ j ], key ) )
+            i = j;
+        }
+
+      if ( i < 0 )
+        break;
+
+      myIndices[ depth ] = i;
+      Object k = node.array[ i ];
+
+      if ( k == null )
+        {
+        node = (PersistentHashMap.Node)node.array[ i + 1 ];
+        continue;
+        }
+
+      if ( !comparator.execute( k, key ) )
+        break;
+
+      myDepth = depth;
+      return;
+      }
+
+    myDepth = -1;
+    }
+
+  /**
+   * Move from my current entry to the first pair at or after it, descending into
+   * child nodes and returning to parents as necessary.
+   */
+  private void settle()
+    {
+    while ( myDepth >= 0 )
+      {
+      Object[] array = myNodes[ myDepth ].array;
+      int i = myIndices[ myDepth ];
+
+      if ( i >= array.length )
+        {
+        if ( --myDepth >= 0 )
+          myIndices[ myDepth ] += 2;
+        }
+      else if ( array[ i ] == null )
+        {
+        myNodes[ ++myDepth ] = (PersistentHashMap.Node)array[ i + 1 ];
+        myIndices[ myDepth ] = 0;
+        }
+      else
+        {
+        return;
+        }
+      }
+    }
+  }
@@ -0,0 +1,817 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.IOException;
+
+/**
+ * A ReferenceHashMap is a hashed associative container that may hold its keys,
+ * its values, or both through weak or soft references, so that the garbage
+ * collector can reclaim pairs that nobody else uses. Keys are matched by default
+ * using a BinaryPredicate that uses equals() for comparisons, and duplicate keys
+ * are not allowed.
+ * <p>
+ * A pair whose key is only weakly reachable, or whose value is only softly
+ * reachable, disappears once the collector clears the reference. Weak keys suit
+ * maps that attach data to objects owned elsewhere; soft values suit caches,
+ * because softly reachable objects are only reclaimed when memory runs low.
+ * <p>
+ * Cleared references are placed on a ReferenceQueue, and their pairs are purged at
+ * the start of every operation, so no thread is needed to clean up. A pair whose
+ * reference has been cleared but not yet purged is never returned: lookups treat
+ * it as absent and iterators skip it. size() purges first, but a reference that the
+ * collector clears afterwards is only reflected by the next operation.
+ * <p>
+ * An iterator holds its current key and value strongly, so they cannot vanish
+ * while it is positioned at them.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see HashMap
+ * @see ReferenceHashMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class ReferenceHashMap extends Map
+  {
+  /**
+   * References of this strength are ordinary references.
+   */
+  public static final int STRONG = 0;
+
+  /**
+   * References of this strength are cleared as soon as their referent is only
+   * weakly reachable.
+   */
+  public static final int WEAK = 1;
+
+  /**
+   * References of this strength are cleared when their referent is only softly
+   * reachable and memory is needed.
+   */
+  public static final int SOFT = 2;
+
+  static final int DEFAULT_SIZE = 16;
+  static final float DEFAULT_RATIO = 0.75F;
+
+  BinaryPredicate comparator;
+  int keyStrength;
+  int valueStrength;
+  float ratio;
+  int capacity; // initial # buckets.
+  transient Node[] buckets; // length is a power of two.
+  transient int size; // # nodes, including those with cleared references.
+  transient int limit;
+  transient ReferenceQueue queue;
+
+  /**
+   * Construct myself to be an empty ReferenceHashMap with weak keys and strong
+   * values that compares keys using equals().
+   */
+  public ReferenceHashMap()
+    {
+    this( WEAK, STRONG );
+    }
+
+  /**
+   * Construct myself to be an empty ReferenceHashMap that compares keys using
+   * equals() and holds keys and values with the specified strengths.
+   * @param keyStrength The strength of my references to keys.
+   * @param valueStrength The strength of my references to values.
+   */
+  public ReferenceHashMap( int keyStrength, int valueStrength )
+    {
+    this( new xEqualTo(), keyStrength, valueStrength, DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty ReferenceHashMap that compares keys using the
+   * specified binary predicate and holds keys and values with the specified
+   * strengths. The initial capacity and load ratio must also be specified.
+   * @param comparator The predicate for comparing keys.
+   * @param keyStrength The strength of my references to keys.
+   * @param valueStrength The strength of my references to values.
+   * @param capacity The initial number of hash buckets to reserve.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If a strength is unknown or the load ratio
+   * is not positive.
+   */
+  public ReferenceHashMap( BinaryPredicate comparator, int keyStrength, int valueStrength, int capacity, float loadRatio )
+    {
+    if ( keyStrength < STRONG || keyStrength > SOFT || valueStrength < STRONG || valueStrength > SOFT )
+      throw new IllegalArgumentException( "unknown reference strength" );
+
+    if ( loadRatio <= 0.0F )
+      throw new IllegalArgumentException( "load ratio must be positive" );
+
+    this.comparator = comparator;
+    this.keyStrength = keyStrength;
+    this.valueStrength = valueStrength;
+    this.capacity = capacity;
+    ratio = loadRatio;
+    allocate();
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing ReferenceHashMap.
+   * @param map The ReferenceHashMap to copy.
+   */
+  public ReferenceHashMap( ReferenceHashMap map )
+    {
+    this( map.comparator, map.keyStrength, map.valueStrength, map.capacity, map.ratio );
+    copyPairs( map );
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return comparator;
+    }
+
+  /**
+   * Return the strength of my references to keys.
+   */
+  public int getKeyStrength()
+    {
+    return keyStrength;
+    }
+
+  /**
+   * Return the strength of my references to values.
+   */
+  public int getValueStrength()
+    {
+    return valueStrength;
+    }
+
+  /**
+   * Return my load ratio.
+   */
+  public float getLoadRatio()
+    {
+    return ratio;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new ReferenceHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing ReferenceHashMap. My comparator and
+   * reference strengths are not changed.
+   * @param map The ReferenceHashMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( ReferenceHashMap map )
+    {
+    if ( map != this )
+      {
+      clear();
+      copyPairs( map );
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algos.Printing.toString( this, "ReferenceHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin( ReferenceHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized ReferenceHashMapIterator begin()
+    {
+    return begin( ReferenceHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized ReferenceHashMapIterator end()
+    {
+    return new ReferenceHashMapIterator( this, ReferenceHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public synchronized boolean isEmpty()
+    {
+    purge();
+    return size == 0;
+    }
+
+  /**
+   * Return the number of entries that I contain, after purging those whose
+   * references have been cleared.
+   */
+  public synchronized int size()
+    {
+    purge();
+    return size;
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof ReferenceHashMap && equals( (ReferenceHashMap)object );
+    }
+
+  /**
+   * Return true if I contain exactly the same key/value pairs as another
+   * ReferenceHashMap. Use equals() to compare values.
+   * @param map The ReferenceHashMap to compare myself against.
+   */
+  public synchronized boolean equals( ReferenceHashMap map )
+    {
+    if ( map == this )
+      return true;
+
+    synchronized( map )
+      {
+      int n = 0;
+
+      for ( ReferenceHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+        {
+        Object value = map.get( iterator.key() );
+
+        if ( value == null || !value.equals( iterator.value() ) )
+          return false;
+
+        ++n;
+        }
+
+      return n == map.begin().distance( map.end() );
+      }
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public synchronized int hashCode()
+    {
+    return Algos.Hashing.unorderedHash( begin( ReferenceHashMapIterator.KEY ) );
+    }
+
+  /**
+   * Swap my contents with another ReferenceHashMap.
+   * @param map The ReferenceHashMap that I will swap my contents with.
+   */
+  public synchronized void swap( ReferenceHashMap map )
+    {
+    synchronized( map )
+      {
+      BinaryPredicate tmpComparator = comparator;
+      comparator = map.comparator;
+      map.comparator = tmpComparator;
+
+      int tmpKeyStrength = keyStrength;
+      keyStrength = map.keyStrength;
+      map.keyStrength = tmpKeyStrength;
+
+      int tmpValueStrength = valueStrength;
+      valueStrength = map.valueStrength;
+      map.valueStrength = tmpValueStrength;
+
+      float tmpRatio = ratio;
+      ratio = map.ratio;
+      map.ratio = tmpRatio;
+
+      int tmpCapacity = capacity;
+      capacity = map.capacity;
+      map.capacity = tmpCapacity;
+
+      Node[] tmpBuckets = buckets;
+      buckets = map.buckets;
+      map.buckets = tmpBuckets;
+
+      int tmpSize = size;
+      size = map.size;
+      map.size = tmpSize;
+
+      int tmpLimit = limit;
+      limit = map.limit;
+      map.limit = tmpLimit;
+
+      ReferenceQueue tmpQueue = queue;
+      queue = map.queue;
+      map.queue = tmpQueue;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    buckets = new Node[ buckets.length ];
+    size = 0;
+    queue = new ReferenceQueue();
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key.
+   * @param key The key of the pair to be removed.
+   * @return The value removed or null if not changed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    purge();
+    int hash = hash( key );
+    int probe = hash & ( buckets.length - 1 );
+
+    for ( Node node = buckets[ probe ], previous = null; node != null; previous = node, node = node.next )
+      if ( node.hash == hash && matches( node, key ) )
+        {
+        Object value = value( node );
+
+        if ( previous == null )
+          buckets[ probe ] = node.next;
+        else
+          previous.next = node.next;
+
+        --size;
+        return value;
+        }
+
+    return null;
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key if the count is positive.
+   * @param key The key of the pair to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    return count > 0 && remove( key ) != null ? 1 : 0;
+    }
+
+  /**
+   * Remove the pair at a particular position.
+   * @param e An Enumeration positioned at the pair to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * ReferenceHashMapIterator for this ReferenceHashMap object.
+   * @return Return the value that was removed, or null if none.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof ReferenceHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not a ReferenceHashMapIterator" );
+
+    if ( ((ReferenceHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this ReferenceHashMap" );
+
+    ReferenceHashMapIterator iterator = (ReferenceHashMapIterator)e;
+    return unlink( iterator.myNode ) ? iterator.myValue : null;
+    }
+
+  /**
+   * Remove the pairs within a specified range.
+   * @param first An Enumeration positioned at the first pair to remove.
+   * @param last An Enumeration positioned immediately after the last pair to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * ReferenceHashMapIterator for this ReferenceHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof ReferenceHashMapIterator) ) ||
+        ( ! (last instanceof ReferenceHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a ReferenceHashMapIterator" );
+
+    if ( ( ((ReferenceHashMapIterator)first).myMap != this ) ||
+        ( ((ReferenceHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this ReferenceHashMap" );
+
+    ReferenceHashMapIterator begin = new ReferenceHashMapIterator( (ReferenceHashMapIterator)first );
+    int count = 0;
+
+    while ( !begin.equals( last ) && begin.hasMoreElements() )
+      {
+      Node node = begin.myNode;
+      begin.advance();
+
+      if ( unlink( node ) )
+        ++count;
+      }
+
+    return count;
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position. If the key
+   * is not found, return end().
+   * @param key The key to locate.
+   */
+  public synchronized ReferenceHashMapIterator find( Object key )
+    {
+    purge();
+    Node node = lookup( key );
+    ReferenceHashMapIterator iterator = new ReferenceHashMapIterator( this, ReferenceHashMapIterator.PAIR );
+
+    if ( node != null )
+      iterator.position( node );
+
+    return iterator;
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key, which is 0 or 1.
+   * @param key The key to match against.
+   */
+  public synchronized int count( Object key )
+    {
+    purge();
+    return lookup( key ) == null ? 0 : 1;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int count = 0;
+
+    for ( Enumeration e = elements(); e.hasMoreElements(); )
+      if ( e.nextElement().equals( value ) )
+        ++count;
+
+    return count;
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public synchronized Object get( Object key )
+    {
+    purge();
+    Node node = lookup( key );
+    return node == null ? null : value( node );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    return putAux( key, value, true );
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    return putAux( key, value, false );
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return begin( ReferenceHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( ReferenceHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      if ( iterator.value().equals( value ) )
+        array.pushBack( iterator.key() );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    Object value = get( key );
+
+    if ( value != null )
+      array.pushBack( value );
+
+    return array.elements();
+    }
+
+  /**
+   * Purge the pairs whose references have been cleared by the collector.
+   */
+  public synchronized void purge()
+    {
+    Reference reference;
+
+    while ( ( reference = queue.poll() ) != null )
+      unlink( reference instanceof WeakLink ? ( (WeakLink)reference ).node : ( (SoftLink)reference ).node );
+    }
+
+  ReferenceHashMapIterator begin( int mode )
+    {
+    purge();
+    ReferenceHashMapIterator iterator = new ReferenceHashMapIterator( this, mode );
+    iterator.seek( 0 );
+    return iterator;
+    }
+
+  /**
+   * Return the key of a node, or null if it has been cleared.
+   */
+  final Object key( Node node )
+    {
+    return keyStrength == STRONG ? node.key : ( (Reference)node.key ).get();
+    }
+
+  /**
+   * Return the value of a node, or null if it has been cleared.
+   */
+  final Object value( Node node )
+    {
+    return valueStrength == STRONG ? node.value : ( (Reference)node.value ).get();
+    }
+
+  private Object reference( Object object, int strength, Node node )
+    {
+    switch ( strength )
+      {
+      case WEAK:
+        return new WeakLink( object, queue, node );
+
+      case SOFT:
+        return new SoftLink( object, queue, node );
+      }
+
+    return object;
+    }
+
+  private static int hash( Object key )
+    {
+    return xSpreader.mix( key.hashCode() );
+    }
+
+  private boolean matches( Node node, Object key )
+    {
+    Object nodeKey = key( node );
+    return nodeKey != null && comparator.execute( nodeKey, key );
+    }
+
+  /**
+   * Return the node whose key matches a given key and whose value has not been
+   * cleared, or null if there is none.
+   */
+  private Node lookup( Object key )
+    {
+    int hash = hash( key );
+
+    for ( Node node = buckets[ hash & ( buckets.length - 1 ) ]; node != null; node = node.next )
+      if ( node.hash == hash && matches( node, key ) )
+        return value( node ) == null ? null : node;
+
+    return null;
+    }
+
+  private Object putAux( Object key, Object value, boolean replace )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    purge();
+    int hash = hash( key );
+    int probe = hash & ( buckets.length - 1 );
+
+    for ( Node node = buckets[ probe ]; node != null; node = node.next )
+      if ( node.hash == hash && matches( node, key ) )
+        {
+        Object previous = value( node );
+
+        if ( replace || previous == null )
+          node.value = reference( value, valueStrength, node );
+
+        return previous;
+        }
+
+    Node node = new Node();
+    node.hash = hash;
+    node.key = reference( key, keyStrength, node );
+    node.value = reference( value, valueStrength, node );
+    node.next = buckets[ probe ];
+    buckets[ probe ] = node;
+
+    if ( ++size > limit )
+      expand();
+
+    return null;
+    }
+
+  /**
+   * Unlink a node if it is still in my table, and return true if it was.
+   */
+  private boolean unlink( Node target )
+    {
+    int probe = target.hash & ( buckets.length - 1 );
+
+    for ( Node node = buckets[ probe ], previous = null; node != null; previous = node, node = node.next )
+      if ( node == target )
+        {
+        if ( previous == null )
+          buckets[ probe ] = node.next;
+        else
+          previous.next = node.next;
+
+        --size;
+        return true;
+        }
+
+    return false;
+    }
+
+  private void expand()
+    {
+    Node[] newBuckets = new Node[ buckets.length * 2 ];
+    int mask = newBuckets.length - 1;
+
+    for ( int i = 0; i < buckets.length; i++ )
+      {
+      Node node = buckets[ i ];
+
+      while ( node != null )
+        {
+        Node current = node;
+        node = node.next;
+        current.next = newBuckets[ current.hash & mask ];
+        newBuckets[ current.hash & mask ] = current;
+        }
+      }
+
+    buckets = newBuckets;
+    limit = (int)( buckets.length * ratio );
+    }
+
+  private void allocate()
+    {
+    buckets = new Node[ HashMap.powerOfTwo( Math.max( capacity, 1 ) ) ];
+    limit = (int)( buckets.length * ratio );
+    queue = new ReferenceQueue();
+    }
+
+  private void copyPairs( ReferenceHashMap map )
+    {
+    for ( ReferenceHashMapIterator iterator = map.begin(); iterator.hasMoreElements(); iterator.advance() )
+      putAux( iterator.key(), iterator.value(), true );
+    }
+
+  private synchronized void writeObject( ObjectOutputStream stream ) throws IOException
+    {
+    stream.defaultWriteObject();
+    Array pairs = new Array();
+
+    for ( ReferenceHashMapIterator iterator = begin(); iterator.hasMoreElements(); iterator.advance() )
+      pairs.pushBack( iterator.get() );
+
+    stream.writeInt( pairs.size() );
+
+    for ( int i = 0; i < pairs.size(); i++ )
+      {
+      Pair pair = (Pair)pairs.at( i );
+      stream.writeObject( pair.first );
+      stream.writeObject( pair.second );
+      }
+    }
+
+  private void readObject( ObjectInputStream stream ) throws IOException, ClassNotFoundException
+    {
+    stream.defaultReadObject();
+    allocate();
+
+    for ( int count = stream.readInt(); count > 0; count-- )
+      putAux( stream.readObject(), stream.readObject(), true );
+    }
+
+  static final class Node
+    {
+    Object key; // the key, or a reference to it.
+    Object value; // the value, or a reference to it.
+    int hash;
+    Node next;
+    }
+
+  static final class WeakLink extends WeakReference
+    {
+    Node node;
+
+    WeakLink( Object object, ReferenceQueue queue, Node node )
+      {
+      super( object, queue );
+      this.node = node;
+      }
+    }
+
+  static final class SoftLink extends SoftReference
+    {
+    Node node;
+
+    SoftLink( Object object, ReferenceQueue queue, Node node )
+      {
+      super( object, queue );
+      this.node = node;
+      }
+    }
+
+  static final long serialVersionUID = 2953760138817250974L;
+  }
@@ -0,0 +1,361 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A ReferenceHashMapIterator is a forward iterator that allows you to iterate
+ * through the contents of a ReferenceHashMap. It has a mode that allows selection
+ * of the current position's key, value, or key-value pair.
+ * <p>
+ * A ReferenceHashMapIterator skips pairs whose key or value has been cleared by the
+ * collector, and holds the key and value at its current position strongly, so that
+ * they remain readable for as long as it is positioned there.
+ * <p>
+ * @see ForwardIterator
+ * @see ReferenceHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class ReferenceHashMapIterator implements ForwardIterator, Opaque
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  ReferenceHashMap myMap;
+  ReferenceHashMap.Node myNode;
+  int myIndex; // index of the bucket that holds my node.
+  Object myKey; // holds my current key strongly.
+  Object myValue; // holds my current value strongly.
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public ReferenceHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public ReferenceHashMapIterator( ReferenceHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    myNode = iterator.myNode;
+    myIndex = iterator.myIndex;
+    myKey = iterator.myKey;
+    myValue = iterator.myValue;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned immediately after the last pair of a
+   * specified map.
+   * @param map My associated map.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  ReferenceHashMapIterator( ReferenceHashMap map, int mode )
+    {
+    myMap = map;
+    myMode = mode;
+    myIndex = map.buckets.length;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new ReferenceHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof Opaque && myNode == ( (Opaque)object ).opaqueData();
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return myNode == myMap.begin().myNode;
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return myNode == null;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return myNode != null;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    synchronized( myMap )
+      {
+      moveFrom( myNode.next );
+      }
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( myNode == null )
+      throw new java.util.NoSuchElementException( "ReferenceHashMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myKey, myValue );
+
+      case KEY:
+        return myKey;
+
+      case VALUE:
+        return myValue;
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    ReferenceHashMapIterator i = new ReferenceHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Replace the value at my current position by putting it into my map. Keys
+   * cannot be changed, so in PAIR mode the key of the pair must match my current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the key would be changed.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair) object;
+
+        if ( !myMap.getComparator().execute( myKey, pair.first ) )
+          throw new InvalidOperationException( "Cannot change the key of a ReferenceHashMap pair." );
+
+        value( pair.second );
+        break;
+
+      case KEY:
+        throw new InvalidOperationException( "Cannot change the key of a ReferenceHashMap pair." );
+
+      case VALUE:
+        value( object );
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    ReferenceHashMapIterator i = new ReferenceHashMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myKey;
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myValue;
+    }
+
+  /**
+   * Change the value of my current key/value pair by putting it into my map.
+   * @param value The new value.
+   */
+  public void value( Object value )
+    {
+    myMap.put( myKey, value );
+    myValue = value;
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    ReferenceHashMapIterator i = new ReferenceHashMapIterator( this );
+    Object node = ( (Opaque)iterator ).opaqueData();
+    int n = 0;
+
+    while ( i.myNode != node )
+      {
+      ++n;
+      i.advance();
+      }
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return
+      iterator instanceof Opaque
+      && opaqueId() == ( (Opaque)iterator ).opaqueId();
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public Object opaqueData()
+    {
+    return myNode;
+    }
+
+  /**
+   * Should not be used directly.
+   * @see Opaque
+   */
+  public int opaqueId()
+    {
+    return System.identityHashCode( myMap );
+    }
+
+  /**
+   * Position myself at the first live pair in or after a given bucket.
+   * @param index The index of the bucket.
+   */
+  void seek( int index )
+    {
+    myIndex = index - 1;
+    moveFrom( null );
+    }
+
+  /**
+   * Position myself at a given node, or at the first live pair after it.
+   * @param node The node.
+   */
+  void position( ReferenceHashMap.Node node )
+    {
+    myIndex = node.hash & ( myMap.buckets.length - 1 );
+    moveFrom( node );
+    }
+
+  /**
+   * Position myself at the first live pair at or after a node in my current
+   * bucket, moving on to later buckets when the node is null.
+   */
+  private void moveFrom( ReferenceHashMap.Node node )
+    {
+    ReferenceHashMap.Node[] buckets = myMap.buckets;
+
+    while ( true )
+      {
+      while ( node == null )
+        {
+        if ( ++myIndex >= buckets.length )
+          {
+          myIndex = buckets.length;
+          myNode = null;
+          myKey = null;
+          myValue = null;
+          return;
+          }
+
+        node = buckets[ myIndex ];
+        }
+
+      Object key = myMap.key( node );
+      Object value = myMap.value( node );
+
+      if ( key != null && value != null )
+        {
+        myNode = node;
+        myKey = key;
+        myValue = value;
+        return;
+        }
+
+      node = node.next;
+      }
+    }
+  }
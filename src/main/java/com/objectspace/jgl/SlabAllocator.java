@@ -0,0 +1,216 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A SlabAllocator manages blocks of memory outside of the Java heap. Memory is
+ * reserved from the operating system in large direct ByteBuffers, called slabs,
+ * and handed out in blocks whose sizes are powers of two. A freed block is kept
+ * on a free list for its size and reused by the next allocation of that size, so
+ * the memory in use never needs to be compacted.
+ * <p>
+ * A block is identified by a long address that encodes its slab and its offset
+ * within the slab; an address is never 0. The free lists are threaded through the
+ * free blocks themselves, so the only memory that a SlabAllocator keeps on the
+ * heap is one small ByteBuffer per slab. Slabs are returned to the operating
+ * system when the allocator is cleared or becomes garbage.
+ * <p>
+ * @see OffHeapHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class SlabAllocator
+  {
+  public static final int DEFAULT_SLAB_SIZE = 1 << 24;
+  static final int MIN_BLOCK_SHIFT = 4;
+
+  int slabSize;
+  ByteBuffer[] slabs = new ByteBuffer[ 4 ];
+  int slabCount;
+  int top; // # bytes used in the last slab.
+  long[] freeLists = new long[ 32 ]; // address of the first free block of each size class, or 0.
+  long allocated; // # bytes in blocks that are in use.
+
+  /**
+   * Construct myself to reserve memory in slabs of the default size.
+   */
+  public SlabAllocator()
+    {
+    this( DEFAULT_SLAB_SIZE );
+    }
+
+  /**
+   * Construct myself to reserve memory in slabs of a specified size, which is
+   * also the largest block that I can allocate.
+   * @param slabSize The number of bytes in each slab.
+   * @exception IllegalArgumentException If the slab size is less than 1024 bytes.
+   */
+  public SlabAllocator( int slabSize )
+    {
+    if ( slabSize < 1024 )
+      throw new IllegalArgumentException( "slab size must be at least 1024 bytes" );
+
+    this.slabSize = slabSize;
+    top = slabSize;
+    }
+
+  /**
+   * Return the number of bytes in each of my slabs.
+   */
+  public int getSlabSize()
+    {
+    return slabSize;
+    }
+
+  /**
+   * Return the number of bytes in the blocks that are in use.
+   */
+  public synchronized long allocated()
+    {
+    return allocated;
+    }
+
+  /**
+   * Return the number of bytes that I have reserved from the operating system.
+   */
+  public synchronized long reserved()
+    {
+    return (long)slabCount * slabSize;
+    }
+
+  /**
+   * Return the number of bytes in a block that holds at least a given number of bytes.
+   * @param length The number of bytes required.
+   */
+  public static int blockSize( int length )
+    {
+    return 1 << sizeClass( length );
+    }
+
+  /**
+   * Allocate a block that holds at least a given number of bytes and return its address.
+   * @param length The number of bytes required.
+   * @exception IllegalArgumentException If the block would be larger than a slab.
+   */
+  public synchronized long allocate( int length )
+    {
+    int sizeClass = sizeClass( length );
+    int size = 1 << sizeClass;
+
+    if ( size > slabSize || size <= 0 )
+      throw new IllegalArgumentException( "block of " + length + " bytes is larger than a slab" );
+
+    long address = freeLists[ sizeClass ];
+
+    if ( address != 0 )
+      {
+      freeLists[ sizeClass ] = slab( address ).getLong( offset( address ) );
+      }
+    else
+      {
+      if ( top + size > slabSize )
+        {
+        release( top );
+        addSlab();
+        }
+
+      address = address( slabCount - 1, top );
+      top += size;
+      }
+
+    allocated += size;
+    return address;
+    }
+
+  /**
+   * Return a block to my free lists.
+   * @param address The address of the block.
+   * @param length The number of bytes that the block was allocated for.
+   */
+  public synchronized void free( long address, int length )
+    {
+    int sizeClass = sizeClass( length );
+    slab( address ).putLong( offset( address ), freeLists[ sizeClass ] );
+    freeLists[ sizeClass ] = address;
+    allocated -= 1 << sizeClass;
+    }
+
+  /**
+   * Release all of my slabs.
+   */
+  public synchronized void clear()
+    {
+    slabs = new ByteBuffer[ 4 ];
+    slabCount = 0;
+    top = slabSize;
+    freeLists = new long[ 32 ];
+    allocated = 0;
+    }
+
+  /**
+   * Return the slab that holds the block at an address. The slab is shared, so it
+   * should only be accessed with the absolute get and put methods or through a
+   * duplicate.
+   * @param address The address of the block.
+   */
+  public final ByteBuffer slab( long address )
+    {
+    return slabs[ (int)( address >>> 32 ) - 1 ];
+    }
+
+  /**
+   * Return the offset within its slab of the block at an address.
+   * @param address The address of the block.
+   */
+  public static int offset( long address )
+    {
+    return (int)address;
+    }
+
+  static long address( int slab, int offset )
+    {
+    return ( (long)( slab + 1 ) << 32 ) | offset;
+    }
+
+  static int sizeClass( int length )
+    {
+    int sizeClass = MIN_BLOCK_SHIFT;
+
+    while ( sizeClass < 31 && ( 1 << sizeClass ) < length )
+      ++sizeClass;
+
+    return sizeClass;
+    }
+
+  /**
+   * Put the unused tail of the last slab on the free lists, in the largest
+   * blocks that fit, before a new slab is started.
+   */
+  private void release( int offset )
+    {
+    for ( int sizeClass = 30; sizeClass >= MIN_BLOCK_SHIFT && slabCount > 0; sizeClass-- )
+      while ( offset + ( 1 << sizeClass ) <= slabSize )
+        {
+        long address = address( slabCount - 1, offset );
+        slab( address ).putLong( offset, freeLists[ sizeClass ] );
+        freeLists[ sizeClass ] = address;
+        offset += 1 << sizeClass;
+        }
+    }
+
+  private void addSlab()
+    {
+    if ( slabCount == slabs.length )
+      {
+      ByteBuffer[] tmp = new ByteBuffer[ slabCount * 2 ];
+      System.arraycopy( slabs, 0, tmp, 0, slabCount );
+      slabs = tmp;
+      }
+
+    slabs[ slabCount++ ] = ByteBuffer.allocateDirect( slabSize );
+    top = 0;
+    }
+  }
@@ -0,0 +1,441 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+import java.util.Enumeration;
+
+/**
+ * A SnapshotHashMap is a mutable associative container whose contents are held in
+ * a PersistentHashMap. Keys are matched by default using a BinaryPredicate that
+ * uses equals() for comparisons, and duplicate keys are not allowed.
+ * <p>
+ * Every change builds a new version of the PersistentHashMap, which shares most of
+ * its trie with the previous one, and publishes it as my current version. Changes
+ * are serialized on my monitor, but operations that only read the map, such as
+ * get(), count() and iteration, never lock at all: each of them works on the
+ * version that was current when it started. snapshot() returns the current version
+ * in constant time, and it remains a consistent view of my contents no matter how
+ * I change afterwards. Several changes can be published at once with publish().
+ * <p>
+ * Insertion does not invalidate iterators.
+ * <p>
+ * Removal does not invalidate iterators.
+ * <p>
+ * @see PersistentHashMap
+ * @see PersistentHashMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class SnapshotHashMap extends Map
+  {
+  volatile PersistentHashMap current;
+
+  /**
+   * Construct myself to be an empty SnapshotHashMap that compares keys using equals().
+   */
+  public SnapshotHashMap()
+    {
+    this( new PersistentHashMap() );
+    }
+
+  /**
+   * Construct myself to be an empty SnapshotHashMap that compares keys using the
+   * specified binary predicate.
+   * @param comparator The predicate for comparing keys.
+   */
+  public SnapshotHashMap( BinaryPredicate comparator )
+    {
+    this( new PersistentHashMap( comparator ) );
+    }
+
+  /**
+   * Construct myself to hold the contents of a PersistentHashMap.
+   * @param map The version that becomes my current version.
+   */
+  public SnapshotHashMap( PersistentHashMap map )
+    {
+    current = map;
+    }
+
+  /**
+   * Construct myself to be a shallow copy of an existing SnapshotHashMap. This
+   * takes constant time.
+   * @param map The SnapshotHashMap to copy.
+   */
+  public SnapshotHashMap( SnapshotHashMap map )
+    {
+    this( map.current );
+    }
+
+  /**
+   * Return my current version, which never changes.
+   */
+  public PersistentHashMap snapshot()
+    {
+    return current;
+    }
+
+  /**
+   * Make a version my current version if my current version is still the expected
+   * one, and return true if it was published. A version built from a snapshot using
+   * with() and without() can be published this way so that all of its changes
+   * become visible at once.
+   * @param expected The version that must still be current.
+   * @param map The new version.
+   * @exception IllegalArgumentException If the new version uses a different comparator.
+   */
+  public synchronized boolean publish( PersistentHashMap expected, PersistentHashMap map )
+    {
+    if ( map.comparator != current.comparator )
+      throw new IllegalArgumentException( "PersistentHashMap has a different comparator" );
+
+    if ( current != expected )
+      return false;
+
+    current = map;
+    return true;
+    }
+
+  /**
+   * Return my comparator.
+   */
+  public BinaryPredicate getComparator()
+    {
+    return current.comparator;
+    }
+
+  /**
+   * Return a shallow copy of myself.
+   */
+  public Object clone()
+    {
+    return new SnapshotHashMap( this );
+    }
+
+  /**
+   * Become a shallow copy of an existing SnapshotHashMap. This takes constant time.
+   * @param map The SnapshotHashMap that I shall become a shallow copy of.
+   */
+  public synchronized void copy( SnapshotHashMap map )
+    {
+    current = map.current;
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return Algos.Printing.toString( this, "SnapshotHashMap" );
+    }
+
+  /**
+   * Return an Enumeration to my values.
+   */
+  public Enumeration elements()
+    {
+    return current.begin( this, PersistentHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately afer my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at the first pair of my current version.
+   */
+  public PersistentHashMapIterator begin()
+    {
+    return current.begin( this, PersistentHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public PersistentHashMapIterator end()
+    {
+    return new PersistentHashMapIterator( this, PersistentHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return true if I contain no entries.
+   */
+  public boolean isEmpty()
+    {
+    return current.isEmpty();
+    }
+
+  /**
+   * Return the number of entries that I contain.
+   */
+  public int size()
+    {
+    return current.size();
+    }
+
+  /**
+   * Return the maximum number of entries that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Return true if I'm equal to another object.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof SnapshotHashMap && equals( (SnapshotHashMap)object );
+    }
+
+  /**
+   * Return true if the current versions of myself and another SnapshotHashMap
+   * contain exactly the same key/value pairs. Use equals() to compare values.
+   * @param map The SnapshotHashMap to compare myself against.
+   */
+  public boolean equals( SnapshotHashMap map )
+    {
+    return current.equals( map.current );
+    }
+
+  /**
+   * Return my hash code for support of hashing containers
+   */
+  public int hashCode()
+    {
+    return current.hashCode();
+    }
+
+  /**
+   * Swap my contents with another SnapshotHashMap.
+   * @param map The SnapshotHashMap that I will swap my contents with.
+   */
+  public synchronized void swap( SnapshotHashMap map )
+    {
+    synchronized( map )
+      {
+      PersistentHashMap tmp = current;
+      current = map.current;
+      map.current = tmp;
+      }
+    }
+
+  /**
+   * Remove all of my elements.
+   */
+  public synchronized void clear()
+    {
+    current = new PersistentHashMap( current.comparator );
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key.
+   * @param key The key of the pair to be removed.
+   * @return The value removed or null if not changed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    PersistentHashMap.Change change = new PersistentHashMap.Change( true );
+    current = current.without( key, change );
+    return change.previous;
+    }
+
+  /**
+   * Remove the key/value pair that matches a particular key if the count is positive.
+   * @param key The key of the pair to be removed.
+   * @param count The maximum number of the pair(s) to remove.
+   * @return Return the number of pairs removed.
+   */
+  public int remove( Object key, int count )
+    {
+    return count > 0 && remove( key ) != null ? 1 : 0;
+    }
+
+  /**
+   * Remove the pair with the key at a particular position.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * PersistentHashMapIterator for this SnapshotHashMap object.
+   * @return Return the value that was removed, or null if the key has already
+   * been removed.
+   */
+  public Object remove( Enumeration e )
+    {
+    if ( ! (e instanceof PersistentHashMapIterator) )
+      throw new IllegalArgumentException( "Enumeration not a PersistentHashMapIterator" );
+
+    if ( ((PersistentHashMapIterator)e).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this SnapshotHashMap" );
+
+    return remove( ( (PersistentHashMapIterator)e ).key() );
+    }
+
+  /**
+   * Remove the pairs with the keys within a specified range. They are removed
+   * in a single new version.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException is the Enumeration isn't a
+   * PersistentHashMapIterator for this SnapshotHashMap object.
+   * @return Return the number of pairs removed.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( ( ! (first instanceof PersistentHashMapIterator) ) ||
+        ( ! (last instanceof PersistentHashMapIterator) ) )
+      throw new IllegalArgumentException( "Enumeration not a PersistentHashMapIterator" );
+
+    if ( ( ((PersistentHashMapIterator)first).myMap != this ) ||
+        ( ((PersistentHashMapIterator)last).myMap != this ) )
+      throw new IllegalArgumentException( "Enumeration not for this SnapshotHashMap" );
+
+    PersistentHashMapIterator begin = new PersistentHashMapIterator( (PersistentHashMapIterator)first );
+    PersistentHashMap map = current;
+    int count = 0;
+
+    while ( !begin.equals( last ) && begin.hasMoreElements() )
+      {
+      PersistentHashMap.Change change = new PersistentHashMap.Change( true );
+      map = map.without( begin.key(), change );
+
+      if ( change.found )
+        ++count;
+
+      begin.advance();
+      }
+
+    current = map;
+    return count;
+    }
+
+  /**
+   * Find a key/value pair based on its key and return its position in my current
+   * version. If the key is not found, return end().
+   * @param key The key to locate.
+   */
+  public PersistentHashMapIterator find( Object key )
+    {
+    return current.find( this, key );
+    }
+
+  /**
+   * Return the number of key/value pairs that match a particular key, which is 0 or 1.
+   * @param key The key to match against.
+   */
+  public int count( Object key )
+    {
+    return current.count( key );
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public int countValues( Object value )
+    {
+    return current.countValues( value );
+    }
+
+  /**
+   * Return the value associated with key, or null if the key does not exist.
+   * @param key The key to search against.
+   */
+  public Object get( Object key )
+    {
+    return current.get( key );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value are equal to null
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    PersistentHashMap.Change change = new PersistentHashMap.Change( true );
+    current = current.with( key, value, change );
+    return change.previous;
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !(object instanceof Pair) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair) object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    PersistentHashMap.Change change = new PersistentHashMap.Change( false );
+    current = current.with( key, value, change );
+    return change.previous;
+    }
+
+  /**
+   * Return an Enumeration of all my keys.
+   */
+  public Enumeration keys()
+    {
+    return current.begin( this, PersistentHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public Enumeration keys( Object value )
+    {
+    return current.keys( value );
+    }
+
+  /**
+   * Return an Enumeration of the value associated with a particular key, if any.
+   * @param key The key to match.
+   */
+  public Enumeration values( Object key )
+    {
+    return current.values( key );
+    }
+
+  static final long serialVersionUID = 7394106829253874051L;
+  }
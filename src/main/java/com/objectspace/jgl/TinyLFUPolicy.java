@@ -0,0 +1,227 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+/**
+ * A TinyLFUPolicy implements Window TinyLFU, which combines recency and frequency
+ * while keeping only a few bits of history per entry.
+ * <p>
+ * New entries enter a small admission window that is ordered by recency. When the
+ * window overflows, its least recent entry becomes a candidate for the main space,
+ * and is admitted only if it has been used more often than the entry that the main
+ * space would evict to make room for it; otherwise the candidate itself is evicted.
+ * The main space is a segmented LRU: entries are admitted to its probation segment
+ * and promoted to its protected segment when they are used again. How often keys
+ * have been used is estimated by a count-min sketch of 4-bit counters that are
+ * halved periodically, so that past popularity fades.
+ * <p>
+ * The window protects entries that are used in bursts, and the frequency filter
+ * keeps one-hit wonders from flushing the main space, which makes this policy
+ * resistant to both recency-biased and frequency-biased access patterns.
+ * <p>
+ * @see CacheMap
+ * @see EvictionPolicy
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class TinyLFUPolicy implements EvictionPolicy
+  {
+  static final float DEFAULT_WINDOW_RATIO = 0.01F;
+  static final float PROTECTED_RATIO = 0.8F;
+
+  float windowRatio; // fraction of the maximum weight that my window may hold.
+  long windowMaximum;
+  long mainMaximum;
+  long protectedMaximum;
+  transient CacheList window;
+  transient CacheList probation;
+  transient CacheList protectedList;
+  transient FrequencySketch sketch;
+
+  /**
+   * Construct myself to use a window of 1% of the maximum weight.
+   */
+  public TinyLFUPolicy()
+    {
+    this( DEFAULT_WINDOW_RATIO );
+    }
+
+  /**
+   * Construct myself to use a window of a given fraction of the maximum weight.
+   * A larger window favors recency over frequency.
+   * @param windowRatio The fraction of the maximum weight to devote to the window.
+   * @exception IllegalArgumentException If the ratio is not between 0 and 1.
+   */
+  public TinyLFUPolicy( float windowRatio )
+    {
+    if ( windowRatio <= 0.0F || windowRatio >= 1.0F )
+      throw new IllegalArgumentException( "window ratio must be between 0 and 1" );
+
+    this.windowRatio = windowRatio;
+    clear();
+    }
+
+  /**
+   * Return a new TinyLFUPolicy with my window ratio.
+   */
+  public EvictionPolicy emptyCopy()
+    {
+    return new TinyLFUPolicy( windowRatio );
+    }
+
+  /**
+   * Return the fraction of the maximum weight that is devoted to my window.
+   */
+  public float getWindowRatio()
+    {
+    return windowRatio;
+    }
+
+  /**
+   * Divide the maximum weight between my window and main space.
+   * @param maximumWeight The total weight that my cache may hold.
+   */
+  public void setMaximumWeight( long maximumWeight )
+    {
+    windowMaximum = Math.max( 1, (long)( maximumWeight * windowRatio ) );
+    mainMaximum = Math.max( 0, maximumWeight - windowMaximum );
+    protectedMaximum = (long)( mainMaximum * PROTECTED_RATIO );
+    }
+
+  /**
+   * Count a use of a new entry and place it at the end of my window. While my main
+   * space has room, entries that overflow the window move to probation directly.
+   * @param entry The new entry.
+   */
+  public void added( CacheEntry entry )
+    {
+    sketch.increment( entry.hash );
+    window.addLast( entry );
+    sketch.ensureCapacity( window.size + probation.size + protectedList.size );
+
+    while ( window.weight > windowMaximum && probation.weight + protectedList.weight + window.first().weight <= mainMaximum )
+      admit( window.first() );
+    }
+
+  /**
+   * Count a use of an entry and move it to the end of its segment, promoting it
+   * from probation to protected.
+   * @param entry The entry.
+   */
+  public void accessed( CacheEntry entry )
+    {
+    sketch.increment( entry.hash );
+
+    if ( entry.list == probation )
+      {
+      probation.remove( entry );
+      protectedList.addLast( entry );
+
+      // Demote the least recent protected entries to make room.
+      while ( protectedList.weight > protectedMaximum && protectedList.size > 1 )
+        {
+        CacheEntry demoted = protectedList.first();
+        protectedList.remove( demoted );
+        probation.addLast( demoted );
+        }
+      }
+    else
+      {
+      entry.list.moveToLast( entry );
+      }
+    }
+
+  /**
+   * Account for the new weight of an entry and count a use of it.
+   * @param entry The entry.
+   * @param previousWeight The weight of the entry before the change.
+   */
+  public void updated( CacheEntry entry, int previousWeight )
+    {
+    entry.list.reweigh( entry, previousWeight );
+    accessed( entry );
+    }
+
+  /**
+   * Unlink an entry from its segment.
+   * @param entry The entry.
+   */
+  public void removed( CacheEntry entry )
+    {
+    entry.list.remove( entry );
+    }
+
+  /**
+   * Return the entry to evict. While my window is too heavy, its least recent
+   * entry competes with the victim of my main space and the loser is returned;
+   * a candidate that wins, or that fits without a contest, moves to probation.
+   */
+  public CacheEntry victim()
+    {
+    while ( window.weight > windowMaximum )
+      {
+      CacheEntry candidate = window.first();
+      CacheEntry mainVictim = mainVictim();
+
+      if ( mainVictim == null || probation.weight + protectedList.weight + candidate.weight <= mainMaximum )
+        {
+        admit( candidate );
+        }
+      else if ( sketch.frequency( candidate.hash ) > sketch.frequency( mainVictim.hash ) )
+        {
+        admit( candidate );
+        return mainVictim;
+        }
+      else
+        {
+        return candidate;
+        }
+      }
+
+    CacheEntry mainVictim = mainVictim();
+    return mainVictim == null ? window.first() : mainVictim;
+    }
+
+  /**
+   * Forget all of my entries and their frequencies.
+   */
+  public void clear()
+    {
+    window = new CacheList();
+    probation = new CacheList();
+    protectedList = new CacheList();
+    sketch = new FrequencySketch();
+    }
+
+  /**
+   * Return the estimated number of recent uses of a hash code, from 0 to 15.
+   * @param hash The hash code of a key.
+   */
+  public int frequency( int hash )
+    {
+    return sketch.frequency( hash );
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public String toString()
+    {
+    return "TinyLFUPolicy( window=" + window.size + ", probation=" + probation.size + ", protected=" + protectedList.size + " )";
+    }
+
+  private CacheEntry mainVictim()
+    {
+    CacheEntry result = probation.first();
+    return result == null ? protectedList.first() : result;
+    }
+
+  private void admit( CacheEntry candidate )
+    {
+    window.remove( candidate );
+    probation.addLast( candidate );
+    }
+
+  static final long serialVersionUID = 8802315793710648629L;
+  }
@@ -12,6 +12,9 @@ import java.io.IOException;
  * Tree is a red-black tree structure used as the underlying data structure by all
  * all associative containers.
  * <p>
+ * Every node also records the number of nodes in its subtree, which lets me find
+ * the node at a given index and the index of a given node in O( log N ).
+ * <p>
  * @version 3.1.0
  * @author ObjectSpace, Inc.
  */
@@ -27,6 +30,8 @@ final class Tree implements Serializable
   BinaryPredicate myComparator;
   Container myContainer;
   TreeNode myHeader = new TreeNode(); // Note: myHeader == end, myHeader.left == begin
+  BloomFilter myFilter; // summarizes the hash codes of my keys, or null.
+  Hasher myHasher; // hashes my keys for my filter instead of hashCode(), or null.
 
   Tree( boolean isMap, boolean always, Container container )
     {
@@ -148,16 +153,25 @@ final class Tree implements Serializable
     myHeader.right = myHeader;
     myHeader.left = myHeader;
     size = 0;
+
+    if ( myFilter != null )
+      myFilter.clear();
     }
 
   Pair remove( Object key )
     {
+    if ( excludes( key ) )
+      return new Pair( null, new Integer( 0 ) );
+
     Pair range = equalRange( key );
     return remove( (TreeNode)range.first, (TreeNode)range.second, size );
     }
 
   Pair remove( Object key, int maximum )
     {
+    if ( excludes( key ) )
+      return new Pair( null, new Integer( 0 ) );
+
     Pair range = equalRange( key );
     return remove( (TreeNode)range.first, (TreeNode)range.second, maximum );
     }
@@ -200,14 +214,31 @@ final class Tree implements Serializable
 
   TreeNode find( Object key )
     {
+    if ( excludes( key ) )
+      return myHeader;
+
     TreeNode j = lowerBound( key );
-    return ( j == myHeader || compare( key, key( j.object ) ) ) ? myHeader : j;
+
+    if ( j == myHeader || compare( key, key( j.object ) ) )
+      {
+      missed();
+      return myHeader;
+      }
+
+    return j;
     }
 
   int count( Object key )
     {
+    if ( excludes( key ) )
+      return 0;
+
     Pair range = equalRange( key );
-    return distance( (TreeNode)range.first, (TreeNode)range.second, NIL );
+
+    if ( range.first == range.second )
+      missed();
+
+    return distance( (TreeNode)range.first, (TreeNode)range.second );
     }
 
   TreeNode lowerBound( Object key )
@@ -318,6 +349,31 @@ final class Tree implements Serializable
       return new InsertResult( j, false );
     }
 
+  /**
+   * Insert a value as if by insertAux(), using the node at which the previous value
+   * of a sorted run was inserted or found as a hint. If the value belongs right after
+   * that node it is linked in without searching from the root, otherwise the tree is
+   * searched as usual. Passing myHeader as the hint always searches.
+   */
+  InsertResult insertAfter( TreeNode previous, Object value, boolean shortCircut )
+    {
+    if ( previous == myHeader )
+      return insertAux( value, shortCircut );
+
+    TreeNode next = previous == myHeader.right ? myHeader : increment( previous, NIL );
+
+    if ( compare( key( value ), key( previous.object ) ) || ( next != myHeader && !compare( key( value ), key( next.object ) ) ) )
+      return insertAux( value, shortCircut );
+
+    if ( !( myInsertAlways && shortCircut ) && !compare( key( previous.object ), key( value ) ) )
+      return new InsertResult( previous, false );
+
+    if ( previous.right == NIL )
+      return new InsertResult( insert( NIL, previous, value ), true );
+    else
+      return new InsertResult( insert( next, next, value ), true );
+    }
+
   InsertResult insert( Object value )
     {
     return insertAux( value, true );
@@ -330,6 +386,9 @@ final class Tree implements Serializable
 
   Object get( Object key )
     {
+    if ( excludes( key ) )
+      return null;
+
     TreeNode y = myHeader;
     TreeNode x = myHeader.parent;
     boolean comp = true;
@@ -345,12 +404,18 @@ final class Tree implements Serializable
 
     if ( comp )
       if ( j == myHeader.left )
+        {
+        missed();
         return null;
+        }
       else
         j = decrement( j, NIL );
 
     if ( compare( key( j.object ), key ) )
+      {
+      missed();
       return null;
+      }
     else
       return ( (Pair)j.object ).second;
     }
@@ -361,20 +426,141 @@ final class Tree implements Serializable
     TreeNode z = new TreeNode( value );
     boolean insertToLeft = ( y == myHeader || x != NIL || compare( key( value ), key( y.object ) ) );
     insert( insertToLeft, x, y, z );
+
+    if ( myFilter != null )
+      {
+      myFilter.add( hash( key( value ) ) );
+
+      if ( myFilter.isStale( size ) )
+        rebuildFilter();
+      }
+
     return z;
     }
 
-  static int distance( TreeNode first, TreeNode last, TreeNode NIL )
+  /**
+   * Return the hash code that my filter uses for a key.
+   */
+  int hash( Object key )
+    {
+    if ( myHasher != null )
+      return myHasher.hash( key );
+
+    return key == null ? 0 : key.hashCode();
+    }
+
+  /**
+   * Return true if my filter shows that I do not contain a key.
+   */
+  boolean excludes( Object key )
+    {
+    return myFilter != null && !myFilter.mightContain( hash( key ) );
+    }
+
+  /**
+   * Record that a search that my filter let through found nothing.
+   */
+  void missed()
+    {
+    if ( myFilter != null )
+      myFilter.falsePositive();
+    }
+
+  void enableFilter( Hasher hasher, double falsePositiveRate )
+    {
+    myFilter = new BloomFilter( 2 * size, falsePositiveRate );
+    myHasher = hasher;
+    rebuildFilter();
+    }
+
+  void disableFilter()
+    {
+    myFilter = null;
+    myHasher = null;
+    }
+
+  /**
+   * Size my filter with room for me to double and refill it with the hash codes of my keys.
+   */
+  void rebuildFilter()
+    {
+    myFilter.reset( 2 * size );
+
+    for ( TreeNode node = myHeader.left; node != myHeader; node = increment( node, NIL ) )
+      myFilter.add( hash( key( node.object ) ) );
+    }
+
+  /**
+   * Return the number of nodes from one node up to but not including another.
+   */
+  int distance( TreeNode first, TreeNode last )
     {
-    int n = 0;
+    return indexOf( last ) - indexOf( first );
+    }
+
+  /**
+   * Return the number of nodes before a node, or my size if the node is myHeader.
+   */
+  int indexOf( TreeNode node )
+    {
+    if ( node == myHeader )
+      return size;
 
-    while ( first != last )
+    int index = node.left.size;
+
+    for ( ; node != myHeader.parent; node = node.parent )
+      if ( node == node.parent.right )
+        index += node.parent.left.size + 1;
+
+    return index;
+    }
+
+  /**
+   * Return the node at a given index.
+   * @exception IndexOutOfBoundsException If the index is invalid.
+   */
+  TreeNode at( int index )
+    {
+    if ( index < 0 || index >= size )
+      throw new IndexOutOfBoundsException
+        (
+        "Attempt to access index " + index + "; valid range is 0.." + ( size - 1 )
+        );
+
+    TreeNode node = myHeader.parent;
+
+    while ( node != NIL )
       {
-      first = increment( first, NIL );
-      ++n;
+      int left = node.left.size;
+
+      if ( index < left )
+        {
+        node = node.left;
+        }
+      else if ( index > left )
+        {
+        index -= left + 1;
+        node = node.right;
+        }
+      else
+        {
+        return node;
+        }
       }
 
-    return n;
+    return node;
+    }
+
+  /**
+   * Recompute the subtree size of a node and all of its descendants.
+   */
+  int resize( TreeNode node )
+    {
+    if ( node == NIL )
+      return 0;
+
+    node.size = resize( node.left ) + resize( node.right ) + 1;
+    return node.size;
     }
 
   TreeNode copyTree( TreeNode oldNode, TreeNode parent, TreeNode otherNIL )
@@ -384,6 +570,7 @@ final class Tree implements Serializable
 
     TreeNode newNode = new TreeNode( oldNode.object );
     newNode.color = oldNode.color;
+    newNode.size = oldNode.size;
     newNode.left = copyTree( oldNode.left, newNode, otherNIL );
     newNode.right = copyTree( oldNode.right, newNode, otherNIL );
     newNode.parent = parent;
@@ -396,6 +583,8 @@ final class Tree implements Serializable
     myHeader.left = minimum( myHeader.parent );
     myHeader.right = maximum( myHeader.parent );
     size = tree.size;
+    myHasher = tree.myHasher;
+    myFilter = tree.myFilter == null ? null : new BloomFilter( tree.myFilter );
     }
 
   Array keys()
@@ -540,6 +729,8 @@ final class Tree implements Serializable
 
     y.left = x;
     x.parent = y;
+    y.size = x.size;
+    x.size = x.left.size + x.right.size + 1;
     }
 
   void rotateRight( TreeNode x )
@@ -561,6 +752,8 @@ final class Tree implements Serializable
 
     y.right = x;
     x.parent = y;
+    y.size = x.size;
+    x.size = x.left.size + x.right.size + 1;
     }
 
   void insert( boolean insertToLeft, TreeNode x, TreeNode y, TreeNode z )
@@ -590,6 +783,11 @@ final class Tree implements Serializable
     z.parent = y;
     z.left = NIL;
     z.right = NIL;
+    z.size = 1;
+
+    for ( TreeNode node = y; node != myHeader; node = node.parent )
+      ++node.size;
+
     x = z;
     x.color = RED;
 
@@ -669,6 +867,10 @@ final class Tree implements Serializable
       x = y.right;
       }
 
+    // y is the node that leaves its place in the tree.
+    for ( TreeNode node = y.parent; node != myHeader; node = node.parent )
+      --node.size;
+
     if ( y != z )
       {
       z.left.parent = y;
@@ -694,6 +896,7 @@ final class Tree implements Serializable
         z.parent.right = y;
 
       y.parent = z.parent;
+      y.size = z.size;
 
       // Swap color of y and z.
       int tmp = y.color;
@@ -802,6 +1005,10 @@ final class Tree implements Serializable
       }
 
     --size;
+
+    if ( myFilter != null && myFilter.isStale( size ) )
+      rebuildFilter();
+
     return y;
     }
 
@@ -809,6 +1016,13 @@ final class Tree implements Serializable
     {
     stream.defaultReadObject();
 
+    // trees written before nodes had sizes have none
+    resize( myHeader.parent );
+
+    // hash codes need not survive serialization
+    if ( myFilter != null )
+      rebuildFilter();
+
     // ordering can't be off if we don't have multiple objects
     if ( size < 2 )
       return;
@@ -839,6 +1053,7 @@ final class Tree implements Serializable
   final class TreeNode implements Serializable
     {
     public int color = Tree.BLACK;
+    public int size; // # nodes in my subtree, 0 for NIL and myHeader.
     public TreeNode parent;
     public TreeNode left;
     public TreeNode right;
@@ -852,6 +1067,8 @@ final class Tree implements Serializable
       {
       object = value;
       }
+
+    static final long serialVersionUID = -8520867771692427445L;
     }
 
   final class InsertResult
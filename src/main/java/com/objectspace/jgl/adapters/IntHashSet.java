@@ -0,0 +1,388 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.adapters;
+
+import com.objectspace.jgl.*;
+
+/**
+ * IntHashSet is a hash set of native ints. Elements are kept in a flat native
+ * array, so the native add(), contains() and remove() methods neither box their
+ * arguments nor allocate per element, and a whole IntArray, IntBuffer or native
+ * array can be added at once. Used as a Set, elements are Integer objects.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see PrimitiveHashSet
+ * @see PrimitiveHashSetIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class IntHashSet extends PrimitiveHashSet
+  {
+  int elements[]; // 0 marks a free slot.
+
+  /**
+   * Construct myself to be an empty IntHashSet.
+   */
+  public IntHashSet()
+    {
+    this( DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IntHashSet with room for a specified number of elements.
+   * @param capacity The number of elements to make room for.
+   * @exception IllegalArgumentException If the capacity is negative.
+   */
+  public IntHashSet( int capacity )
+    {
+    this( capacity, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IntHashSet with room for a specified number of
+   * elements and a specified maximum load ratio.
+   * @param capacity The number of elements to make room for.
+   * @param loadRatio The maximum load ratio, which must be between 0 and 1.
+   * @exception IllegalArgumentException If the capacity is negative or the load
+   * ratio is not between 0 and 1.
+   */
+  public IntHashSet( int capacity, float loadRatio )
+    {
+    super( capacity, loadRatio );
+    }
+
+  /**
+   * Construct myself to be a copy of an existing IntHashSet.
+   * @param set The IntHashSet to copy.
+   */
+  public IntHashSet( IntHashSet set )
+    {
+    super( 0, set.ratio );
+    copy( set );
+    }
+
+  /**
+   * Return a copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new IntHashSet( this );
+    }
+
+  /**
+   * Become a copy of an existing IntHashSet.
+   * @param set The IntHashSet that I shall become a copy of.
+   */
+  public synchronized void copy( IntHashSet set )
+    {
+    synchronized( set )
+      {
+      size = set.size;
+      mask = set.mask;
+      hasZero = set.hasZero;
+      limit = set.limit;
+      ratio = set.ratio;
+      elements = (int[])set.elements.clone();
+      }
+    }
+
+  /**
+   * Swap my contents with another IntHashSet.
+   * @param set The IntHashSet that I will swap my contents with.
+   */
+  public synchronized void swap( IntHashSet set )
+    {
+    synchronized( set )
+      {
+      int tmpSize = size;
+      size = set.size;
+      set.size = tmpSize;
+
+      int tmpMask = mask;
+      mask = set.mask;
+      set.mask = tmpMask;
+
+      boolean tmpZero = hasZero;
+      hasZero = set.hasZero;
+      set.hasZero = tmpZero;
+
+      int tmpLimit = limit;
+      limit = set.limit;
+      set.limit = tmpLimit;
+
+      float tmpRatio = ratio;
+      ratio = set.ratio;
+      set.ratio = tmpRatio;
+
+      int[] tmpElements = elements;
+      elements = set.elements;
+      set.elements = tmpElements;
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algorithms.Printing.toString( this, "IntHashSet" );
+    }
+
+  /**
+   * Return true if object is a IntHashSet with the same elements as me.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof IntHashSet && equals( (IntHashSet)object );
+    }
+
+  /**
+   * Return true if a IntHashSet has the same elements as me.
+   * @param set The IntHashSet to compare myself against.
+   */
+  public synchronized boolean equals( IntHashSet set )
+    {
+    synchronized( set )
+      {
+      if ( size != set.size || hasZero != set.hasZero )
+        return false;
+
+      for ( int slot = 0; slot <= mask; slot++ )
+        if ( elements[ slot ] != 0 && set.find( elements[ slot ] ) < 0 )
+          return false;
+
+      return true;
+      }
+    }
+
+  /**
+   * Return my hash code, which is the same as that of a HashSet with equal elements.
+   */
+  public synchronized int hashCode()
+    {
+    int h = 0;
+
+    for ( int slot = 0; slot <= mask; slot++ )
+      h ^= elements[ slot ];
+
+    return h;
+    }
+
+  /**
+   * Return a native array of my elements.
+   */
+  public synchronized int[] get()
+    {
+    int[] result = new int[ size ];
+    int n = 0;
+
+    for ( int slot = 0; slot <= mask; slot++ )
+      if ( elements[ slot ] != 0 )
+        result[ n++ ] = elements[ slot ];
+
+    return result; // the element 0, if present, is already in place.
+    }
+
+  /**
+   * Return true if a value is one of my elements.
+   * @param value The value.
+   */
+  public synchronized boolean contains( int value )
+    {
+    return find( value ) >= 0;
+    }
+
+  /**
+   * Add a value if it is not already one of my elements, and return true if it
+   * was added.
+   * @param value The value to add.
+   */
+  public synchronized boolean add( int value )
+    {
+    return addAux( value );
+    }
+
+  /**
+   * Remove a value and return true if it was one of my elements.
+   * @param value The value to remove.
+   */
+  public synchronized boolean remove( int value )
+    {
+    int slot = find( value );
+
+    if ( slot < 0 )
+      return false;
+
+    removeAt( slot );
+    return true;
+    }
+
+  /**
+   * Add every value of a native array that is not already one of my elements.
+   * @param values The values to add.
+   */
+  public synchronized void addAll( int[] values )
+    {
+    addAll( values, values.length );
+    }
+
+  /**
+   * Add every value of an IntArray that is not already one of my elements.
+   * @param array The IntArray.
+   */
+  public synchronized void addAll( IntArray array )
+    {
+    addAll( array.array, array.array.length );
+    }
+
+  /**
+   * Add every value of an IntBuffer that is not already one of my elements.
+   * @param buffer The IntBuffer.
+   */
+  public synchronized void addAll( IntBuffer buffer )
+    {
+    synchronized( buffer )
+      {
+      addAll( buffer.storage, buffer.length );
+      }
+    }
+
+  private void addAll( int[] values, int length )
+    {
+    for ( int i = 0; i < length; i++ )
+      addAux( values[ i ] );
+    }
+
+  /**
+   * Return the slot of a value, or -1 if it is not one of my elements.
+   */
+  int find( int value )
+    {
+    if ( value == 0 )
+      return hasZero ? mask + 1 : -1;
+
+    int[] elements = this.elements;
+
+    for ( int slot = PrimitiveHashMap.hash( value ) & mask; elements[ slot ] != 0; slot = ( slot + 1 ) & mask )
+      if ( elements[ slot ] == value )
+        return slot;
+
+    return -1;
+    }
+
+  /**
+   * Add a value if it is not already one of my elements, and return true if it
+   * was added.
+   */
+  boolean addAux( int value )
+    {
+    if ( value == 0 )
+      {
+      if ( hasZero )
+        return false;
+
+      hasZero = true;
+      ++size;
+      return true;
+      }
+
+    int[] elements = this.elements;
+    int slot = PrimitiveHashMap.hash( value ) & mask;
+
+    for ( ; elements[ slot ] != 0; slot = ( slot + 1 ) & mask )
+      if ( elements[ slot ] == value )
+        return false;
+
+    if ( full() )
+      {
+      rehash( ( mask + 1 ) << 1 );
+      return addAux( value );
+      }
+
+    elements[ slot ] = value;
+    ++size;
+    return true;
+    }
+
+  boolean occupied( int slot )
+    {
+    return slot <= mask ? elements[ slot ] != 0 : hasZero;
+    }
+
+  Object elementAt( int slot )
+    {
+    return new Integer( slot <= mask ? elements[ slot ] : 0 );
+    }
+
+  int slotOf( Object object )
+    {
+    return object instanceof Integer ? find( ( (Integer)object ).intValue() ) : -1;
+    }
+
+  Object addAux( Object object )
+    {
+    if ( !( object instanceof Integer ) )
+      throw new IllegalArgumentException( "object is not an Integer" );
+
+    return addAux( ( (Integer)object ).intValue() ) ? null : object;
+    }
+
+  void removeAt( int slot )
+    {
+    --size;
+
+    if ( slot > mask )
+      {
+      hasZero = false;
+      return;
+      }
+
+    int[] elements = this.elements;
+    int free = slot;
+
+    // Move back each later element of the cluster whose home slot does not lie
+    // cyclically after the free slot, so that every probe still finds it.
+    for ( int i = ( free + 1 ) & mask; elements[ i ] != 0; i = ( i + 1 ) & mask )
+      {
+      int home = PrimitiveHashMap.hash( elements[ i ] ) & mask;
+
+      if ( i > free ? home <= free || home > i : home <= free && home > i )
+        {
+        elements[ free ] = elements[ i ];
+        free = i;
+        }
+      }
+
+    elements[ free ] = 0;
+    }
+
+  void allocate( int capacity )
+    {
+    super.allocate( capacity );
+    elements = new int[ capacity ];
+    }
+
+  void rehash( int capacity )
+    {
+    int[] oldElements = elements;
+    allocate( capacity );
+
+    for ( int i = 0; i < oldElements.length; i++ )
+      if ( oldElements[ i ] != 0 )
+        {
+        int slot = PrimitiveHashMap.hash( oldElements[ i ] ) & mask;
+
+        while ( elements[ slot ] != 0 )
+          slot = ( slot + 1 ) & mask;
+
+        elements[ slot ] = oldElements[ i ];
+        }
+    }
+
+  static final long serialVersionUID = -7725183369012440861L;
+  }
@@ -0,0 +1,415 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.adapters;
+
+import com.objectspace.jgl.*;
+
+/**
+ * IntObjectHashMap is a hash map from native int keys to objects. Keys and values
+ * are kept in flat native arrays, so the native get(), put() and remove()
+ * methods neither box their arguments nor allocate per pair. Used as a Map, keys
+ * are Integer objects.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see PrimitiveHashMap
+ * @see PrimitiveHashMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class IntObjectHashMap extends PrimitiveHashMap
+  {
+  int keys[]; // 0 marks a free slot; the key 0 itself is kept in keys[ mask + 1 ].
+  Object values[];
+
+  /**
+   * Construct myself to be an empty IntObjectHashMap.
+   */
+  public IntObjectHashMap()
+    {
+    this( DEFAULT_SIZE, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IntObjectHashMap with room for a specified number of pairs.
+   * @param capacity The number of pairs to make room for.
+   * @exception IllegalArgumentException If the capacity is negative.
+   */
+  public IntObjectHashMap( int capacity )
+    {
+    this( capacity, DEFAULT_RATIO );
+    }
+
+  /**
+   * Construct myself to be an empty IntObjectHashMap with room for a specified number of pairs
+   * and a specified maximum load ratio.
+   * @param capacity The number of pairs to make room for.
+   * @param loadRatio The maximum load ratio, which must be between 0 and 1.
+   * @exception IllegalArgumentException If the capacity is negative or the load
+   * ratio is not between 0 and 1.
+   */
+  public IntObjectHashMap( int capacity, float loadRatio )
+    {
+    super( capacity, loadRatio );
+    }
+
+  /**
+   * Construct myself to be a copy of an existing IntObjectHashMap.
+   * @param map The IntObjectHashMap to copy.
+   */
+  public IntObjectHashMap( IntObjectHashMap map )
+    {
+    super( 0, map.ratio );
+    copy( map );
+    }
+
+  /**
+   * Return a copy of myself.
+   */
+  public synchronized Object clone()
+    {
+    return new IntObjectHashMap( this );
+    }
+
+  /**
+   * Become a copy of an existing IntObjectHashMap.
+   * @param map The IntObjectHashMap that I shall become a copy of.
+   */
+  public synchronized void copy( IntObjectHashMap map )
+    {
+    synchronized( map )
+      {
+      size = map.size;
+      mask = map.mask;
+      hasZero = map.hasZero;
+      limit = map.limit;
+      ratio = map.ratio;
+      keys = (int[])map.keys.clone();
+      values = (Object[])map.values.clone();
+      }
+    }
+
+  /**
+   * Swap my contents with another IntObjectHashMap.
+   * @param map The IntObjectHashMap that I will swap my contents with.
+   */
+  public synchronized void swap( IntObjectHashMap map )
+    {
+    synchronized( map )
+      {
+      int tmpSize = size;
+      size = map.size;
+      map.size = tmpSize;
+
+      int tmpMask = mask;
+      mask = map.mask;
+      map.mask = tmpMask;
+
+      boolean tmpZero = hasZero;
+      hasZero = map.hasZero;
+      map.hasZero = tmpZero;
+
+      int tmpLimit = limit;
+      limit = map.limit;
+      map.limit = tmpLimit;
+
+      float tmpRatio = ratio;
+      ratio = map.ratio;
+      map.ratio = tmpRatio;
+
+      int[] tmpKeys = keys;
+      keys = map.keys;
+      map.keys = tmpKeys;
+
+      Object[] tmpValues = values;
+      values = map.values;
+      map.values = tmpValues;
+      }
+    }
+
+  /**
+   * Return a string that describes me.
+   */
+  public synchronized String toString()
+    {
+    return Algorithms.Printing.toString( this, "IntObjectHashMap" );
+    }
+
+  /**
+   * Return true if object is a IntObjectHashMap that contains the same pairs as me.
+   * @param object The object to compare myself against.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof IntObjectHashMap && equals( (IntObjectHashMap)object );
+    }
+
+  /**
+   * Return true if a IntObjectHashMap contains the same pairs as me.
+   * @param map The IntObjectHashMap to compare myself against.
+   */
+  public synchronized boolean equals( IntObjectHashMap map )
+    {
+    synchronized( map )
+      {
+      if ( size != map.size )
+        return false;
+
+      for ( int slot = next( 0 ); slot <= mask + 1; slot = next( slot + 1 ) )
+        {
+        int other = map.find( keys[ slot ] );
+
+        if ( other < 0 || !map.values[ other ].equals( values[ slot ] ) )
+          return false;
+        }
+
+      return true;
+      }
+    }
+
+  /**
+   * Return my hash code, which is the same as that of a HashMap with equal keys.
+   */
+  public synchronized int hashCode()
+    {
+    int h = 0;
+
+    for ( int slot = next( 0 ); slot <= mask + 1; slot = next( slot + 1 ) )
+      h ^= keys[ slot ];
+
+    return h;
+    }
+
+  /**
+   * Return true if a key exists.
+   * @param key The key.
+   */
+  public synchronized boolean containsKey( int key )
+    {
+    return find( key ) >= 0;
+    }
+
+  /**
+   * Return the value associated with a key, or null if the key does not exist.
+   * @param key The key.
+   */
+  public synchronized Object get( int key )
+    {
+    int slot = find( key );
+    return slot < 0 ? null : values[ slot ];
+    }
+
+  /**
+   * Associate a value with a key and return the value that was previously
+   * associated with it, or null if the key did not exist.
+   * @param key The key.
+   * @param value The value.
+   * @exception NullPointerException If the value is null.
+   */
+  public synchronized Object put( int key, Object value )
+    {
+    if ( value == null )
+      throw new NullPointerException();
+
+    int slot = insert( key );
+    Object previous = values[ slot ];
+    values[ slot ] = value;
+    return previous;
+    }
+
+  /**
+   * Remove the pair with a given key and return its value, or null if the key
+   * does not exist.
+   * @param key The key.
+   */
+  public synchronized Object remove( int key )
+    {
+    int slot = find( key );
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = values[ slot ];
+    removeAt( slot );
+    return value;
+    }
+
+  /**
+   * Return the slot of a key, or -1 if it does not exist.
+   */
+  int find( int key )
+    {
+    if ( key == 0 )
+      return hasZero ? mask + 1 : -1;
+
+    int[] keys = this.keys;
+
+    for ( int slot = hash( key ) & mask; keys[ slot ] != 0; slot = ( slot + 1 ) & mask )
+      if ( keys[ slot ] == key )
+        return slot;
+
+    return -1;
+    }
+
+  /**
+   * Return the slot of a key, storing the key in a free slot if it does not exist.
+   * A new pair has the value null.
+   */
+  int insert( int key )
+    {
+    if ( key == 0 )
+      {
+      if ( !hasZero )
+        {
+        hasZero = true;
+        ++size;
+        }
+
+      return mask + 1;
+      }
+
+    int[] keys = this.keys;
+    int slot = hash( key ) & mask;
+
+    for ( ; keys[ slot ] != 0; slot = ( slot + 1 ) & mask )
+      if ( keys[ slot ] == key )
+        return slot;
+
+    if ( full() )
+      {
+      rehash( ( mask + 1 ) << 1 );
+      return insert( key );
+      }
+
+    keys[ slot ] = key;
+    ++size;
+    return slot;
+    }
+
+  boolean occupied( int slot )
+    {
+    return slot <= mask ? keys[ slot ] != 0 : hasZero;
+    }
+
+  Object keyAt( int slot )
+    {
+    return new Integer( keys[ slot ] );
+    }
+
+  Object valueAt( int slot )
+    {
+    return values[ slot ];
+    }
+
+  void valueAt( int slot, Object value )
+    {
+    values[ slot ] = value( value );
+    }
+
+  int slotOf( Object key )
+    {
+    return key instanceof Integer ? find( ( (Integer)key ).intValue() ) : -1;
+    }
+
+  Object putAux( Object key, Object value, boolean replace )
+    {
+    Object v = value( value );
+    int before = size;
+    int slot = insert( key( key ) );
+
+    if ( size != before )
+      {
+      values[ slot ] = v;
+      return null;
+      }
+
+    Object previous = valueAt( slot );
+
+    if ( replace )
+      values[ slot ] = v;
+
+    return previous;
+    }
+
+  void removeAt( int slot )
+    {
+    --size;
+
+    if ( slot > mask )
+      {
+      hasZero = false;
+      values[ slot ] = null;
+      return;
+      }
+
+    int[] keys = this.keys;
+    Object[] values = this.values;
+    int free = slot;
+
+    // Move back each later pair of the cluster whose home slot does not lie
+    // cyclically after the free slot, so that every probe still finds it.
+    for ( int i = ( free + 1 ) & mask; keys[ i ] != 0; i = ( i + 1 ) & mask )
+      {
+      int home = hash( keys[ i ] ) & mask;
+
+      if ( i > free ? home <= free || home > i : home <= free && home > i )
+        {
+        keys[ free ] = keys[ i ];
+        values[ free ] = values[ i ];
+        free = i;
+        }
+      }
+
+    keys[ free ] = 0;
+    values[ free ] = null;
+    }
+
+  void allocate( int capacity )
+    {
+    super.allocate( capacity );
+    keys = new int[ capacity + 1 ];
+    values = new Object[ capacity + 1 ];
+    }
+
+  void rehash( int capacity )
+    {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    int oldMask = mask;
+    allocate( capacity );
+    values[ mask + 1 ] = oldValues[ oldMask + 1 ];
+
+    for ( int i = 0; i <= oldMask; i++ )
+      if ( oldKeys[ i ] != 0 )
+        {
+        int slot = hash( oldKeys[ i ] ) & mask;
+
+        while ( keys[ slot ] != 0 )
+          slot = ( slot + 1 ) & mask;
+
+        keys[ slot ] = oldKeys[ i ];
+        values[ slot ] = oldValues[ i ];
+        }
+    }
+
+  private static int key( Object key )
+    {
+    if ( !( key instanceof Integer ) )
+      throw new IllegalArgumentException( "key is not an Integer" );
+
+    return ( (Integer)key ).intValue();
+    }
+
+  private static Object value( Object value )
+    {
+    if ( value == null )
+      throw new NullPointerException();
+
+    return value;
+    }
+
+  static final long serialVersionUID = 8026373815064410223L;
+  }
@@ -0,0 +1,460 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.adapters;
+
+import com.objectspace.jgl.*;
+import java.util.Enumeration;
+
+/**
+ * PrimitiveHashMap is the abstract base of the hash maps whose keys are native
+ * ints or longs. Keys and values are stored in flat native arrays using open
+ * addressing with linear probing, so no node or wrapper object is allocated per
+ * pair and no boxing occurs when the native get() and put() methods of a subclass
+ * are used. The key 0, which marks a free slot, is kept in an extra slot after the
+ * table.
+ * <p>
+ * Every Map operation is also supported, using Integer or Long objects for keys and
+ * wrapper objects for native values, so that a PrimitiveHashMap can be used with
+ * the JGL iterators and algorithms. Duplicate keys are not allowed.
+ * <p>
+ * Removal shifts later pairs of a cluster back into the freed slot, so no deleted
+ * markers are left behind.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see PrimitiveHashMapIterator
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+abstract public class PrimitiveHashMap extends Map
+  {
+  static final int DEFAULT_SIZE = 16;
+  static final float DEFAULT_RATIO = 0.75F;
+
+  int size; // # pairs.
+  int mask; // # slots in the table - 1; the slot after the table holds the key 0.
+  boolean hasZero; // is there a pair whose key is 0?
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be empty with room for a specified number of pairs.
+   * @param capacity The number of pairs to make room for.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the capacity is negative or the load
+   * ratio is not between 0 and 1.
+   */
+  PrimitiveHashMap( int capacity, float loadRatio )
+    {
+    if ( capacity < 0 )
+      throw new IllegalArgumentException( "Attempt to create a map with a negative capacity" );
+
+    if ( !( loadRatio > 0 && loadRatio < 1 ) )
+      throw new IllegalArgumentException( "Load ratio must be between 0 and 1" );
+
+    ratio = loadRatio;
+    allocate( tableSize( capacity ) );
+    }
+
+  /**
+   * Return true if I contain no pairs.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of pairs that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of pairs that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Remove all of my pairs. My table keeps its current size.
+   */
+  public synchronized void clear()
+    {
+    size = 0;
+    hasZero = false;
+    allocate( mask + 1 );
+    }
+
+  /**
+   * Make room for a specified number of pairs, so that my table will not grow
+   * until I hold more than that many. This operation does not change the value
+   * returned by size().
+   * @param n The number of pairs to make room for.
+   * @exception IllegalArgumentException If the specified number is negative.
+   */
+  public synchronized void ensureCapacity( int n )
+    {
+    if ( n < 0 )
+      throw new IllegalArgumentException( "Attempt to reserve a negative size." );
+
+    if ( n > limit )
+      rehash( tableSize( n ) );
+    }
+
+  /**
+   * Reduce my table to the smallest one that can hold my pairs without growing.
+   * This operation does not change the value returned by size().
+   */
+  public synchronized void trimToSize()
+    {
+    int capacity = tableSize( size );
+
+    if ( capacity < mask + 1 )
+      rehash( capacity );
+    }
+
+  /**
+   * Return an Enumeration of my values.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin( PrimitiveHashMapIterator.VALUE );
+    }
+
+  /**
+   * Return an Enumeration of my keys.
+   */
+  public synchronized Enumeration keys()
+    {
+    return begin( PrimitiveHashMapIterator.KEY );
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first pair.
+   */
+  public synchronized PrimitiveHashMapIterator begin()
+    {
+    return begin( PrimitiveHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last pair.
+   */
+  public synchronized PrimitiveHashMapIterator end()
+    {
+    return new PrimitiveHashMapIterator( this, mask + 2, PrimitiveHashMapIterator.PAIR );
+    }
+
+  /**
+   * Return the value associated with a key, or null if the key does not exist.
+   * @param key The key, which should be a wrapper of my native key type.
+   */
+  public synchronized Object get( Object key )
+    {
+    int slot = slotOf( key );
+    return slot < 0 ? null : valueAt( slot );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise replace the value associated with the key and return the old value.
+   * @param key The key, a wrapper of my native key type.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   * @exception IllegalArgumentException If the key or value is of the wrong type.
+   */
+  public synchronized Object put( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    return putAux( key, value, true );
+    }
+
+  /**
+   * Assume that the specified object is a Pair whose first field is a key and whose
+   * second field is a value. If the key doesn't exist, associate the value with the
+   * key and return null, otherwise don't modify the map and return the current value
+   * associated with the key.
+   * @param object The pair to add.
+   * @exception IllegalArgumentException If the object is not a Pair, or its key or
+   * value is of the wrong type.
+   * @exception NullPointerException If the object is null or if the first
+   * or second items in the pair are null.
+   */
+  public Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    if ( !( object instanceof Pair ) )
+      throw new IllegalArgumentException( "object is not pair" );
+
+    Pair pair = (Pair)object;
+    return add( pair.first, pair.second );
+    }
+
+  /**
+   * If the key doesn't exist, associate the value with the key and return null,
+   * otherwise don't modify the map and return the current value associated with
+   * the key.
+   * @param key The key, a wrapper of my native key type.
+   * @param value The value.
+   * @exception NullPointerException If the key or value is null.
+   * @exception IllegalArgumentException If the key or value is of the wrong type.
+   */
+  public synchronized Object add( Object key, Object value )
+    {
+    if ( key == null || value == null )
+      throw new NullPointerException();
+
+    return putAux( key, value, false );
+    }
+
+  /**
+   * Remove the pair that matches a particular key and return its value, or null
+   * if the key does not exist.
+   * @param key The key of the pair to be removed.
+   */
+  public synchronized Object remove( Object key )
+    {
+    int slot = slotOf( key );
+
+    if ( slot < 0 )
+      return null;
+
+    Object value = valueAt( slot );
+    removeAt( slot );
+    return value;
+    }
+
+  /**
+   * Remove the pair at a particular position and return its value.
+   * @param e An Enumeration positioned at the pair to remove.
+   * @exception IllegalArgumentException If the Enumeration isn't a
+   * PrimitiveHashMapIterator for this map.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( !( e instanceof PrimitiveHashMapIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a PrimitiveHashMapIterator" );
+
+    if ( ( (PrimitiveHashMapIterator)e ).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this map" );
+
+    int slot = ( (PrimitiveHashMapIterator)e ).mySlot;
+    Object value = valueAt( slot );
+    removeAt( slot );
+    return value;
+    }
+
+  /**
+   * Remove the pairs within a specified range and return the number removed.
+   * @param first An Enumeration positioned at the first pair to remove.
+   * @param last An Enumeration positioned immediately after the last pair to remove.
+   * @exception IllegalArgumentException If the Enumerations aren't
+   * PrimitiveHashMapIterators for this map.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( !( first instanceof PrimitiveHashMapIterator ) || !( last instanceof PrimitiveHashMapIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a PrimitiveHashMapIterator" );
+
+    if ( ( (PrimitiveHashMapIterator)first ).myMap != this || ( (PrimitiveHashMapIterator)last ).myMap != this )
+      throw new IllegalArgumentException( "Enumeration not for this map" );
+
+    // Removal moves pairs between slots, so the keys are collected first.
+    Array keys = new Array();
+    PrimitiveHashMapIterator iterator = new PrimitiveHashMapIterator( (PrimitiveHashMapIterator)first );
+    iterator.myMode = PrimitiveHashMapIterator.KEY;
+
+    while ( !iterator.equals( last ) )
+      keys.pushBack( iterator.nextElement() );
+
+    for ( int i = 0; i < keys.size(); i++ )
+      removeAt( slotOf( keys.at( i ) ) );
+
+    return keys.size();
+    }
+
+  /**
+   * Return 1 if a key exists, otherwise return 0.
+   * @param key The key.
+   */
+  public synchronized int count( Object key )
+    {
+    return slotOf( key ) < 0 ? 0 : 1;
+    }
+
+  /**
+   * Return the number of values that match a given object.
+   * @param value The value to match against.
+   */
+  public synchronized int countValues( Object value )
+    {
+    int count = 0;
+
+    for ( int slot = next( 0 ); slot <= mask + 1; slot = next( slot + 1 ) )
+      if ( valueAt( slot ).equals( value ) )
+        ++count;
+
+    return count;
+    }
+
+  /**
+   * Return an Enumeration of all my keys that are associated with a particular value.
+   * @param value The value to match.
+   */
+  public synchronized Enumeration keys( Object value )
+    {
+    Array array = new Array();
+
+    for ( int slot = next( 0 ); slot <= mask + 1; slot = next( slot + 1 ) )
+      if ( valueAt( slot ).equals( value ) )
+        array.pushBack( keyAt( slot ) );
+
+    return array.elements();
+    }
+
+  /**
+   * Return an Enumeration of all my values that are associated with a particular key.
+   * @param key The key to match.
+   */
+  public synchronized Enumeration values( Object key )
+    {
+    Array array = new Array();
+    int slot = slotOf( key );
+
+    if ( slot >= 0 )
+      array.pushBack( valueAt( slot ) );
+
+    return array.elements();
+    }
+
+  PrimitiveHashMapIterator begin( int mode )
+    {
+    return new PrimitiveHashMapIterator( this, next( 0 ), mode );
+    }
+
+  /**
+   * Return the first occupied slot at or after a given slot, or the end slot.
+   */
+  int next( int slot )
+    {
+    while ( slot <= mask + 1 && !occupied( slot ) )
+      ++slot;
+
+    return slot;
+    }
+
+  /**
+   * Return the smallest table size that holds a number of pairs without growing.
+   */
+  int tableSize( int n )
+    {
+    int capacity = 2;
+
+    while ( (int)( capacity * ratio ) < n && capacity < ( 1 << 30 ) )
+      capacity <<= 1;
+
+    return capacity;
+    }
+
+  /**
+   * Return true if I must grow before a new pair is stored in my table.
+   */
+  boolean full()
+    {
+    return size >= limit;
+    }
+
+  /**
+   * Replace my table with an empty one of a given size.
+   */
+  void allocate( int capacity )
+    {
+    mask = capacity - 1;
+    limit = (int)( capacity * ratio );
+    }
+
+  /**
+   * Return the hash code of a key, mixed so that consecutive keys are spread
+   * across the table.
+   */
+  static int hash( int key )
+    {
+    int h = key * 0x9E3779B9;
+    return h ^ ( h >>> 16 );
+    }
+
+  static int hash( long key )
+    {
+    return hash( (int)( key ^ ( key >>> 32 ) ) );
+    }
+
+  /**
+   * Return true if a slot holds a pair.
+   */
+  abstract boolean occupied( int slot );
+
+  /**
+   * Return the key of the pair in a slot as an object.
+   */
+  abstract Object keyAt( int slot );
+
+  /**
+   * Return the value of the pair in a slot as an object.
+   */
+  abstract Object valueAt( int slot );
+
+  /**
+   * Replace the value of the pair in a slot with the value of an object.
+   */
+  abstract void valueAt( int slot, Object value );
+
+  /**
+   * Return the slot of a key given as an object, or -1 if it does not exist.
+   */
+  abstract int slotOf( Object key );
+
+  /**
+   * Put or add a pair given as objects.
+   */
+  abstract Object putAux( Object key, Object value, boolean replace );
+
+  /**
+   * Remove the pair in a slot.
+   */
+  abstract void removeAt( int slot );
+
+  /**
+   * Move my pairs into a table of a given size.
+   */
+  abstract void rehash( int capacity );
+
+  static final long serialVersionUID = -2750386624470151379L;
+  }
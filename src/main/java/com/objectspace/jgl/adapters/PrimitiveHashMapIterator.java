@@ -0,0 +1,276 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.adapters;
+
+import com.objectspace.jgl.*;
+
+/**
+ * A PrimitiveHashMapIterator is a forward iterator that allows you to iterate
+ * through the contents of a PrimitiveHashMap. It has a mode that allows selection
+ * of the current position's key, value, or key-value pair. Native keys and values
+ * are returned as wrapper objects.
+ * <p>
+ * @see ForwardIterator
+ * @see PrimitiveHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class PrimitiveHashMapIterator implements ForwardIterator
+  {
+  public final static int PAIR = HashMapIterator.PAIR;
+  public final static int KEY = HashMapIterator.KEY;
+  public final static int VALUE = HashMapIterator.VALUE;
+
+  PrimitiveHashMap myMap;
+  int mySlot;
+  int myMode = PAIR;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public PrimitiveHashMapIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public PrimitiveHashMapIterator( PrimitiveHashMapIterator iterator )
+    {
+    myMap = iterator.myMap;
+    mySlot = iterator.mySlot;
+    myMode = iterator.myMode;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular slot of a specified map.
+   * @param map My associated map.
+   * @param slot My associated slot.
+   * @param mode My mode for returning( PAIR, KEY, VALUE )
+   */
+  PrimitiveHashMapIterator( PrimitiveHashMap map, int slot, int mode )
+    {
+    myMap = map;
+    mySlot = slot;
+    myMode = mode;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new PrimitiveHashMapIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof PrimitiveHashMapIterator && equals( (PrimitiveHashMapIterator)object );
+    }
+
+  /**
+   * Return true if iterator is positioned at the same element as me.
+   * @param iterator The iterator to compare myself against.
+   */
+  public boolean equals( PrimitiveHashMapIterator iterator )
+    {
+    return iterator.mySlot == mySlot && iterator.myMap == myMap;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return mySlot == myMap.next( 0 );
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return mySlot > myMap.mask + 1;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return mySlot <= myMap.mask + 1;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    mySlot = myMap.next( mySlot + 1 );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( mySlot > myMap.mask + 1 )
+      throw new java.util.NoSuchElementException( "PrimitiveHashMapIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        return new Pair( myMap.keyAt( mySlot ), myMap.valueAt( mySlot ) );
+
+      case KEY:
+        return myMap.keyAt( mySlot );
+
+      case VALUE:
+        return myMap.valueAt( mySlot );
+      }
+
+    return null;
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    PrimitiveHashMapIterator i = new PrimitiveHashMapIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. Keys cannot
+   * be changed, so in PAIR mode the key of the pair must match my current key.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the key would be changed.
+   */
+  public void put( Object object )
+    {
+    switch ( myMode )
+      {
+      case PAIR:
+        Pair pair = (Pair)object;
+
+        if ( !myMap.keyAt( mySlot ).equals( pair.first ) )
+          throw new InvalidOperationException( "Cannot change the key of a PrimitiveHashMap pair." );
+
+        myMap.valueAt( mySlot, pair.second );
+        break;
+
+      case KEY:
+        throw new InvalidOperationException( "Cannot change the key of a PrimitiveHashMap pair." );
+
+      case VALUE:
+        myMap.valueAt( mySlot, object );
+        break;
+      }
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    PrimitiveHashMapIterator i = new PrimitiveHashMapIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the key of my current key/value pair.
+   */
+  public Object key()
+    {
+    return myMap.keyAt( mySlot );
+    }
+
+  /**
+   * Return the value of my current key/value pair.
+   */
+  public Object value()
+    {
+    return myMap.valueAt( mySlot );
+    }
+
+  /**
+   * Change the value of my current key/value pair.
+   * @param value The new value.
+   */
+  public void value( Object value )
+    {
+    myMap.valueAt( mySlot, value );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    int slot = ( (PrimitiveHashMapIterator)iterator ).mySlot;
+    int n = 0;
+
+    for ( int i = mySlot; i < slot && i <= myMap.mask + 1; i = myMap.next( i + 1 ) )
+      ++n;
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return myMap;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return iterator instanceof PrimitiveHashMapIterator && myMap == ( (PrimitiveHashMapIterator)iterator ).myMap;
+    }
+  }
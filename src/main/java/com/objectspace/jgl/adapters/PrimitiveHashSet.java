@@ -0,0 +1,364 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.adapters;
+
+import com.objectspace.jgl.*;
+import java.util.Enumeration;
+
+/**
+ * PrimitiveHashSet is the abstract base of the hash sets whose elements are native
+ * ints or longs. Elements are stored in a flat native array using open addressing
+ * with linear probing, so no node or wrapper object is allocated per element and
+ * no boxing occurs when the native add() and contains() methods of a subclass are
+ * used. The element 0, which marks a free slot, is tracked separately.
+ * <p>
+ * Every Set operation is also supported, using Integer or Long objects for elements,
+ * so that a PrimitiveHashSet can be used with the JGL iterators and algorithms.
+ * Duplicates are not allowed.
+ * <p>
+ * Insertion can invalidate iterators.
+ * <p>
+ * Removal can invalidate iterators.
+ * <p>
+ * @see PrimitiveHashSetIterator
+ * @see PrimitiveHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+abstract public class PrimitiveHashSet implements Set
+  {
+  static final int DEFAULT_SIZE = 16;
+  static final float DEFAULT_RATIO = 0.75F;
+
+  int size; // # elements.
+  int mask; // # slots in the table - 1; slot mask + 1 stands for the element 0.
+  boolean hasZero; // is 0 an element?
+  int limit;
+  float ratio;
+
+  /**
+   * Construct myself to be empty with room for a specified number of elements.
+   * @param capacity The number of elements to make room for.
+   * @param loadRatio The maximum load ratio.
+   * @exception IllegalArgumentException If the capacity is negative or the load
+   * ratio is not between 0 and 1.
+   */
+  PrimitiveHashSet( int capacity, float loadRatio )
+    {
+    if ( capacity < 0 )
+      throw new IllegalArgumentException( "Attempt to create a set with a negative capacity" );
+
+    if ( !( loadRatio > 0 && loadRatio < 1 ) )
+      throw new IllegalArgumentException( "Load ratio must be between 0 and 1" );
+
+    ratio = loadRatio;
+    allocate( tableSize( capacity ) );
+    }
+
+  // needed for Visual J++ bug workaround
+  public Object clone()
+    {
+    return null;
+    }
+
+  /**
+   * Return true if I contain no elements.
+   */
+  public boolean isEmpty()
+    {
+    return size == 0;
+    }
+
+  /**
+   * Return the number of elements that I contain.
+   */
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Return the maximum number of elements that I can contain.
+   */
+  public int maxSize()
+    {
+    return Integer.MAX_VALUE;
+    }
+
+  /**
+   * Remove all of my elements. My table keeps its current size.
+   */
+  public synchronized void clear()
+    {
+    size = 0;
+    hasZero = false;
+    allocate( mask + 1 );
+    }
+
+  /**
+   * Make room for a specified number of elements, so that my table will not grow
+   * until I hold more than that many. This operation does not change the value
+   * returned by size().
+   * @param n The number of elements to make room for.
+   * @exception IllegalArgumentException If the specified number is negative.
+   */
+  public synchronized void ensureCapacity( int n )
+    {
+    if ( n < 0 )
+      throw new IllegalArgumentException( "Attempt to reserve a negative size." );
+
+    if ( n > limit )
+      rehash( tableSize( n ) );
+    }
+
+  /**
+   * Reduce my table to the smallest one that can hold my elements without growing.
+   * This operation does not change the value returned by size().
+   */
+  public synchronized void trimToSize()
+    {
+    int capacity = tableSize( size );
+
+    if ( capacity < mask + 1 )
+      rehash( capacity );
+    }
+
+  /**
+   * Return an Enumeration of my elements.
+   */
+  public synchronized Enumeration elements()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned at my first element.
+   */
+  public ForwardIterator start()
+    {
+    return begin();
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last element.
+   */
+  public ForwardIterator finish()
+    {
+    return end();
+    }
+
+  /**
+   * Return an iterator positioned at my first element.
+   */
+  public synchronized PrimitiveHashSetIterator begin()
+    {
+    return new PrimitiveHashSetIterator( this, next( 0 ) );
+    }
+
+  /**
+   * Return an iterator positioned immediately after my last element.
+   */
+  public synchronized PrimitiveHashSetIterator end()
+    {
+    return new PrimitiveHashSetIterator( this, mask + 2 );
+    }
+
+  /**
+   * Return my element that matches the given object, or null if there is none.
+   * @param object The object to match against.
+   */
+  public synchronized Object get( Object object )
+    {
+    int slot = slotOf( object );
+    return slot < 0 ? null : elementAt( slot );
+    }
+
+  /**
+   * If the object doesn't exist, add the object and return null, otherwise don't
+   * modify the set and return the matching element.
+   * @param object The object to add, a wrapper of my native element type.
+   * @exception NullPointerException If the object is null.
+   * @exception IllegalArgumentException If the object is of the wrong type.
+   */
+  public synchronized Object add( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    return addAux( object );
+    }
+
+  /**
+   * If the object doesn't exist, add the object and return null, otherwise return
+   * the matching element, which is equal to the object and need not be replaced.
+   * @param object The object to add, a wrapper of my native element type.
+   * @exception NullPointerException If the object is null.
+   * @exception IllegalArgumentException If the object is of the wrong type.
+   */
+  public synchronized Object put( Object object )
+    {
+    if ( object == null )
+      throw new NullPointerException();
+
+    return addAux( object );
+    }
+
+  /**
+   * Remove the element that matches an object and return the number of elements
+   * removed, which is 0 or 1.
+   * @param object The object to match for removals.
+   */
+  public synchronized int remove( Object object )
+    {
+    int slot = slotOf( object );
+
+    if ( slot < 0 )
+      return 0;
+
+    removeAt( slot );
+    return 1;
+    }
+
+  /**
+   * Remove the element that matches an object if the count is positive, and return
+   * the number of elements removed.
+   * @param object The object to match for removals.
+   * @param count The maximum number of elements to remove.
+   */
+  public int remove( Object object, int count )
+    {
+    return count > 0 ? remove( object ) : 0;
+    }
+
+  /**
+   * Remove the element at a particular position and return it.
+   * @param e An Enumeration positioned at the element to remove.
+   * @exception IllegalArgumentException If the Enumeration isn't a
+   * PrimitiveHashSetIterator for this set.
+   */
+  public synchronized Object remove( Enumeration e )
+    {
+    if ( !( e instanceof PrimitiveHashSetIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a PrimitiveHashSetIterator" );
+
+    if ( ( (PrimitiveHashSetIterator)e ).mySet != this )
+      throw new IllegalArgumentException( "Enumeration not for this set" );
+
+    int slot = ( (PrimitiveHashSetIterator)e ).mySlot;
+    Object element = elementAt( slot );
+    removeAt( slot );
+    return element;
+    }
+
+  /**
+   * Remove the elements within a specified range and return the number removed.
+   * @param first An Enumeration positioned at the first element to remove.
+   * @param last An Enumeration positioned immediately after the last element to remove.
+   * @exception IllegalArgumentException If the Enumerations aren't
+   * PrimitiveHashSetIterators for this set.
+   */
+  public synchronized int remove( Enumeration first, Enumeration last )
+    {
+    if ( !( first instanceof PrimitiveHashSetIterator ) || !( last instanceof PrimitiveHashSetIterator ) )
+      throw new IllegalArgumentException( "Enumeration not a PrimitiveHashSetIterator" );
+
+    if ( ( (PrimitiveHashSetIterator)first ).mySet != this || ( (PrimitiveHashSetIterator)last ).mySet != this )
+      throw new IllegalArgumentException( "Enumeration not for this set" );
+
+    // Removal moves elements between slots, so the elements are collected first.
+    Array elements = new Array();
+    PrimitiveHashSetIterator iterator = new PrimitiveHashSetIterator( (PrimitiveHashSetIterator)first );
+
+    while ( !iterator.equals( last ) )
+      elements.pushBack( iterator.nextElement() );
+
+    for ( int i = 0; i < elements.size(); i++ )
+      removeAt( slotOf( elements.at( i ) ) );
+
+    return elements.size();
+    }
+
+  /**
+   * Return 1 if an object matches one of my elements, otherwise return 0.
+   * @param object The object to match.
+   */
+  public synchronized int count( Object object )
+    {
+    return slotOf( object ) < 0 ? 0 : 1;
+    }
+
+  /**
+   * Return the first occupied slot at or after a given slot, or the end slot.
+   */
+  int next( int slot )
+    {
+    while ( slot <= mask + 1 && !occupied( slot ) )
+      ++slot;
+
+    return slot;
+    }
+
+  /**
+   * Return the smallest table size that holds a number of elements without growing.
+   */
+  int tableSize( int n )
+    {
+    int capacity = 2;
+
+    while ( (int)( capacity * ratio ) < n && capacity < ( 1 << 30 ) )
+      capacity <<= 1;
+
+    return capacity;
+    }
+
+  /**
+   * Return true if I must grow before a new element is stored in my table.
+   */
+  boolean full()
+    {
+    return size >= limit;
+    }
+
+  /**
+   * Replace my table with an empty one of a given size.
+   */
+  void allocate( int capacity )
+    {
+    mask = capacity - 1;
+    limit = (int)( capacity * ratio );
+    }
+
+  /**
+   * Return true if a slot holds an element.
+   */
+  abstract boolean occupied( int slot );
+
+  /**
+   * Return the element in a slot as an object.
+   */
+  abstract Object elementAt( int slot );
+
+  /**
+   * Return the slot of an element given as an object, or -1 if it does not exist.
+   */
+  abstract int slotOf( Object object );
+
+  /**
+   * Add an element given as an object if it does not exist, returning null, or
+   * return the matching element.
+   */
+  abstract Object addAux( Object object );
+
+  /**
+   * Remove the element in a slot.
+   */
+  abstract void removeAt( int slot );
+
+  /**
+   * Move my elements into a table of a given size.
+   */
+  abstract void rehash( int capacity );
+
+  static final long serialVersionUID = 4193057718962130825L;
+  }
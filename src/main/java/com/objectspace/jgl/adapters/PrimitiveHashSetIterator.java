@@ -0,0 +1,214 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.adapters;
+
+import com.objectspace.jgl.*;
+
+/**
+ * A PrimitiveHashSetIterator is a forward iterator that allows you to iterate
+ * through the contents of a PrimitiveHashSet. Native elements are returned as
+ * wrapper objects.
+ * <p>
+ * @see ForwardIterator
+ * @see PrimitiveHashSet
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class PrimitiveHashSetIterator implements ForwardIterator
+  {
+  PrimitiveHashSet mySet;
+  int mySlot;
+
+  /**
+   * Construct myself to be an iterator with no associated data structure or position.
+   */
+  public PrimitiveHashSetIterator()
+    {
+    }
+
+  /**
+   * Construct myself to be a copy of an existing iterator.
+   * @param iterator The iterator to copy.
+   */
+  public PrimitiveHashSetIterator( PrimitiveHashSetIterator iterator )
+    {
+    mySet = iterator.mySet;
+    mySlot = iterator.mySlot;
+    }
+
+  /**
+   * Construct myself to be positioned at a particular slot of a specified set.
+   * @param set My associated set.
+   * @param slot My associated slot.
+   */
+  PrimitiveHashSetIterator( PrimitiveHashSet set, int slot )
+    {
+    mySet = set;
+    mySlot = slot;
+    }
+
+  /**
+   * Return a clone of myself.
+   */
+  public Object clone()
+    {
+    return new PrimitiveHashSetIterator( this );
+    }
+
+  /**
+   * Return true if a specified object is the same kind of iterator as me
+   * and is positioned at the same element.
+   * @param object Any object.
+   */
+  public boolean equals( Object object )
+    {
+    return object instanceof PrimitiveHashSetIterator && equals( (PrimitiveHashSetIterator)object );
+    }
+
+  /**
+   * Return true if iterator is positioned at the same element as me.
+   * @param iterator The iterator to compare myself against.
+   */
+  public boolean equals( PrimitiveHashSetIterator iterator )
+    {
+    return iterator.mySlot == mySlot && iterator.mySet == mySet;
+    }
+
+  /**
+   * Return true if I'm positioned at the first item of my input stream.
+   */
+  public boolean atBegin()
+    {
+    return mySlot == mySet.next( 0 );
+    }
+
+  /**
+   * Return true if I'm positioned after the last item in my input stream.
+   */
+  public boolean atEnd()
+    {
+    return mySlot > mySet.mask + 1;
+    }
+
+  /**
+   * Return true if there are more elements in my input stream.
+   */
+  public boolean hasMoreElements()
+    {
+    return mySlot <= mySet.mask + 1;
+    }
+
+  /**
+   * Advance by one.
+   */
+  public void advance()
+    {
+    mySlot = mySet.next( mySlot + 1 );
+    }
+
+  /**
+   * Advance by a specified amount.
+   * @param n The amount to advance.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void advance( int n )
+    {
+    if ( n < 0 )
+      throw new InvalidOperationException( "Attempt to advance a ForwardIterator in the wrong direction." );
+    while ( n-- > 0 )
+      advance();
+    }
+
+  /**
+   * Return the next element in my input stream.
+   * @exception java.util.NoSuchElementException If I'm positioned at an invalid position.
+   */
+  public Object nextElement()
+    {
+    if ( mySlot > mySet.mask + 1 )
+      throw new java.util.NoSuchElementException( "PrimitiveHashSetIterator" );
+
+    Object result = get();
+    advance();
+    return result;
+    }
+
+  /**
+   * Return the object at my current position.
+   */
+  public Object get()
+    {
+    return mySet.elementAt( mySlot );
+    }
+
+  /**
+   * Return the object that is a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public Object get( int offset )
+    {
+    PrimitiveHashSetIterator i = new PrimitiveHashSetIterator( this );
+    i.advance( offset );
+    return i.get();
+    }
+
+  /**
+   * Set the object at my current position to a specified value. An element cannot
+   * be changed without rehashing, so the object must match my current element.
+   * @param object The object to be written at my current position.
+   * @exception InvalidOperationException If the element would be changed.
+   */
+  public void put( Object object )
+    {
+    if ( !mySet.elementAt( mySlot ).equals( object ) )
+      throw new InvalidOperationException( "Cannot change an element of a PrimitiveHashSet." );
+    }
+
+  /**
+   * Write an object at a specified distance from my current position.
+   * @param offset The offset from my current position.
+   * @param object The object to write.
+   * @exception InvalidOperationException If the parameter is less than zero.
+   */
+  public void put( int offset, Object object )
+    {
+    PrimitiveHashSetIterator i = new PrimitiveHashSetIterator( this );
+    i.advance( offset );
+    i.put( object );
+    }
+
+  /**
+   * Return the distance from myself to another iterator.
+   * I should be before the specified iterator.
+   * @param iterator The iterator to compare myself against.
+   */
+  public int distance( ForwardIterator iterator )
+    {
+    int slot = ( (PrimitiveHashSetIterator)iterator ).mySlot;
+    int n = 0;
+
+    for ( int i = mySlot; i < slot && i <= mySet.mask + 1; i = mySet.next( i + 1 ) )
+      ++n;
+
+    return n;
+    }
+
+  /**
+   * Return my associated container.
+   */
+  public Container getContainer()
+    {
+    return mySet;
+    }
+
+  /**
+   * Return true if both <CODE>iterator</CODE> and myself can be used
+   * as a range.
+   */
+  public boolean isCompatibleWith( InputIterator iterator )
+    {
+    return iterator instanceof PrimitiveHashSetIterator && mySet == ( (PrimitiveHashSetIterator)iterator ).mySet;
+    }
+  }
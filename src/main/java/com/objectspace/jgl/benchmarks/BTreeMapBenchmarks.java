@@ -0,0 +1,180 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.util.*;
+
+public class BTreeMapBenchmarks
+  {
+  static Randomizer random = new Randomizer();
+  static final int LOOPS = 200;
+  static final int MAX_SIZE = 100000;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "BTreeMapBenchmarks" );
+    mapAdding();
+    mapFinding();
+    mapMissing();
+    mapRemoving();
+    mapIterating();
+    }
+
+  static Object[] getRandomVectorInts()
+    {
+    int size = Randomizer.getInt( MAX_SIZE );
+    Integer[] ints = new Integer[ size ];
+    for( int i = 0; i < size; i++ )
+      ints[ i ] = new Integer( Randomizer.getInt( 1000000 ) );
+    return ints;
+    }
+
+  static void mapAdding()
+    {
+    Benchmark bTreeBenchmark = new Benchmark( "bTreeMapAdding", LOOPS / 4 );
+    Benchmark orderedBenchmark = new Benchmark( "orderedMapAdding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      BTreeMap bTreeMap = new BTreeMap();
+      OrderedMap orderedMap = new OrderedMap();
+
+      orderedBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.put( data[ j ], data[ j ] );
+      orderedBenchmark.stop();
+
+      bTreeBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.put( data[ j ], data[ j ] );
+      bTreeBenchmark.stop();
+      }
+
+    bTreeBenchmark.compareTo( orderedBenchmark );
+    }
+
+  static void mapFinding()
+    {
+    Benchmark bTreeBenchmark = new Benchmark( "bTreeMapFinding", LOOPS / 4 );
+    Benchmark orderedBenchmark = new Benchmark( "orderedMapFinding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      BTreeMap bTreeMap = new BTreeMap();
+      OrderedMap orderedMap = new OrderedMap();
+
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.put( data[ j ], data[ j ] );
+
+      orderedBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.get( data[ j ] );
+      orderedBenchmark.stop();
+
+      bTreeBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.get( data[ j ] );
+      bTreeBenchmark.stop();
+      }
+
+    bTreeBenchmark.compareTo( orderedBenchmark );
+    }
+
+  static void mapMissing()
+    {
+    Benchmark bTreeBenchmark = new Benchmark( "bTreeMapMissing", LOOPS / 4 );
+    Benchmark orderedBenchmark = new Benchmark( "orderedMapMissing", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      Object[] misses = getRandomVectorInts();
+      BTreeMap bTreeMap = new BTreeMap();
+      OrderedMap orderedMap = new OrderedMap();
+
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.put( data[ j ], data[ j ] );
+
+      orderedBenchmark.start();
+      for( int j = 0; j < misses.length; j++ )
+        orderedMap.get( misses[ j ] );
+      orderedBenchmark.stop();
+
+      bTreeBenchmark.start();
+      for( int j = 0; j < misses.length; j++ )
+        bTreeMap.get( misses[ j ] );
+      bTreeBenchmark.stop();
+      }
+
+    bTreeBenchmark.compareTo( orderedBenchmark );
+    }
+
+  static void mapRemoving()
+    {
+    Benchmark bTreeBenchmark = new Benchmark( "bTreeMapRemoving", LOOPS / 4 );
+    Benchmark orderedBenchmark = new Benchmark( "orderedMapRemoving", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      BTreeMap bTreeMap = new BTreeMap();
+      OrderedMap orderedMap = new OrderedMap();
+
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.put( data[ j ], data[ j ] );
+
+      orderedBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.remove( data[ j ] );
+      orderedBenchmark.stop();
+
+      bTreeBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.remove( data[ j ] );
+      bTreeBenchmark.stop();
+      }
+
+    bTreeBenchmark.compareTo( orderedBenchmark );
+    }
+
+  static void mapIterating()
+    {
+    Benchmark bTreeBenchmark = new Benchmark( "bTreeMapIterating", LOOPS / 4 );
+    Benchmark orderedBenchmark = new Benchmark( "orderedMapIterating", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      BTreeMap bTreeMap = new BTreeMap();
+      OrderedMap orderedMap = new OrderedMap();
+
+      for( int j = 0; j < data.length; j++ )
+        bTreeMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        orderedMap.put( data[ j ], data[ j ] );
+
+      orderedBenchmark.start();
+      for( OrderedMapIterator iterator = orderedMap.begin(); iterator.hasMoreElements(); iterator.advance() )
+        iterator.value();
+      orderedBenchmark.stop();
+
+      bTreeBenchmark.start();
+      for( BTreeMapIterator iterator = bTreeMap.begin(); iterator.hasMoreElements(); iterator.advance() )
+        iterator.value();
+      bTreeBenchmark.stop();
+      }
+
+    bTreeBenchmark.compareTo( orderedBenchmark );
+    }
+  }
@@ -0,0 +1,104 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.util.*;
+
+public class CacheMapBenchmarks
+  {
+  static final int LOOPS = 10;
+  static final int SIZE = 10000;
+  static final int KEYS = 100000;
+  static final int THREADS = 4;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "CacheMapBenchmarks" );
+    hitRates();
+    concurrentReads();
+    }
+
+  static void hitRates()
+    {
+    EvictionPolicy[] policies = { new LRUPolicy(), new LFUPolicy(), new TinyLFUPolicy() };
+    Integer[] keys = skewedKeys( 20 * KEYS );
+
+    for( int i = 0; i < policies.length; i++ )
+      {
+      CacheMap cache = new CacheMap( SIZE, policies[ i ] );
+
+      for( int j = 0; j < keys.length; j++ )
+        if ( cache.get( keys[ j ] ) == null )
+          cache.put( keys[ j ], keys[ j ] );
+
+      System.out.println( policies[ i ] + " hit rate " + cache.hitRate() );
+      }
+    }
+
+  static void concurrentReads()
+    {
+    Benchmark linkedBenchmark = new Benchmark( "synchronizedLinkedHashMapReads" );
+    Benchmark cacheBenchmark = new Benchmark( "cacheMapReads" );
+    final Integer[] keys = skewedKeys( KEYS );
+    final LinkedHashMap linkedMap = new LinkedHashMap( true );
+    final CacheMap cacheMap = new CacheMap( SIZE, new TinyLFUPolicy() );
+    linkedMap.setMaximumSize( SIZE );
+
+    for( int i = 0; i < KEYS; i++ )
+      {
+      linkedMap.put( keys[ i ], keys[ i ] );
+      cacheMap.put( keys[ i ], keys[ i ] );
+      }
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      linkedBenchmark.start();
+      readInThreads( linkedMap, keys );
+      linkedBenchmark.stop();
+
+      cacheBenchmark.start();
+      readInThreads( cacheMap, keys );
+      cacheBenchmark.stop();
+      }
+
+    System.out.println( linkedBenchmark );
+    System.out.println( cacheBenchmark );
+    cacheBenchmark.compareTo( linkedBenchmark );
+    }
+
+  static void readInThreads( final Map map, final Integer[] keys )
+    {
+    Thread[] threads = new Thread[ THREADS ];
+
+    for( int i = 0; i < THREADS; i++ )
+      {
+      threads[ i ] = new Thread()
+        {
+        public void run()
+          {
+          for( int j = 0; j < keys.length; j++ )
+            map.get( keys[ j ] );
+          }
+        };
+      threads[ i ].start();
+      }
+
+    try
+      {
+      for( int i = 0; i < THREADS; i++ )
+        threads[ i ].join();
+      }
+    catch( InterruptedException exception )
+      {
+      }
+    }
+
+  static Integer[] skewedKeys( int n )
+    {
+    Integer[] keys = new Integer[ n ];
+
+    for( int i = 0; i < n; i++ )
+      keys[ i ] = new Integer( (int)Math.pow( KEYS, Randomizer.getDouble( 0.0, 1.0 ) ) );
+
+    return keys;
+    }
+  }
@@ -0,0 +1,78 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.util.*;
+
+public class ConcurrentMapBenchmarks
+  {
+  static final int LOOPS = 10;
+  static final int SIZE = 100000;
+  static final int READS = 1000000;
+  static final int MAX_THREADS = 32;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "ConcurrentMapBenchmarks" );
+
+    for( int threads = 1; threads <= MAX_THREADS; threads *= 2 )
+      mapReading( threads );
+    }
+
+  static void mapReading( int threads )
+    {
+    Benchmark concurrentBenchmark = new Benchmark( "concurrentHashMapReading x " + threads );
+    Benchmark jglBenchmark = new Benchmark( "jglMapReading x " + threads );
+    Integer[] data = new Integer[ SIZE ];
+    HashMap jglMap = new HashMap();
+    ConcurrentHashMap concurrentMap = new ConcurrentHashMap();
+
+    for( int i = 0; i < SIZE; i++ )
+      {
+      data[ i ] = new Integer( Randomizer.getInt( Integer.MAX_VALUE ) );
+      jglMap.put( data[ i ], data[ i ] );
+      concurrentMap.put( data[ i ], data[ i ] );
+      }
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      jglBenchmark.start();
+      read( jglMap, data, threads );
+      jglBenchmark.stop();
+
+      concurrentBenchmark.start();
+      read( concurrentMap, data, threads );
+      concurrentBenchmark.stop();
+      }
+
+    System.out.println( jglBenchmark );
+    System.out.println( concurrentBenchmark );
+    concurrentBenchmark.compareTo( jglBenchmark );
+    }
+
+  static void read( final Map map, final Integer[] data, int threads )
+    {
+    Thread[] readers = new Thread[ threads ];
+
+    for( int i = 0; i < threads; i++ )
+      {
+      readers[ i ] = new Thread()
+        {
+        public void run()
+          {
+          for( int j = 0; j < READS; j++ )
+            map.get( data[ j % data.length ] );
+          }
+        };
+      readers[ i ].start();
+      }
+
+    try
+      {
+      for( int i = 0; i < threads; i++ )
+        readers[ i ].join();
+      }
+    catch( InterruptedException ex )
+      {
+      }
+    }
+  }
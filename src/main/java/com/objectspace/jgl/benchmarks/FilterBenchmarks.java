@@ -0,0 +1,68 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.util.*;
+
+public class FilterBenchmarks
+  {
+  static final int LOOPS = 10;
+  static final int SIZE = 100000;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "FilterBenchmarks" );
+    hashMapMisses();
+    orderedMapMisses();
+    }
+
+  static void hashMapMisses()
+    {
+    HashMap plainMap = new HashMap();
+    HashMap filteredMap = new HashMap();
+    filteredMap.enableFilter( 0.01 );
+    missBenchmark( "jglHashMapMisses", plainMap, "filteredHashMapMisses", filteredMap );
+    System.out.println( filteredMap.getFilter() );
+    }
+
+  static void orderedMapMisses()
+    {
+    OrderedMap plainMap = new OrderedMap();
+    OrderedMap filteredMap = new OrderedMap();
+    filteredMap.enableFilter( 0.01 );
+    missBenchmark( "jglOrderedMapMisses", plainMap, "filteredOrderedMapMisses", filteredMap );
+    System.out.println( filteredMap.getFilter() );
+    }
+
+  static void missBenchmark( String plainName, Map plainMap, String filteredName, Map filteredMap )
+    {
+    Benchmark plainBenchmark = new Benchmark( plainName );
+    Benchmark filteredBenchmark = new Benchmark( filteredName );
+    String[] data = new String[ SIZE ];
+    String[] missing = new String[ SIZE ];
+
+    for( int i = 0; i < SIZE; i++ )
+      {
+      data[ i ] = "key" + Randomizer.getInt( Integer.MAX_VALUE );
+      missing[ i ] = "missing" + Randomizer.getInt( Integer.MAX_VALUE );
+      plainMap.put( data[ i ], data[ i ] );
+      filteredMap.put( data[ i ], data[ i ] );
+      }
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      plainBenchmark.start();
+      for( int j = 0; j < SIZE; j++ )
+        plainMap.get( missing[ j ] );
+      plainBenchmark.stop();
+
+      filteredBenchmark.start();
+      for( int j = 0; j < SIZE; j++ )
+        filteredMap.get( missing[ j ] );
+      filteredBenchmark.stop();
+      }
+
+    System.out.println( plainBenchmark );
+    System.out.println( filteredBenchmark );
+    filteredBenchmark.compareTo( plainBenchmark );
+    }
+  }
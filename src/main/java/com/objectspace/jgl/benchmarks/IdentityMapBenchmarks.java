@@ -0,0 +1,209 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.predicates.*;
+import com.objectspace.jgl.util.*;
+
+public class IdentityMapBenchmarks
+  {
+  static Randomizer random = new Randomizer();
+  static final int LOOPS = 200;
+  static final int MAX_SIZE = 30000;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "IdentityMapBenchmarks" );
+    mapAdding();
+    mapFinding();
+    mapMissing();
+    mapRemoving();
+    setFinding();
+    }
+
+  /**
+   * A graph node whose hashCode() walks its labels, like many value classes do.
+   */
+  static final class Vertex
+    {
+    int[] labels = new int[ 8 ];
+
+    Vertex( int seed )
+      {
+      for ( int i = 0; i < labels.length; i++ )
+        labels[ i ] = seed * 31 + i;
+      }
+
+    public int hashCode()
+      {
+      int h = 1;
+      for ( int i = 0; i < labels.length; i++ )
+        h = h * 31 + labels[ i ];
+      return h;
+      }
+    }
+
+  static Object[] getRandomVertices()
+    {
+    int size = Randomizer.getInt( MAX_SIZE );
+    Vertex[] vertices = new Vertex[ size ];
+    for( int i = 0; i < size; i++ )
+      {
+      vertices[ i ] = new Vertex( Randomizer.getInt( 100000 ) );
+
+      // The first identity hash of an object is installed lazily and costs
+      // far more than later ones, so don't time it.
+      System.identityHashCode( vertices[ i ] );
+      }
+    return vertices;
+    }
+
+  static void mapAdding()
+    {
+    Benchmark identityBenchmark = new Benchmark( "identityHashMapAdding", LOOPS / 4 );
+    Benchmark hashBenchmark = new Benchmark( "identicalToHashMapAdding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVertices();
+      IdentityHashMap identityMap = new IdentityHashMap();
+      HashMap hashMap = new HashMap( new IdenticalTo() );
+
+      hashBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        hashMap.put( data[ j ], data[ j ] );
+      hashBenchmark.stop();
+
+      identityBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        identityMap.put( data[ j ], data[ j ] );
+      identityBenchmark.stop();
+      }
+
+    identityBenchmark.compareTo( hashBenchmark );
+    }
+
+  static void mapFinding()
+    {
+    Benchmark identityBenchmark = new Benchmark( "identityHashMapFinding", LOOPS / 4 );
+    Benchmark hashBenchmark = new Benchmark( "identicalToHashMapFinding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVertices();
+      IdentityHashMap identityMap = new IdentityHashMap();
+      HashMap hashMap = new HashMap( new IdenticalTo() );
+
+      for( int j = 0; j < data.length; j++ )
+        identityMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        hashMap.put( data[ j ], data[ j ] );
+
+      hashBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        hashMap.get( data[ j ] );
+      hashBenchmark.stop();
+
+      identityBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        identityMap.get( data[ j ] );
+      identityBenchmark.stop();
+      }
+
+    identityBenchmark.compareTo( hashBenchmark );
+    }
+
+  static void mapMissing()
+    {
+    Benchmark identityBenchmark = new Benchmark( "identityHashMapMissing", LOOPS / 4 );
+    Benchmark hashBenchmark = new Benchmark( "identicalToHashMapMissing", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVertices();
+      Object[] misses = getRandomVertices();
+      IdentityHashMap identityMap = new IdentityHashMap();
+      HashMap hashMap = new HashMap( new IdenticalTo() );
+
+      for( int j = 0; j < data.length; j++ )
+        identityMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        hashMap.put( data[ j ], data[ j ] );
+
+      hashBenchmark.start();
+      for( int j = 0; j < misses.length; j++ )
+        hashMap.get( misses[ j ] );
+      hashBenchmark.stop();
+
+      identityBenchmark.start();
+      for( int j = 0; j < misses.length; j++ )
+        identityMap.get( misses[ j ] );
+      identityBenchmark.stop();
+      }
+
+    identityBenchmark.compareTo( hashBenchmark );
+    }
+
+  static void mapRemoving()
+    {
+    Benchmark identityBenchmark = new Benchmark( "identityHashMapRemoving", LOOPS / 4 );
+    Benchmark hashBenchmark = new Benchmark( "identicalToHashMapRemoving", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVertices();
+      IdentityHashMap identityMap = new IdentityHashMap();
+      HashMap hashMap = new HashMap( new IdenticalTo() );
+
+      for( int j = 0; j < data.length; j++ )
+        identityMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        hashMap.put( data[ j ], data[ j ] );
+
+      hashBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        hashMap.remove( data[ j ] );
+      hashBenchmark.stop();
+
+      identityBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        identityMap.remove( data[ j ] );
+      identityBenchmark.stop();
+      }
+
+    identityBenchmark.compareTo( hashBenchmark );
+    }
+
+  static void setFinding()
+    {
+    Benchmark identityBenchmark = new Benchmark( "identityHashSetFinding", LOOPS / 4 );
+    Benchmark hashBenchmark = new Benchmark( "identicalToHashSetFinding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVertices();
+      IdentityHashSet identitySet = new IdentityHashSet();
+      HashSet hashSet = new HashSet( new IdenticalTo() );
+
+      for( int j = 0; j < data.length; j++ )
+        identitySet.add( data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        hashSet.add( data[ j ] );
+
+      hashBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        hashSet.count( data[ j ] );
+      hashBenchmark.stop();
+
+      identityBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        identitySet.count( data[ j ] );
+      identityBenchmark.stop();
+      }
+
+    identityBenchmark.compareTo( hashBenchmark );
+    }
+  }
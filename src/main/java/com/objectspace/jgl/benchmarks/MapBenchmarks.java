@@ -18,6 +18,7 @@ public class MapBenchmarks
     mapFinding();
     mapRemoving();
     mapClearing();
+    mapScanning();
     }
 
   static Object[] getRandomVectorInts()
@@ -152,4 +153,54 @@ public class MapBenchmarks
 
     jglBenchmark.compareTo( jdkBenchmark );
     }
+
+  static void mapScanning()
+    {
+    Benchmark pairBenchmark = new Benchmark( "jglMapPairScanning", LOOPS / 4 );
+    Benchmark cursorBenchmark = new Benchmark( "jglMapCursorScanning", LOOPS / 4 );
+    Benchmark functionBenchmark = new Benchmark( "jglMapForEachEntry", LOOPS / 4 );
+    Summer summer = new Summer();
+    int sum = 0;
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      HashMap jglMap = new HashMap();
+
+      for( int j = 0; j < data.length; j++ )
+        jglMap.put( data[ j ], data[ j ] );
+
+      pairBenchmark.start();
+      for( Enumeration e = jglMap.begin(); e.hasMoreElements(); )
+        {
+        Pair pair = (Pair)e.nextElement();
+        sum += pair.first.hashCode() + pair.second.hashCode();
+        }
+      pairBenchmark.stop();
+
+      cursorBenchmark.start();
+      for( HashMapIterator iterator = jglMap.begin(); iterator.hasMoreElements(); iterator.advance() )
+        sum += iterator.key().hashCode() + iterator.value().hashCode();
+      cursorBenchmark.stop();
+
+      functionBenchmark.start();
+      jglMap.forEachEntry( summer );
+      functionBenchmark.stop();
+      }
+
+    cursorBenchmark.compareTo( pairBenchmark );
+    functionBenchmark.compareTo( pairBenchmark );
+    System.out.println( "checksum " + ( sum + summer.sum ) );
+    }
+
+  static final class Summer implements BinaryFunction
+    {
+    int sum;
+
+    public Object execute( Object key, Object value )
+      {
+      sum += key.hashCode() + value.hashCode();
+      return null;
+      }
+    }
   }
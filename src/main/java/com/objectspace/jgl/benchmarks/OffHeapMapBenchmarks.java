@@ -0,0 +1,89 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.codecs.*;
+import com.objectspace.jgl.util.*;
+
+public class OffHeapMapBenchmarks
+  {
+  static final int LOOPS = 10;
+  static final int SIZE = 100000;
+  static final int VALUE_SIZE = 100;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "OffHeapMapBenchmarks" );
+    mapPutting();
+    mapGetting();
+    }
+
+  static String[] keys()
+    {
+    String[] data = new String[ SIZE ];
+
+    for( int i = 0; i < SIZE; i++ )
+      data[ i ] = String.valueOf( Randomizer.getInt( Integer.MAX_VALUE ) );
+
+    return data;
+    }
+
+  static void mapPutting()
+    {
+    Benchmark offHeapBenchmark = new Benchmark( "offHeapHashMapPutting" );
+    Benchmark jglBenchmark = new Benchmark( "jglMapPutting" );
+    String[] data = keys();
+    byte[] value = new byte[ VALUE_SIZE ];
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      jglBenchmark.start();
+      HashMap jglMap = new HashMap();
+      for( int j = 0; j < SIZE; j++ )
+        jglMap.put( data[ j ], value.clone() );
+      jglBenchmark.stop();
+
+      offHeapBenchmark.start();
+      OffHeapHashMap offHeapMap = new OffHeapHashMap( new StringCodec(), new ByteArrayCodec() );
+      for( int j = 0; j < SIZE; j++ )
+        offHeapMap.put( data[ j ], value );
+      offHeapBenchmark.stop();
+      }
+
+    System.out.println( jglBenchmark );
+    System.out.println( offHeapBenchmark );
+    offHeapBenchmark.compareTo( jglBenchmark );
+    }
+
+  static void mapGetting()
+    {
+    Benchmark offHeapBenchmark = new Benchmark( "offHeapHashMapGetting" );
+    Benchmark jglBenchmark = new Benchmark( "jglMapGetting" );
+    String[] data = keys();
+    byte[] value = new byte[ VALUE_SIZE ];
+    HashMap jglMap = new HashMap();
+    OffHeapHashMap offHeapMap = new OffHeapHashMap( new StringCodec(), new ByteArrayCodec() );
+
+    for( int j = 0; j < SIZE; j++ )
+      {
+      jglMap.put( data[ j ], value.clone() );
+      offHeapMap.put( data[ j ], value );
+      }
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      jglBenchmark.start();
+      for( int j = 0; j < SIZE; j++ )
+        jglMap.get( data[ j ] );
+      jglBenchmark.stop();
+
+      offHeapBenchmark.start();
+      for( int j = 0; j < SIZE; j++ )
+        offHeapMap.get( data[ j ] );
+      offHeapBenchmark.stop();
+      }
+
+    System.out.println( jglBenchmark );
+    System.out.println( offHeapBenchmark );
+    offHeapBenchmark.compareTo( jglBenchmark );
+    }
+  }
@@ -0,0 +1,180 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.util.*;
+
+public class OpenHashMapBenchmarks
+  {
+  static Randomizer random = new Randomizer();
+  static final int LOOPS = 200;
+  static final int MAX_SIZE = 30000;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "OpenHashMapBenchmarks" );
+    mapAdding();
+    mapFinding();
+    mapMissing();
+    mapRemoving();
+    mapIterating();
+    }
+
+  static Object[] getRandomVectorInts()
+    {
+    int size = Randomizer.getInt( MAX_SIZE );
+    Integer[] ints = new Integer[ size ];
+    for( int i = 0; i < size; i++ )
+      ints[ i ] = new Integer( Randomizer.getInt( 100000 ) );
+    return ints;
+    }
+
+  static void mapAdding()
+    {
+    Benchmark openBenchmark = new Benchmark( "openHashMapAdding", LOOPS / 4 );
+    Benchmark chainedBenchmark = new Benchmark( "hashMapAdding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      OpenHashMap openMap = new OpenHashMap();
+      HashMap chainedMap = new HashMap();
+
+      chainedBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.put( data[ j ], data[ j ] );
+      chainedBenchmark.stop();
+
+      openBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        openMap.put( data[ j ], data[ j ] );
+      openBenchmark.stop();
+      }
+
+    openBenchmark.compareTo( chainedBenchmark );
+    }
+
+  static void mapFinding()
+    {
+    Benchmark openBenchmark = new Benchmark( "openHashMapFinding", LOOPS / 4 );
+    Benchmark chainedBenchmark = new Benchmark( "hashMapFinding", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      OpenHashMap openMap = new OpenHashMap();
+      HashMap chainedMap = new HashMap();
+
+      for( int j = 0; j < data.length; j++ )
+        openMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.put( data[ j ], data[ j ] );
+
+      chainedBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.get( data[ j ] );
+      chainedBenchmark.stop();
+
+      openBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        openMap.get( data[ j ] );
+      openBenchmark.stop();
+      }
+
+    openBenchmark.compareTo( chainedBenchmark );
+    }
+
+  static void mapMissing()
+    {
+    Benchmark openBenchmark = new Benchmark( "openHashMapMissing", LOOPS / 4 );
+    Benchmark chainedBenchmark = new Benchmark( "hashMapMissing", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      Object[] misses = getRandomVectorInts();
+      OpenHashMap openMap = new OpenHashMap();
+      HashMap chainedMap = new HashMap();
+
+      for( int j = 0; j < data.length; j++ )
+        openMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.put( data[ j ], data[ j ] );
+
+      chainedBenchmark.start();
+      for( int j = 0; j < misses.length; j++ )
+        chainedMap.get( misses[ j ] );
+      chainedBenchmark.stop();
+
+      openBenchmark.start();
+      for( int j = 0; j < misses.length; j++ )
+        openMap.get( misses[ j ] );
+      openBenchmark.stop();
+      }
+
+    openBenchmark.compareTo( chainedBenchmark );
+    }
+
+  static void mapRemoving()
+    {
+    Benchmark openBenchmark = new Benchmark( "openHashMapRemoving", LOOPS / 4 );
+    Benchmark chainedBenchmark = new Benchmark( "hashMapRemoving", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      OpenHashMap openMap = new OpenHashMap();
+      HashMap chainedMap = new HashMap();
+
+      for( int j = 0; j < data.length; j++ )
+        openMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.put( data[ j ], data[ j ] );
+
+      chainedBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.remove( data[ j ] );
+      chainedBenchmark.stop();
+
+      openBenchmark.start();
+      for( int j = 0; j < data.length; j++ )
+        openMap.remove( data[ j ] );
+      openBenchmark.stop();
+      }
+
+    openBenchmark.compareTo( chainedBenchmark );
+    }
+
+  static void mapIterating()
+    {
+    Benchmark openBenchmark = new Benchmark( "openHashMapIterating", LOOPS / 4 );
+    Benchmark chainedBenchmark = new Benchmark( "hashMapIterating", LOOPS / 4 );
+
+    for( int i = 0; i <= LOOPS; i++ )
+      {
+      Object[] data = getRandomVectorInts();
+      OpenHashMap openMap = new OpenHashMap();
+      HashMap chainedMap = new HashMap();
+
+      for( int j = 0; j < data.length; j++ )
+        openMap.put( data[ j ], data[ j ] );
+
+      for( int j = 0; j < data.length; j++ )
+        chainedMap.put( data[ j ], data[ j ] );
+
+      chainedBenchmark.start();
+      for( HashMapIterator iterator = chainedMap.begin(); iterator.hasMoreElements(); iterator.advance() )
+        iterator.value();
+      chainedBenchmark.stop();
+
+      openBenchmark.start();
+      for( OpenHashMapIterator iterator = openMap.begin(); iterator.hasMoreElements(); iterator.advance() )
+        iterator.value();
+      openBenchmark.stop();
+      }
+
+    openBenchmark.compareTo( chainedBenchmark );
+    }
+  }
@@ -0,0 +1,86 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.adapters.*;
+import com.objectspace.jgl.util.*;
+
+public class PrimitiveMapBenchmarks
+  {
+  static final int LOOPS = 10;
+  static final int SIZE = 100000;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "PrimitiveMapBenchmarks" );
+    mapCounting();
+    mapReading();
+    }
+
+  static void mapCounting()
+    {
+    Benchmark intBenchmark = new Benchmark( "intHashMapCounting" );
+    Benchmark jglBenchmark = new Benchmark( "jglMapCounting" );
+    int[] data = new int[ SIZE ];
+
+    for( int i = 0; i < SIZE; i++ )
+      data[ i ] = Randomizer.getInt( SIZE / 4 );
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      jglBenchmark.start();
+      HashMap jglMap = new HashMap();
+      for( int j = 0; j < SIZE; j++ )
+        {
+        Integer key = new Integer( data[ j ] );
+        Integer count = (Integer)jglMap.get( key );
+        jglMap.put( key, new Integer( count == null ? 1 : count.intValue() + 1 ) );
+        }
+      jglBenchmark.stop();
+
+      intBenchmark.start();
+      IntHashMap intMap = new IntHashMap();
+      for( int j = 0; j < SIZE; j++ )
+        intMap.increment( data[ j ], 1 );
+      intBenchmark.stop();
+      }
+
+    System.out.println( jglBenchmark );
+    System.out.println( intBenchmark );
+    intBenchmark.compareTo( jglBenchmark );
+    }
+
+  static void mapReading()
+    {
+    Benchmark intBenchmark = new Benchmark( "intHashMapReading" );
+    Benchmark jglBenchmark = new Benchmark( "jglMapReading" );
+    int[] data = new int[ SIZE ];
+    Integer[] keys = new Integer[ SIZE ];
+    HashMap jglMap = new HashMap();
+    IntHashMap intMap = new IntHashMap();
+
+    for( int i = 0; i < SIZE; i++ )
+      {
+      data[ i ] = Randomizer.getInt( Integer.MAX_VALUE );
+      keys[ i ] = new Integer( data[ i ] );
+      jglMap.put( keys[ i ], keys[ i ] );
+      intMap.put( data[ i ], data[ i ] );
+      }
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      jglBenchmark.start();
+      for( int j = 0; j < SIZE; j++ )
+        jglMap.get( keys[ j ] );
+      jglBenchmark.stop();
+
+      intBenchmark.start();
+      for( int j = 0; j < SIZE; j++ )
+        intMap.get( data[ j ] );
+      intBenchmark.stop();
+      }
+
+    System.out.println( jglBenchmark );
+    System.out.println( intBenchmark );
+    intBenchmark.compareTo( jglBenchmark );
+    }
+  }
@@ -0,0 +1,58 @@
+package com.objectspace.jgl.benchmarks;
+
+import com.objectspace.jgl.*;
+import com.objectspace.jgl.util.*;
+
+public class SnapshotMapBenchmarks
+  {
+  static final int LOOPS = 10;
+  static final int SIZE = 100000;
+  static final int WRITES = 1000;
+
+  public static void main( String args[] )
+    {
+    System.out.println( "SnapshotMapBenchmarks" );
+    mapSnapshots();
+    }
+
+  static void mapSnapshots()
+    {
+    Benchmark snapshotBenchmark = new Benchmark( "snapshotHashMapSnapshots" );
+    Benchmark jglBenchmark = new Benchmark( "jglMapClones" );
+    Integer[] data = new Integer[ SIZE ];
+    HashMap jglMap = new HashMap();
+    SnapshotHashMap snapshotMap = new SnapshotHashMap();
+
+    for( int i = 0; i < SIZE; i++ )
+      {
+      data[ i ] = new Integer( Randomizer.getInt( Integer.MAX_VALUE ) );
+      jglMap.put( data[ i ], data[ i ] );
+      snapshotMap.put( data[ i ], data[ i ] );
+      }
+
+    for( int i = 0; i < LOOPS; i++ )
+      {
+      jglBenchmark.start();
+      for( int j = 0; j < WRITES; j++ )
+        {
+        jglMap.put( data[ j ], data[ j ] );
+        if ( j % 100 == 0 )
+          jglMap.clone();
+        }
+      jglBenchmark.stop();
+
+      snapshotBenchmark.start();
+      for( int j = 0; j < WRITES; j++ )
+        {
+        snapshotMap.put( data[ j ], data[ j ] );
+        if ( j % 100 == 0 )
+          snapshotMap.snapshot();
+        }
+      snapshotBenchmark.stop();
+      }
+
+    System.out.println( jglBenchmark );
+    System.out.println( snapshotBenchmark );
+    snapshotBenchmark.compareTo( jglBenchmark );
+    }
+  }
@@ -0,0 +1,49 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.codecs;
+
+import java.nio.ByteBuffer;
+import com.objectspace.jgl.*;
+
+/**
+ * ByteArrayCodec is a codec that stores a byte[] as its own contents.
+ * <p>
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class ByteArrayCodec implements Codec
+  {
+  /**
+   * Return the length of a byte[].
+   * @param object The byte[] to measure.
+   */
+  public int size( Object object )
+    {
+    return ( (byte[])object ).length;
+    }
+
+  /**
+   * Write the contents of a byte[].
+   * @param object The byte[] to encode.
+   * @param buffer The buffer to write into.
+   */
+  public void encode( Object object, ByteBuffer buffer )
+    {
+    buffer.put( (byte[])object );
+    }
+
+  /**
+   * Return a new byte[] holding a copy of the bytes.
+   * @param buffer The buffer to read from.
+   * @param length The number of bytes.
+   */
+  public Object decode( ByteBuffer buffer, int length )
+    {
+    byte[] result = new byte[ length ];
+    buffer.get( result );
+    return result;
+    }
+
+  static final long serialVersionUID = -6019432876550618731L;
+  }
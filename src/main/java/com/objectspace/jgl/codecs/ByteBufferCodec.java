@@ -0,0 +1,54 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.codecs;
+
+import java.nio.ByteBuffer;
+import com.objectspace.jgl.*;
+
+/**
+ * ByteBufferCodec is a codec that stores the remaining bytes of a ByteBuffer.
+ * Decoding does not copy anything: it returns a read-only view of the bytes
+ * where they are stored, which for a MappedHashMap is the mapped file itself.
+ * Such a view is only valid while its container is open and the pair is
+ * unchanged.
+ * <p>
+ * @see MappedHashMap
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class ByteBufferCodec implements Codec
+  {
+  /**
+   * Return the number of remaining bytes of a ByteBuffer.
+   * @param object The ByteBuffer to measure.
+   */
+  public int size( Object object )
+    {
+    return ( (ByteBuffer)object ).remaining();
+    }
+
+  /**
+   * Write the remaining bytes of a ByteBuffer without changing its position.
+   * @param object The ByteBuffer to encode.
+   * @param buffer The buffer to write into.
+   */
+  public void encode( Object object, ByteBuffer buffer )
+    {
+    buffer.put( ( (ByteBuffer)object ).duplicate() );
+    }
+
+  /**
+   * Return a read-only view of the bytes.
+   * @param buffer The buffer to read from.
+   * @param length The number of bytes.
+   */
+  public Object decode( ByteBuffer buffer, int length )
+    {
+    ByteBuffer view = buffer.slice();
+    view.limit( length );
+    return view.asReadOnlyBuffer();
+    }
+
+  static final long serialVersionUID = -3390581260617234478L;
+  }
@@ -0,0 +1,100 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.codecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import com.objectspace.jgl.*;
+
+/**
+ * SerializableCodec is a codec that stores any Serializable object in the
+ * form written by an ObjectOutputStream. It is the most general codec but also
+ * the slowest and least compact, and since equal objects do not always serialize
+ * to the same bytes, it should only be used for values.
+ * <p>
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class SerializableCodec implements Codec
+  {
+  private transient Object lastObject; // the object that was measured but not yet encoded.
+  private transient byte[] lastBytes; // its serialized form.
+
+  /**
+   * Return the size of the serialized form of an object.
+   * @param object The object to measure.
+   * @exception IllegalArgumentException If the object cannot be serialized.
+   */
+  public synchronized int size( Object object )
+    {
+    lastBytes = serialize( object );
+    lastObject = object;
+    return lastBytes.length;
+    }
+
+  /**
+   * Write the serialized form of an object.
+   * @param object The object to encode.
+   * @param buffer The buffer to write into.
+   * @exception IllegalArgumentException If the object cannot be serialized.
+   */
+  public synchronized void encode( Object object, ByteBuffer buffer )
+    {
+    // Containers measure an object just before they encode it, so the bytes
+    // from size() are used once rather than serializing the object again.
+    buffer.put( object == lastObject ? lastBytes : serialize( object ) );
+    lastObject = null;
+    lastBytes = null;
+    }
+
+  /**
+   * Return a new object read from its serialized form.
+   * @param buffer The buffer to read from.
+   * @param length The number of bytes.
+   * @exception IllegalArgumentException If the object cannot be deserialized.
+   */
+  public Object decode( ByteBuffer buffer, int length )
+    {
+    byte[] bytes = new byte[ length ];
+    buffer.get( bytes );
+
+    try
+      {
+      return new ObjectInputStream( new ByteArrayInputStream( bytes ) ).readObject();
+      }
+    catch ( IOException exception )
+      {
+      throw new IllegalArgumentException( exception.toString() );
+      }
+    catch ( ClassNotFoundException exception )
+      {
+      throw new IllegalArgumentException( exception.toString() );
+      }
+    }
+
+  /**
+   * Return the serialized form of an object.
+   */
+  private byte[] serialize( Object object )
+    {
+    try
+      {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream stream = new ObjectOutputStream( bytes );
+      stream.writeObject( object );
+      stream.close();
+      return bytes.toByteArray();
+      }
+    catch ( IOException exception )
+      {
+      throw new IllegalArgumentException( exception.toString() );
+      }
+    }
+
+  static final long serialVersionUID = 8859104536077266293L;
+  }
@@ -0,0 +1,77 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.codecs;
+
+import java.nio.ByteBuffer;
+import com.objectspace.jgl.*;
+
+/**
+ * StringCodec is a codec that stores a String as its UTF-8 bytes.
+ * <p>
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class StringCodec implements Codec
+  {
+  /**
+   * Return the number of UTF-8 bytes of a String.
+   * @param object The String to measure.
+   */
+  public int size( Object object )
+    {
+    String string = (String)object;
+    int size = 0;
+
+    for ( int i = 0; i < string.length(); i++ )
+      {
+      char c = string.charAt( i );
+
+      if ( c < 0x80 )
+        size += 1;
+      else if ( c < 0x800 )
+        size += 2;
+      else if ( Character.isHighSurrogate( c ) && i + 1 < string.length() && Character.isLowSurrogate( string.charAt( i + 1 ) ) )
+        {
+        size += 4;
+        ++i;
+        }
+      else if ( Character.isSurrogate( c ) )
+        size += 1; // encoded as '?'
+      else
+        size += 3;
+      }
+
+    return size;
+    }
+
+  /**
+   * Write the UTF-8 bytes of a String.
+   * @param object The String to encode.
+   * @param buffer The buffer to write into.
+   */
+  public void encode( Object object, ByteBuffer buffer )
+    {
+    buffer.put( ( (String)object ).getBytes( java.nio.charset.StandardCharsets.UTF_8 ) );
+    }
+
+  /**
+   * Return the String whose UTF-8 bytes are in the buffer.
+   * @param buffer The buffer to read from.
+   * @param length The number of bytes.
+   */
+  public Object decode( ByteBuffer buffer, int length )
+    {
+    if ( buffer.hasArray() )
+      {
+      int offset = buffer.arrayOffset() + buffer.position();
+      return new String( buffer.array(), offset, length, java.nio.charset.StandardCharsets.UTF_8 );
+      }
+
+    byte[] bytes = new byte[ length ];
+    buffer.get( bytes );
+    return new String( bytes, java.nio.charset.StandardCharsets.UTF_8 );
+    }
+
+  static final long serialVersionUID = 2270419584331962710L;
+  }
@@ -6,13 +6,15 @@ package com.objectspace.jgl.functions;
 import com.objectspace.jgl.*;
 
 /**
- * Hash is a unary function that returns the hash code of its operand.
+ * Hash is a unary function that returns the hash code of its operand. It is also
+ * a hasher that uses the standard hashCode() method.
  * <p>
+ * @see Hasher
  * @version 3.1.0
  * @author ObjectSpace, Inc.
  */
 
-public class Hash implements UnaryFunction
+public class Hash implements UnaryFunction, Hasher
   {
   /**
    * Return the hash code of my operand as an Integer, or 0 if the operand is null.
@@ -21,7 +23,17 @@ public class Hash implements UnaryFunction
    */
   public Object execute( Object object )
     {
-    return new Integer( object == null ? 0 : object.hashCode() );
+    return new Integer( hash( object ) );
+    }
+
+  /**
+   * Return the hash code of my operand, or 0 if the operand is null.
+   * @param object The operand.
+   * @return The hash code of the operand, using the standard Java hashCode() method.
+   */
+  public int hash( Object object )
+    {
+    return object == null ? 0 : object.hashCode();
     }
 
   static final long serialVersionUID = 1316300039283310140L;
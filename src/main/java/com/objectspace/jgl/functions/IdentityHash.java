@@ -0,0 +1,42 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.functions;
+
+import com.objectspace.jgl.*;
+
+/**
+ * IdentityHash is a unary function and a hasher that returns the identity hash
+ * code of its operand, ignoring any hashCode() method that the operand overrides.
+ * It is cheap and stable, but is only consistent with a comparator that matches
+ * identical objects, such as IdenticalTo.
+ * <p>
+ * @see Hasher
+ * @see com.objectspace.jgl.predicates.IdenticalTo
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class IdentityHash implements UnaryFunction, Hasher
+  {
+  /**
+   * Return the identity hash code of my operand as an Integer.
+   * @param object The operand.
+   * @return The identity hash code of the operand.
+   */
+  public Object execute( Object object )
+    {
+    return new Integer( hash( object ) );
+    }
+
+  /**
+   * Return the identity hash code of my operand, or 0 if the operand is null.
+   * @param object The operand.
+   * @return The identity hash code of the operand.
+   */
+  public int hash( Object object )
+    {
+    return System.identityHashCode( object );
+    }
+
+  static final long serialVersionUID = -3329420916462851907L;
+  }
@@ -0,0 +1,172 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.functions;
+
+import com.objectspace.jgl.*;
+
+/**
+ * StringHash is a unary function and a hasher that returns a strong hash code
+ * of a string. Every character of the string is mixed using the MurmurHash3
+ * algorithm with a seed, so unlike String.hashCode() it is hard to find many
+ * strings that share a hash code without knowing the seed. Hash codes are cached
+ * for the most recently hashed string objects, so repeatedly hashing the same
+ * long string is cheap. Operands that are not strings are hashed using their
+ * hashCode() method.
+ * <p>
+ * The cache holds references to up to its capacity of strings.
+ * <p>
+ * @see Hasher
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public class StringHash implements UnaryFunction, Hasher
+  {
+  static final int DEFAULT_CACHE_SIZE = 256;
+
+  int seed;
+  int cacheSize;
+  transient Entry[] cache;
+
+  /**
+   * Construct myself with a random seed and the default cache size.
+   */
+  public StringHash()
+    {
+    this( new java.util.Random().nextInt(), DEFAULT_CACHE_SIZE );
+    }
+
+  /**
+   * Construct myself with a specified seed and the default cache size.
+   * @param seed The seed of the hash.
+   */
+  public StringHash( int seed )
+    {
+    this( seed, DEFAULT_CACHE_SIZE );
+    }
+
+  /**
+   * Construct myself with a specified seed and cache size.
+   * @param seed The seed of the hash.
+   * @param cacheSize The number of hash codes to cache, which is rounded up to a
+   * power of two. A size of 0 disables the cache.
+   * @exception IllegalArgumentException If the cache size is negative.
+   */
+  public StringHash( int seed, int cacheSize )
+    {
+    if ( cacheSize < 0 )
+      throw new IllegalArgumentException( "Attempt to create a StringHash with a negative cache size" );
+
+    int n = cacheSize == 0 ? 0 : 1;
+
+    while ( n < cacheSize && n < ( 1 << 30 ) )
+      n <<= 1;
+
+    this.seed = seed;
+    this.cacheSize = n;
+    }
+
+  /**
+   * Return my seed.
+   */
+  public int getSeed()
+    {
+    return seed;
+    }
+
+  /**
+   * Return the strong hash code of my operand as an Integer.
+   * @param object The operand.
+   * @return The hash code of the operand.
+   */
+  public Object execute( Object object )
+    {
+    return new Integer( hash( object ) );
+    }
+
+  /**
+   * Return the strong hash code of my operand if it is a string, its hashCode()
+   * if it is not, or 0 if it is null.
+   * @param object The operand.
+   * @return The hash code of the operand.
+   */
+  public int hash( Object object )
+    {
+    if ( object == null )
+      return 0;
+
+    if ( !( object instanceof String ) )
+      return object.hashCode();
+
+    String string = (String)object;
+
+    if ( cacheSize == 0 )
+      return hash( string, seed );
+
+    Entry[] entries = cache;
+
+    if ( entries == null )
+      cache = entries = new Entry[ cacheSize ];
+
+    int slot = System.identityHashCode( string ) & ( entries.length - 1 );
+    Entry entry = entries[ slot ];
+
+    if ( entry != null && entry.string == string )
+      return entry.hash;
+
+    int hash = hash( string, seed );
+    entries[ slot ] = new Entry( string, hash );
+    return hash;
+    }
+
+  /**
+   * Return the MurmurHash3 hash of the characters of a string.
+   * @param string The string.
+   * @param seed The seed of the hash.
+   */
+  public static int hash( String string, int seed )
+    {
+    int length = string.length();
+    int hash = seed;
+    int i = 0;
+
+    for ( ; i + 1 < length; i += 2 )
+      {
+      hash ^= scramble( string.charAt( i ) | ( string.charAt( i + 1 ) << 16 ) );
+      hash = ( hash << 13 ) | ( hash >>> 19 );
+      hash = hash * 5 + 0xE6546B64;
+      }
+
+    if ( i < length )
+      hash ^= scramble( string.charAt( i ) );
+
+    hash ^= length * 2;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    return hash ^ ( hash >>> 16 );
+    }
+
+  private static int scramble( int k )
+    {
+    k *= 0xCC9E2D51;
+    k = ( k << 15 ) | ( k >>> 17 );
+    return k * 0x1B873593;
+    }
+
+  // Entries are immutable, so a racing reader sees either a whole entry or none.
+  static final class Entry
+    {
+    final String string;
+    final int hash;
+
+    Entry( String string, int hash )
+      {
+      this.string = string;
+      this.hash = hash;
+      }
+    }
+
+  static final long serialVersionUID = -1175036502640478521L;
+  }
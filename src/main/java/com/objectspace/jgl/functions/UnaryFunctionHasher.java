@@ -0,0 +1,41 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl.functions;
+
+import com.objectspace.jgl.*;
+
+/**
+ * UnaryFunctionHasher allows you to use a unary function object as a hasher.
+ * The function must return a Number, whose integer value is used as the hash
+ * code of the operand.
+ * <p>
+ * @see Hasher
+ * @version 3.1.0
+ * @author ObjectSpace, Inc.
+ */
+
+public final class UnaryFunctionHasher implements Hasher
+  {
+  UnaryFunction myFunction;
+
+  /**
+   * Construct myself with a unary function object.
+   * @param function The unary function object.
+   */
+  public UnaryFunctionHasher( UnaryFunction function )
+    {
+    myFunction = function;
+    }
+
+  /**
+   * Perform my unary function on the operand and return the result as a hash code.
+   * @param object The operand.
+   * @return function( object ) converted into an int.
+   */
+  public int hash( Object object )
+    {
+    return ( (Number)myFunction.execute( object ) ).intValue();
+    }
+
+  static final long serialVersionUID = 7790465232917736358L;
+  }
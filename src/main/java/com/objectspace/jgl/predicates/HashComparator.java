@@ -10,24 +10,46 @@ import com.objectspace.jgl.*;
  * first operand is less than the hash code of its second operand. It is used as the
  * default comparator by many algorithms and containers. It is especially useful for
  * sorting numbers, as the hash code of the Number subclasses are equal to their primitive
- * value.
+ * value. A Hasher may be supplied to compute the hash codes instead of hashCode().
  * <p>
+ * @see Hasher
  * @version 3.1.0
  * @author ObjectSpace, Inc.
  */
 
 public final class HashComparator implements BinaryPredicate
   {
+  Hasher myHasher;
+
+  /**
+   * Construct myself to compare hash codes obtained using hashCode().
+   */
+  public HashComparator()
+    {
+    }
+
+  /**
+   * Construct myself to compare hash codes obtained using a hasher.
+   * @param hasher The hasher.
+   */
+  public HashComparator( Hasher hasher )
+    {
+    myHasher = hasher;
+    }
+
   /**
    * Compare the operands based on their hash code.
    * @param first The first object.
    * @param second The second object.
    * @return true if the hash code of the first operand is less than the hash code of
-   * the second operand using the standard Java hashCode() method.
+   * the second operand using my hasher, or the standard Java hashCode() method if I have none.
    */
   public boolean execute( Object first, Object second )
     {
-    return first.hashCode() < second.hashCode();
+    if ( myHasher == null )
+      return first.hashCode() < second.hashCode();
+
+    return myHasher.hash( first ) < myHasher.hash( second );
     }
 
   static final long serialVersionUID = -5935097699688512897L;
@@ -4,12 +4,26 @@ package com.objectspace.jgl;
 
 final class xHashComparator implements BinaryPredicate
   {
+  Hasher hasher; // hashes the operands instead of hashCode(), or null.
+
+  xHashComparator()
+    {
+    }
+
+  xHashComparator( Hasher hasher )
+    {
+    this.hasher = hasher;
+    }
+
   /**
    * @see com.objectspace.jgl.predicates.HashComparator#execute(Object, Object)
    */
   public boolean execute( Object first, Object second )
     {
-    return first.hashCode() < second.hashCode();
+    if ( hasher == null )
+      return first.hashCode() < second.hashCode();
+
+    return hasher.hash( first ) < hasher.hash( second );
     }
 
   static final long serialVersionUID = -5935097699688512897L;
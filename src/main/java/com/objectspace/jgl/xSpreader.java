@@ -0,0 +1,26 @@
+// Copyright(c) 1997 ObjectSpace, Inc.
+
+package com.objectspace.jgl;
+
+final class xSpreader implements HashSpreader
+  {
+  /**
+   * Mix a hash code using the finalization step of MurmurHash3.
+   * @see HashSpreader#spread(int)
+   */
+  public int spread( int hash )
+    {
+    return mix( hash );
+    }
+
+  static int mix( int hash )
+    {
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    return hash ^ ( hash >>> 16 );
+    }
+
+  static final long serialVersionUID = 4480912254389624103L;
+  }